@@ -0,0 +1,31 @@
+package artskif.trader.api.dto;
+
+/**
+ * Подтверждение выполнения команды дозагрузки: харвестер → анализатор
+ *
+ * @param requestId   идентификатор исходной команды
+ * @param symbol      инструмент
+ * @param timeframe   таймфрейм
+ * @param fromEpochMs начало диапазона команды
+ * @param toEpochMs   конец диапазона команды
+ * @param status      итог выполнения
+ * @param pages       загружено страниц (для объединённых команд — общий итог загрузки)
+ * @param candles     загружено свечей (для объединённых команд — общий итог загрузки)
+ */
+public record BackfillAck(
+        String requestId,
+        String symbol,
+        String timeframe,
+        long fromEpochMs,
+        long toEpochMs,
+        Status status,
+        int pages,
+        long candles
+) {
+    public enum Status {
+        DONE,       // диапазон загружен и отправлен в history-топик
+        CANCELLED,  // загрузка прервана остановкой харвестера
+        REJECTED,   // команда некорректна (неизвестный таймфрейм, пустой диапазон)
+        FAILED      // загрузка завершилась ошибкой или часть страниц не загружена, команду можно повторить
+    }
+}
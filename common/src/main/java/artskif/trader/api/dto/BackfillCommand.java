@@ -0,0 +1,20 @@
+package artskif.trader.api.dto;
+
+/**
+ * Команда дозагрузки истории свечей: анализатор → харвестер
+ *
+ * @param requestId   идентификатор запроса; повторная доставка с тем же id не запускает загрузку повторно
+ * @param symbol      инструмент (например "BTC-USDT-SWAP")
+ * @param timeframe   таймфрейм: CANDLE_1M, CANDLE_5M, CANDLE_1H, CANDLE_4H, CANDLE_1W
+ * @param fromEpochMs начало диапазона (включительно)
+ * @param toEpochMs   конец диапазона (не включительно)
+ * @param priority    приоритет среди команд дозагрузки (меньше — раньше)
+ */
+public record BackfillCommand(
+        String requestId,
+        String symbol,
+        String timeframe,
+        long fromEpochMs,
+        long toEpochMs,
+        int priority
+) {}
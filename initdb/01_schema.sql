@@ -23,7 +23,7 @@ SELECT create_hypertable('candles', 'ts', if_not_exists => TRUE);
 CREATE INDEX candles_symbol_tf_ts_idx ON candles (symbol, tf, ts DESC);
 
 
--- 2) Staging для COPY (можно UNLOGGED для скорости)
+-- 2) Образец staging-таблицы для COPY: данные грузятся во временные таблицы сессии (CREATE TEMP TABLE ... LIKE stage_candles)
 CREATE UNLOGGED TABLE IF NOT EXISTS stage_candles
 (
     symbol    varchar(32),
@@ -55,6 +55,9 @@ CREATE TABLE IF NOT EXISTS wide_candles
 
 SELECT create_hypertable('wide_candles', 'ts', if_not_exists => TRUE);
 
+-- Контракты из strategy.feature-storage.contract-tables пишутся не сюда, а в собственные гипертаблицы wc_<hash>
+-- той же структуры (создаются анализатором по метаданным контракта, читаются через представления features_<имя>)
+
 -- PRIMARY KEY (tf, tag, ts) автоматически создаст индекс и покроет запросы вида:
 -- WHERE tf = '1m' AND tag = 'positions' ORDER BY ts
 
@@ -64,7 +67,7 @@ CREATE INDEX IF NOT EXISTS wide_candles_tf_ts_idx ON wide_candles (tf, ts DESC);
 -- Индекс для быстрого поиска по contract_hash (если используется для JOIN)
 CREATE INDEX IF NOT EXISTS wide_candles_contract_hash_idx ON wide_candles (contract_hash) WHERE contract_hash IS NOT NULL;
 
--- Staging таблица для COPY wide_candles (UNLOGGED для скорости)
+-- Образец staging-таблицы для COPY wide_candles: данные грузятся во временные таблицы сессии (CREATE TEMP TABLE ... LIKE stage_wide_candles)
 CREATE UNLOGGED TABLE IF NOT EXISTS stage_wide_candles
 (
     tf            varchar(10),
@@ -160,12 +163,15 @@ CREATE TABLE IF NOT EXISTS pending_orders
     ts            timestamp      NOT NULL,
     c_time        timestamp,
     u_time        timestamp,
+    content_hash  bigint,
     created_at    timestamp      NOT NULL DEFAULT NOW(),
     updated_at    timestamp      NOT NULL DEFAULT NOW()
 );
 
 -- Индекс для JOIN-ов со свечами по (ts, tf)
 CREATE INDEX IF NOT EXISTS pending_orders_ts_tf_idx ON pending_orders (tf, ts DESC);
+-- Натуральный ключ строки снимка для пакетного upsert (ON CONFLICT)
+CREATE UNIQUE INDEX IF NOT EXISTS pending_orders_tf_ts_ord_id_uidx ON pending_orders (tf, ts, ord_id);
 
 -- 8) Таблица открытых позиций
 -- Уникальность позиции определяется комбинацией (pos_id, c_time),
@@ -190,12 +196,15 @@ CREATE TABLE IF NOT EXISTS positions
     ts            timestamp    NOT NULL,
     c_time        timestamp,
     u_time        timestamp,
+    content_hash  bigint,
     created_at    timestamp    NOT NULL DEFAULT NOW(),
     updated_at    timestamp    NOT NULL DEFAULT NOW()
 );
 
 -- Индекс для JOIN-ов со свечами по (ts, tf)
 CREATE INDEX IF NOT EXISTS positions_ts_tf_idx ON positions (tf, ts DESC);
+-- Натуральный ключ строки живого снимка для пакетного upsert (ON CONFLICT)
+CREATE UNIQUE INDEX IF NOT EXISTS positions_tf_ts_pos_id_uidx ON positions (tf, ts, pos_id);
 
 -- 9) Таблица параметров создания ордера (торговые настройки стратегии)
 CREATE TABLE IF NOT EXISTS order_creation_params
@@ -1,3 +1,6 @@
+-- Начальные политики для candles. При старте анализатор приводит их к конфигурации storage.* (StoragePolicyService),
+-- там же настраиваются чанки, компрессия и retention для wide_candles и trade_events.
+
 -- Retention на сырые свечи
 SELECT add_retention_policy('candles', INTERVAL '1825 days');
 
@@ -0,0 +1,28 @@
+-- 04_migrate_positions_orders_upsert.sql
+-- Миграция для продакшен среды: натуральные ключи и хэш содержимого для пакетного upsert
+-- снимков positions и pending_orders (PositionRepository/PendingOrderRepository.saveAllByTsTf).
+
+-- 1) Хэш содержимого строки: неизменившиеся строки не перезаписываются
+ALTER TABLE positions
+    ADD COLUMN IF NOT EXISTS content_hash bigint;
+ALTER TABLE pending_orders
+    ADD COLUMN IF NOT EXISTS content_hash bigint;
+
+-- 2) Удаляем дубликаты натурального ключа, оставляя последнюю запись
+DELETE FROM positions p
+    USING positions newer
+WHERE p.tf = newer.tf
+  AND p.ts = newer.ts
+  AND p.pos_id = newer.pos_id
+  AND p.id < newer.id;
+
+DELETE FROM pending_orders o
+    USING pending_orders newer
+WHERE o.tf = newer.tf
+  AND o.ts = newer.ts
+  AND o.ord_id = newer.ord_id
+  AND o.id < newer.id;
+
+-- 3) Уникальные индексы для ON CONFLICT
+CREATE UNIQUE INDEX IF NOT EXISTS positions_tf_ts_pos_id_uidx ON positions (tf, ts, pos_id);
+CREATE UNIQUE INDEX IF NOT EXISTS pending_orders_tf_ts_ord_id_uidx ON pending_orders (tf, ts, ord_id);
@@ -0,0 +1,79 @@
+package artskif.trader.ai.xgboost;
+
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+import ml.dmlc.xgboost4j.java.util.BigDenseMatrix;
+
+import java.util.List;
+
+/**
+ * Сборка DMatrix из строк фич, рассчитанных в памяти (без JDBC и CSV).
+ *
+ * Значения пишутся построчно в плотную матрицу float вне кучи ({@link BigDenseMatrix}), откуда XGBoost
+ * копирует их в своё хранилище; буфер освобождается сразу после создания DMatrix.
+ * Строки без значения лейбла пропускаются, пропуски в фичах передаются как NaN (missing).
+ * Матрица собирается одним блоком, а не порциями: строки бэктеста уже целиком в памяти,
+ * и CPU-DMatrix в xgboost4j всё равно копирует плотные данные в одно хранилище.
+ */
+public final class DMatrixBuilder {
+
+    private DMatrixBuilder() {
+    }
+
+    /**
+     * Собрать DMatrix по диапазону строк
+     *
+     * @param rows     строки фич в порядке времени
+     * @param from     первая строка диапазона, включительно
+     * @param to       последняя строка диапазона, не включительно
+     * @param features имена колонок-фич в порядке столбцов матрицы
+     * @param label    имя колонки-лейбла
+     * @return матрица или null, если в диапазоне нет строк с лейблом
+     */
+    public static DMatrix build(List<? extends DatabaseSnapshot> rows, int from, int to,
+                                List<String> features, String label) throws XGBoostError {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (!Float.isNaN(toFloat(rows.get(i).getColumnValue(label)))) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        int ncol = features.size();
+        float[] labels = new float[count];
+        BigDenseMatrix matrix = new BigDenseMatrix(count, ncol);
+        try {
+            int row = 0;
+            for (int i = from; i < to; i++) {
+                DatabaseSnapshot snapshot = rows.get(i);
+                float labelValue = toFloat(snapshot.getColumnValue(label));
+                if (Float.isNaN(labelValue)) {
+                    continue;
+                }
+                long base = (long) row * ncol;
+                for (int col = 0; col < ncol; col++) {
+                    matrix.set(base + col, toFloat(snapshot.getColumnValue(features.get(col))));
+                }
+                labels[row++] = labelValue;
+            }
+
+            DMatrix dmatrix = new DMatrix(matrix, Float.NaN);
+            dmatrix.setLabel(labels);
+            dmatrix.setFeatureNames(features.toArray(String[]::new));
+            return dmatrix;
+        } finally {
+            matrix.dispose();
+        }
+    }
+
+    private static float toFloat(Object value) {
+        if (value instanceof Number number) {
+            return number.floatValue();
+        }
+        return Float.NaN;
+    }
+}
@@ -0,0 +1,85 @@
+package artskif.trader.ai.xgboost;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек в микросекундах с логарифмическими корзинами (шаг ~19%).
+ *
+ * Запись — один инкремент счётчика без блокировок и без выделения памяти, поэтому её можно вызывать
+ * прямо в сигнальном пути. Перцентили возвращаются верхней границей корзины, погрешность не больше шага.
+ */
+final class LatencyHistogram {
+
+    // 4 корзины на удвоение: граница корзины i = 2^(i/4) мкс, 96 корзин покрывают до ~16 с
+    private static final int BUCKETS_PER_DOUBLING = 4;
+    private static final int BUCKETS = 96;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+
+    void record(long micros) {
+        counts.incrementAndGet(bucketOf(micros));
+        total.incrementAndGet();
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Записать задержку и учесть превышение бюджета
+     *
+     * @return true, если задержка больше бюджета
+     */
+    boolean record(long micros, long budgetMicros) {
+        record(micros);
+        if (micros > budgetMicros) {
+            overruns.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    long getOverruns() {
+        return overruns.get();
+    }
+
+    long getCount() {
+        return total.get();
+    }
+
+    long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Задержка, которую не превышает доля quantile записей (0 — если записей нет)
+     */
+    long percentile(double quantile) {
+        long count = total.get();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * quantile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros <= 1) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(micros) / Math.log(2) * BUCKETS_PER_DOUBLING);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return (long) Math.ceil(Math.pow(2, (double) bucket / BUCKETS_PER_DOUBLING));
+    }
+}
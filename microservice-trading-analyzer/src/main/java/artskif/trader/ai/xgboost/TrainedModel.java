@@ -0,0 +1,36 @@
+package artskif.trader.ai.xgboost;
+
+import ml.dmlc.xgboost4j.java.Booster;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Обученная модель одного лейбла контракта
+ *
+ * @param contractHash  версия контракта, по которой обучена модель
+ * @param contractName  имя контракта
+ * @param label         колонка-лейбл
+ * @param features      колонки-фичи в порядке столбцов матрицы
+ * @param file          файл модели
+ * @param trainedAt     время окончания обучения
+ * @param trainRows     строк в обучающей выборке
+ * @param evalRows      строк в валидационной выборке
+ * @param evaluation    метрика на последней итерации
+ * @param matrixMillis  время сборки DMatrix
+ * @param trainMillis   время обучения
+ * @param booster       модель
+ */
+public record TrainedModel(String contractHash,
+                           String contractName,
+                           String label,
+                           List<String> features,
+                           String file,
+                           Instant trainedAt,
+                           long trainRows,
+                           long evalRows,
+                           String evaluation,
+                           long matrixMillis,
+                           long trainMillis,
+                           Booster booster) {
+}
@@ -0,0 +1,146 @@
+package artskif.trader.ai.xgboost;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Конфигурация обучения и инференса XGBoost.
+ */
+@ApplicationScoped
+public class XGBoostConfig {
+
+    /**
+     * Обучать модели по строкам бэктеста сразу после его расчёта.
+     * По умолчанию: false
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.training-enabled", defaultValue = "false")
+    boolean trainingEnabled;
+
+    /**
+     * Каталог моделей: модели хранятся по contract_hash, так что изменение контракта даёт новую версию
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.models-directory", defaultValue = "models")
+    String modelsDirectory;
+
+    /**
+     * Доля последних по времени строк, отводимая под валидацию
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.validation-fraction", defaultValue = "0.2")
+    double validationFraction;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.rounds", defaultValue = "150")
+    int rounds;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.max-depth", defaultValue = "4")
+    int maxDepth;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.min-child-weight", defaultValue = "6")
+    double minChildWeight;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.eta", defaultValue = "0.07")
+    double eta;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.subsample", defaultValue = "0.75")
+    double subsample;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.colsample-bytree", defaultValue = "0.6")
+    double colsampleBytree;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.objective", defaultValue = "reg:squarederror")
+    String objective;
+
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.eval-metric", defaultValue = "rmse")
+    String evalMetric;
+
+    /**
+     * Потоков XGBoost на одно обучение (0 — все ядра)
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.nthread", defaultValue = "0")
+    int nthread;
+
+    /**
+     * Рассчитывать прогнозы последних моделей контракта на каждом live-баре.
+     * По умолчанию: false
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.inference-enabled", defaultValue = "false")
+    boolean inferenceEnabled;
+
+    /**
+     * Бюджет задержки одного прогноза в микросекундах: прогнозы дольше бюджета учитываются как превышения
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.inference-budget-micros", defaultValue = "500")
+    long inferenceBudgetMicros;
+
+    /**
+     * Сколько микросекунд первый вектор бара ждёт векторы других инструментов того же контракта,
+     * чтобы прогноз по ним шёл одним вызовом модели. 0 — без пакетирования.
+     */
+    @Inject
+    @ConfigProperty(name = "ai.xgboost.inference-batch-window-micros", defaultValue = "200")
+    long inferenceBatchWindowMicros;
+
+    public boolean isTrainingEnabled() {
+        return trainingEnabled;
+    }
+
+    public String getModelsDirectory() {
+        return modelsDirectory;
+    }
+
+    public double getValidationFraction() {
+        return validationFraction;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    public boolean isInferenceEnabled() {
+        return inferenceEnabled;
+    }
+
+    public long getInferenceBudgetMicros() {
+        return inferenceBudgetMicros;
+    }
+
+    public long getInferenceBatchWindowMicros() {
+        return inferenceBatchWindowMicros;
+    }
+
+    /**
+     * Параметры обучения для XGBoost.train
+     */
+    public Map<String, Object> toParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("max_depth", maxDepth);
+        params.put("min_child_weight", minChildWeight);
+        params.put("eta", eta);
+        params.put("subsample", subsample);
+        params.put("colsample_bytree", colsampleBytree);
+        params.put("objective", objective);
+        params.put("eval_metric", evalMetric);
+        params.put("tree_method", "hist");
+        if (nthread > 0) {
+            params.put("nthread", nthread);
+        }
+        return params;
+    }
+}
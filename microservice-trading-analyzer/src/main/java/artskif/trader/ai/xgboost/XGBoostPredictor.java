@@ -0,0 +1,470 @@
+package artskif.trader.ai.xgboost;
+
+import artskif.trader.strategy.feature.FeatureLayout;
+import artskif.trader.strategy.feature.FeatureVector;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoost;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Инференс последних моделей XGBoost в live-пути стратегий.
+ *
+ * Для каждой модели держится слот с заранее выделенным буфером признаков и картой «слот раскладки фич →
+ * столбец модели», которая пересчитывается только при смене {@link FeatureLayout}. Прогноз по бару — это
+ * копирование значений вектора в буфер и один вызов {@link Booster#predict}.
+ *
+ * Новая модель подменяет слот атомарно: стратегии сразу начинают читать новый слот, а старая модель
+ * освобождается после завершения уже начатого по ней прогноза. Векторы инструментов, бары которых закрылись
+ * одновременно, собираются в пакет и прогнозируются одним вызовом модели. Задержка каждого вызова пишется
+ * в гистограмму (p50/p99) вместе со счётчиком превышений бюджета; превышения логируются не чаще раза в минуту.
+ */
+@ApplicationScoped
+public class XGBoostPredictor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final long OVERRUN_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+
+    @Inject
+    XGBoostConfig config;
+
+    // contractHash -> label -> слот последней модели
+    private final Map<String, Map<String, ModelSlot>> models = new ConcurrentHashMap<>();
+    // contractHash -> открытый пакет векторов текущего бара
+    private final Map<String, PendingBatch> openBatches = new ConcurrentHashMap<>();
+    // contractHash -> инструменты, по которым уже шли прогнозы: столько векторов ждёт пакет
+    private final Map<String, Set<String>> instrumentsByContract = new ConcurrentHashMap<>();
+
+    /**
+     * Статистика инференса модели
+     *
+     * @param contractHash  версия контракта
+     * @param contractName  имя контракта
+     * @param label         колонка-лейбл
+     * @param file          файл модели
+     * @param trainedAt     время обучения
+     * @param evaluation    метрика на валидации
+     * @param predictions   количество вызовов модели
+     * @param p50Micros     медиана задержки вызова
+     * @param p99Micros     99-й перцентиль задержки вызова
+     * @param maxMicros     максимальная задержка вызова
+     * @param budgetOverruns вызовов дольше бюджета
+     */
+    public record InferenceStats(String contractHash,
+                                 String contractName,
+                                 String label,
+                                 String file,
+                                 Instant trainedAt,
+                                 String evaluation,
+                                 long predictions,
+                                 long p50Micros,
+                                 long p99Micros,
+                                 long maxMicros,
+                                 long budgetOverruns) {
+    }
+
+    public boolean isInferenceEnabled() {
+        return config.isInferenceEnabled();
+    }
+
+    /**
+     * Подгрузить с диска последние модели по каждому (contractHash, label), чтобы инференс работал сразу после рестарта
+     */
+    void onStart(@Observes StartupEvent event) {
+        if (!config.isInferenceEnabled()) {
+            return;
+        }
+        Path root = Path.of(config.getModelsDirectory());
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        try (Stream<Path> labelDirs = Files.find(root, 2, (path, attrs) -> attrs.isDirectory() && root.relativize(path).getNameCount() == 2)) {
+            labelDirs.forEach(this::loadLatest);
+        } catch (IOException e) {
+            Log.errorf(e, "❌ Не удалось прочитать каталог моделей %s", root);
+        }
+    }
+
+    private void loadLatest(Path labelDir) {
+        try (Stream<Path> files = Files.list(labelDir)) {
+            Optional<Path> latestMeta = files
+                    .filter(path -> path.getFileName().toString().matches("model-\\d+\\.json"))
+                    .max(Comparator.comparingLong(XGBoostPredictor::versionOf));
+            if (latestMeta.isEmpty()) {
+                return;
+            }
+            Path meta = latestMeta.get();
+            Path modelFile = meta.resolveSibling("model-" + versionOf(meta) + ".ubj");
+            if (!Files.exists(modelFile)) {
+                Log.warnf("⚠️ Для описания модели %s нет файла %s", meta, modelFile.getFileName());
+                return;
+            }
+
+            Map<String, Object> description = MAPPER.readValue(meta.toFile(), new TypeReference<>() {
+            });
+            @SuppressWarnings("unchecked")
+            List<String> features = (List<String>) description.get("features");
+            TrainedModel model = new TrainedModel(
+                    (String) description.get("contractHash"),
+                    (String) description.get("contractName"),
+                    (String) description.get("label"),
+                    List.copyOf(features),
+                    modelFile.toAbsolutePath().toString(),
+                    Instant.parse((String) description.get("trainedAt")),
+                    ((Number) description.get("trainRows")).longValue(),
+                    ((Number) description.get("evalRows")).longValue(),
+                    (String) description.get("evaluation"),
+                    0, 0,
+                    XGBoost.loadModel(modelFile.toString()));
+            publish(model);
+        } catch (IOException | XGBoostError | RuntimeException e) {
+            Log.errorf(e, "❌ Не удалось загрузить модель из %s", labelDir);
+        }
+    }
+
+    private static long versionOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("model-".length(), name.lastIndexOf('.')));
+    }
+
+    /**
+     * Сделать модель текущей для её (contractHash, label). Предыдущая модель освобождается,
+     * как только завершится начатый по ней прогноз; новые прогнозы идут уже по новой модели.
+     * После передачи модель принадлежит инференсу — вызывающий не должен освобождать её booster.
+     */
+    public void publish(TrainedModel model) {
+        ModelSlot previous = models
+                .computeIfAbsent(model.contractHash(), hash -> new ConcurrentHashMap<>())
+                .put(model.label(), new ModelSlot(model));
+        if (previous != null) {
+            previous.retire();
+        }
+        Log.infof("🔁 Модель %s/%s от %s подключена к инференсу (фич: %d)",
+                model.contractName(), model.label(), model.trainedAt(), model.features().size());
+    }
+
+    public Optional<TrainedModel> getLatest(String contractHash, String label) {
+        Map<String, ModelSlot> labels = models.get(contractHash);
+        ModelSlot slot = labels != null ? labels.get(label) : null;
+        return slot != null ? Optional.of(slot.model) : Optional.empty();
+    }
+
+    public boolean hasModels(String contractHash) {
+        Map<String, ModelSlot> labels = models.get(contractHash);
+        return labels != null && !labels.isEmpty();
+    }
+
+    /**
+     * Прогноз всех моделей контракта по вектору фич одного бара.
+     *
+     * Векторы других инструментов того же контракта с тем же временем бара, пришедшие в пределах окна
+     * {@code ai.xgboost.inference-batch-window-micros}, собираются в один пакет: первый вектор ждёт остальные
+     * (не дольше окна и только пока инструментов в пакете меньше, чем уже встречалось у контракта),
+     * затем делает один вызов модели на всех, остальные получают свою строку результата.
+     * С одним инструментом ожидания нет.
+     *
+     * @return label -> прогноз (пустая карта, если моделей нет; NaN, если прогноз не удался)
+     */
+    public Map<String, Float> predict(String contractHash, FeatureVector vector) {
+        if (!hasModels(contractHash)) {
+            return Map.of();
+        }
+        Set<String> instruments = instrumentsByContract.computeIfAbsent(contractHash, hash -> ConcurrentHashMap.newKeySet());
+        instruments.add(vector.getInstrument());
+
+        long windowNanos = TimeUnit.MICROSECONDS.toNanos(config.getInferenceBatchWindowMicros());
+        if (windowNanos <= 0) {
+            return rowOf(predict(contractHash, List.of(vector)), 0);
+        }
+
+        while (true) {
+            PendingBatch batch = openBatches.compute(contractHash, (hash, open) ->
+                    open != null && open.accepts(vector.getTimestamp()) ? open : new PendingBatch(vector.getTimestamp()));
+            int row = batch.join(vector);
+            if (row < 0) {
+                // Пакет закрылся между поиском и присоединением — открываем следующий
+                continue;
+            }
+            if (row > 0) {
+                return rowOf(batch.awaitResult(), row);
+            }
+
+            List<FeatureVector> vectors = batch.close(instruments.size(), System.nanoTime() + windowNanos);
+            openBatches.remove(contractHash, batch);
+            Map<String, float[]> result = Map.of();
+            try {
+                result = predict(contractHash, vectors);
+            } finally {
+                batch.complete(result);
+            }
+            return rowOf(result, 0);
+        }
+    }
+
+    private static Map<String, Float> rowOf(Map<String, float[]> batch, int row) {
+        Map<String, Float> result = new HashMap<>(batch.size() * 2);
+        batch.forEach((label, values) -> result.put(label, values[row]));
+        return result;
+    }
+
+    /**
+     * Прогноз всех моделей контракта одним вызовом на модель по векторам нескольких инструментов,
+     * бары которых закрылись одновременно
+     *
+     * @return label -> прогнозы в порядке векторов
+     */
+    public Map<String, float[]> predict(String contractHash, List<FeatureVector> vectors) {
+        Map<String, ModelSlot> labels = models.get(contractHash);
+        if (labels == null || labels.isEmpty() || vectors.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, float[]> result = new HashMap<>(labels.size() * 2);
+        for (Map.Entry<String, ModelSlot> entry : labels.entrySet()) {
+            result.put(entry.getKey(), predictWithLatest(contractHash, entry.getKey(), entry.getValue(), vectors));
+        }
+        return result;
+    }
+
+    private float[] predictWithLatest(String contractHash, String label, ModelSlot slot, List<FeatureVector> vectors) {
+        // Слот мог быть заменён между чтением карты и вызовом — тогда берём текущий
+        while (true) {
+            float[] values = slot.predict(vectors, config.getInferenceBudgetMicros());
+            if (values != null) {
+                return values;
+            }
+            slot = models.getOrDefault(contractHash, Map.of()).get(label);
+            if (slot == null) {
+                float[] missing = new float[vectors.size()];
+                Arrays.fill(missing, Float.NaN);
+                return missing;
+            }
+        }
+    }
+
+    public List<InferenceStats> getStats() {
+        List<InferenceStats> stats = new ArrayList<>();
+        for (Map<String, ModelSlot> labels : models.values()) {
+            for (ModelSlot slot : labels.values()) {
+                stats.add(slot.stats());
+            }
+        }
+        stats.sort(Comparator.comparing(InferenceStats::contractName).thenComparing(InferenceStats::label));
+        return stats;
+    }
+
+    @PreDestroy
+    void stop() {
+        models.values().forEach(labels -> labels.values().forEach(ModelSlot::retire));
+        models.clear();
+    }
+
+    /**
+     * Модель с буфером признаков. Все обращения к booster и буферу идут под монитором слота:
+     * конкуренция возможна только между стратегиями одного контракта и при подмене модели.
+     */
+    private static final class ModelSlot {
+        private final TrainedModel model;
+        private final int featureCount;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        // Превышения бюджета, ещё не попавшие в лог, и время последней записи о них
+        private long unloggedOverruns;
+        private long overrunsLoggedAtNanos;
+
+        // Буфер строк признаков, растёт только при пакете больше предыдущего
+        private float[] buffer;
+        // Раскладка, для которой посчитана карта столбцов, и сама карта: столбец модели -> слот вектора (-1 — нет)
+        private FeatureLayout mappedLayout;
+        private int[] columnSlots;
+        private boolean retired;
+
+        private ModelSlot(TrainedModel model) {
+            this.model = model;
+            this.featureCount = model.features().size();
+            this.buffer = new float[featureCount];
+        }
+
+        /**
+         * @return прогнозы или null, если модель уже заменена
+         */
+        private synchronized float[] predict(List<FeatureVector> vectors, long budgetMicros) {
+            if (retired) {
+                return null;
+            }
+            long started = System.nanoTime();
+            int rows = vectors.size();
+            if (buffer.length < rows * featureCount) {
+                buffer = new float[rows * featureCount];
+            }
+            for (int row = 0; row < rows; row++) {
+                FeatureVector vector = vectors.get(row);
+                if (vector.getLayout() != mappedLayout) {
+                    mapColumns(vector.getLayout());
+                }
+                int base = row * featureCount;
+                for (int col = 0; col < featureCount; col++) {
+                    int slot = columnSlots[col];
+                    buffer[base + col] = slot >= 0 ? (float) vector.get(slot) : Float.NaN;
+                }
+            }
+
+            float[] result = new float[rows];
+            DMatrix matrix = null;
+            try {
+                matrix = new DMatrix(buffer, rows, featureCount, Float.NaN);
+                float[][] predictions = model.booster().predict(matrix);
+                for (int row = 0; row < rows; row++) {
+                    result[row] = predictions[row][0];
+                }
+            } catch (XGBoostError e) {
+                Log.errorf(e, "❌ Ошибка прогноза модели %s/%s", model.contractName(), model.label());
+                Arrays.fill(result, Float.NaN);
+            } finally {
+                if (matrix != null) {
+                    matrix.dispose();
+                }
+            }
+
+            long finished = System.nanoTime();
+            long micros = TimeUnit.NANOSECONDS.toMicros(finished - started);
+            if (latency.record(micros, budgetMicros)) {
+                logOverrun(finished, micros, budgetMicros, rows);
+            }
+            return result;
+        }
+
+        private void logOverrun(long now, long micros, long budgetMicros, int rows) {
+            unloggedOverruns++;
+            if (overrunsLoggedAtNanos != 0 && now - overrunsLoggedAtNanos < OVERRUN_LOG_INTERVAL_NS) {
+                return;
+            }
+            Log.warnf("⏱️ Прогноз модели %s/%s занял %d мкс при бюджете %d мкс (строк: %d), превышений с прошлой записи: %d",
+                    model.contractName(), model.label(), micros, budgetMicros, rows, unloggedOverruns);
+            unloggedOverruns = 0;
+            overrunsLoggedAtNanos = now;
+        }
+
+        private void mapColumns(FeatureLayout layout) {
+            int[] slots = new int[featureCount];
+            int missing = 0;
+            for (int col = 0; col < featureCount; col++) {
+                slots[col] = layout.slotOf(model.features().get(col));
+                if (slots[col] < 0) {
+                    missing++;
+                }
+            }
+            if (missing > 0) {
+                Log.warnf("⚠️ В векторе фич нет %d из %d колонок модели %s/%s — они передаются как пропуски",
+                        missing, featureCount, model.contractName(), model.label());
+            }
+            columnSlots = slots;
+            mappedLayout = layout;
+        }
+
+        private synchronized void retire() {
+            if (!retired) {
+                retired = true;
+                model.booster().dispose();
+            }
+        }
+
+        private InferenceStats stats() {
+            return new InferenceStats(model.contractHash(), model.contractName(), model.label(), model.file(),
+                    model.trainedAt(), model.evaluation(), latency.getCount(),
+                    latency.percentile(0.50), latency.percentile(0.99), latency.getMax(), latency.getOverruns());
+        }
+    }
+
+    /**
+     * Пакет векторов одного бара контракта. Первый присоединившийся (ведущий) закрывает пакет и считает прогноз,
+     * остальные ждут его результат.
+     */
+    private static final class PendingBatch {
+        private final Instant timestamp;
+        private final List<FeatureVector> vectors = new ArrayList<>();
+        private volatile boolean closed;
+        private boolean completed;
+        private Map<String, float[]> result = Map.of();
+
+        private PendingBatch(Instant timestamp) {
+            this.timestamp = timestamp;
+        }
+
+        private boolean accepts(Instant barTimestamp) {
+            return !closed && timestamp.equals(barTimestamp);
+        }
+
+        /**
+         * @return номер строки вектора в пакете или -1, если пакет уже закрыт
+         */
+        private synchronized int join(FeatureVector vector) {
+            if (closed) {
+                return -1;
+            }
+            vectors.add(vector);
+            notifyAll();
+            return vectors.size() - 1;
+        }
+
+        /**
+         * Дождаться expected векторов (не дольше deadline) и закрыть пакет
+         */
+        private synchronized List<FeatureVector> close(int expected, long deadlineNanos) {
+            long remaining;
+            while (vectors.size() < expected && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            closed = true;
+            return List.copyOf(vectors);
+        }
+
+        private synchronized void complete(Map<String, float[]> batchResult) {
+            result = batchResult;
+            completed = true;
+            notifyAll();
+        }
+
+        private synchronized Map<String, float[]> awaitResult() {
+            boolean interrupted = false;
+            while (!completed) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package artskif.trader.ai.xgboost;
+
+import artskif.trader.entity.Contract;
+import artskif.trader.entity.ContractMetadata;
+import artskif.trader.entity.MetadataType;
+import artskif.trader.strategy.database.columns.impl.ForwardReturnColumn;
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoost;
+import ml.dmlc.xgboost4j.java.XGBoostError;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновое обучение моделей XGBoost по строкам фич контракта.
+ *
+ * Фичи — колонки контракта типа FEATURE, лейблы — колонки типа LABEL (на каждый лейбл своя модель).
+ * Выборка делится по времени: последние строки уходят в валидацию, а между выборками выбрасывается горизонт
+ * лейбла — лейбл последних строк обучения смотрит на цены начала валидации. Модели сохраняются в каталог
+ * {@code <models-directory>/<contractHash>/<label>/}, так что каждая версия контракта получает свою версию модели.
+ *
+ * Обучение идёт в одном фоновом потоке: XGBoost сам распараллеливает построение деревьев,
+ * а одновременные обучения только конкурировали бы за ядра.
+ */
+@ApplicationScoped
+public class XGBoostTrainer {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .findAndRegisterModules()
+            .enable(SerializationFeature.INDENT_OUTPUT);
+
+    @Inject
+    XGBoostConfig config;
+
+    @Inject
+    XGBoostPredictor predictor;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("xgboost-trainer").daemon(true).factory());
+
+    // Контракты, обучение по которым уже в очереди или идёт
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    public boolean isTrainingEnabled() {
+        return config.isTrainingEnabled();
+    }
+
+    /**
+     * Поставить обучение по строкам контракта в очередь.
+     * Список строк не должен изменяться после передачи.
+     *
+     * @return модели по всем лейблам контракта (пустой список, если обучать нечего или обучение уже идёт)
+     */
+    public CompletableFuture<List<TrainedModel>> submit(Contract contract, List<? extends DatabaseSnapshot> rows) {
+        List<String> features = columnsOfType(contract, MetadataType.FEATURE);
+        List<String> labels = columnsOfType(contract, MetadataType.LABEL);
+        if (features.isEmpty() || labels.isEmpty()) {
+            Log.warnf("⚠️ Контракт '%s' не содержит фич (%d) или лейблов (%d) — обучение пропущено",
+                    contract.name, features.size(), labels.size());
+            return CompletableFuture.completedFuture(List.of());
+        }
+        if (!inFlight.add(contract.contractHash)) {
+            Log.infof("⏭️ Обучение по контракту '%s' уже выполняется", contract.name);
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        Log.infof("🧠 Обучение по контракту '%s' поставлено в очередь: %d строк, фич: %d, лейблов: %d",
+                contract.name, rows.size(), features.size(), labels.size());
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                List<TrainedModel> models = new ArrayList<>(labels.size());
+                for (String label : labels) {
+                    TrainedModel model = train(contract, rows, features, label);
+                    if (model != null) {
+                        models.add(model);
+                    }
+                }
+                return models;
+            } finally {
+                inFlight.remove(contract.contractHash);
+            }
+        }, executor).whenComplete((models, error) -> {
+            if (error != null) {
+                Log.errorf(error, "❌ Ошибка обучения по контракту '%s'", contract.name);
+            }
+        });
+    }
+
+    private TrainedModel train(Contract contract, List<? extends DatabaseSnapshot> rows, List<String> features, String label) {
+        int split = (int) Math.round(rows.size() * (1 - config.getValidationFraction()));
+        DMatrix train = null;
+        DMatrix eval = null;
+        try {
+            long started = System.nanoTime();
+            train = DMatrixBuilder.build(rows, 0, split, features, label);
+            eval = DMatrixBuilder.build(rows, purgedEvalStart(rows, split, label), rows.size(), features, label);
+            long matrixMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            if (train == null) {
+                Log.warnf("⚠️ Нет строк с лейблом %s для контракта '%s'", label, contract.name);
+                return null;
+            }
+
+            Map<String, DMatrix> watches = new LinkedHashMap<>();
+            watches.put("train", train);
+            if (eval != null) {
+                watches.put("eval", eval);
+            }
+
+            started = System.nanoTime();
+            Booster booster = XGBoost.train(train, config.toParams(), config.getRounds(), watches, null, null);
+            long trainMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            String evaluation = booster.evalSet(
+                    watches.values().toArray(DMatrix[]::new),
+                    watches.keySet().toArray(String[]::new),
+                    config.getRounds() - 1).trim();
+
+            TrainedModel model = save(contract, label, features, booster, train.rowNum(),
+                    eval != null ? eval.rowNum() : 0, evaluation, matrixMillis, trainMillis);
+            // Модель сразу подменяет предыдущую в инференсе, освобождением booster дальше управляет он
+            predictor.publish(model);
+
+            Log.infof("✅ Модель %s/%s обучена: %d+%d строк, DMatrix %d мс, обучение %d мс, %s → %s",
+                    contract.name, label, model.trainRows(), model.evalRows(), matrixMillis, trainMillis,
+                    evaluation, model.file());
+            return model;
+        } catch (XGBoostError | IOException e) {
+            throw new IllegalStateException("Ошибка обучения модели " + label + " контракта " + contract.name, e);
+        } finally {
+            if (train != null) {
+                train.dispose();
+            }
+            if (eval != null) {
+                eval.dispose();
+            }
+        }
+    }
+
+    /**
+     * Начало валидации после разрыва: первая строка позже последней строки обучения больше чем на горизонт лейбла.
+     * Для лейблов без горизонта валидация начинается сразу за обучением.
+     */
+    static int purgedEvalStart(List<? extends DatabaseSnapshot> rows, int split, String label) {
+        Duration horizon = labelHorizon(label);
+        if (split <= 0 || split >= rows.size() || horizon.isZero()) {
+            return split;
+        }
+        Instant boundary = rows.get(split - 1).getTimestamp().plus(horizon);
+        int start = split;
+        while (start < rows.size() && !rows.get(start).getTimestamp().isAfter(boundary)) {
+            start++;
+        }
+        return start;
+    }
+
+    private static Duration labelHorizon(String label) {
+        for (ForwardReturnColumn.ForwardReturnColumnType type : ForwardReturnColumn.ForwardReturnColumnType.values()) {
+            if (type.getName().equals(label)) {
+                return type.getTimeframe().getDuration().multipliedBy(type.getHorizon());
+            }
+        }
+        return Duration.ZERO;
+    }
+
+    private TrainedModel save(Contract contract, String label, List<String> features, Booster booster,
+                              long trainRows, long evalRows, String evaluation,
+                              long matrixMillis, long trainMillis) throws XGBoostError, IOException {
+        Instant trainedAt = Instant.now();
+        Path dir = Path.of(config.getModelsDirectory(), contract.contractHash, label);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("model-" + trainedAt.toEpochMilli() + ".ubj");
+        booster.saveModel(file.toString());
+
+        TrainedModel model = new TrainedModel(contract.contractHash, contract.name, label, List.copyOf(features),
+                file.toAbsolutePath().toString(), trainedAt, trainRows, evalRows, evaluation,
+                matrixMillis, trainMillis, booster);
+
+        // Описание модели рядом с файлом: по нему модель можно загрузить без контракта в памяти
+        Map<String, Object> meta = new LinkedHashMap<>();
+        meta.put("contractHash", model.contractHash());
+        meta.put("contractName", model.contractName());
+        meta.put("label", model.label());
+        meta.put("features", model.features());
+        meta.put("trainedAt", model.trainedAt().toString());
+        meta.put("trainRows", model.trainRows());
+        meta.put("evalRows", model.evalRows());
+        meta.put("evaluation", model.evaluation());
+        meta.put("params", config.toParams());
+        meta.put("rounds", config.getRounds());
+        MAPPER.writeValue(dir.resolve("model-" + trainedAt.toEpochMilli() + ".json").toFile(), meta);
+        return model;
+    }
+
+    private static List<String> columnsOfType(Contract contract, MetadataType type) {
+        return contract.metadata.stream()
+                .filter(metadata -> metadata.metadataType == type)
+                .sorted(Comparator.comparing((ContractMetadata metadata) -> metadata.sequenceOrder))
+                .map(metadata -> metadata.name)
+                .toList();
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+}
@@ -29,6 +29,15 @@ public class BrokerConfig {
     @ConfigProperty(name = "strategy.all-enabled", defaultValue = "true")
     boolean allStrategiesEnabled;
 
+    /**
+     * Предварительная оценка сигналов по неподтверждённым обновлениям свечи.
+     * Если true — кандидат в сигнал готовится заранее, а при подтверждении свечи остаётся только проверить и опубликовать его.
+     * По умолчанию: false — выигрыш по задержке не измерен, сигнал публикуется после расчёта вектора фич
+     */
+    @Inject
+    @ConfigProperty(name = "strategy.speculative-enabled", defaultValue = "false")
+    boolean speculativeEnabled;
+
 
     public boolean isTradingEnabled() {
         return tradingEnabled;
@@ -37,4 +46,8 @@ public class BrokerConfig {
     public boolean isAllStrategiesEnabled() {
         return allStrategiesEnabled;
     }
+
+    public boolean isSpeculativeEnabled() {
+        return speculativeEnabled;
+    }
 }
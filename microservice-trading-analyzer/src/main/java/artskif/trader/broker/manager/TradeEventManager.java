@@ -5,12 +5,14 @@ import artskif.trader.api.dto.FuturesLimitOrderRequest;
 import artskif.trader.api.dto.OrderExecutionResult;
 import artskif.trader.broker.AbstractTradeEventManager;
 import artskif.trader.entity.OrderCreationParams;
-import artskif.trader.repository.OrderCreationParamsRepository;
 import artskif.trader.state.AccountStateMonitor;
 import artskif.trader.broker.BrokerConfig;
+import artskif.trader.broker.outbox.TradeEventOutbox;
+import artskif.trader.broker.params.OrderCreationParamsProvider;
 import artskif.trader.broker.client.TradingExecutorService;
 import artskif.trader.entity.PendingOrder;
 import artskif.trader.entity.TradeEventEntity;
+import artskif.trader.events.actor.ActorRuntime;
 import artskif.trader.events.trade.TradeEvent;
 import artskif.trader.events.trade.TradeEventBus;
 import artskif.trader.repository.TradeEventRepository;
@@ -40,7 +42,8 @@ public class TradeEventManager extends AbstractTradeEventManager {
     private static final Logger log = LoggerFactory.getLogger(TradeEventManager.class);
 
     protected AccountStateMonitor accountStateMonitor;
-    protected OrderCreationParamsRepository orderCreationParamsRepository;
+    protected OrderCreationParamsProvider orderCreationParamsProvider;
+    protected TradeEventOutbox tradeEventOutbox;
 
     /**
      * Время последнего успешно размещённого ордера.
@@ -53,10 +56,13 @@ public class TradeEventManager extends AbstractTradeEventManager {
                              TradeEventRepository tradeEventRepository,
                              BrokerConfig brokerConfig,
                              AccountStateMonitor accountStateMonitor,
-                             OrderCreationParamsRepository orderCreationParamsRepository) {
-        super(tradeEventBus, tradingExecutorService, tradeEventRepository, brokerConfig);
+                             OrderCreationParamsProvider orderCreationParamsProvider,
+                             TradeEventOutbox tradeEventOutbox,
+                             ActorRuntime actorRuntime) {
+        super(tradeEventBus, tradingExecutorService, tradeEventRepository, brokerConfig, actorRuntime);
         this.accountStateMonitor = accountStateMonitor;
-        this.orderCreationParamsRepository = orderCreationParamsRepository;
+        this.orderCreationParamsProvider = orderCreationParamsProvider;
+        this.tradeEventOutbox = tradeEventOutbox;
     }
 
     @Override
@@ -84,7 +90,7 @@ public class TradeEventManager extends AbstractTradeEventManager {
 
         Integer trendStrength = event.tradeEventData().trendStrength();
         Integer trendStability = event.tradeEventData().trendStability();
-        OrderCreationParams orderCreationParams = orderCreationParamsRepository.findByTrendStrengthAndStability(trendStrength, trendStability);
+        OrderCreationParams orderCreationParams = orderCreationParamsProvider.find(trendStrength, trendStability);
 
         log.debug("📋 Параметры создания ордера: {}", orderCreationParams);
 
@@ -199,7 +205,7 @@ public class TradeEventManager extends AbstractTradeEventManager {
             orderExecutionResult = new OrderExecutionResult("TEST-" + System.currentTimeMillis(), BigDecimal.ZERO, null);
         }
 
-        // Сохраняем событие в БД только после успешного размещения ордера
+        // Сохраняем событие только после успешного размещения ордера
         if (orderExecutionResult != null && orderExecutionResult.exchangeOrderId() != null && !orderExecutionResult.exchangeOrderId().isBlank()) {
             try {
                 TradeEventEntity entity = new TradeEventEntity(
@@ -220,11 +226,12 @@ public class TradeEventManager extends AbstractTradeEventManager {
                         orderCreationParams.shortOnlyClose,
                         orderCreationParams.maxPositionSizePercent
                 );
-                tradeEventRepository.save(entity);
+                // В БД событие уходит фоновым сбросом журнала — торговый поток ждёт только размещения ордера
+                tradeEventOutbox.append(entity);
                 lastOrderTime = Instant.now();
-                log.debug("💾 TradeEvent успешно сохранен в БД с UUID: {}", entity.uuid);
+                log.debug("💾 TradeEvent записан в журнал с UUID: {}", entity.uuid);
             } catch (Exception e) {
-                log.error("❌ Ошибка при сохранении TradeEvent в БД", e);
+                log.error("❌ Ошибка при записи TradeEvent в журнал", e);
             }
         } else {
             log.warn("⚠️ Ордер не был успешно размещён, событие не сохранено в БД. orderExecutionResult={}", orderExecutionResult);
@@ -0,0 +1,314 @@
+package artskif.trader.broker.outbox;
+
+import artskif.trader.entity.TradeEventEntity;
+import artskif.trader.repository.TradeEventRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.Priority;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.interceptor.Interceptor;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Журнал исходящих торговых событий (write-behind outbox).
+ *
+ * Поток торгового менеджера только дописывает событие строкой JSON в локальный файл и очередь в памяти —
+ * без обращения к БД. Фоновый сброс раз в {@code broker.outbox.flush-every} делает fsync накопленных записей
+ * и пакетом вставляет их в trade_events. Доставка «хотя бы один раз»: после сбоя журнал перечитывается
+ * при старте, а повторная вставка отсекается по первичному ключу (timeframe, tag, timestamp).
+ * Файл обнуляется, когда все записанные в него события подтверждены БД.
+ *
+ * Если БД отклоняет пакет из-за данных (нарушение ограничения, некорректное значение), события вставляются
+ * по одному, а отклонённые и по одному уходят в файл недоставленных {@code trade-events.dead.jsonl} в том же
+ * каталоге — одно плохое событие не блокирует все следующие. При недоступности БД пакет просто повторяется.
+ */
+@ApplicationScoped
+public class TradeEventOutbox {
+
+    private static final Logger log = LoggerFactory.getLogger(TradeEventOutbox.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+    private static final String FILE_NAME = "trade-events.jsonl";
+    private static final String DEAD_LETTER_FILE_NAME = "trade-events.dead.jsonl";
+    // Классы SQLSTATE, означающие ошибку в самих данных: повтор той же строки не поможет
+    private static final Set<String> DATA_ERROR_SQL_STATE_CLASSES = Set.of("22", "23", "42", "44");
+
+    @Inject
+    TradeEventRepository tradeEventRepository;
+
+    /**
+     * Каталог файла журнала
+     */
+    @Inject
+    @ConfigProperty(name = "broker.outbox.directory", defaultValue = "outbox")
+    String directory;
+
+    /**
+     * Максимум событий в одной пакетной вставке
+     */
+    @Inject
+    @ConfigProperty(name = "broker.outbox.batch-size", defaultValue = "500")
+    int batchSize;
+
+    // Журнал и очередь меняются только под монитором this
+    private FileChannel channel;
+    private final Deque<TradeEventRecord> pending = new ArrayDeque<>();
+    // Есть записи, ещё не сброшенные на диск через fsync
+    private boolean dirty;
+
+    void onStart(@Observes StartupEvent event) {
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            Path file = dir.resolve(FILE_NAME);
+            int recovered = recover(file);
+            synchronized (this) {
+                channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            if (recovered > 0) {
+                log.info("📬 Из журнала {} восстановлено неотправленных торговых событий: {}", file, recovered);
+            }
+        } catch (IOException e) {
+            log.error("❌ Не удалось открыть журнал торговых событий в {}: события будут сохраняться только из памяти", directory, e);
+        }
+    }
+
+    /**
+     * Прочитать журнал после рестарта. Недописанная при сбое последняя строка пропускается.
+     */
+    private int recover(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        Map<String, TradeEventRecord> unique = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                TradeEventRecord record = MAPPER.readValue(line, TradeEventRecord.class);
+                unique.putIfAbsent(record.key(), record);
+            } catch (IOException e) {
+                log.warn("⚠️ Пропущена повреждённая строка журнала торговых событий: {}", line);
+            }
+        }
+        synchronized (this) {
+            pending.addAll(unique.values());
+        }
+        return unique.size();
+    }
+
+    /**
+     * Записать событие в журнал. Вызывается из торгового потока и не обращается к БД.
+     */
+    public void append(TradeEventEntity entity) {
+        TradeEventRecord record = TradeEventRecord.from(entity);
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    ByteBuffer line = ByteBuffer.wrap((MAPPER.writeValueAsString(record) + '\n').getBytes(StandardCharsets.UTF_8));
+                    while (line.hasRemaining()) {
+                        channel.write(line);
+                    }
+                    dirty = true;
+                } catch (IOException e) {
+                    // Событие всё равно будет отправлено из памяти, но не переживёт рестарт
+                    log.error("❌ Не удалось записать торговое событие в журнал: {}", record.key(), e);
+                }
+            }
+            pending.addLast(record);
+        }
+    }
+
+    /**
+     * Фоновый сброс журнала: fsync новых записей и пакетная вставка в trade_events
+     */
+    @Scheduled(delay = 5, delayUnit = TimeUnit.SECONDS, every = "{broker.outbox.flush-every}",
+            concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void flush() {
+        sync();
+        while (true) {
+            List<TradeEventRecord> batch = peekBatch();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                List<TradeEventEntity> entities = new ArrayList<>(batch.size());
+                for (TradeEventRecord record : batch) {
+                    entities.add(record.toEntity());
+                }
+                int inserted = tradeEventRepository.insertAllIgnoringDuplicates(entities);
+                log.debug("💾 Из журнала в БД отправлено торговых событий: {} (новых {})", batch.size(), inserted);
+            } catch (Exception e) {
+                if (!isDataError(e)) {
+                    // События остаются в очереди и журнале — повтор на следующем сбросе
+                    log.error("❌ Ошибка при отправке {} торговых событий из журнала в БД, повтор при следующем сбросе", batch.size(), e);
+                    return;
+                }
+                log.warn("⚠️ БД отклонила пакет из {} торговых событий ({}), отправляем по одному", batch.size(), e.getMessage());
+                int processed = insertOneByOne(batch);
+                acknowledge(processed);
+                if (processed < batch.size()) {
+                    return;
+                }
+                continue;
+            }
+            acknowledge(batch.size());
+        }
+    }
+
+    /**
+     * Вставить события пакета по одному; отклонённые из-за данных переносятся в файл недоставленных
+     *
+     * @return сколько событий с головы пакета обработано (вставлено или перенесено); меньше размера пакета,
+     * если БД стала недоступна — остаток повторится на следующем сбросе
+     */
+    private int insertOneByOne(List<TradeEventRecord> batch) {
+        for (int i = 0; i < batch.size(); i++) {
+            TradeEventRecord record = batch.get(i);
+            try {
+                tradeEventRepository.insertAllIgnoringDuplicates(List.of(record.toEntity()));
+            } catch (Exception e) {
+                if (!isDataError(e)) {
+                    log.error("❌ Ошибка при отправке торгового события {} в БД, повтор при следующем сбросе", record.key(), e);
+                    return i;
+                }
+                if (!deadLetter(record, e)) {
+                    return i;
+                }
+            }
+        }
+        return batch.size();
+    }
+
+    /**
+     * Дописать событие в файл недоставленных с fsync
+     *
+     * @return false, если записать не удалось — событие остаётся в очереди
+     */
+    private boolean deadLetter(TradeEventRecord record, Exception error) {
+        Path file = Path.of(directory).resolve(DEAD_LETTER_FILE_NAME);
+        try (FileChannel deadLetters = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer line = ByteBuffer.wrap((MAPPER.writeValueAsString(record) + '\n').getBytes(StandardCharsets.UTF_8));
+            while (line.hasRemaining()) {
+                deadLetters.write(line);
+            }
+            deadLetters.force(false);
+        } catch (IOException e) {
+            log.error("❌ Не удалось записать торговое событие {} в файл недоставленных {}", record.key(), file, e);
+            return false;
+        }
+        log.error("❌ Торговое событие {} отклонено БД и перенесено в {}: {}", record.key(), file, error.getMessage());
+        return true;
+    }
+
+    /**
+     * Ошибка в самих данных события: SQLSTATE классов 22/23/42/44 или сбой без участия БД (например, пустое
+     * обязательное поле). Остальные ошибки БД (соединение, таймаут, перезапуск сервера) считаются временными.
+     */
+    static boolean isDataError(Throwable error) {
+        boolean sqlError = false;
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sql) {
+                for (SQLException next = sql; next != null; next = next.getNextException()) {
+                    sqlError = true;
+                    String state = next.getSQLState();
+                    if (state != null && state.length() >= 2 && DATA_ERROR_SQL_STATE_CLASSES.contains(state.substring(0, 2))) {
+                        return true;
+                    }
+                }
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return !sqlError;
+    }
+
+    private synchronized void sync() {
+        if (channel != null && dirty) {
+            try {
+                channel.force(false);
+                dirty = false;
+            } catch (IOException e) {
+                log.error("❌ Ошибка fsync журнала торговых событий", e);
+            }
+        }
+    }
+
+    private synchronized List<TradeEventRecord> peekBatch() {
+        List<TradeEventRecord> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+        for (TradeEventRecord record : pending) {
+            if (batch.size() == batchSize) {
+                break;
+            }
+            batch.add(record);
+        }
+        return batch;
+    }
+
+    /**
+     * Убрать подтверждённые БД события из головы очереди; если очередь опустела — обнулить файл журнала
+     */
+    private synchronized void acknowledge(int count) {
+        for (int i = 0; i < count; i++) {
+            pending.pollFirst();
+        }
+        if (pending.isEmpty() && channel != null) {
+            try {
+                channel.truncate(0);
+                dirty = false;
+            } catch (IOException e) {
+                log.error("❌ Не удалось очистить журнал торговых событий", e);
+            }
+        }
+    }
+
+    /**
+     * Количество событий, ещё не подтверждённых БД
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    // После остановки торгового менеджера: события, принятые им при остановке, тоже попадают в последний сброс
+    void onShutdown(@Observes @Priority(Interceptor.Priority.LIBRARY_AFTER) ShutdownEvent event) {
+        flush();
+        synchronized (this) {
+            if (channel != null) {
+                try {
+                    channel.force(false);
+                    channel.close();
+                } catch (IOException e) {
+                    log.error("❌ Ошибка при закрытии журнала торговых событий", e);
+                }
+                channel = null;
+            }
+            if (!pending.isEmpty()) {
+                log.warn("⚠️ При остановке в журнале осталось неотправленных торговых событий: {}", pending.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package artskif.trader.broker.outbox;
+
+import artskif.trader.entity.TradeEventEntity;
+import artskif.trader.strategy.event.common.Direction;
+import artskif.trader.strategy.event.common.TradeEventType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Строка журнала исходящих торговых событий — копия полей {@link TradeEventEntity} без привязки к Hibernate
+ */
+public record TradeEventRecord(String timeframe,
+                               String tag,
+                               Instant timestamp,
+                               UUID uuid,
+                               TradeEventType eventType,
+                               Direction direction,
+                               String instrument,
+                               BigDecimal eventPrice,
+                               BigDecimal stopLossPercentage,
+                               BigDecimal takeProfitPercentage,
+                               Integer trendStrength,
+                               BigDecimal longDepositRiskPercent,
+                               Boolean longOnlyClose,
+                               BigDecimal shortDepositRiskPercent,
+                               Boolean shortOnlyClose,
+                               BigDecimal maxPositionSizePercent,
+                               Boolean isTest) {
+
+    public static TradeEventRecord from(TradeEventEntity entity) {
+        return new TradeEventRecord(
+                entity.id.timeframe,
+                entity.id.tag,
+                entity.id.timestamp,
+                entity.uuid,
+                entity.eventType,
+                entity.direction,
+                entity.instrument,
+                entity.eventPrice,
+                entity.stopLossPercentage,
+                entity.takeProfitPercentage,
+                entity.trendStrength,
+                entity.longDepositRiskPercent,
+                entity.longOnlyClose,
+                entity.shortDepositRiskPercent,
+                entity.shortOnlyClose,
+                entity.maxPositionSizePercent,
+                entity.isTest);
+    }
+
+    public TradeEventEntity toEntity() {
+        TradeEventEntity entity = new TradeEventEntity();
+        entity.id = new TradeEventEntity.TradeEventId();
+        entity.id.timeframe = timeframe;
+        entity.id.tag = tag;
+        entity.id.timestamp = timestamp;
+        entity.uuid = uuid;
+        entity.eventType = eventType;
+        entity.direction = direction;
+        entity.instrument = instrument;
+        entity.eventPrice = eventPrice;
+        entity.stopLossPercentage = stopLossPercentage;
+        entity.takeProfitPercentage = takeProfitPercentage;
+        entity.trendStrength = trendStrength;
+        entity.longDepositRiskPercent = longDepositRiskPercent;
+        entity.longOnlyClose = longOnlyClose;
+        entity.shortDepositRiskPercent = shortDepositRiskPercent;
+        entity.shortOnlyClose = shortOnlyClose;
+        entity.maxPositionSizePercent = maxPositionSizePercent;
+        entity.isTest = isTest;
+        return entity;
+    }
+
+    /**
+     * Ключ дедупликации — первичный ключ trade_events
+     */
+    public String key() {
+        return timeframe + '|' + tag + '|' + timestamp;
+    }
+}
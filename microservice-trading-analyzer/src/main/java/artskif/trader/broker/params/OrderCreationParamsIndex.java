@@ -0,0 +1,187 @@
+package artskif.trader.broker.params;
+
+import artskif.trader.entity.OrderCreationParams;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Неизменяемый индекс параметров создания ордера: сила тренда -> отсортированные непересекающиеся
+ * интервалы стабильности. Поиск — бинарный по началам интервалов, без обращения к БД и без выделения памяти.
+ *
+ * Пересекающиеся диапазоны из таблицы раскладываются на элементарные отрезки; на отрезке действует запись
+ * с наименьшим id, так что результат детерминирован (запрос к БД возвращал произвольную из подходящих).
+ */
+public final class OrderCreationParamsIndex {
+
+    public static final OrderCreationParamsIndex EMPTY = new OrderCreationParamsIndex(0, Map.of(), List.of());
+
+    private final long version;
+    private final Map<Integer, Intervals> byStrength;
+    // Значения полей записей, по которым индекс построен: по ним определяется, изменились ли параметры
+    private final List<Content> content;
+    private final int size;
+
+    private OrderCreationParamsIndex(long version, Map<Integer, Intervals> byStrength, List<Content> content) {
+        this.version = version;
+        this.byStrength = byStrength;
+        this.content = content;
+        this.size = byStrength.values().stream().mapToInt(intervals -> intervals.starts.length).sum();
+    }
+
+    /**
+     * Построить индекс по всем записям таблицы
+     */
+    public static OrderCreationParamsIndex build(long version, List<OrderCreationParams> rows) {
+        List<OrderCreationParams> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(params -> params.id, Comparator.nullsLast(Comparator.naturalOrder())));
+
+        Map<Integer, List<OrderCreationParams>> grouped = new HashMap<>();
+        List<Content> content = new ArrayList<>(sorted.size());
+        for (OrderCreationParams params : sorted) {
+            content.add(Content.of(params));
+            if (params.trendStrength == null || params.trendStabilityFrom == null || params.trendStabilityTo == null
+                    || params.trendStabilityFrom > params.trendStabilityTo) {
+                continue;
+            }
+            grouped.computeIfAbsent(params.trendStrength, strength -> new ArrayList<>()).add(params);
+        }
+
+        Map<Integer, Intervals> byStrength = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((strength, candidates) -> byStrength.put(strength, Intervals.of(candidates)));
+        return new OrderCreationParamsIndex(version, Map.copyOf(byStrength), List.copyOf(content));
+    }
+
+    /**
+     * Параметры для силы и стабильности тренда (диапазон стабильности включительный) или null
+     */
+    public OrderCreationParams find(int trendStrength, int trendStability) {
+        Intervals intervals = byStrength.get(trendStrength);
+        return intervals != null ? intervals.find(trendStability) : null;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Количество элементарных интервалов в индексе
+     */
+    public int size() {
+        return size;
+    }
+
+    boolean hasSameContent(OrderCreationParamsIndex other) {
+        return content.equals(other.content);
+    }
+
+    /**
+     * Поля записи, влияющие на торговый путь. Суммы сравниваются по значению, без учёта масштаба,
+     * время создания не учитывается.
+     */
+    private record Content(Long id,
+                           Integer trendStrength,
+                           Integer trendStabilityFrom,
+                           Integer trendStabilityTo,
+                           BigDecimal longDepositRiskPercent,
+                           boolean longOnlyClose,
+                           BigDecimal shortDepositRiskPercent,
+                           boolean shortOnlyClose,
+                           BigDecimal stopLossDeviationPercent,
+                           Integer waitMinutes,
+                           BigDecimal maxPositionSizePercent,
+                           boolean closeOppositeLong,
+                           boolean closeOppositeShort) {
+
+        private static Content of(OrderCreationParams params) {
+            return new Content(params.id, params.trendStrength, params.trendStabilityFrom, params.trendStabilityTo,
+                    normalized(params.longDepositRiskPercent), params.longOnlyClose,
+                    normalized(params.shortDepositRiskPercent), params.shortOnlyClose,
+                    normalized(params.stopLossDeviationPercent), params.waitMinutes,
+                    normalized(params.maxPositionSizePercent), params.closeOppositeLong, params.closeOppositeShort);
+        }
+
+        private static BigDecimal normalized(BigDecimal value) {
+            return value != null ? value.stripTrailingZeros() : null;
+        }
+    }
+
+    /**
+     * Непересекающиеся интервалы стабильности одной силы тренда, отсортированные по началу
+     */
+    private static final class Intervals {
+        private final int[] starts;
+        private final int[] ends;
+        private final OrderCreationParams[] params;
+
+        private Intervals(int[] starts, int[] ends, OrderCreationParams[] params) {
+            this.starts = starts;
+            this.ends = ends;
+            this.params = params;
+        }
+
+        /**
+         * @param candidates записи одной силы тренда в порядке приоритета (по id)
+         */
+        private static Intervals of(List<OrderCreationParams> candidates) {
+            // Границы элементарных отрезков: начало каждого диапазона и точка сразу после его конца
+            TreeSet<Long> bounds = new TreeSet<>();
+            for (OrderCreationParams params : candidates) {
+                bounds.add((long) params.trendStabilityFrom);
+                bounds.add((long) params.trendStabilityTo + 1);
+            }
+
+            List<int[]> ranges = new ArrayList<>();
+            List<OrderCreationParams> owners = new ArrayList<>();
+            Long from = null;
+            for (Long bound : bounds) {
+                if (from != null) {
+                    int start = from.intValue();
+                    int end = (int) (bound - 1);
+                    OrderCreationParams owner = firstCovering(candidates, start);
+                    if (owner != null) {
+                        int last = owners.size() - 1;
+                        // Соседние отрезки одной записи склеиваются
+                        if (last >= 0 && owners.get(last) == owner && ranges.get(last)[1] + 1 == start) {
+                            ranges.get(last)[1] = end;
+                        } else {
+                            ranges.add(new int[]{start, end});
+                            owners.add(owner);
+                        }
+                    }
+                }
+                from = bound;
+            }
+
+            int[] starts = new int[ranges.size()];
+            int[] ends = new int[ranges.size()];
+            for (int i = 0; i < ranges.size(); i++) {
+                starts[i] = ranges.get(i)[0];
+                ends[i] = ranges.get(i)[1];
+            }
+            return new Intervals(starts, ends, owners.toArray(OrderCreationParams[]::new));
+        }
+
+        private static OrderCreationParams firstCovering(List<OrderCreationParams> candidates, int stability) {
+            for (OrderCreationParams params : candidates) {
+                if (params.trendStabilityFrom <= stability && stability <= params.trendStabilityTo) {
+                    return params;
+                }
+            }
+            return null;
+        }
+
+        private OrderCreationParams find(int stability) {
+            int position = Arrays.binarySearch(starts, stability);
+            // Отрицательный результат — точка вставки: нужен интервал, начинающийся левее
+            int index = position >= 0 ? position : -position - 2;
+            return index >= 0 && stability <= ends[index] ? params[index] : null;
+        }
+    }
+}
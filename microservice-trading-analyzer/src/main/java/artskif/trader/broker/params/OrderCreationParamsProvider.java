@@ -0,0 +1,92 @@
+package artskif.trader.broker.params;
+
+import artskif.trader.entity.OrderCreationParams;
+import artskif.trader.repository.OrderCreationParamsRepository;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Параметры создания ордера для торгового пути из памяти.
+ *
+ * Таблица order_creation_params целиком держится в неизменяемом {@link OrderCreationParamsIndex};
+ * при изменении содержимого индекс пересобирается и подменяется одной записью volatile-ссылки с новой версией.
+ * Записи через {@link #save(OrderCreationParams)} применяются сразу, правки напрямую в БД подхватываются опросом.
+ */
+@ApplicationScoped
+public class OrderCreationParamsProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderCreationParamsProvider.class);
+
+    @Inject
+    OrderCreationParamsRepository repository;
+
+    private volatile OrderCreationParamsIndex index = OrderCreationParamsIndex.EMPTY;
+
+    void onStart(@Observes StartupEvent event) {
+        refresh();
+    }
+
+    @Scheduled(delay = 30, delayUnit = TimeUnit.SECONDS, every = "{broker.order-params.refresh-every}")
+    void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Перечитать таблицу и подменить индекс, если содержимое изменилось
+     *
+     * @return true если индекс обновлён
+     */
+    public synchronized boolean refresh() {
+        try {
+            List<OrderCreationParams> rows = repository.findAllForIndex();
+            OrderCreationParamsIndex current = index;
+            OrderCreationParamsIndex rebuilt = OrderCreationParamsIndex.build(current.getVersion() + 1, rows);
+            if (rebuilt.hasSameContent(current)) {
+                return false;
+            }
+            index = rebuilt;
+            log.info("📋 Индекс параметров создания ордера обновлён: версия {}, записей {}, интервалов {}",
+                    rebuilt.getVersion(), rows.size(), rebuilt.size());
+            return true;
+        } catch (Exception e) {
+            // Торговый путь продолжает работать с последним загруженным индексом
+            log.error("❌ Не удалось обновить индекс параметров создания ордера (версия {} остаётся текущей)",
+                    index.getVersion(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Параметры для силы и стабильности тренда или null, если подходящей записи нет
+     */
+    public OrderCreationParams find(Integer trendStrength, Integer trendStability) {
+        if (trendStrength == null || trendStability == null) {
+            return null;
+        }
+        return index.find(trendStrength, trendStability);
+    }
+
+    /**
+     * Сохранить параметры и сразу перестроить индекс
+     */
+    public OrderCreationParams save(OrderCreationParams params) {
+        OrderCreationParams saved = repository.save(params);
+        refresh();
+        return saved;
+    }
+
+    /**
+     * Версия индекса: увеличивается при каждом изменении содержимого таблицы
+     */
+    public long getVersion() {
+        return index.getVersion();
+    }
+}
@@ -22,6 +22,7 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
 
 
 public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
@@ -47,6 +48,9 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
     private final ReadWriteLock liveSeriesLock = new ReentrantReadWriteLock();
     private final ReadWriteLock historicalSeriesLock = new ReentrantReadWriteLock();
 
+    // Формирующаяся (неподтверждённая) свеча следующего бара live-серии; в серию и буферы не попадает
+    private volatile CandlestickDto formingCandle;
+
     /**
      * Конструктор для инициализации буферов и серий данных
      *
@@ -75,6 +79,13 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
 
     protected abstract BufferRepository<CandlestickDto> getBufferRepository();
 
+    /**
+     * Сравнивать ли последний элемент буфера с текущим временем; выключается при воспроизведении записанной сессии
+     */
+    protected boolean isWallClockActualityEnabled() {
+        return true;
+    }
+
     protected abstract CandleTimeframe getCandleTimeframe();
 
     public abstract String getName();
@@ -92,6 +103,27 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
         return liveBarSeries;
     }
 
+    /**
+     * Чтение live-серии под блокировкой чтения: пока выполняется reader, бары не добавляются и серия не пересобирается
+     */
+    public <T> T readLiveSeries(Function<BaseBarSeries, T> reader) {
+        liveSeriesLock.readLock().lock();
+        try {
+            return reader.apply(liveBarSeries);
+        } finally {
+            liveSeriesLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Последнее неподтверждённое обновление свечи, идущей сразу за последним баром live-серии
+     *
+     * @return формирующаяся свеча или null, если её ещё нет
+     */
+    public CandlestickDto getFormingCandle() {
+        return formingCandle;
+    }
+
     public BaseBarSeries getHistoricalBarSeries() {
         if (historicalBuffer.isEmpty() || historicalBarSeries.isEmpty()) {
             initHistoricalData();
@@ -137,6 +169,21 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
         getLiveBuffer().incrementVersion();
     }
 
+    /**
+     * Заполняет актуальный буфер свечами из снимка Kafka
+     *
+     * @return true, если после этого буфер актуален и восстанавливать его из базы данных не нужно
+     */
+    protected boolean initRestoreLiveBufferFromSnapshot(Map<Instant, CandlestickDto> snapshot) {
+        if (snapshot.isEmpty()) {
+            return false;
+        }
+        log().debugf("🗂️ [%s] Восстанавливаем актуальный буфер из снимка Kafka: %d свечей", getName(), snapshot.size());
+        getLiveBuffer().putItems(snapshot);
+        getLiveBuffer().incrementVersion();
+        return isBufferActual(getLiveBuffer(), getMaxLiveBufferSize(), true, "snapshot");
+    }
+
     /**
      * Восстанавливает исторический буфер из базы данных.
      * Вызывается по требованию, не при старте проекта.
@@ -197,7 +244,8 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
      * Проверяет актуальность буфера по следующим критериям:
      * 1. Минимальное количество элементов в буфере
      * 2. Последовательность элементов (не должны отставать друг от друга больше чем на duration)
-     * 3. Последний элемент не должен отставать от текущего времени больше чем на duration + запас (если checkLastElementActuality = true)
+     * 3. Последний элемент не должен отставать от текущего времени больше чем на duration + запас
+     * (если checkLastElementActuality = true и проверка по часам включена)
      *
      * @param buffer                    буфер для проверки
      * @param maxSize                   минимальный размер буфера (если null, проверка размера не выполняется)
@@ -222,11 +270,12 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
         }
 
         // Проверка актуальности последнего элемента (только если checkLastElementActuality = true)
-        if (checkLastElementActuality) {
+        if (checkLastElementActuality && isWallClockActualityEnabled()) {
             long allowedDelaySeconds = (getCandleTimeframe().getDuration().toSeconds() * 2) + ACTUALITY_TIME_BUFFER_SECONDS;
             long actualDelaySeconds = now.getEpochSecond() - lastBucket.getEpochSecond();
 
             if (actualDelaySeconds > allowedDelaySeconds) {
+                onBufferGap(lastBucket, now);
                 log().debugf("⚠️ [%s] Буфер '%s' не актуален: последний элемент слишком старый (задержка %d сек > допустимо %d сек)",
                         getName(), bufferName, actualDelaySeconds, allowedDelaySeconds);
                 return false;
@@ -241,6 +290,7 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
             if (previousBucket != null) {
                 long gap = bucket.getEpochSecond() - previousBucket.getEpochSecond();
                 if (gap > durationSeconds * 2) { // допускаем пропуск максимум одной свечи
+                    onBufferGap(previousBucket, bucket);
                     log().debugf("⚠️ [%s] Буфер '%s' не актуален: найден разрыв в последовательности (разрыв %d сек > допустимо %d сек)",
                             getName(), bufferName, gap, durationSeconds * 2);
                     return false;
@@ -254,6 +304,15 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
         return true;
     }
 
+    /**
+     * Вызывается, когда в буфере найден разрыв или буфер отстал от текущего времени
+     *
+     * @param from последняя свеча перед разрывом
+     * @param to   первая свеча после разрыва или текущее время
+     */
+    protected void onBufferGap(Instant from, Instant to) {
+    }
+
     /**
      * Копирует новые элементы из буфера в серию.
      * Если серия пуста, копируются все элементы из буфера.
@@ -408,6 +467,7 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
 
             if (historyDto.getData().isEmpty()) {
                 log().warnf("⚠️ [%s] После парсинга история пуста", getName());
+                onHistoryRestored(historyDto.isLast());
                 return;
             }
 
@@ -429,11 +489,52 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
 
             initSaveHistoricalBuffer();
             getEventBus().publish(new CandleEvent(CandleEventType.CANDLE_HISTORY, getCandleTimeframe(), historyDto.getInstId(), null, null, null, false));
+            onHistoryRestored(historyDto.isLast());
         } catch (Exception e) {
             log().errorf(e, "❌ [%s] Не удалось обработать элементы для истории: %s", getName(), e.getMessage());
         }
     }
 
+    /**
+     * Вызывается после обработки пачки истории (в том числе пустой)
+     *
+     * @param isLast пачка последняя в загрузке
+     */
+    protected void onHistoryRestored(boolean isLast) {
+    }
+
+    /**
+     * Запоминает неподтверждённое обновление свечи и публикует CANDLE_FORMING для предварительной оценки сигналов.
+     * Учитываются только обновления бара, следующего сразу за последним баром заполненной live-серии.
+     */
+    private void handleFormingCandle(String instrumentId, Instant bucket, CandlestickDto candle) {
+        if (liveBarSeries.getBarCount() < getMaxLiveBufferSize()) {
+            return;
+        }
+
+        Instant expectedBucket;
+        liveSeriesLock.readLock().lock();
+        try {
+            expectedBucket = liveBarSeries.getLastBar().getEndTime();
+        } finally {
+            liveSeriesLock.readLock().unlock();
+        }
+        if (!bucket.equals(expectedBucket)) {
+            return;
+        }
+
+        formingCandle = candle;
+        getEventBus().publish(new CandleEvent(CandleEventType.CANDLE_FORMING, getCandleTimeframe(), instrumentId, bucket, candle, false, false));
+        log().tracef("🔮 [%s] Формирующаяся свеча: bucket=%s, close=%s", getName(), bucket, candle.getClose());
+    }
+
+    private void clearFormingCandle(Instant bucket) {
+        CandlestickDto current = formingCandle;
+        if (current != null && !current.getTimestamp().isAfter(bucket)) {
+            formingCandle = null;
+        }
+    }
+
     public void handleTick(String message) {
         try {
             CandlestickPayloadDto candlestickPayloadDto;
@@ -447,31 +548,37 @@ public abstract class AbstractCandle implements BufferedPoint<CandlestickDto> {
             CandlestickDto candle = candlestickPayloadDto.getCandle();
 
             Instant bucket = candle.getTimestamp();
-            // Если новый тик принадлежит новой свече — подтвердить предыдущую
-            if (Boolean.TRUE.equals(candle.getConfirmed())) {
-                log().debugf("🕯️ [%s] Получена подтвержденная свеча: bucket=%s, o=%s, h=%s, l=%s, c=%s, v=%s",
-                        getName(), bucket, candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume());
-
-                if (liveBarSeries.getBarCount() < getMaxLiveBufferSize()) {
-                    log().debugf("⏳ [%s] Live серия еще не заполнена: %d/%d элементов. Ожидаем добавления элементов",
-                            getName(), liveBarSeries.getBarCount(), getMaxLiveBufferSize());
-                    return;
-                }
+            // Неподтверждённые обновления не меняют серию — только предварительное состояние бара
+            if (!Boolean.TRUE.equals(candle.getConfirmed())) {
+                handleFormingCandle(candlestickPayloadDto.getInstrumentId(), bucket, candle);
+                return;
+            }
 
-                // Добавляем в буферы
-                getLiveBuffer().putItem(bucket, candle);
-                getLiveBuffer().incrementVersion();
+            log().debugf("🕯️ [%s] Получена подтвержденная свеча: bucket=%s, o=%s, h=%s, l=%s, c=%s, v=%s",
+                    getName(), bucket, candle.getOpen(), candle.getHigh(), candle.getLow(), candle.getClose(), candle.getVolume());
 
-                // Проверяем актуальность буферов и добавляем в серии (версия не инкрементится)
-                if (isBufferActual(getLiveBuffer(), getMaxLiveBufferSize(), true, "live candle") &&
-                        addBarToLiveSeries(candle))  {
-                    initSaveLiveBuffer();
-                    getEventBus().publish(new CandleEvent(CandleEventType.CANDLE_TICK, getCandleTimeframe(), candlestickPayloadDto.getInstrumentId(), bucket, candle, candle.getConfirmed(), false));
-                    log().infof("✅ [%s] Свеча успешно добавлена в live серию: bucket=%s, close=%s", getName(), bucket, candle.getClose());
+            if (liveBarSeries.getBarCount() < getMaxLiveBufferSize()) {
+                log().debugf("⏳ [%s] Live серия еще не заполнена: %d/%d элементов. Ожидаем добавления элементов",
+                        getName(), liveBarSeries.getBarCount(), getMaxLiveBufferSize());
+                return;
+            }
 
-                } else {
-                    log().warnf("⚠️ [%s] Свеча не добавлена в live серию, т.к. буфер еще не актуален или свечи дублируются", getName());
-                }
+            // Свеча подтверждена — предварительное состояние бара больше не актуально
+            clearFormingCandle(bucket);
+
+            // Добавляем в буферы
+            getLiveBuffer().putItem(bucket, candle);
+            getLiveBuffer().incrementVersion();
+
+            // Проверяем актуальность буферов и добавляем в серии (версия не инкрементится)
+            if (isBufferActual(getLiveBuffer(), getMaxLiveBufferSize(), true, "live candle") &&
+                    addBarToLiveSeries(candle))  {
+                initSaveLiveBuffer();
+                getEventBus().publish(new CandleEvent(CandleEventType.CANDLE_TICK, getCandleTimeframe(), candlestickPayloadDto.getInstrumentId(), bucket, candle, candle.getConfirmed(), false));
+                log().infof("✅ [%s] Свеча успешно добавлена в live серию: bucket=%s, close=%s", getName(), bucket, candle.getClose());
+
+            } else {
+                log().warnf("⚠️ [%s] Свеча не добавлена в live серию, т.к. буфер еще не актуален или свечи дублируются", getName());
             }
         } catch (Exception e) {
             log().errorf(e, "❌ [%s] Не удалось разобрать сообщение - %s. Ошибка - %s", getName(), message, e.getMessage());
@@ -1,6 +1,8 @@
 package artskif.trader.candle;
 
 import artskif.trader.events.candle.CandleEventBus;
+import artskif.trader.kafka.BackfillClient;
+import artskif.trader.kafka.CandleSnapshotLoader;
 import artskif.trader.repository.CandleRepository;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -23,6 +25,8 @@ public class Candle {
     private final Map<CandleTimeframe, CandleInstance> instances = new EnumMap<>(CandleTimeframe.class);
     private final CandleEventBus bus;
     private final CandleRepository candleRepository;
+    private final BackfillClient backfillClient;
+    private final CandleSnapshotLoader snapshotLoader;
 
     @ConfigProperty(name = "analysis.candle1m.enabled", defaultValue = "true")
     boolean candle1mEnabled;
@@ -59,10 +63,16 @@ public class Candle {
     @ConfigProperty(name = "analysis.candle1w.max-historical-buffer-size", defaultValue = "1000000")
     int candle1wMaxHistoricalBufferSize;
 
+    @ConfigProperty(name = "analysis.replay.enabled", defaultValue = "false")
+    boolean replayEnabled;
+
     @Inject
-    public Candle(CandleEventBus bus, CandleRepository candleRepository) {
+    public Candle(CandleEventBus bus, CandleRepository candleRepository, BackfillClient backfillClient,
+                  CandleSnapshotLoader snapshotLoader) {
         this.bus = bus;
         this.candleRepository = candleRepository;
+        this.backfillClient = backfillClient;
+        this.snapshotLoader = snapshotLoader;
     }
 
     @PostConstruct
@@ -73,36 +83,49 @@ public class Candle {
         if (candle1mEnabled) {
             instances.put(CandleTimeframe.CANDLE_1M, new CandleInstance(
                     CandleTimeframe.CANDLE_1M, "CANDLE-1m",
-                    candle1mMaxLiveBufferSize, candle1mMaxHistoricalBufferSize, bus, candleRepository
+                    candle1mMaxLiveBufferSize, candle1mMaxHistoricalBufferSize, bus, candleRepository, backfillClient, replayEnabled
             ));
         }
         if (candle5mEnabled) {
             instances.put(CandleTimeframe.CANDLE_5M, new CandleInstance(
                     CandleTimeframe.CANDLE_5M, "CANDLE-5m",
-                    candle5mMaxLiveBufferSize, candle5mMaxHistoricalBufferSize, bus, candleRepository
+                    candle5mMaxLiveBufferSize, candle5mMaxHistoricalBufferSize, bus, candleRepository, backfillClient, replayEnabled
             ));
         }
         if (candle1hEnabled) {
             instances.put(CandleTimeframe.CANDLE_1H, new CandleInstance(
                     CandleTimeframe.CANDLE_1H, "CANDLE-1H",
-                    candle1hMaxLiveBufferSize, candle1hMaxHistoricalBufferSize, bus, candleRepository
+                    candle1hMaxLiveBufferSize, candle1hMaxHistoricalBufferSize, bus, candleRepository, backfillClient, replayEnabled
             ));
         }
         if (candle4hEnabled) {
             instances.put(CandleTimeframe.CANDLE_4H, new CandleInstance(
                     CandleTimeframe.CANDLE_4H, "CANDLE-4H",
-                    candle4hMaxLiveBufferSize, candle4hMaxHistoricalBufferSize, bus, candleRepository
+                    candle4hMaxLiveBufferSize, candle4hMaxHistoricalBufferSize, bus, candleRepository, backfillClient, replayEnabled
             ));
         }
         if (candle1wEnabled) {
             instances.put(CandleTimeframe.CANDLE_1W, new CandleInstance(
                     CandleTimeframe.CANDLE_1W, "CANDLE-1W",
-                    candle1wMaxLiveBufferSize, candle1wMaxHistoricalBufferSize, bus, candleRepository
+                    candle1wMaxLiveBufferSize, candle1wMaxHistoricalBufferSize, bus, candleRepository, backfillClient, replayEnabled
             ));
         }
 
-        // Инициализируем каждый экземпляр
-        instances.values().forEach(CandleInstance::initLiveData);
+        if (replayEnabled) {
+            // Буферы заполнит прогрев из history-топиков перед воспроизводимой сессией; текущие свечи из БД ей чужие
+            LOG.info("📼 Режим воспроизведения записи: буферы не восстанавливаются, проверка отставания от часов отключена");
+            return;
+        }
+
+        // Инициализируем каждый экземпляр в фоне: сначала из снимка Kafka, недостающее — из БД.
+        // Консьюмеры стартуют сразу, свечи до окончания инициализации экземпляры придерживают
+        snapshotLoader.loadAsync(AbstractCandle.DEFAULT_SYMBOL)
+                .exceptionally(error -> {
+                    LOG.errorf(error, "❌ Снимок свечей не загружен, буферы восстанавливаются из БД");
+                    return Map.of();
+                })
+                .thenAccept(snapshot -> instances.forEach((timeframe, instance) ->
+                        instance.initLiveData(snapshot.getOrDefault(timeframe, Map.of()))));
     }
 
     /**
@@ -127,23 +150,36 @@ public class Candle {
     }
 
     /**
-     * Обработать тик для указанного таймфрейма
+     * Обработать тик для указанного таймфрейма.
+     * Топики свечей общие для всех инструментов (ключ записи — instId), в буфер попадает только свой инструмент;
+     * запись без ключа считается своей.
      */
-    public void handleTick(CandleTimeframe timeframe, String message) {
+    public void handleTick(CandleTimeframe timeframe, String instId, String message) {
         CandleInstance instance = instances.get(timeframe);
-        if (instance != null) {
+        if (instance != null && isOwnInstrument(instId)) {
             instance.handleTick(message);
         }
     }
 
     /**
-     * Восстановить историю для указанного таймфрейма
+     * Восстановить историю для указанного таймфрейма; пачки других инструментов пропускаются
      */
-    public void restoreFromHistory(CandleTimeframe timeframe, String message) {
+    public void restoreFromHistory(CandleTimeframe timeframe, String instId, String message) {
         CandleInstance instance = instances.get(timeframe);
-        if (instance != null) {
+        if (instance != null && isOwnInstrument(instId)) {
             instance.restoreFromHistory(message);
         }
     }
+
+    /**
+     * Есть ли у анализатора собственные серии баров инструмента (буферы ведутся только для своего)
+     */
+    public boolean hasSeries(String instrument) {
+        return AbstractCandle.DEFAULT_SYMBOL.equals(instrument);
+    }
+
+    private static boolean isOwnInstrument(String instId) {
+        return instId == null || AbstractCandle.DEFAULT_SYMBOL.equals(instId);
+    }
 }
 
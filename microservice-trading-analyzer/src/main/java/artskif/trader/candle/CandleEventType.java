@@ -2,6 +2,7 @@ package artskif.trader.candle;
 
 public enum CandleEventType {
     CANDLE_TICK("Candle Tick"),
+    CANDLE_FORMING("Forming Candle"),
     CANDLE_HISTORY("Historical Candle");
 
     private final String description;
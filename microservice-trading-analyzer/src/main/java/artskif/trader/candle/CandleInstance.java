@@ -2,10 +2,16 @@ package artskif.trader.candle;
 
 import artskif.trader.dto.CandlestickDto;
 import artskif.trader.events.candle.CandleEventBus;
+import artskif.trader.kafka.BackfillClient;
 import artskif.trader.repository.BufferRepository;
 import jakarta.enterprise.context.control.ActivateRequestContext;
 import org.jboss.logging.Logger;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Класс, представляющий экземпляр свечи для конкретного таймфрейма.
  * Содержит собственные буферы и логику обработки.
@@ -22,11 +28,22 @@ public class CandleInstance extends AbstractCandle {
     private final Logger logger;
 
     private final BufferRepository<CandlestickDto> candleBufferRepository;
+    private final BackfillClient backfillClient;
+    private final boolean replay;
+
+    // Свечи и пачки истории, пришедшие до готовности буферов, применяются позже в порядке поступления;
+    // очередь и флаги меняются под монитором held
+    private final List<Runnable> held = new ArrayList<>();
+    // Live буфер восстановлен из снимка/БД (при воспроизведении восстанавливать нечего)
+    private boolean initialized;
+    // При воспроизведении живые свечи придерживаются до последней страницы прогрева (isLast)
+    private boolean warmedUp;
 
 
     public CandleInstance(CandleTimeframe timeframe, String name,
                           int maxLiveBufferSize, int maxHistoricalBufferSize, CandleEventBus bus,
-                          BufferRepository<CandlestickDto> candleBufferRepository) {
+                          BufferRepository<CandlestickDto> candleBufferRepository, BackfillClient backfillClient,
+                          boolean replay) {
         super(name, maxLiveBufferSize, maxHistoricalBufferSize);
         this.timeframe = timeframe;
         this.name = name;
@@ -35,17 +52,127 @@ public class CandleInstance extends AbstractCandle {
         this.bus = bus;
         this.logger = Logger.getLogger(Candle.class.getName() + "." + name);
         this.candleBufferRepository = candleBufferRepository;
+        this.backfillClient = backfillClient;
+        this.replay = replay;
+        this.initialized = replay;
+        this.warmedUp = !replay;
     }
 
+    /**
+     * Инициализация при старте: live буфер берётся из снимка Kafka, а если снимок неполон —
+     * из базы данных, поверх которой кладётся снимок (в нём могут быть более свежие свечи).
+     * Вызывается в фоне, пока консьюмеры уже читают топики; отложенные за это время свечи и пачки истории
+     * применяются после инициализации, даже если она завершилась ошибкой.
+     */
     @ActivateRequestContext
-    public void initLiveData() {
+    public void initLiveData(Map<Instant, CandlestickDto> snapshot) {
         logger.infof("🔌 [%s] Инициализация инстанса свечей для таймфрейма", name);
+        try {
+            if (initRestoreLiveBufferFromSnapshot(snapshot)) {
+                logger.infof("🗂️ [%s] Live буфер восстановлен из снимка Kafka без обращения к БД: %d свечей", name, getLiveBuffer().size());
+            } else {
+                initRestoreLiveBuffer();
+                if (!snapshot.isEmpty()) {
+                    getLiveBuffer().putItems(snapshot);
+                    getLiveBuffer().incrementVersion();
+                }
+            }
+
+            // Заполняем только Live серию из Live буфера при старте
+            copyLiveBufferToSeries();
+        } catch (Exception e) {
+            logger.errorf(e, "❌ [%s] Не удалось инициализировать live буфер", name);
+        } finally {
+            synchronized (held) {
+                initialized = true;
+                release("Live буфер инициализирован");
+            }
+        }
+    }
 
-        // Восстанавливаем только Live буфер при старте
-        initRestoreLiveBuffer();
+    /**
+     * Свеча откладывается, пока live буфер не инициализирован, а при воспроизведении записи — и до окончания
+     * прогрева history-топика: порядок прогрева и сессии не должен зависеть от того, какой из топиков
+     * анализатор прочитал раньше
+     */
+    @Override
+    public void handleTick(String message) {
+        synchronized (held) {
+            if (!initialized || !warmedUp) {
+                held.add(() -> super.handleTick(message));
+                return;
+            }
+        }
+        super.handleTick(message);
+    }
 
-        // Заполняем только Live серию из Live буфера при старте
-        copyLiveBufferToSeries();
+    /**
+     * Пачка истории до инициализации live буфера откладывается, чтобы не конкурировать с ней за буферы
+     */
+    @Override
+    public void restoreFromHistory(String message) {
+        synchronized (held) {
+            if (!initialized) {
+                held.add(() -> super.restoreFromHistory(message));
+                return;
+            }
+        }
+        super.restoreFromHistory(message);
+    }
+
+    /**
+     * Последняя страница прогрева открывает поток живых свечей: сначала в порядке поступления
+     * обрабатываются отложенные, новые свечи ждут на мониторе, пока очередь не опустеет
+     */
+    @Override
+    protected void onHistoryRestored(boolean isLast) {
+        if (!replay || !isLast) {
+            return;
+        }
+        synchronized (held) {
+            if (warmedUp) {
+                return;
+            }
+            warmedUp = true;
+            release("Прогрев завершён");
+        }
+    }
+
+    /**
+     * Применить отложенное, если буферы готовы; вызывается под монитором held
+     */
+    private void release(String reason) {
+        if (!initialized || !warmedUp) {
+            return;
+        }
+        if (!held.isEmpty()) {
+            logger.infof("⏯️ [%s] %s, обрабатываем отложенные сообщения: %d", name, reason, held.size());
+        }
+        held.forEach(Runnable::run);
+        held.clear();
+    }
+
+    /**
+     * Разрыв в буфере запрашивается у харвестера; свечи придут через history-топик.
+     * При воспроизведении записи разрывы не дозагружаются: реальная история смешалась бы с сессией.
+     */
+    @Override
+    protected void onBufferGap(Instant from, Instant to) {
+        if (replay) {
+            logger.debugf("📼 [%s] Разрыв %s - %s при воспроизведении не дозагружается", name, from, to);
+            return;
+        }
+        if (backfillClient.requestGap(getSymbol(), timeframe, from, to)) {
+            logger.infof("🕳️ [%s] Запрошена дозагрузка разрыва %s - %s", name, from, to);
+        }
+    }
+
+    /**
+     * При воспроизведении записи время свечей не связано с текущим
+     */
+    @Override
+    protected boolean isWallClockActualityEnabled() {
+        return !replay;
     }
 
     @Override
@@ -134,6 +134,12 @@ public class PendingOrder extends PanacheEntityBase {
     @Column(name = "u_time")
     public Instant uTime;
 
+    /**
+     * Хэш содержимого строки снимка: при повторном upsert с тем же хэшем строка не перезаписывается
+     */
+    @Column(name = "content_hash")
+    public Long contentHash;
+
     public PendingOrder() {
     }
 
@@ -138,6 +138,12 @@ public class Position extends PanacheEntityBase {
     @Column(name = "u_time")
     public Instant uTime;
 
+    /**
+     * Хэш содержимого строки снимка: при повторном upsert с тем же хэшем строка не перезаписывается
+     */
+    @Column(name = "content_hash")
+    public Long contentHash;
+
     /**
      * Временная метка создания записи в нашей БД
      */
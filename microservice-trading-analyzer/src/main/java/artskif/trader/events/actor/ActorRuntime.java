@@ -0,0 +1,80 @@
+package artskif.trader.events.actor;
+
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Среда исполнения акторов на виртуальных потоках.
+ *
+ * Все почтовые ящики (стратегии, менеджер торговых событий) разделяют один исполнитель
+ * виртуальных потоков: простаивающий актор не занимает поток, а новое сообщение
+ * обрабатывается сразу, без периодического опроса очереди.
+ */
+@ApplicationScoped
+public class ActorRuntime {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("actor-", 0).factory());
+
+    private final Map<String, Mailbox<?>> mailboxes = new ConcurrentHashMap<>();
+
+    /**
+     * Зарегистрировать актор с почтовым ящиком
+     *
+     * @param name     уникальное имя актора
+     * @param capacity ёмкость очереди сообщений
+     * @param handler  обработчик сообщений (вызывается последовательно)
+     */
+    public <M> Mailbox<M> register(String name, int capacity, Consumer<M> handler) {
+        Mailbox<M> mailbox = new Mailbox<>(name, capacity, handler, executor);
+        if (mailboxes.putIfAbsent(name, mailbox) != null) {
+            throw new IllegalStateException("Актор с именем " + name + " уже зарегистрирован");
+        }
+        Log.debugf("📬 Зарегистрирован актор: %s (ёмкость очереди %d)", name, capacity);
+        return mailbox;
+    }
+
+    /**
+     * Остановить актор: новые сообщения не принимаются, накопленные дорабатываются
+     */
+    public void unregister(Mailbox<?> mailbox, Duration timeout) {
+        if (mailbox == null) {
+            return;
+        }
+        if (!mailbox.closeAndDrain(timeout)) {
+            Log.warnf("⚠️ Актор %s не разобрал очередь за %s, осталось сообщений: %d",
+                    mailbox.getName(), timeout, mailbox.getQueueSize());
+        }
+        mailboxes.remove(mailbox.getName(), mailbox);
+        Log.debugf("📭 Актор остановлен: %s (обработано %d, отброшено %d)",
+                mailbox.getName(), mailbox.getProcessedCount(), mailbox.getDroppedCount());
+    }
+
+    public Collection<Mailbox<?>> getMailboxes() {
+        return Collections.unmodifiableCollection(mailboxes.values());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
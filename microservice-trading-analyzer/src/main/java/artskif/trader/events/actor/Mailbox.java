@@ -0,0 +1,137 @@
+package artskif.trader.events.actor;
+
+import io.quarkus.logging.Log;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Почтовый ящик актора: ограниченная очередь сообщений и обработчик.
+ *
+ * Сообщения обрабатываются строго по одному и в порядке поступления.
+ * Пока очередь пуста, у актора нет потока; при первом сообщении на общем
+ * исполнителе виртуальных потоков сразу запускается задача разбора очереди.
+ */
+public final class Mailbox<M> {
+
+    /**
+     * Сколько сообщений разбирается за один запуск, прежде чем уступить исполнитель
+     */
+    private static final int DRAIN_BATCH = 256;
+
+    private final String name;
+    private final BlockingQueue<M> queue;
+    private final Consumer<M> handler;
+    private final Executor executor;
+
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed = false;
+
+    Mailbox(String name, int capacity, Consumer<M> handler, Executor executor) {
+        this.name = name;
+        this.queue = new LinkedBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    /**
+     * Положить сообщение в ящик без блокировки отправителя
+     *
+     * @return false если ящик закрыт или переполнен
+     */
+    public boolean offer(M message) {
+        if (closed) {
+            return false;
+        }
+        if (!queue.offer(message)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        schedule();
+        return true;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                Log.warnf("⚠️ Актор %s: исполнитель остановлен, сообщения не будут обработаны", name);
+            }
+        }
+    }
+
+    private void drain() {
+        try {
+            int handled = 0;
+            M message;
+            while (handled < DRAIN_BATCH && (message = queue.poll()) != null) {
+                try {
+                    handler.accept(message);
+                } catch (Exception e) {
+                    Log.errorf(e, "❌ Ошибка при обработке сообщения актором %s", name);
+                }
+                processed.incrementAndGet();
+                handled++;
+            }
+        } finally {
+            scheduled.set(false);
+            // Сообщение могло прийти между последним poll и сбросом флага
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Закрыть ящик для новых сообщений и дождаться обработки уже принятых
+     *
+     * @return true если очередь разобрана до истечения таймаута
+     */
+    boolean closeAndDrain(Duration timeout) {
+        closed = true;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!queue.isEmpty() || scheduled.get()) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+}
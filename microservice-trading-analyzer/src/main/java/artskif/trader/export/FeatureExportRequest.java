@@ -0,0 +1,24 @@
+package artskif.trader.export;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Параметры выгрузки фич контракта
+ *
+ * @param contractName имя контракта (используется, если не задан contractHash)
+ * @param contractHash contract_hash контракта
+ * @param tag          тег строк (null — все теги контракта)
+ * @param from         начало диапазона по времени бара, включительно (null — без ограничения)
+ * @param to           конец диапазона по времени бара, не включительно (null — без ограничения)
+ * @param columns      выгружаемые колонки (пусто — свеча и все колонки контракта); ts выгружается всегда
+ * @param rowGroupSize строк в группе (null — из конфигурации)
+ */
+public record FeatureExportRequest(String contractName,
+                                   String contractHash,
+                                   String tag,
+                                   Instant from,
+                                   Instant to,
+                                   List<String> columns,
+                                   Integer rowGroupSize) {
+}
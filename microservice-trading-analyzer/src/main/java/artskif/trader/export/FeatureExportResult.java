@@ -0,0 +1,21 @@
+package artskif.trader.export;
+
+import java.util.List;
+
+/**
+ * Результат выгрузки
+ *
+ * @param file      путь к файлу Arrow IPC
+ * @param columns   выгруженные колонки
+ * @param rows      количество строк
+ * @param rowGroups количество групп строк
+ * @param bytes     размер файла
+ * @param millis    длительность выгрузки
+ */
+public record FeatureExportResult(String file,
+                                  List<String> columns,
+                                  long rows,
+                                  long rowGroups,
+                                  long bytes,
+                                  long millis) {
+}
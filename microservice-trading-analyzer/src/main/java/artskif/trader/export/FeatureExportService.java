@@ -0,0 +1,331 @@
+package artskif.trader.export;
+
+import artskif.trader.entity.Contract;
+import artskif.trader.entity.ContractMetadata;
+import artskif.trader.export.arrow.ArrowBatch;
+import artskif.trader.export.arrow.ArrowColumn;
+import artskif.trader.export.arrow.ArrowFileWriter;
+import artskif.trader.export.arrow.ArrowType;
+import artskif.trader.strategy.StrategyDataService;
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Выгрузка наборов фич контрактов в колоночные файлы Arrow IPC для обучения моделей.
+ *
+ * Источники:
+ * - таблица фич контракта (wide_candles или таблица контракта) — строки читаются курсором порциями по размеру группы
+ * - строки бэктеста в памяти — без обращения к БД
+ *
+ * В памяти держится только одна группа строк; файл пишется во временный и переименовывается по завершении.
+ */
+@ApplicationScoped
+public class FeatureExportService {
+
+    private static final String TIME_COLUMN = "ts";
+    private static final List<String> CANDLE_COLUMNS = List.of("open", "high", "low", "close", "volume");
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+
+    @Inject
+    DataSource dataSource;
+
+    @Inject
+    StrategyDataService dataService;
+
+    @Inject
+    @ConfigProperty(name = "export.directory", defaultValue = "exports")
+    String directory;
+
+    @Inject
+    @ConfigProperty(name = "export.row-group-size", defaultValue = "65536")
+    int defaultRowGroupSize;
+
+    /**
+     * Выгружать строки бэктеста сразу после его расчёта
+     */
+    @Inject
+    @ConfigProperty(name = "export.backtest-enabled", defaultValue = "false")
+    boolean backtestExportEnabled;
+
+    public boolean isBacktestExportEnabled() {
+        return backtestExportEnabled;
+    }
+
+    /**
+     * Выгрузить строки контракта из БД
+     *
+     * @throws IllegalArgumentException если контракт или колонки не найдены
+     */
+    public FeatureExportResult exportFromDatabase(FeatureExportRequest request) {
+        Contract contract = request.contractHash() != null
+                ? dataService.findContractByHash(request.contractHash())
+                : dataService.findContractByName(request.contractName());
+        if (contract == null) {
+            throw new IllegalArgumentException("Контракт не найден: "
+                    + (request.contractHash() != null ? request.contractHash() : request.contractName()));
+        }
+
+        String table = dataService.resolveFeatureTable(contract);
+        Map<String, String> tableColumns = dataService.getTableColumnTypes(table);
+
+        List<String> projection = request.columns() == null || request.columns().isEmpty()
+                ? defaultProjection(contract)
+                : withTimeColumn(request.columns());
+        List<ArrowColumn> columns = new ArrayList<>(projection.size());
+        for (String name : projection) {
+            String sqlType = tableColumns.get(name);
+            if (sqlType == null) {
+                throw new IllegalArgumentException("Колонка " + name + " отсутствует в таблице " + table);
+            }
+            columns.add(new ArrowColumn(name, ArrowType.fromSqlType(sqlType)));
+        }
+
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", projection))
+                .append(" FROM ").append(table)
+                .append(" WHERE contract_hash = ?");
+        if (request.tag() != null) {
+            sql.append(" AND tag = ?");
+        }
+        if (request.from() != null) {
+            sql.append(" AND ts >= ?");
+        }
+        if (request.to() != null) {
+            sql.append(" AND ts < ?");
+        }
+        sql.append(" ORDER BY ts");
+
+        int rowGroupSize = request.rowGroupSize() != null ? request.rowGroupSize() : defaultRowGroupSize;
+        String fileName = contract.name + "-" + (request.tag() != null ? request.tag() : "all");
+
+        return writeFile(fileName, columns, rowGroupSize, (writer, batch) -> {
+            // Курсор PostgreSQL работает только вне режима autocommit
+            try (Connection conn = dataSource.getConnection()) {
+                conn.setAutoCommit(false);
+                conn.setReadOnly(true);
+                try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+                    ps.setFetchSize(rowGroupSize);
+                    int i = 1;
+                    ps.setString(i++, contract.contractHash);
+                    if (request.tag() != null) {
+                        ps.setString(i++, request.tag());
+                    }
+                    if (request.from() != null) {
+                        ps.setTimestamp(i++, Timestamp.valueOf(LocalDateTime.ofInstant(request.from(), ZoneOffset.UTC)));
+                    }
+                    if (request.to() != null) {
+                        ps.setTimestamp(i++, Timestamp.valueOf(LocalDateTime.ofInstant(request.to(), ZoneOffset.UTC)));
+                    }
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            readRow(rs, columns, batch);
+                            batch.endRow();
+                            if (batch.isFull()) {
+                                writer.writeBatch(batch);
+                                batch.reset();
+                            }
+                        }
+                    }
+                } finally {
+                    conn.rollback();
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException("Ошибка чтения фич из " + table, e);
+            }
+        });
+    }
+
+    /**
+     * Выгрузить строки, рассчитанные в памяти (например, при бэктесте), без обращения к БД
+     */
+    public FeatureExportResult exportSnapshots(Contract contract, String tag, List<DatabaseSnapshot> rows) {
+        List<String> projection = defaultProjection(contract);
+        Map<String, String> metadataTypes = new HashMap<>();
+        for (ContractMetadata metadata : contract.metadata) {
+            metadataTypes.put(metadata.name, metadata.dataType);
+        }
+
+        List<ArrowColumn> columns = new ArrayList<>(projection.size());
+        for (String name : projection) {
+            String sqlType = metadataTypes.get(name);
+            ArrowType type = TIME_COLUMN.equals(name) ? ArrowType.TIMESTAMP
+                    : CANDLE_COLUMNS.contains(name) ? ArrowType.FLOAT64
+                    : sqlType != null ? ArrowType.fromSqlType(sqlType)
+                    : inferType(name, rows);
+            columns.add(new ArrowColumn(name, type));
+        }
+
+        return writeFile(contract.name + "-" + tag, columns, defaultRowGroupSize, (writer, batch) -> {
+            for (DatabaseSnapshot row : rows) {
+                Map<String, Object> values = row.getAllColumns();
+                batch.setTimestamp(0, row.getTimestamp());
+                for (int i = 1; i < columns.size(); i++) {
+                    batch.setValue(i, values.get(columns.get(i).name()));
+                }
+                batch.endRow();
+                if (batch.isFull()) {
+                    writer.writeBatch(batch);
+                    batch.reset();
+                }
+            }
+        });
+    }
+
+    private FeatureExportResult writeFile(String baseName, List<ArrowColumn> columns, int rowGroupSize, BatchSource source) {
+        if (rowGroupSize <= 0) {
+            throw new IllegalArgumentException("Размер группы строк должен быть положительным: " + rowGroupSize);
+        }
+        long started = System.nanoTime();
+        Path dir = Path.of(directory);
+        Path target = dir.resolve(baseName.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + System.currentTimeMillis() + ".arrow");
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+
+        try {
+            Files.createDirectories(dir);
+            ArrowFileWriter written;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial), OUTPUT_BUFFER_SIZE);
+                 ArrowFileWriter writer = new ArrowFileWriter(out, columns)) {
+                ArrowBatch batch = new ArrowBatch(columns, rowGroupSize);
+                source.fill(writer, batch);
+                writer.writeBatch(batch);
+                written = writer;
+            }
+            // Счётчики читаются после закрытия: в размер файла входит футер
+            long rows = written.getRowCount();
+            int rowGroups = written.getBatchCount();
+            long bytes = written.getBytesWritten();
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            Log.infof("📦 Выгружено %d строк (%d колонок, групп: %d, %d байт) в %s за %d мс",
+                    rows, columns.size(), rowGroups, bytes, target, millis);
+            return new FeatureExportResult(target.toAbsolutePath().toString(),
+                    columns.stream().map(ArrowColumn::name).toList(), rows, rowGroups, bytes, millis);
+        } catch (IOException e) {
+            deleteQuietly(partial);
+            throw new UncheckedIOException("Не удалось записать файл выгрузки " + target, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(partial);
+            throw e;
+        }
+    }
+
+    /**
+     * Колонки по умолчанию: время, свеча и колонки контракта в порядке sequence_order
+     */
+    private List<String> defaultProjection(Contract contract) {
+        List<String> projection = new ArrayList<>();
+        projection.add(TIME_COLUMN);
+        projection.addAll(CANDLE_COLUMNS);
+        contract.metadata.stream()
+                .sorted(Comparator.comparing(metadata -> metadata.sequenceOrder))
+                .map(metadata -> metadata.name)
+                .filter(name -> !projection.contains(name))
+                .forEach(projection::add);
+        return projection;
+    }
+
+    private static List<String> withTimeColumn(List<String> columns) {
+        Set<String> projection = new LinkedHashSet<>();
+        projection.add(TIME_COLUMN);
+        for (String column : columns) {
+            if (!column.isBlank()) {
+                projection.add(column.trim());
+            }
+        }
+        return new ArrayList<>(projection);
+    }
+
+    /**
+     * Тип колонки без метаданных о типе — по первому непустому значению в строках; фичи по умолчанию числовые
+     */
+    static ArrowType inferType(String name, List<DatabaseSnapshot> rows) {
+        for (DatabaseSnapshot row : rows) {
+            Object value = row.getAllColumns().get(name);
+            if (value != null) {
+                return value instanceof Number ? ArrowType.FLOAT64
+                        : value instanceof Boolean ? ArrowType.BOOL
+                        : value instanceof Instant ? ArrowType.TIMESTAMP
+                        : ArrowType.UTF8;
+            }
+        }
+        return ArrowType.FLOAT64;
+    }
+
+    private static void readRow(ResultSet rs, List<ArrowColumn> columns, ArrowBatch batch) throws SQLException {
+        for (int i = 0; i < columns.size(); i++) {
+            int index = i + 1;
+            switch (columns.get(i).type()) {
+                case TIMESTAMP -> {
+                    LocalDateTime value = rs.getObject(index, LocalDateTime.class);
+                    if (value != null) {
+                        batch.setTimestamp(i, value.toInstant(ZoneOffset.UTC));
+                    }
+                }
+                case FLOAT64 -> {
+                    double value = rs.getDouble(index);
+                    if (!rs.wasNull()) {
+                        batch.setDouble(i, value);
+                    }
+                }
+                case INT64 -> {
+                    long value = rs.getLong(index);
+                    if (!rs.wasNull()) {
+                        batch.setLong(i, value);
+                    }
+                }
+                case BOOL -> {
+                    boolean value = rs.getBoolean(index);
+                    if (!rs.wasNull()) {
+                        batch.setBoolean(i, value);
+                    }
+                }
+                case UTF8 -> batch.setText(i, rs.getString(index));
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Log.warnf("⚠️ Не удалось удалить временный файл %s", path);
+        }
+    }
+
+    /**
+     * Источник строк: заполняет группу и отдаёт её писателю по мере заполнения
+     */
+    @FunctionalInterface
+    private interface BatchSource {
+        void fill(ArrowFileWriter writer, ArrowBatch batch) throws IOException;
+    }
+}
@@ -0,0 +1,189 @@
+package artskif.trader.export.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Буфер одной группы строк (record batch) в колоночном виде.
+ *
+ * Память выделяется один раз под заданное число строк и переиспользуется после {@link #reset()},
+ * поэтому потребление памяти при выгрузке ограничено размером группы, а не всего набора данных.
+ * Значение, не записанное в строке, считается null.
+ */
+public final class ArrowBatch {
+
+    private final List<ArrowColumn> columns;
+    private final int capacity;
+    private final ColumnBuffer[] buffers;
+    private int rows;
+
+    public ArrowBatch(List<ArrowColumn> columns, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Размер группы строк должен быть положительным");
+        }
+        this.columns = List.copyOf(columns);
+        this.capacity = capacity;
+        this.buffers = new ColumnBuffer[columns.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ColumnBuffer(columns.get(i).type(), capacity);
+        }
+    }
+
+    public List<ArrowColumn> getColumns() {
+        return columns;
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    public boolean isFull() {
+        return rows == capacity;
+    }
+
+    public boolean isEmpty() {
+        return rows == 0;
+    }
+
+    public void setDouble(int column, double value) {
+        ColumnBuffer buffer = buffers[column];
+        buffer.doubles[rows] = value;
+        buffer.markValid(rows);
+    }
+
+    public void setLong(int column, long value) {
+        ColumnBuffer buffer = buffers[column];
+        buffer.longs[rows] = value;
+        buffer.markValid(rows);
+    }
+
+    public void setTimestamp(int column, Instant value) {
+        if (value != null) {
+            setLong(column, value.getEpochSecond() * 1_000_000L + value.getNano() / 1_000);
+        }
+    }
+
+    public void setBoolean(int column, boolean value) {
+        ColumnBuffer buffer = buffers[column];
+        if (value) {
+            buffer.bits[rows >>> 3] |= (byte) (1 << (rows & 7));
+        }
+        buffer.markValid(rows);
+    }
+
+    public void setText(int column, String value) {
+        if (value != null) {
+            buffers[column].appendText(rows, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Записать значение произвольного Java-типа в колонку согласно её типу (null пропускается)
+     */
+    public void setValue(int column, Object value) {
+        if (value == null) {
+            return;
+        }
+        switch (columns.get(column).type()) {
+            case UTF8 -> setText(column, value.toString());
+            case TIMESTAMP -> setTimestamp(column, (Instant) value);
+            case FLOAT64 -> setDouble(column, ((Number) value).doubleValue());
+            case INT64 -> setLong(column, ((Number) value).longValue());
+            case BOOL -> setBoolean(column, (Boolean) value);
+        }
+    }
+
+    /**
+     * Завершить текущую строку
+     */
+    public void endRow() {
+        if (rows == capacity) {
+            throw new IllegalStateException("Группа строк заполнена");
+        }
+        for (ColumnBuffer buffer : buffers) {
+            buffer.endRow(rows);
+        }
+        rows++;
+    }
+
+    /**
+     * Очистить буфер для следующей группы строк
+     */
+    public void reset() {
+        for (ColumnBuffer buffer : buffers) {
+            buffer.reset(rows);
+        }
+        rows = 0;
+    }
+
+    ColumnBuffer buffer(int column) {
+        return buffers[column];
+    }
+
+    /**
+     * Данные одной колонки в раскладке Arrow: битовая карта валидности и буферы значений
+     */
+    static final class ColumnBuffer {
+        final ArrowType type;
+        final byte[] validity;
+        double[] doubles;
+        long[] longs;
+        byte[] bits;
+        int[] offsets;
+        byte[] data;
+        int dataLength;
+        int nullCount;
+
+        ColumnBuffer(ArrowType type, int capacity) {
+            this.type = type;
+            this.validity = new byte[(capacity + 7) >>> 3];
+            switch (type) {
+                case FLOAT64 -> doubles = new double[capacity];
+                case INT64, TIMESTAMP -> longs = new long[capacity];
+                case BOOL -> bits = new byte[(capacity + 7) >>> 3];
+                case UTF8 -> {
+                    offsets = new int[capacity + 1];
+                    data = new byte[Math.max(capacity * 8, 64)];
+                }
+            }
+        }
+
+        boolean isValid(int row) {
+            return (validity[row >>> 3] & (1 << (row & 7))) != 0;
+        }
+
+        void markValid(int row) {
+            validity[row >>> 3] |= (byte) (1 << (row & 7));
+        }
+
+        void appendText(int row, byte[] bytes) {
+            if (dataLength + bytes.length > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, dataLength + bytes.length));
+            }
+            System.arraycopy(bytes, 0, data, dataLength, bytes.length);
+            dataLength += bytes.length;
+            markValid(row);
+        }
+
+        void endRow(int row) {
+            if (!isValid(row)) {
+                nullCount++;
+            }
+            if (offsets != null) {
+                offsets[row + 1] = dataLength;
+            }
+        }
+
+        void reset(int rows) {
+            int used = (rows + 7) >>> 3;
+            Arrays.fill(validity, 0, used, (byte) 0);
+            if (bits != null) {
+                Arrays.fill(bits, 0, used, (byte) 0);
+            }
+            dataLength = 0;
+            nullCount = 0;
+        }
+    }
+}
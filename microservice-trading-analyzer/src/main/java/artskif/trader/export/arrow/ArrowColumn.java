@@ -0,0 +1,10 @@
+package artskif.trader.export.arrow;
+
+/**
+ * Колонка выгрузки
+ *
+ * @param name имя колонки
+ * @param type тип значений
+ */
+public record ArrowColumn(String name, ArrowType type) {
+}
@@ -0,0 +1,282 @@
+package artskif.trader.export.arrow;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковая запись файла в формате Arrow IPC File (версия метаданных V5) без внешних зависимостей.
+ *
+ * Файл читается pyarrow ({@code pyarrow.ipc.open_file}), pandas/polars ({@code read_ipc}) и DuckDB.
+ * Группы строк пишутся по мере заполнения {@link ArrowBatch}, в памяти держится только текущая группа
+ * и список смещений групп для футера.
+ *
+ * Экземпляр не потокобезопасен.
+ */
+public final class ArrowFileWriter implements Closeable {
+
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final int CONTINUATION = 0xFFFFFFFF;
+    private static final short METADATA_V5 = 4;
+
+    private static final byte HEADER_SCHEMA = 1;
+    private static final byte HEADER_RECORD_BATCH = 3;
+
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_FLOATING_POINT = 3;
+    private static final byte TYPE_UTF8 = 5;
+    private static final byte TYPE_BOOL = 6;
+    private static final byte TYPE_TIMESTAMP = 10;
+
+    private static final short PRECISION_DOUBLE = 2;
+    private static final short TIME_UNIT_MICROSECOND = 2;
+
+    private final OutputStream out;
+    private final List<ArrowColumn> columns;
+    private final ByteBuffer scratch = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    private final List<long[]> blocks = new ArrayList<>();
+
+    private long position;
+    private long rows;
+    private boolean closed;
+
+    public ArrowFileWriter(OutputStream out, List<ArrowColumn> columns) throws IOException {
+        this.out = out;
+        this.columns = List.copyOf(columns);
+
+        writeRaw(MAGIC, 0, MAGIC.length);
+        writePadding(2);
+        writeMessage(FlatBuffer.finish(message(HEADER_SCHEMA, schema(), 0)));
+        flushScratch();
+    }
+
+    /**
+     * Записать заполненную группу строк. Буфер после записи можно очистить через {@link ArrowBatch#reset()}.
+     */
+    public void writeBatch(ArrowBatch batch) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        int rowCount = batch.getRowCount();
+
+        // Раскладка тела: для каждой колонки битовая карта валидности и буферы значений, каждый выровнен на 8 байт
+        ByteArrayOutputStream nodes = new ByteArrayOutputStream();
+        ByteArrayOutputStream buffers = new ByteArrayOutputStream();
+        long bodyLength = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            ArrowBatch.ColumnBuffer buffer = batch.buffer(i);
+            writeLongs(nodes, rowCount, buffer.nullCount);
+
+            long validityLength = buffer.nullCount > 0 ? (rowCount + 7) >>> 3 : 0;
+            writeLongs(buffers, bodyLength, validityLength);
+            bodyLength += pad8(validityLength);
+
+            for (long length : valueBufferLengths(buffer, rowCount)) {
+                writeLongs(buffers, bodyLength, length);
+                bodyLength += pad8(length);
+            }
+        }
+
+        FlatBuffer.Table recordBatch = FlatBuffer.table()
+                .addLong(0, rowCount)
+                .addOffset(1, FlatBuffer.structs(nodes.toByteArray(), columns.size()))
+                .addOffset(2, FlatBuffer.structs(buffers.toByteArray(), buffers.size() / 16));
+
+        long offset = position;
+        int metadataLength = writeMessage(FlatBuffer.finish(message(HEADER_RECORD_BATCH, recordBatch, bodyLength)));
+
+        for (int i = 0; i < columns.size(); i++) {
+            writeBody(batch.buffer(i), rowCount);
+        }
+        flushScratch();
+
+        blocks.add(new long[]{offset, metadataLength, bodyLength});
+        rows += rowCount;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    public int getBatchCount() {
+        return blocks.size();
+    }
+
+    public long getBytesWritten() {
+        return position;
+    }
+
+    /**
+     * Записать маркер конца потока и футер со схемой и смещениями групп строк
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        putInt(CONTINUATION);
+        putInt(0);
+
+        ByteBuffer blockData = ByteBuffer.allocate(blocks.size() * 24).order(ByteOrder.LITTLE_ENDIAN);
+        for (long[] block : blocks) {
+            blockData.putLong(block[0]);
+            blockData.putInt((int) block[1]);
+            blockData.putInt(0);
+            blockData.putLong(block[2]);
+        }
+        FlatBuffer.Table footer = FlatBuffer.table()
+                .addShort(0, METADATA_V5)
+                .addOffset(1, schema())
+                .addOffset(2, FlatBuffer.structs(new byte[0], 0))
+                .addOffset(3, FlatBuffer.structs(blockData.array(), blocks.size()));
+        byte[] footerBytes = FlatBuffer.finish(footer);
+        writeRaw(footerBytes, 0, footerBytes.length);
+        putInt(footerBytes.length);
+        writeRaw(MAGIC, 0, MAGIC.length);
+        flushScratch();
+        out.flush();
+    }
+
+    private FlatBuffer.Table schema() {
+        List<FlatBuffer.Table> fields = new ArrayList<>(columns.size());
+        for (ArrowColumn column : columns) {
+            FlatBuffer.Table field = FlatBuffer.table()
+                    .addOffset(0, FlatBuffer.string(column.name()))
+                    .addBool(1, true)
+                    .addOffset(5, FlatBuffer.tables(List.of()));
+            switch (column.type()) {
+                case UTF8 -> field.addByte(2, TYPE_UTF8).addOffset(3, FlatBuffer.table());
+                case BOOL -> field.addByte(2, TYPE_BOOL).addOffset(3, FlatBuffer.table());
+                case FLOAT64 -> field.addByte(2, TYPE_FLOATING_POINT)
+                        .addOffset(3, FlatBuffer.table().addShort(0, PRECISION_DOUBLE));
+                case INT64 -> field.addByte(2, TYPE_INT)
+                        .addOffset(3, FlatBuffer.table().addInt(0, 64).addBool(1, true));
+                case TIMESTAMP -> field.addByte(2, TYPE_TIMESTAMP)
+                        .addOffset(3, FlatBuffer.table().addShort(0, TIME_UNIT_MICROSECOND).addOffset(1, FlatBuffer.string("UTC")));
+            }
+            fields.add(field);
+        }
+        return FlatBuffer.table()
+                .addShort(0, 0) // little-endian
+                .addOffset(1, FlatBuffer.tables(fields));
+    }
+
+    private static FlatBuffer.Table message(byte headerType, FlatBuffer.Table header, long bodyLength) {
+        return FlatBuffer.table()
+                .addShort(0, METADATA_V5)
+                .addByte(1, headerType)
+                .addOffset(2, header)
+                .addLong(3, bodyLength);
+    }
+
+    /**
+     * Записать сообщение: маркер продолжения, длина метаданных, метаданные с выравниванием на 8 байт
+     *
+     * @return полная длина метаданных вместе с префиксом (для блока футера)
+     */
+    private int writeMessage(byte[] metadata) throws IOException {
+        int padded = (int) pad8(metadata.length);
+        putInt(CONTINUATION);
+        putInt(padded);
+        writeRaw(metadata, 0, metadata.length);
+        writePadding(padded - metadata.length);
+        return 8 + padded;
+    }
+
+    private static long[] valueBufferLengths(ArrowBatch.ColumnBuffer buffer, int rowCount) {
+        return switch (buffer.type) {
+            case FLOAT64, INT64, TIMESTAMP -> new long[]{rowCount * 8L};
+            case BOOL -> new long[]{(rowCount + 7) >>> 3};
+            case UTF8 -> new long[]{(rowCount + 1) * 4L, buffer.offsets[rowCount]};
+        };
+    }
+
+    private void writeBody(ArrowBatch.ColumnBuffer buffer, int rowCount) throws IOException {
+        int bitmapLength = (rowCount + 7) >>> 3;
+        if (buffer.nullCount > 0) {
+            writeRaw(buffer.validity, 0, bitmapLength);
+            writePadding((int) (pad8(bitmapLength) - bitmapLength));
+        }
+        switch (buffer.type) {
+            case FLOAT64 -> {
+                for (int row = 0; row < rowCount; row++) {
+                    ensureScratch(8);
+                    scratch.putDouble(buffer.isValid(row) ? buffer.doubles[row] : 0d);
+                }
+            }
+            case INT64, TIMESTAMP -> {
+                for (int row = 0; row < rowCount; row++) {
+                    ensureScratch(8);
+                    scratch.putLong(buffer.isValid(row) ? buffer.longs[row] : 0L);
+                }
+            }
+            case BOOL -> {
+                writeRaw(buffer.bits, 0, bitmapLength);
+                writePadding((int) (pad8(bitmapLength) - bitmapLength));
+            }
+            case UTF8 -> {
+                for (int row = 0; row <= rowCount; row++) {
+                    putInt(buffer.offsets[row]);
+                }
+                writePadding((int) (pad8((rowCount + 1) * 4L) - (rowCount + 1) * 4L));
+                int dataLength = buffer.offsets[rowCount];
+                writeRaw(buffer.data, 0, dataLength);
+                writePadding((int) (pad8(dataLength) - dataLength));
+            }
+        }
+    }
+
+    private static void writeLongs(ByteArrayOutputStream target, long first, long second) {
+        ByteBuffer pair = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        pair.putLong(first).putLong(second);
+        target.writeBytes(pair.array());
+    }
+
+    private static long pad8(long length) {
+        return (length + 7) & ~7L;
+    }
+
+    private void putInt(int value) throws IOException {
+        ensureScratch(4);
+        scratch.putInt(value);
+    }
+
+    private void writePadding(int bytes) throws IOException {
+        ensureScratch(bytes);
+        for (int i = 0; i < bytes; i++) {
+            scratch.put((byte) 0);
+        }
+    }
+
+    private void writeRaw(byte[] bytes, int offset, int length) throws IOException {
+        if (length <= scratch.remaining()) {
+            scratch.put(bytes, offset, length);
+            return;
+        }
+        flushScratch();
+        out.write(bytes, offset, length);
+        position += length;
+    }
+
+    private void ensureScratch(int bytes) throws IOException {
+        if (scratch.remaining() < bytes) {
+            flushScratch();
+        }
+    }
+
+    private void flushScratch() throws IOException {
+        if (scratch.position() > 0) {
+            out.write(scratch.array(), 0, scratch.position());
+            position += scratch.position();
+            scratch.clear();
+        }
+    }
+}
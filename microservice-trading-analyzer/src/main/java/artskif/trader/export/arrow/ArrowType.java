@@ -0,0 +1,32 @@
+package artskif.trader.export.arrow;
+
+import artskif.trader.repository.copy.PgCopyType;
+
+/**
+ * Типы колонок выгрузки в Arrow IPC
+ */
+public enum ArrowType {
+    /** Строка UTF-8 */
+    UTF8,
+    /** Метка времени в микросекундах, UTC */
+    TIMESTAMP,
+    /** double — числовые колонки и фичи */
+    FLOAT64,
+    /** Знаковое 64-битное целое */
+    INT64,
+    /** Логическое значение */
+    BOOL;
+
+    /**
+     * Тип выгрузки для SQL-типа колонки. numeric выгружается как double — в таком виде фичи нужны для обучения.
+     */
+    public static ArrowType fromSqlType(String sqlType) {
+        return switch (PgCopyType.fromSqlType(sqlType)) {
+            case TEXT -> UTF8;
+            case TIMESTAMP -> TIMESTAMP;
+            case NUMERIC -> FLOAT64;
+            case INT2, INT4, INT8 -> INT64;
+            case BOOL -> BOOL;
+        };
+    }
+}
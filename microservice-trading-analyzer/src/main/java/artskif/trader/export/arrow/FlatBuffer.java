@@ -0,0 +1,246 @@
+package artskif.trader.export.arrow;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Минимальный сериализатор FlatBuffers для метаданных Arrow IPC (Schema, RecordBatch, Footer).
+ *
+ * Буфер пишется от начала к концу: vtable, затем таблица, затем её дочерние объекты,
+ * поэтому все uoffset указывают вперёд, как требует верификатор FlatBuffers.
+ * Скаляры выравниваются по своему размеру, структуры в векторах — по 8 байт.
+ */
+final class FlatBuffer {
+
+    private FlatBuffer() {
+    }
+
+    /**
+     * Узел, на который таблица ссылается по смещению
+     */
+    interface Node {
+    }
+
+    static Table table() {
+        return new Table();
+    }
+
+    static Node string(String value) {
+        return new StringNode(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Node tables(List<Table> tables) {
+        return new TableVector(tables);
+    }
+
+    /**
+     * Вектор структур
+     *
+     * @param data  элементы подряд в little-endian
+     * @param count количество элементов
+     */
+    static Node structs(byte[] data, int count) {
+        return new StructVector(data, count);
+    }
+
+    /**
+     * Сериализовать корневую таблицу
+     */
+    static byte[] finish(Table root) {
+        Encoder encoder = new Encoder();
+        encoder.pos = 4;
+        int rootPos = encoder.writeTable(root);
+        encoder.putInt(0, rootPos);
+        encoder.align(8);
+        return Arrays.copyOf(encoder.buf, encoder.pos);
+    }
+
+    static final class Table implements Node {
+        private final List<Field> fields = new ArrayList<>();
+
+        Table addByte(int id, int value) {
+            fields.add(new Field(id, 1, value, null));
+            return this;
+        }
+
+        Table addBool(int id, boolean value) {
+            return addByte(id, value ? 1 : 0);
+        }
+
+        Table addShort(int id, int value) {
+            fields.add(new Field(id, 2, value, null));
+            return this;
+        }
+
+        Table addInt(int id, int value) {
+            fields.add(new Field(id, 4, value, null));
+            return this;
+        }
+
+        Table addLong(int id, long value) {
+            fields.add(new Field(id, 8, value, null));
+            return this;
+        }
+
+        Table addOffset(int id, Node node) {
+            fields.add(new Field(id, 4, 0, node));
+            return this;
+        }
+    }
+
+    private record Field(int id, int size, long value, Node node) {
+    }
+
+    private record StringNode(byte[] bytes) implements Node {
+    }
+
+    private record TableVector(List<Table> tables) implements Node {
+    }
+
+    private record StructVector(byte[] data, int count) implements Node {
+    }
+
+    private static final class Encoder {
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        int writeTable(Table table) {
+            List<Field> fields = new ArrayList<>(table.fields);
+            // Поля по убыванию размера: при таблице, начинающейся на 4 (mod 8), все скаляры оказываются выровнены
+            fields.sort(Comparator.comparingInt(Field::size).reversed());
+            int maxId = fields.stream().mapToInt(Field::id).max().orElse(-1);
+            boolean hasLong = fields.stream().anyMatch(f -> f.size() == 8);
+
+            align(2);
+            int vtablePos = pos;
+            int vtableSize = 4 + 2 * (maxId + 1);
+            ensure(vtableSize);
+            pos += vtableSize;
+
+            while (pos % 4 != 0 || (hasLong && (pos + 4) % 8 != 0)) {
+                putByte(0);
+            }
+            int tablePos = pos;
+            ensure(4);
+            putInt(tablePos, tablePos - vtablePos);
+            pos += 4;
+
+            int[] fieldPositions = new int[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                Field field = fields.get(i);
+                align(field.size());
+                fieldPositions[i] = pos;
+                ensure(field.size());
+                switch (field.size()) {
+                    case 1 -> buf[pos] = (byte) field.value();
+                    case 2 -> putShort(pos, (int) field.value());
+                    case 4 -> putInt(pos, (int) field.value());
+                    case 8 -> putLong(pos, field.value());
+                    default -> throw new IllegalStateException("Неподдерживаемый размер поля: " + field.size());
+                }
+                pos += field.size();
+            }
+
+            putShort(vtablePos, vtableSize);
+            putShort(vtablePos + 2, pos - tablePos);
+            for (int id = 0; id <= maxId; id++) {
+                putShort(vtablePos + 4 + 2 * id, 0);
+            }
+            for (int i = 0; i < fields.size(); i++) {
+                putShort(vtablePos + 4 + 2 * fields.get(i).id(), fieldPositions[i] - tablePos);
+            }
+
+            for (int i = 0; i < fields.size(); i++) {
+                Node node = fields.get(i).node();
+                if (node != null) {
+                    int childPos = writeNode(node);
+                    putInt(fieldPositions[i], childPos - fieldPositions[i]);
+                }
+            }
+            return tablePos;
+        }
+
+        private int writeNode(Node node) {
+            if (node instanceof Table table) {
+                return writeTable(table);
+            }
+            if (node instanceof StringNode string) {
+                align(4);
+                int start = pos;
+                ensure(4 + string.bytes().length + 1);
+                putInt(pos, string.bytes().length);
+                pos += 4;
+                System.arraycopy(string.bytes(), 0, buf, pos, string.bytes().length);
+                pos += string.bytes().length;
+                buf[pos++] = 0;
+                return start;
+            }
+            if (node instanceof TableVector vector) {
+                align(4);
+                int start = pos;
+                int count = vector.tables().size();
+                ensure(4 + 4 * count);
+                putInt(pos, count);
+                pos += 4;
+                int elementsPos = pos;
+                pos += 4 * count;
+                for (int i = 0; i < count; i++) {
+                    int childPos = writeTable(vector.tables().get(i));
+                    int elementPos = elementsPos + 4 * i;
+                    putInt(elementPos, childPos - elementPos);
+                }
+                return start;
+            }
+            if (node instanceof StructVector vector) {
+                while (pos % 4 != 0 || (pos + 4) % 8 != 0) {
+                    putByte(0);
+                }
+                int start = pos;
+                ensure(4 + vector.data().length);
+                putInt(pos, vector.count());
+                pos += 4;
+                System.arraycopy(vector.data(), 0, buf, pos, vector.data().length);
+                pos += vector.data().length;
+                return start;
+            }
+            throw new IllegalStateException("Неизвестный узел FlatBuffers: " + node);
+        }
+
+        void align(int alignment) {
+            while (pos % alignment != 0) {
+                putByte(0);
+            }
+        }
+
+        private void putByte(int value) {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        private void ensure(int bytes) {
+            if (pos + bytes > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + bytes));
+            }
+        }
+
+        private void putShort(int at, int value) {
+            buf[at] = (byte) value;
+            buf[at + 1] = (byte) (value >>> 8);
+        }
+
+        void putInt(int at, int value) {
+            buf[at] = (byte) value;
+            buf[at + 1] = (byte) (value >>> 8);
+            buf[at + 2] = (byte) (value >>> 16);
+            buf[at + 3] = (byte) (value >>> 24);
+        }
+
+        private void putLong(int at, long value) {
+            putInt(at, (int) value);
+            putInt(at + 4, (int) (value >>> 32));
+        }
+    }
+}
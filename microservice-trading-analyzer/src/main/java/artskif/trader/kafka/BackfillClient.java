@@ -0,0 +1,126 @@
+package artskif.trader.kafka;
+
+import artskif.trader.api.dto.BackfillAck;
+import artskif.trader.api.dto.BackfillCommand;
+import artskif.trader.candle.CandleTimeframe;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Запросы дозагрузки истории у харвестера через топик команд.
+ *
+ * Харвестер объединяет пересекающиеся команды, загружает диапазон раньше плановых синхронизаций
+ * и отправляет свечи в обычный history-топик, откуда их забирает {@link HistoryConsumer}.
+ * Об окончании загрузки он сообщает подтверждением; по нему завершается future запроса.
+ */
+@ApplicationScoped
+public class BackfillClient {
+
+    private static final Logger LOG = Logger.getLogger(BackfillClient.class);
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // Приоритет автоматических запросов по разрывам буфера; явные запросы могут указать меньший
+    public static final int GAP_PRIORITY = 10;
+
+    @Inject
+    @Channel("backfill-commands")
+    Emitter<String> emitter;
+
+    @ConfigProperty(name = "analysis.backfill.enabled", defaultValue = "true")
+    boolean enabled;
+
+    // При воспроизведении записи разрывы не дозагружаются: реальная история попала бы в history-топики посреди сессии
+    @ConfigProperty(name = "analysis.replay.enabled", defaultValue = "false")
+    boolean replayEnabled;
+
+    @ConfigProperty(name = "analysis.backfill.retry-after-minutes", defaultValue = "10")
+    long retryAfterMinutes;
+
+    @ConfigProperty(name = "analysis.backfill.timeout-minutes", defaultValue = "30")
+    long timeoutMinutes;
+
+    private final Map<String, CompletableFuture<BackfillAck>> pending = new ConcurrentHashMap<>();
+    // Когда запрашивался разрыв: один и тот же разрыв виден на каждой свече, запрос уходит не чаще retryAfterMinutes
+    private final Map<String, Instant> requestedGaps = new ConcurrentHashMap<>();
+
+    /**
+     * Запросить загрузку диапазона
+     *
+     * @param from     начало диапазона (включительно)
+     * @param to       конец диапазона
+     * @param priority приоритет среди команд дозагрузки (меньше — раньше)
+     * @return подтверждение харвестера; завершается с ошибкой по таймауту
+     */
+    public CompletableFuture<BackfillAck> request(String symbol, CandleTimeframe timeframe, Instant from, Instant to, int priority) {
+        BackfillCommand command = new BackfillCommand(UUID.randomUUID().toString(), symbol, timeframe.name(),
+                from.toEpochMilli(), to.toEpochMilli(), priority);
+        CompletableFuture<BackfillAck> result = new CompletableFuture<>();
+        pending.put(command.requestId(), result);
+        result.orTimeout(timeoutMinutes, TimeUnit.MINUTES)
+                .whenComplete((ack, error) -> pending.remove(command.requestId()));
+
+        try {
+            emitter.send(mapper.writeValueAsString(command));
+            LOG.infof("📤 Запрошена дозагрузка %s: %s %s %s - %s", command.requestId(), symbol, timeframe, from, to);
+        } catch (JsonProcessingException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Запросить разрыв, найденный в буфере. Повторные запросы того же разрыва подавляются.
+     *
+     * @return true, если команда отправлена
+     */
+    public boolean requestGap(String symbol, CandleTimeframe timeframe, Instant from, Instant to) {
+        if (!enabled || replayEnabled) {
+            return false;
+        }
+        Instant now = Instant.now();
+        Duration retryAfter = Duration.ofMinutes(retryAfterMinutes);
+        requestedGaps.values().removeIf(requestedAt -> requestedAt.plus(retryAfter).isBefore(now));
+
+        // Конец разрыва не входит в ключ: у отставшего буфера он равен текущему времени и меняется на каждой свече
+        String key = symbol + "|" + timeframe.name() + "|" + from;
+        if (requestedGaps.putIfAbsent(key, now) != null) {
+            return false;
+        }
+        request(symbol, timeframe, from, to, GAP_PRIORITY);
+        return true;
+    }
+
+    @Incoming("backfill-acks")
+    public void onAck(String message) {
+        try {
+            BackfillAck ack = mapper.readValue(message, BackfillAck.class);
+            CompletableFuture<BackfillAck> result = pending.remove(ack.requestId());
+            if (result == null) {
+                // Подтверждение чужого или уже просроченного запроса
+                LOG.debugf("ℹ️ Подтверждение дозагрузки без ожидающего запроса: %s", ack.requestId());
+                return;
+            }
+            LOG.infof("📥 Дозагрузка %s: %s, страниц %d, свечей %d", ack.requestId(), ack.status(), ack.pages(), ack.candles());
+            result.complete(ack);
+        } catch (JsonProcessingException e) {
+            LOG.warnf("⚠️ Не удалось разобрать подтверждение дозагрузки: %s", message);
+        }
+    }
+}
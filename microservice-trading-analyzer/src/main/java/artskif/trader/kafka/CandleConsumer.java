@@ -6,45 +6,84 @@ import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.jboss.logging.Logger;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Живые свечи из топиков харвестера. Харвестер помечает каждый кадр заголовком {@code okx-confirm}
+ * ("1" — свеча закрыта), поэтому при выключенных формирующихся свечах ({@code analysis.forming-candles.enabled})
+ * неподтверждённые кадры отбрасываются по заголовку, без разбора JSON. Кадр без заголовка считается подтверждённым
+ * и разбирается как раньше.
+ */
 @Startup
 @ApplicationScoped
 public class CandleConsumer {
 
     private final static Logger LOG = Logger.getLogger(CandleConsumer.class);
 
+    static final String CONFIRM_HEADER = "okx-confirm";
+
     @Inject
     Candle candle;
 
+    @ConfigProperty(name = "analysis.forming-candles.enabled", defaultValue = "true")
+    boolean formingEnabled;
+
+    private final AtomicLong skippedUnconfirmed = new AtomicLong();
+
     @PostConstruct
     void init() {
-        LOG.info("🔌 Старт консюмера для обработки свечей");
+        LOG.infof("🔌 Старт консюмера для обработки свечей (формирующиеся свечи: %s)", formingEnabled ? "да" : "нет");
     }
 
     @Incoming("candle-1m")
-    public void consume1m(String message) {
-        candle.handleTick(CandleTimeframe.CANDLE_1M, message);
+    public void consume1m(ConsumerRecord<String, String> record) {
+        consume(CandleTimeframe.CANDLE_1M, record);
     }
 
     @Incoming("candle-5m")
-    public void consume5m(String message) {
-        candle.handleTick(CandleTimeframe.CANDLE_5M, message);
+    public void consume5m(ConsumerRecord<String, String> record) {
+        consume(CandleTimeframe.CANDLE_5M, record);
     }
 
     @Incoming("candle-1h")
-    public void consume1h(String message) {
-        candle.handleTick(CandleTimeframe.CANDLE_1H, message);
+    public void consume1h(ConsumerRecord<String, String> record) {
+        consume(CandleTimeframe.CANDLE_1H, record);
     }
 
     @Incoming("candle-4h")
-    public void consume4H(String message) {
-        candle.handleTick(CandleTimeframe.CANDLE_4H, message);
+    public void consume4H(ConsumerRecord<String, String> record) {
+        consume(CandleTimeframe.CANDLE_4H, record);
     }
 
     @Incoming("candle-1w")
-    public void consume1W(String message) {
-        candle.handleTick(CandleTimeframe.CANDLE_1W, message);
+    public void consume1W(ConsumerRecord<String, String> record) {
+        consume(CandleTimeframe.CANDLE_1W, record);
+    }
+
+    void consume(CandleTimeframe timeframe, ConsumerRecord<String, String> record) {
+        if (!formingEnabled && isUnconfirmed(record)) {
+            skippedUnconfirmed.incrementAndGet();
+            return;
+        }
+        candle.handleTick(timeframe, record.key(), record.value());
+    }
+
+    /**
+     * Неподтверждённый кадр по заголовку {@code okx-confirm}; без заголовка — false
+     */
+    static boolean isUnconfirmed(ConsumerRecord<String, String> record) {
+        Header header = record.headers().lastHeader(CONFIRM_HEADER);
+        byte[] value = header != null ? header.value() : null;
+        return value != null && value.length == 1 && value[0] == '0';
+    }
+
+    public long getSkippedUnconfirmed() {
+        return skippedUnconfirmed.get();
     }
 }
@@ -0,0 +1,156 @@
+package artskif.trader.kafka;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.dto.CandlestickDto;
+import artskif.trader.mapper.CandlestickMapper;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Чтение сжатого топика снимка последних свечей, который ведёт харвестер.
+ *
+ * При старте топик читается с начала до конечных offset'ов, зафиксированных перед чтением, без consumer group.
+ * Ключ записи — {@code symbol|timeframe|bucketEpochMs}; tombstone удаляет свечу, если сжатие до неё ещё не дошло.
+ * Чтение идёт в фоне ({@link #loadAsync}), параллельно с live-консьюмерами: свечи, подтверждённые во время чтения,
+ * придут и в снимок, и в live-топик — экземпляры свечей придерживают live-сообщения до инициализации буфера
+ * и применяют их поверх снимка.
+ */
+@ApplicationScoped
+public class CandleSnapshotLoader {
+
+    private static final Logger LOG = Logger.getLogger(CandleSnapshotLoader.class);
+    private static final Duration POLL_TIMEOUT = Duration.ofMillis(500);
+
+    @ConfigProperty(name = "analysis.bootstrap.snapshot.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "analysis.bootstrap.snapshot.topic", defaultValue = "okx-candle-snapshot")
+    String topic;
+
+    @ConfigProperty(name = "analysis.bootstrap.snapshot.bootstrap-servers", defaultValue = "localhost:19093")
+    String bootstrapServers;
+
+    @ConfigProperty(name = "analysis.bootstrap.snapshot.timeout-seconds", defaultValue = "30")
+    long timeoutSeconds;
+
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("analyzer-snapshot-bootstrap");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Загрузить снимок в фоновом потоке, не задерживая старт приложения
+     */
+    public CompletableFuture<Map<CandleTimeframe, Map<Instant, CandlestickDto>>> loadAsync(String symbol) {
+        return CompletableFuture.supplyAsync(() -> load(symbol), loader);
+    }
+
+    /**
+     * Загрузить последние подтверждённые свечи символа по всем таймфреймам
+     *
+     * @return свечи по таймфреймам в порядке времени; пусто, если снимок выключен или недоступен
+     */
+    public Map<CandleTimeframe, Map<Instant, CandlestickDto>> load(String symbol) {
+        Map<CandleTimeframe, Map<Instant, CandlestickDto>> result = new EnumMap<>(CandleTimeframe.class);
+        if (!enabled) {
+            return result;
+        }
+
+        long startedNanos = System.nanoTime();
+        int records = 0;
+        try (KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProperties())) {
+            Duration timeout = Duration.ofSeconds(timeoutSeconds);
+            List<TopicPartition> partitions = consumer.partitionsFor(topic, timeout).stream()
+                    .map(info -> new TopicPartition(topic, info.partition()))
+                    .toList();
+            consumer.assign(partitions);
+            consumer.seekToBeginning(partitions);
+            Map<TopicPartition, Long> endOffsets = consumer.endOffsets(partitions, timeout);
+
+            long deadline = startedNanos + timeout.toNanos();
+            while (!reachedEnd(consumer, endOffsets)) {
+                if (System.nanoTime() > deadline) {
+                    LOG.warnf("⚠️ Снимок %s не дочитан за %d с, используем прочитанное", topic, timeoutSeconds);
+                    break;
+                }
+                for (ConsumerRecord<String, String> record : consumer.poll(POLL_TIMEOUT)) {
+                    records++;
+                    apply(record, symbol, result);
+                }
+            }
+        } catch (Exception e) {
+            LOG.errorf(e, "❌ Не удалось прочитать снимок свечей из %s", topic);
+            return new EnumMap<>(CandleTimeframe.class);
+        }
+
+        LOG.infof("🗂️ Снимок свечей %s прочитан за %.1f с: записей %d, свечей %s %s",
+                topic, (System.nanoTime() - startedNanos) / 1e9, records, symbol, sizes(result));
+        return result;
+    }
+
+    private static void apply(ConsumerRecord<String, String> record, String symbol,
+                              Map<CandleTimeframe, Map<Instant, CandlestickDto>> result) throws Exception {
+        String[] key = record.key() == null ? new String[0] : record.key().split("\\|");
+        if (key.length != 3 || !symbol.equals(key[0])) {
+            return;
+        }
+        CandleTimeframe timeframe = CandleTimeframe.fromString(key[1]);
+        Map<Instant, CandlestickDto> candles = result.computeIfAbsent(timeframe, tf -> new TreeMap<>());
+        if (record.value() == null) {
+            candles.remove(Instant.ofEpochMilli(Long.parseLong(key[2])));
+            return;
+        }
+        candles.putAll(CandlestickMapper.mapJsonMessageToCandlestickMap(record.value(), timeframe).getData());
+    }
+
+    private static boolean reachedEnd(KafkaConsumer<String, String> consumer, Map<TopicPartition, Long> endOffsets) {
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            if (consumer.position(end.getKey()) < end.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Properties consumerProperties() {
+        Properties props = new Properties();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 5_000);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, "analyzer-snapshot-bootstrap");
+        return props;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        loader.shutdownNow();
+    }
+
+    private static String sizes(Map<CandleTimeframe, Map<Instant, CandlestickDto>> result) {
+        StringBuilder sb = new StringBuilder("{");
+        result.forEach((tf, candles) -> sb.append(sb.length() > 1 ? ", " : "").append(tf).append('=').append(candles.size()));
+        return sb.append('}').toString();
+    }
+}
@@ -6,12 +6,14 @@ import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.jboss.logging.Logger;
 
 /**
  * Читает HISTORY-топики и передаёт пачки в тикеры через restoreFromHistory(...).
- * Сообщение — это JSON-массив "data" от харвестера (как прислал харвестер).
+ * Сообщение — это JSON-массив "data" от харвестера (как прислал харвестер), ключ записи — instId:
+ * пачки других инструментов пропускаются.
  */
 @Startup
 @ApplicationScoped
@@ -28,27 +30,27 @@ public class HistoryConsumer {
     }
 
     @Incoming("candle-1m-history")
-    public void consume1mHistory(String message) {
-        candle.restoreFromHistory(CandleTimeframe.CANDLE_1M, message);
+    public void consume1mHistory(ConsumerRecord<String, String> record) {
+        candle.restoreFromHistory(CandleTimeframe.CANDLE_1M, record.key(), record.value());
     }
 
     @Incoming("candle-5m-history")
-    public void consume5mHistory(String message) {
-        candle.restoreFromHistory(CandleTimeframe.CANDLE_5M, message);
+    public void consume5mHistory(ConsumerRecord<String, String> record) {
+        candle.restoreFromHistory(CandleTimeframe.CANDLE_5M, record.key(), record.value());
     }
 
     @Incoming("candle-1h-history")
-    public void consume1hHistory(String message) {
-        candle.restoreFromHistory(CandleTimeframe.CANDLE_1H, message);
+    public void consume1hHistory(ConsumerRecord<String, String> record) {
+        candle.restoreFromHistory(CandleTimeframe.CANDLE_1H, record.key(), record.value());
     }
 
     @Incoming("candle-4h-history")
-    public void consume4hHistory(String message) {
-        candle.restoreFromHistory(CandleTimeframe.CANDLE_4H, message);
+    public void consume4hHistory(ConsumerRecord<String, String> record) {
+        candle.restoreFromHistory(CandleTimeframe.CANDLE_4H, record.key(), record.value());
     }
 
     @Incoming("candle-1w-history")
-    public void consume1wHistory(String message) {
-        candle.restoreFromHistory(CandleTimeframe.CANDLE_1W, message);
+    public void consume1wHistory(ConsumerRecord<String, String> record) {
+        candle.restoreFromHistory(CandleTimeframe.CANDLE_1W, record.key(), record.value());
     }
 }
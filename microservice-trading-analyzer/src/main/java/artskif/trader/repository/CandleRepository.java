@@ -9,28 +9,34 @@ import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
 import artskif.trader.mapper.CandlestickMapper;
+import artskif.trader.repository.copy.PgBinaryCopyWriter;
 
 import org.hibernate.Session;
 import org.jboss.logging.Logger;
-import java.io.StringReader;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Statement;
 import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
 import org.postgresql.PGConnection;
-import org.postgresql.copy.CopyManager;
+import org.postgresql.copy.PGCopyOutputStream;
 
 @ApplicationScoped
 public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>, BufferRepository<CandlestickDto> {
 
     private static final Logger LOG = Logger.getLogger(CandleRepository.class);
 
-    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    // Промежуточная таблица сессии по образцу stage_candles: у каждого соединения своя копия,
+    // строки очищаются при коммите, поэтому параллельные сохранения не блокируют и не затирают друг друга
+    private static final String CREATE_STAGE_SQL = "CREATE TEMP TABLE IF NOT EXISTS tmp_stage_candles " +
+            "(LIKE stage_candles INCLUDING DEFAULTS) ON COMMIT DELETE ROWS";
+
+    // Колонки промежуточной таблицы в порядке полей бинарного COPY
+    private static final String COPY_SQL = "COPY tmp_stage_candles(symbol, tf, ts, open, high, low, close, volume, confirmed) " +
+            "FROM STDIN WITH (FORMAT binary)";
+    private static final int COPY_FIELD_COUNT = 9;
 
     private static final int DEFAULT_RESTORE_LIMIT = 300; // Максимальное количество свечей для восстановления
 
@@ -48,28 +54,32 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
             return 0;
         }
 
-        String csv = buildCsv(unsavedBuffer);
-
-        if (csv.isEmpty()) return 0;
         final int[] affected = new int[1];
         Session session = getEntityManager().unwrap(Session.class);
         try {
             session.doWork(conn -> {
                 try (Statement stmt = conn.createStatement()) {
-                    stmt.execute("TRUNCATE TABLE stage_candles");
+                    stmt.execute(CREATE_STAGE_SQL);
 
                     PGConnection pgConn = conn.unwrap(PGConnection.class);
-                    CopyManager cm = pgConn.getCopyAPI();
-                    String copySql = "COPY stage_candles(symbol, tf, ts, open, high, low, close, volume, confirmed) " +
-                            "FROM STDIN WITH (FORMAT csv, DELIMITER ',', NULL '', HEADER false)";
-                    long copied = cm.copyIn(copySql, new StringReader(csv));
+                    long copied;
+                    try (PGCopyOutputStream out = new PGCopyOutputStream(pgConn, COPY_SQL)) {
+                        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(out);
+                        for (CandlestickDto dto : unsavedBuffer.values()) {
+                            if (dto != null) {
+                                writeCopyRow(writer, dto);
+                            }
+                        }
+                        writer.finish();
+                        copied = out.endCopy();
+                    }
                     LOG.debugf("В staging загружено строк: %d", copied);
 
                     String upsert = """
                             INSERT INTO candles(symbol, tf, ts, open, high, low, close, volume, confirmed)
                             SELECT symbol, tf, ts, open, high, low, close,
                                    COALESCE(volume, 0), COALESCE(confirmed, false)
-                            FROM stage_candles
+                            FROM tmp_stage_candles
                             ON CONFLICT (symbol, tf, ts) DO UPDATE SET
                                 open = EXCLUDED.open,
                                 high = EXCLUDED.high,
@@ -80,7 +90,6 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
                     affected[0] = stmt.executeUpdate(upsert);
                     LOG.debugf("Upsert затронул строк: %d", affected[0]);
 
-                    stmt.execute("TRUNCATE TABLE stage_candles");
                     unsavedBuffer.values().forEach(dto -> dto.setSaved(true));
                 } catch (Exception e) {
                     throw new RuntimeException(e);
@@ -89,57 +98,25 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
             LOG.debugf("💾 [%s] Сохранён в бд буфер: %d записей", callerName, affected[0]);
             return affected[0];
         } catch (RuntimeException ex) {
-            LOG.error("Ошибка при сохранении свечей через COPY -> stage_candles", ex);
+            LOG.error("Ошибка при сохранении свечей через COPY -> tmp_stage_candles", ex);
             return 0;
         }
     }
 
-    private String buildCsv(Map<Instant, CandlestickDto> buffer) {
-        return buffer.entrySet().stream()
-                .filter(e -> e.getValue() != null)
-                .map(e -> dtoToCsvLine(e.getValue()))
-                .filter(Objects::nonNull)
-                .collect(Collectors.joining("\n"));
-    }
-
-    private String dtoToCsvLine(CandlestickDto dto) {
-        try {
-            String symbol = safe(dto.getInstrument());
-            String tf = dto.getPeriod() != null ? dto.getPeriod().name() : "";
-            String ts = dto.getTimestamp() != null
-                    ? TS_FMT.format(LocalDateTime.ofInstant(dto.getTimestamp(), ZoneOffset.UTC))
-                    : "";
-
-            String open = number(dto.getOpen());
-            String high = number(dto.getHigh());
-            String low = number(dto.getLow());
-            String close = number(dto.getClose());
-            String volume = numberOrZero(dto.getVolume());
-            String confirmed = String.valueOf(Boolean.TRUE.equals(dto.getConfirmed()));
-
-            // CSV со стандартным разделителем ',' и без кавычек (значения не содержат запятых)
-            return String.join(",",
-                    symbol, tf, ts,
-                    open, high, low, close,
-                    volume,
-                    confirmed
-            );
-        } catch (Exception ex) {
-            LOG.warn("Не удалось сформировать CSV-строку для свечи", ex);
-            return null;
-        }
-    }
-
-    private String safe(String s) {
-        return s == null ? "" : s;
-    }
-
-    private String number(BigDecimal n) {
-        return n == null ? "" : n.toPlainString();
-    }
-
-    private String numberOrZero(BigDecimal n) {
-        return n == null ? "0" : n.toPlainString();
+    /**
+     * Записывает свечу строкой бинарного COPY в порядке колонок stage_candles
+     */
+    public static void writeCopyRow(PgBinaryCopyWriter writer, CandlestickDto dto) throws IOException {
+        writer.startRow(COPY_FIELD_COUNT);
+        writer.writeText(dto.getInstrument());
+        writer.writeText(dto.getPeriod() != null ? dto.getPeriod().name() : null);
+        writer.writeTimestamp(dto.getTimestamp());
+        writer.writeNumeric(dto.getOpen());
+        writer.writeNumeric(dto.getHigh());
+        writer.writeNumeric(dto.getLow());
+        writer.writeNumeric(dto.getClose());
+        writer.writeNumeric(dto.getVolume() != null ? dto.getVolume() : BigDecimal.ZERO);
+        writer.writeBoolean(Boolean.TRUE.equals(dto.getConfirmed()));
     }
 
 
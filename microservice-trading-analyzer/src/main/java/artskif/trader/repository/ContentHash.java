@@ -0,0 +1,51 @@
+package artskif.trader.repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * 64-битный хэш содержимого строки (FNV-1a) для пропуска неизменившихся записей при upsert.
+ *
+ * Числа нормализуются ({@code 1.50} и {@code 1.5} дают один хэш), null отличается от пустой строки,
+ * между значениями пишется разделитель, чтобы ("ab", "c") и ("a", "bc") не совпадали.
+ */
+final class ContentHash {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private long hash = OFFSET_BASIS;
+
+    ContentHash add(String value) {
+        if (value == null) {
+            return addByte(0xFF).addByte(0x1F);
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            addByte(c >>> 8).addByte(c);
+        }
+        return addByte(0x1F);
+    }
+
+    ContentHash add(BigDecimal value) {
+        return add(value != null ? value.stripTrailingZeros().toPlainString() : null);
+    }
+
+    ContentHash add(Instant value) {
+        return add(value != null ? value.toString() : null);
+    }
+
+    ContentHash add(Enum<?> value) {
+        return add(value != null ? value.name() : null);
+    }
+
+    long value() {
+        return hash;
+    }
+
+    private ContentHash addByte(int b) {
+        hash ^= b & 0xFF;
+        hash *= PRIME;
+        return this;
+    }
+}
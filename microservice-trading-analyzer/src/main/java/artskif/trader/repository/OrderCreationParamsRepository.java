@@ -54,8 +54,19 @@ public class OrderCreationParamsRepository implements PanacheRepositoryBase<Orde
         return find("ORDER BY createdAt DESC").firstResult();
     }
 
+    /**
+     * Возвращает все записи для построения индекса в памяти (OrderCreationParamsProvider).
+     *
+     * @return список параметров
+     */
+    @Transactional
+    public List<OrderCreationParams> findAllForIndex() {
+        return listAll();
+    }
+
     /**
      * Возвращает параметры создания ордера по значению trendStrength и trendStability.
+     * На торговом пути используется индекс в памяти OrderCreationParamsProvider.
      * Запись считается подходящей, если trendStability входит в диапазон
      * [trendStabilityFrom, trendStabilityTo] включительно.
      *
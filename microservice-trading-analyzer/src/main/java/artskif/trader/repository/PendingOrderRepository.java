@@ -1,23 +1,56 @@
 package artskif.trader.repository;
 
+import artskif.trader.entity.OrderState;
 import artskif.trader.entity.PendingOrder;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Репозиторий для работы с активными (ожидающими) ордерами.
- * Уникальность записи определяется комбинацией (ts, tf) — один снимок на временную метку.
+ * Снимок ордеров привязан к временной метке (ts, tf); уникальность строки снимка — ключ (tf, ts, ordId).
  */
 @ApplicationScoped
 public class PendingOrderRepository implements PanacheRepositoryBase<PendingOrder, Long> {
 
     private static final Logger LOG = Logger.getLogger(PendingOrderRepository.class);
 
+    // Upsert по натуральному ключу снимка; неизменившаяся строка (тот же content_hash) не обновляется
+    private static final String UPSERT_SQL = """
+            INSERT INTO pending_orders(ord_id, cl_ord_id, inst_id, inst_type, px, sz, pos_side, td_mode, lever, state,
+                                       ord_type, sl_trigger_px, tf, ts, c_time, u_time, content_hash,
+                                       created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
+            ON CONFLICT (tf, ts, ord_id) DO UPDATE SET
+                cl_ord_id = EXCLUDED.cl_ord_id,
+                inst_id = EXCLUDED.inst_id,
+                inst_type = EXCLUDED.inst_type,
+                px = EXCLUDED.px,
+                sz = EXCLUDED.sz,
+                pos_side = EXCLUDED.pos_side,
+                td_mode = EXCLUDED.td_mode,
+                lever = EXCLUDED.lever,
+                state = EXCLUDED.state,
+                ord_type = EXCLUDED.ord_type,
+                sl_trigger_px = EXCLUDED.sl_trigger_px,
+                c_time = EXCLUDED.c_time,
+                u_time = EXCLUDED.u_time,
+                content_hash = EXCLUDED.content_hash,
+                updated_at = NOW()
+            WHERE pending_orders.content_hash IS DISTINCT FROM EXCLUDED.content_hash
+            """;
+
     /**
      * Сохраняет или обновляет ордер в БД
      *
@@ -38,50 +71,98 @@ public class PendingOrderRepository implements PanacheRepositoryBase<PendingOrde
     }
 
     /**
-     * Найти запись ордеров по уникальному ключу (ts, tf).
+     * Найти ордер по натуральному ключу снимка (ts, tf, ordId).
      */
-    public PendingOrder findByTsAndTf(Instant ts, String tf) {
-        return find("ts = ?1 and tf = ?2", ts, tf).firstResult();
+    public PendingOrder findByTsTfAndOrdId(Instant ts, String tf, String ordId) {
+        return find("ts = ?1 and tf = ?2 and ordId = ?3", ts, tf, ordId).firstResult();
     }
 
     /**
-     * Сохранить/обновить снимок ожидающих ордеров по уникальному ключу (ts, tf).
-     * Если запись с такими ts и tf уже существует — обновляет все поля.
-     * Если нет — вставляет новую запись со статусом LIVE.
+     * Сохранить/обновить снимок ожидающих ордеров одним пакетным upsert по натуральному ключу (tf, ts, ord_id).
+     * Строка, содержимое которой не изменилось с прошлого опроса (совпал content_hash), не перезаписывается.
+     * Количество запросов к БД не зависит от количества ордеров.
      */
     @Transactional
     public void saveAllByTsTf(List<PendingOrder> orders) {
-        try {
-            if (orders.isEmpty()) {
-                LOG.debug("Список ордеров пуст, нечего сохранять");
-                return;
+        if (orders.isEmpty()) {
+            LOG.debug("Список ордеров пуст, нечего сохранять");
+            return;
+        }
+
+        // Дубликаты ключа внутри снимка схлопываются: побеждает последний ордер
+        Map<String, PendingOrder> byKey = new LinkedHashMap<>();
+        for (PendingOrder order : orders) {
+            if (order.state == null) {
+                order.state = OrderState.LIVE;
             }
+            order.contentHash = contentHash(order);
+            byKey.put(order.tf + '|' + order.ts + '|' + order.ordId, order);
+        }
 
-            int updated = 0;
-            int inserted = 0;
-            for (PendingOrder order : orders) {
-                PendingOrder existing = findByTsAndTf(order.ts, order.tf);
-                if (existing != null) {
-                    order.id = existing.id;
-                    order.createdAt = existing.createdAt;
-                    order.updatedAt = Instant.now();
-                    getEntityManager().merge(order);
-                    updated++;
-                } else {
-                    order.createdAt = Instant.now();
-                    order.updatedAt = Instant.now();
-                    persist(order);
-                    inserted++;
+        final int[] written = new int[1];
+        try {
+            getEntityManager().unwrap(Session.class).doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_SQL)) {
+                    for (PendingOrder order : byKey.values()) {
+                        int i = 1;
+                        ps.setString(i++, order.ordId);
+                        ps.setString(i++, order.clOrdId);
+                        ps.setString(i++, order.instId);
+                        ps.setString(i++, order.instType);
+                        ps.setBigDecimal(i++, order.px);
+                        ps.setBigDecimal(i++, order.sz);
+                        ps.setString(i++, order.posSide);
+                        ps.setString(i++, order.tdMode);
+                        ps.setBigDecimal(i++, order.lever);
+                        ps.setString(i++, order.state.name());
+                        ps.setString(i++, order.ordType);
+                        ps.setBigDecimal(i++, order.slTriggerPx);
+                        ps.setString(i++, order.tf);
+                        ps.setTimestamp(i++, toTimestamp(order.ts));
+                        ps.setTimestamp(i++, toTimestamp(order.cTime));
+                        ps.setTimestamp(i++, toTimestamp(order.uTime));
+                        ps.setLong(i, order.contentHash);
+                        ps.addBatch();
+                    }
+                    for (int count : ps.executeBatch()) {
+                        if (count > 0) {
+                            written[0] += count;
+                        }
+                    }
                 }
-            }
+            });
 
-            LOG.debugf("✅ Ордеры обработаны: обновлено=%d, вставлено=%d", updated, inserted);
+            LOG.debugf("✅ Ордеры обработаны: записано=%d, без изменений=%d",
+                    written[0], byKey.size() - written[0]);
         } catch (Exception e) {
             LOG.errorf(e, "❌ Ошибка при сохранении списка ордеров");
             throw e;
         }
     }
 
+    private static long contentHash(PendingOrder order) {
+        return new ContentHash()
+                .add(order.ordId)
+                .add(order.clOrdId)
+                .add(order.instId)
+                .add(order.instType)
+                .add(order.px)
+                .add(order.sz)
+                .add(order.posSide)
+                .add(order.tdMode)
+                .add(order.lever)
+                .add(order.state)
+                .add(order.ordType)
+                .add(order.slTriggerPx)
+                .add(order.cTime)
+                .add(order.uTime)
+                .value();
+    }
+
+    private static Timestamp toTimestamp(Instant value) {
+        return value != null ? Timestamp.valueOf(LocalDateTime.ofInstant(value, ZoneOffset.UTC)) : null;
+    }
+
     /**
      * Находит все ордера для указанного инструмента
      */
@@ -5,22 +5,56 @@ import artskif.trader.entity.Position;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 
 import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Репозиторий для работы с открытыми позициями.
- * Уникальность позиции определяется составным ключом (posId, cTime).
+ * Уникальность позиции определяется составным ключом (posId, cTime),
+ * уникальность строки живого снимка — ключом (tf, ts, posId).
  */
 @ApplicationScoped
 public class PositionRepository implements PanacheRepositoryBase<Position, Long> {
 
     private static final Logger LOG = Logger.getLogger(PositionRepository.class);
 
+    // Upsert по натуральному ключу снимка; неизменившаяся строка (тот же content_hash) не обновляется
+    private static final String UPSERT_LIVE_SQL = """
+            INSERT INTO positions(pos_id, cl_ord_id, inst_id, inst_type, px, sz, pos_side, td_mode, lever, state,
+                                  sl_trigger_px, realized_pnl, notional_usd, tf, ts, c_time, u_time, content_hash,
+                                  created_at, updated_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, NOW(), NOW())
+            ON CONFLICT (tf, ts, pos_id) DO UPDATE SET
+                cl_ord_id = EXCLUDED.cl_ord_id,
+                inst_id = EXCLUDED.inst_id,
+                inst_type = EXCLUDED.inst_type,
+                px = EXCLUDED.px,
+                sz = EXCLUDED.sz,
+                pos_side = EXCLUDED.pos_side,
+                td_mode = EXCLUDED.td_mode,
+                lever = EXCLUDED.lever,
+                state = EXCLUDED.state,
+                sl_trigger_px = EXCLUDED.sl_trigger_px,
+                realized_pnl = EXCLUDED.realized_pnl,
+                notional_usd = EXCLUDED.notional_usd,
+                c_time = EXCLUDED.c_time,
+                u_time = EXCLUDED.u_time,
+                content_hash = EXCLUDED.content_hash,
+                updated_at = NOW()
+            WHERE positions.content_hash IS DISTINCT FROM EXCLUDED.content_hash
+            """;
+
     @Transactional
     public Position save(Position position) {
         try {
@@ -42,52 +76,99 @@ public class PositionRepository implements PanacheRepositoryBase<Position, Long>
     }
 
     /**
-     * Найти позицию по уникальному ключу (ts, tf).
+     * Найти позицию по натуральному ключу снимка (ts, tf, posId).
      */
-    public Position findByTsAndTf(Instant ts, String tf) {
-        return find("ts = ?1 and tf = ?2", ts, tf).firstResult();
+    public Position findByTsTfAndPosId(Instant ts, String tf, String posId) {
+        return find("ts = ?1 and tf = ?2 and posId = ?3", ts, tf, posId).firstResult();
     }
 
     /**
-     * Сохранить/обновить живые позиции по уникальному ключу (ts, tf).
-     * Если запись с такими ts и tf уже существует — обновляет все поля.
-     * Если нет — вставляет новую запись со статусом LIVE.
+     * Сохранить/обновить живые позиции одним пакетным upsert по натуральному ключу (tf, ts, pos_id).
+     * Все позиции получают статус LIVE. Строка, содержимое которой не изменилось с прошлого опроса
+     * (совпал content_hash), не перезаписывается, поэтому повторные опросы в пределах свечи не создают
+     * новых версий строк. Количество запросов к БД не зависит от количества позиций.
      */
     @Transactional
     public void saveAllByTsTf(List<Position> positions) {
-        try {
-            if (positions.isEmpty()) {
-                LOG.debug("Список позиций пуст, нечего сохранять");
-                return;
-            }
+        if (positions.isEmpty()) {
+            LOG.debug("Список позиций пуст, нечего сохранять");
+            return;
+        }
 
-            int updated = 0;
-            int inserted = 0;
-            for (Position position : positions) {
-                Position existing = findByTsAndTf(position.ts, position.tf);
-                if (existing != null) {
-                    position.id = existing.id;
-                    position.createdAt = existing.createdAt;
-                    position.updatedAt = Instant.now();
-                    position.state = OrderState.LIVE;
-                    getEntityManager().merge(position);
-                    updated++;
-                } else {
-                    position.createdAt = Instant.now();
-                    position.updatedAt = Instant.now();
-                    position.state = OrderState.LIVE;
-                    persist(position);
-                    inserted++;
+        // Дубликаты ключа внутри снимка схлопываются: побеждает последняя позиция
+        Map<String, Position> byKey = new LinkedHashMap<>();
+        for (Position position : positions) {
+            position.state = OrderState.LIVE;
+            position.contentHash = contentHash(position);
+            byKey.put(position.tf + '|' + position.ts + '|' + position.posId, position);
+        }
+
+        final int[] written = new int[1];
+        try {
+            getEntityManager().unwrap(Session.class).doWork(conn -> {
+                try (PreparedStatement ps = conn.prepareStatement(UPSERT_LIVE_SQL)) {
+                    for (Position position : byKey.values()) {
+                        int i = 1;
+                        ps.setString(i++, position.posId);
+                        ps.setString(i++, position.clOrdId);
+                        ps.setString(i++, position.instId);
+                        ps.setString(i++, position.instType);
+                        ps.setBigDecimal(i++, position.px);
+                        ps.setBigDecimal(i++, position.sz);
+                        ps.setString(i++, position.posSide);
+                        ps.setString(i++, position.tdMode);
+                        ps.setBigDecimal(i++, position.lever);
+                        ps.setString(i++, position.state.name());
+                        ps.setBigDecimal(i++, position.slTriggerPx);
+                        ps.setBigDecimal(i++, position.realizedPnl);
+                        ps.setBigDecimal(i++, position.notionalUsd);
+                        ps.setString(i++, position.tf);
+                        ps.setTimestamp(i++, toTimestamp(position.ts));
+                        ps.setTimestamp(i++, toTimestamp(position.cTime));
+                        ps.setTimestamp(i++, toTimestamp(position.uTime));
+                        ps.setLong(i, position.contentHash);
+                        ps.addBatch();
+                    }
+                    for (int count : ps.executeBatch()) {
+                        if (count > 0) {
+                            written[0] += count;
+                        }
+                    }
                 }
-            }
+            });
 
-            LOG.debugf("✅ Позиции обработаны: обновлено=%d, вставлено=%d", updated, inserted);
+            LOG.debugf("✅ Позиции обработаны: записано=%d, без изменений=%d",
+                    written[0], byKey.size() - written[0]);
         } catch (Exception e) {
             LOG.errorf(e, "❌ Ошибка при сохранении списка позиций");
             throw e;
         }
     }
 
+    private static long contentHash(Position position) {
+        return new ContentHash()
+                .add(position.posId)
+                .add(position.clOrdId)
+                .add(position.instId)
+                .add(position.instType)
+                .add(position.px)
+                .add(position.sz)
+                .add(position.posSide)
+                .add(position.tdMode)
+                .add(position.lever)
+                .add(position.state)
+                .add(position.slTriggerPx)
+                .add(position.realizedPnl)
+                .add(position.notionalUsd)
+                .add(position.cTime)
+                .add(position.uTime)
+                .value();
+    }
+
+    private static Timestamp toTimestamp(Instant value) {
+        return value != null ? Timestamp.valueOf(LocalDateTime.ofInstant(value, ZoneOffset.UTC)) : null;
+    }
+
     public List<Position> findByInstrument(String instId) {
         return list("instId", instId);
     }
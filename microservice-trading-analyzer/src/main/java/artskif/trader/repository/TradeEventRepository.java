@@ -6,9 +6,15 @@ import artskif.trader.strategy.event.common.TradeEventType;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
 
 /**
@@ -19,6 +25,16 @@ public class TradeEventRepository implements PanacheRepositoryBase<TradeEventEnt
 
     private static final Logger LOG = Logger.getLogger(TradeEventRepository.class);
 
+    // Повторная доставка события из журнала не создаёт дубликат: ключ (timeframe, tag, timestamp) уже занят
+    private static final String INSERT_IGNORE_SQL = """
+            INSERT INTO trade_events(timeframe, tag, timestamp, uuid, event_type, direction, instrument, event_price,
+                                     stop_loss_percentage, take_profit_percentage, trend_strength,
+                                     long_deposit_risk_percent, long_only_close, short_deposit_risk_percent,
+                                     short_only_close, max_position_size_percent, is_test)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (timeframe, tag, timestamp) DO NOTHING
+            """;
+
     /**
      * Сохраняет торговое событие в БД
      *
@@ -39,6 +55,53 @@ public class TradeEventRepository implements PanacheRepositoryBase<TradeEventEnt
         }
     }
 
+    /**
+     * Пакетная вставка событий одним JDBC-батчем; события с уже существующим ключом (timeframe, tag, timestamp)
+     * пропускаются, поэтому повторная вставка того же пакета безопасна.
+     *
+     * @param entities события для вставки
+     * @return количество реально вставленных строк
+     */
+    @Transactional
+    public int insertAllIgnoringDuplicates(List<TradeEventEntity> entities) {
+        if (entities.isEmpty()) {
+            return 0;
+        }
+        final int[] inserted = new int[1];
+        getEntityManager().unwrap(Session.class).doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_IGNORE_SQL)) {
+                for (TradeEventEntity entity : entities) {
+                    int i = 1;
+                    ps.setString(i++, entity.id.timeframe);
+                    ps.setString(i++, entity.id.tag);
+                    ps.setTimestamp(i++, Timestamp.valueOf(LocalDateTime.ofInstant(entity.id.timestamp, ZoneOffset.UTC)));
+                    ps.setObject(i++, entity.uuid);
+                    ps.setString(i++, entity.eventType.name());
+                    ps.setString(i++, entity.direction.name());
+                    ps.setString(i++, entity.instrument);
+                    ps.setBigDecimal(i++, entity.eventPrice);
+                    ps.setBigDecimal(i++, entity.stopLossPercentage);
+                    ps.setBigDecimal(i++, entity.takeProfitPercentage);
+                    ps.setObject(i++, entity.trendStrength, Types.INTEGER);
+                    ps.setBigDecimal(i++, entity.longDepositRiskPercent);
+                    ps.setObject(i++, entity.longOnlyClose, Types.BOOLEAN);
+                    ps.setBigDecimal(i++, entity.shortDepositRiskPercent);
+                    ps.setObject(i++, entity.shortOnlyClose, Types.BOOLEAN);
+                    ps.setBigDecimal(i++, entity.maxPositionSizePercent);
+                    ps.setBoolean(i, Boolean.TRUE.equals(entity.isTest));
+                    ps.addBatch();
+                }
+                for (int count : ps.executeBatch()) {
+                    if (count > 0) {
+                        inserted[0] += count;
+                    }
+                }
+            }
+        });
+        LOG.debugf("✅ TradeEvent: вставлено=%d, уже существовало=%d", inserted[0], entities.size() - inserted[0]);
+        return inserted[0];
+    }
+
     /**
      * Находит события по инструменту за указанный период
      *
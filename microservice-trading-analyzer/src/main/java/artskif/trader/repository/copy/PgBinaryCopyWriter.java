@@ -0,0 +1,312 @@
+package artskif.trader.repository.copy;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Потоковый кодировщик для PostgreSQL {@code COPY ... FROM STDIN WITH (FORMAT binary)}.
+ *
+ * Значения кодируются сразу в байтовый буфер в сетевом формате PostgreSQL (numeric — разрядами по основанию 10000,
+ * timestamp — микросекундами от 2000-01-01), без промежуточных строк, и сбрасываются в выходной поток
+ * (обычно {@link org.postgresql.copy.PGCopyOutputStream}) по мере заполнения буфера.
+ *
+ * Экземпляр не потокобезопасен и рассчитан на одну операцию COPY: заголовок пишется в конструкторе,
+ * завершающий маркер — в {@link #finish()}.
+ */
+public final class PgBinaryCopyWriter implements Flushable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    // 2000-01-01T00:00:00Z — начало отсчёта timestamp в PostgreSQL
+    private static final long POSTGRES_EPOCH_SECONDS = 946_684_800L;
+
+    private static final int NUMERIC_POS = 0x0000;
+    private static final int NUMERIC_NEG = 0x4000;
+    private static final int NBASE = 10000;
+    private static final BigInteger BIG_NBASE = BigInteger.valueOf(NBASE);
+    private static final long[] POW10 = {1, 10, 100, 1000};
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    // Разряды numeric по основанию 10000, младшие первыми (переиспользуется между значениями)
+    private final short[] digits = new short[64];
+
+    private long rows;
+    private boolean finished;
+
+    public PgBinaryCopyWriter(OutputStream out) throws IOException {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    public PgBinaryCopyWriter(OutputStream out, int bufferSize) throws IOException {
+        this.out = out;
+        this.buffer = new byte[Math.max(bufferSize, 1024)];
+        writeHeader();
+    }
+
+    private void writeHeader() throws IOException {
+        ensure(SIGNATURE.length + 8);
+        System.arraycopy(SIGNATURE, 0, buffer, position, SIGNATURE.length);
+        position += SIGNATURE.length;
+        putInt(0); // флаги
+        putInt(0); // длина расширения заголовка
+    }
+
+    /**
+     * Начать новую строку
+     *
+     * @param fieldCount количество полей в строке (должно совпадать со списком колонок COPY)
+     */
+    public void startRow(int fieldCount) throws IOException {
+        ensure(2);
+        putShort(fieldCount);
+        rows++;
+    }
+
+    public void writeNull() throws IOException {
+        ensure(4);
+        putInt(-1);
+    }
+
+    public void writeText(String value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+
+        int length = value.length();
+        if (length + 4 <= buffer.length && isAscii(value)) {
+            // ASCII кодируется напрямую в буфер, без промежуточного массива байт
+            ensure(length + 4);
+            putInt(length);
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+        writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void writeTimestamp(Instant value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        long micros = (value.getEpochSecond() - POSTGRES_EPOCH_SECONDS) * 1_000_000L + value.getNano() / 1_000;
+        ensure(12);
+        putInt(8);
+        putLong(micros);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        ensure(5);
+        putInt(1);
+        buffer[position++] = (byte) (value ? 1 : 0);
+    }
+
+    public void writeInt2(short value) throws IOException {
+        ensure(6);
+        putInt(2);
+        putShort(value);
+    }
+
+    public void writeInt4(int value) throws IOException {
+        ensure(8);
+        putInt(4);
+        putInt(value);
+    }
+
+    public void writeInt8(long value) throws IOException {
+        ensure(12);
+        putInt(8);
+        putLong(value);
+    }
+
+    /**
+     * Записать numeric в сетевом формате: ndigits, weight, sign, dscale и разряды по основанию 10000.
+     * Для значений, умещающихся в long, разряды считаются целочисленной арифметикой.
+     */
+    public void writeNumeric(BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+
+        if (value.scale() < 0) {
+            value = value.setScale(0);
+        }
+        int scale = value.scale();
+        int signum = value.signum();
+
+        // Дробная часть дополняется нулями до целого числа групп по 4 десятичных разряда
+        int pad = (4 - scale % 4) % 4;
+        int fractionGroups = (scale + pad) / 4;
+
+        BigInteger unscaled = value.unscaledValue();
+        int count = 0;
+        if (unscaled.bitLength() < 63 && Math.abs(unscaled.longValue()) <= Long.MAX_VALUE / POW10[pad]) {
+            long remaining = Math.abs(unscaled.longValue()) * POW10[pad];
+            while (remaining != 0) {
+                digits[count++] = (short) (remaining % NBASE);
+                remaining /= NBASE;
+            }
+        } else {
+            BigInteger remaining = unscaled.abs().multiply(BigInteger.valueOf(POW10[pad]));
+            while (remaining.signum() != 0) {
+                if (count == digits.length) {
+                    throw new IllegalArgumentException("Слишком длинное значение numeric для COPY: " + value);
+                }
+                BigInteger[] quotientAndRemainder = remaining.divideAndRemainder(BIG_NBASE);
+                digits[count++] = quotientAndRemainder[1].shortValue();
+                remaining = quotientAndRemainder[0];
+            }
+        }
+
+        // Младшие нулевые группы не передаются — значение определяется весом старшей группы
+        int lowest = 0;
+        while (lowest < count && digits[lowest] == 0) {
+            lowest++;
+        }
+        int ndigits = count - lowest;
+        int weight = ndigits == 0 ? 0 : count - fractionGroups - 1;
+
+        ensure(12 + ndigits * 2);
+        putInt(8 + ndigits * 2);
+        putShort(ndigits);
+        putShort(weight);
+        putShort(signum < 0 ? NUMERIC_NEG : NUMERIC_POS);
+        putShort(scale);
+        for (int i = count - 1; i >= lowest; i--) {
+            putShort(digits[i]);
+        }
+    }
+
+    /**
+     * Записать значение в формате указанного типа колонки
+     */
+    public void writeValue(PgCopyType type, Object value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+        switch (type) {
+            case TEXT -> writeText(value.toString());
+            case TIMESTAMP -> writeTimestamp((Instant) value);
+            case NUMERIC -> writeNumeric(toBigDecimal(value));
+            case INT2 -> writeInt2((short) toIntInRange(value, Short.MIN_VALUE, Short.MAX_VALUE));
+            case INT4 -> writeInt4((int) toIntInRange(value, Integer.MIN_VALUE, Integer.MAX_VALUE));
+            case INT8 -> writeInt8(((Number) value).longValue());
+            case BOOL -> writeBoolean((Boolean) value);
+        }
+    }
+
+    /**
+     * Записать завершающий маркер и сбросить буфер в поток
+     *
+     * @return количество записанных строк
+     */
+    public long finish() throws IOException {
+        if (!finished) {
+            ensure(2);
+            putShort(-1);
+            flush();
+            finished = true;
+        }
+        return rows;
+    }
+
+    public long getRowCount() {
+        return rows;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        ensure(4);
+        putInt(bytes.length);
+        if (bytes.length <= buffer.length) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        } else {
+            flushBuffer();
+            out.write(bytes);
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (position + bytes > buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private void putShort(int value) {
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void putInt(int value) {
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+    }
+
+    private void putLong(long value) {
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return значение numeric или null для NaN и бесконечностей (пишутся как SQL NULL)
+     */
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Number number) {
+            double doubleValue = number.doubleValue();
+            return Double.isFinite(doubleValue) ? BigDecimal.valueOf(doubleValue) : null;
+        }
+        throw new IllegalArgumentException("Значение не может быть записано как numeric: " + value);
+    }
+
+    private static long toIntInRange(Object value, long min, long max) {
+        long result = ((Number) value).longValue();
+        if (result < min || result > max) {
+            throw new IllegalArgumentException("Значение вне диапазона целочисленной колонки: " + value);
+        }
+        return result;
+    }
+}
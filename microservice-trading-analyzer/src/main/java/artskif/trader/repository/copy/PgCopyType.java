@@ -0,0 +1,40 @@
+package artskif.trader.repository.copy;
+
+import java.util.Locale;
+
+/**
+ * Типы колонок, поддерживаемые бинарным COPY.
+ * В бинарном формате значение должно совпадать с типом колонки таблицы-приёмника.
+ */
+public enum PgCopyType {
+    TEXT,
+    TIMESTAMP,
+    NUMERIC,
+    INT2,
+    INT4,
+    INT8,
+    BOOL;
+
+    /**
+     * Определить тип по SQL-описанию колонки (например, "numeric(8, 4)", "bigint", "varchar(10)")
+     *
+     * @throws IllegalArgumentException если тип не поддерживается бинарным COPY
+     */
+    public static PgCopyType fromSqlType(String sqlType) {
+        String type = sqlType.trim().toLowerCase(Locale.ROOT);
+        int bracket = type.indexOf('(');
+        if (bracket >= 0) {
+            type = type.substring(0, bracket).trim();
+        }
+        return switch (type) {
+            case "numeric", "decimal" -> NUMERIC;
+            case "smallint", "int2" -> INT2;
+            case "integer", "int", "int4" -> INT4;
+            case "bigint", "int8" -> INT8;
+            case "boolean", "bool" -> BOOL;
+            case "timestamp", "timestamp without time zone" -> TIMESTAMP;
+            case "varchar", "character varying", "text" -> TEXT;
+            default -> throw new IllegalArgumentException("Тип колонки не поддерживается бинарным COPY: " + sqlType);
+        };
+    }
+}
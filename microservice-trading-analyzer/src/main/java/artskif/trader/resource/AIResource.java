@@ -0,0 +1,47 @@
+package artskif.trader.resource;
+
+import artskif.trader.ai.xgboost.XGBoostPredictor;
+import io.quarkus.logging.Log;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Map;
+
+/**
+ * REST API для моделей XGBoost
+ */
+@Path("/api/ai")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class AIResource {
+
+    @Inject
+    XGBoostPredictor xgBoostPredictor;
+
+    /**
+     * Подключённые к инференсу модели и задержки прогноза (p50/p99)
+     */
+    @GET
+    @Path("/models")
+    public Response getModels() {
+        try {
+            return Response.ok()
+                    .entity(Map.of(
+                            "status", "success",
+                            "inferenceEnabled", xgBoostPredictor.isInferenceEnabled(),
+                            "models", xgBoostPredictor.getStats()
+                    ))
+                    .build();
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Ошибка при получении статистики моделей");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package artskif.trader.resource;
+
+import artskif.trader.export.FeatureExportRequest;
+import artskif.trader.export.FeatureExportResult;
+import artskif.trader.export.FeatureExportService;
+import io.quarkus.logging.Log;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST API для выгрузки наборов фич в файлы Arrow IPC
+ */
+@Path("/api/export")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ExportResource {
+
+    @Inject
+    FeatureExportService featureExportService;
+
+    /**
+     * Выгрузить строки фич контракта из БД в файл
+     *
+     * @param contract     имя контракта (если не задан contractHash)
+     * @param contractHash contract_hash контракта
+     * @param tag          тег строк (опционально)
+     * @param from         начало диапазона ISO-8601, включительно (опционально)
+     * @param to           конец диапазона ISO-8601, не включительно (опционально)
+     * @param columns      колонки через запятую (опционально, по умолчанию — свеча и все колонки контракта)
+     * @param rowGroupSize строк в группе (опционально)
+     */
+    @POST
+    @Path("/features")
+    public Response exportFeatures(@QueryParam("contract") String contract,
+                                   @QueryParam("contractHash") String contractHash,
+                                   @QueryParam("tag") String tag,
+                                   @QueryParam("from") String from,
+                                   @QueryParam("to") String to,
+                                   @QueryParam("columns") String columns,
+                                   @QueryParam("rowGroupSize") Integer rowGroupSize) {
+        try {
+            if (contract == null && contractHash == null) {
+                throw new IllegalArgumentException("Нужно указать contract или contractHash");
+            }
+            List<String> projection = columns == null || columns.isBlank()
+                    ? List.of()
+                    : Arrays.stream(columns.split(",")).map(String::trim).filter(c -> !c.isEmpty()).toList();
+
+            FeatureExportResult result = featureExportService.exportFromDatabase(new FeatureExportRequest(
+                    contract, contractHash, tag,
+                    from != null ? Instant.parse(from) : null,
+                    to != null ? Instant.parse(to) : null,
+                    projection, rowGroupSize));
+
+            return Response.ok()
+                    .entity(Map.of(
+                            "status", "success",
+                            "result", result
+                    ))
+                    .build();
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ))
+                    .build();
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Ошибка при выгрузке фич контракта %s", contract != null ? contract : contractHash);
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ))
+                    .build();
+        }
+    }
+}
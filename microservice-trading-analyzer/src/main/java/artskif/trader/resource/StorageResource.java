@@ -0,0 +1,94 @@
+package artskif.trader.resource;
+
+import artskif.trader.storage.HypertablePolicy;
+import artskif.trader.storage.HypertableStats;
+import artskif.trader.storage.StorageConfig;
+import artskif.trader.storage.StoragePolicyScheduler;
+import artskif.trader.storage.StoragePolicyService;
+import io.quarkus.logging.Log;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.*;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST API для политик хранения гипертаблиц TimescaleDB
+ */
+@Path("/api/storage")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class StorageResource {
+
+    @Inject
+    StorageConfig storageConfig;
+
+    @Inject
+    StoragePolicyService storagePolicyService;
+
+    @Inject
+    StoragePolicyScheduler storagePolicyScheduler;
+
+    /**
+     * Статистика чанков и степень сжатия по всем гипертаблицам
+     */
+    @GET
+    @Path("/stats")
+    public Response getStats() {
+        try {
+            List<HypertableStats> stats = new ArrayList<>();
+            for (HypertablePolicy policy : storageConfig.getPolicies()) {
+                stats.add(storagePolicyService.getStats(policy.table()));
+            }
+            for (String table : storagePolicyService.findContractFeatureTables()) {
+                stats.add(storagePolicyService.getStats(table));
+            }
+
+            return Response.ok()
+                    .entity(Map.of(
+                            "status", "success",
+                            "policies", storageConfig.getPolicies(),
+                            "tagRetentions", storageConfig.getTagRetentions(),
+                            "stats", stats
+                    ))
+                    .build();
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Ошибка при получении статистики хранения");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ))
+                    .build();
+        }
+    }
+
+    /**
+     * Повторно применить политики хранения из конфигурации
+     */
+    @POST
+    @Path("/apply")
+    public Response applyPolicies() {
+        try {
+            boolean applied = storagePolicyScheduler.applyPolicies();
+
+            return Response.ok()
+                    .entity(Map.of(
+                            "status", applied ? "success" : "partial",
+                            "message", applied ? "Политики хранения применены" : "Политики применены не ко всем таблицам, подробности в логе"
+                    ))
+                    .build();
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Ошибка при применении политик хранения");
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+                    .entity(Map.of(
+                            "status", "error",
+                            "message", e.getMessage()
+                    ))
+                    .build();
+        }
+    }
+}
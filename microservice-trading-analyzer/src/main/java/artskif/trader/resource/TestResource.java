@@ -818,7 +818,3 @@ public class TestResource {
         }
     }
 }
-
-
-
-
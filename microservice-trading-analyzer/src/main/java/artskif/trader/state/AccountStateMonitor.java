@@ -148,8 +148,8 @@ public class AccountStateMonitor {
     }
 
     /**
-     * Сохраняет снимок активных ордеров в БД по уникальному ключу (ts, tf).
-     * Каждый вызов создаёт новую запись для текущей временной метки.
+     * Сохраняет снимок активных ордеров в БД одним upsert по ключу (tf, ts, ordId).
+     * Неизменившиеся с прошлого опроса ордера не перезаписываются.
      */
     private void savePendingOrders(List<PendingOrder> orders) {
         try {
@@ -163,8 +163,8 @@ public class AccountStateMonitor {
 
     /**
      * Сохраняет список открытых позиций в БД.
-     * Каждая позиция upsert-ится по уникальному ключу (ts, tf):
-     * если запись уже существует — обновляется, иначе вставляется новая.
+     * Позиции upsert-ятся одним пакетом по ключу (tf, ts, posId):
+     * существующая запись обновляется только если изменилось её содержимое.
      */
     private void saveLivePositions(List<Position> positions) {
         try {
@@ -0,0 +1,23 @@
+package artskif.trader.storage;
+
+/**
+ * Политика хранения одной гипертаблицы
+ *
+ * @param table             имя гипертаблицы
+ * @param chunkIntervalDays размер новых чанков, в днях
+ * @param segmentBy         колонки compress_segmentby (null — компрессия не настраивается)
+ * @param orderBy           порядок compress_orderby
+ * @param compressAfterDays возраст чанка, после которого он сжимается (0 — без компрессии)
+ * @param retentionDays     возраст чанка, после которого он удаляется (0 — без retention)
+ */
+public record HypertablePolicy(String table,
+                               int chunkIntervalDays,
+                               String segmentBy,
+                               String orderBy,
+                               int compressAfterDays,
+                               int retentionDays) {
+
+    public boolean isCompressionEnabled() {
+        return segmentBy != null && compressAfterDays > 0;
+    }
+}
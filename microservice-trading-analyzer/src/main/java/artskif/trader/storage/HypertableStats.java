@@ -0,0 +1,23 @@
+package artskif.trader.storage;
+
+/**
+ * Статистика хранения гипертаблицы
+ *
+ * @param table                  имя гипертаблицы
+ * @param chunkInterval          текущий размер чанка
+ * @param chunks                 всего чанков
+ * @param compressedChunks       сжатых чанков
+ * @param totalBytes             полный размер таблицы с индексами и TOAST
+ * @param beforeCompressionBytes размер сжатых чанков до компрессии
+ * @param afterCompressionBytes  размер сжатых чанков после компрессии
+ * @param compressionRatio       степень сжатия (0 — сжатых чанков нет)
+ */
+public record HypertableStats(String table,
+                              String chunkInterval,
+                              long chunks,
+                              long compressedChunks,
+                              long totalBytes,
+                              long beforeCompressionBytes,
+                              long afterCompressionBytes,
+                              double compressionRatio) {
+}
@@ -0,0 +1,116 @@
+package artskif.trader.storage;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.List;
+
+/**
+ * Конфигурация политик хранения гипертаблиц TimescaleDB: размер чанков, компрессия и retention.
+ * Значение 0 у компрессии или retention означает, что политика не используется (и снимается, если была).
+ */
+@ApplicationScoped
+public class StorageConfig {
+
+    /**
+     * Применять политики хранения при старте и запускать периодическую очистку по классам тегов.
+     * По умолчанию: true
+     */
+    @Inject
+    @ConfigProperty(name = "storage.policy.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @Inject
+    @ConfigProperty(name = "storage.candles.chunk-interval-days", defaultValue = "7")
+    int candlesChunkIntervalDays;
+
+    @Inject
+    @ConfigProperty(name = "storage.candles.compress-after-days", defaultValue = "7")
+    int candlesCompressAfterDays;
+
+    @Inject
+    @ConfigProperty(name = "storage.candles.retention-days", defaultValue = "1825")
+    int candlesRetentionDays;
+
+    @Inject
+    @ConfigProperty(name = "storage.wide-candles.chunk-interval-days", defaultValue = "7")
+    int wideCandlesChunkIntervalDays;
+
+    @Inject
+    @ConfigProperty(name = "storage.wide-candles.compress-after-days", defaultValue = "14")
+    int wideCandlesCompressAfterDays;
+
+    /**
+     * Глубина хранения строк бэктестов (теги *-backtest) по времени бара, в днях.
+     */
+    @Inject
+    @ConfigProperty(name = "storage.wide-candles.backtest-retention-days", defaultValue = "730")
+    int backtestRetentionDays;
+
+    /**
+     * Глубина хранения лайв-строк (теги *-lifetime) по времени бара, в днях.
+     */
+    @Inject
+    @ConfigProperty(name = "storage.wide-candles.lifetime-retention-days", defaultValue = "180")
+    int lifetimeRetentionDays;
+
+    @Inject
+    @ConfigProperty(name = "storage.trade-events.chunk-interval-days", defaultValue = "30")
+    int tradeEventsChunkIntervalDays;
+
+    /**
+     * Максимум строк, удаляемых одной транзакцией при построчной очистке по классам тегов.
+     */
+    @Inject
+    @ConfigProperty(name = "storage.tag-retention.batch-size", defaultValue = "10000")
+    int tagRetentionBatchSize;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getTagRetentionBatchSize() {
+        return tagRetentionBatchSize;
+    }
+
+    /**
+     * Политики по гипертаблицам. Для wide_candles чанки целиком удаляются по большему из сроков классов тегов,
+     * более короткий срок добирается построчной очисткой (см. {@link #getTagRetentions()}).
+     */
+    public List<HypertablePolicy> getPolicies() {
+        return List.of(
+                new HypertablePolicy("candles", candlesChunkIntervalDays,
+                        "symbol, tf", "ts DESC", candlesCompressAfterDays, candlesRetentionDays),
+                new HypertablePolicy("wide_candles", wideCandlesChunkIntervalDays,
+                        "tf, tag", "ts DESC", wideCandlesCompressAfterDays, getWideCandlesRetentionDays()),
+                new HypertablePolicy("trade_events", tradeEventsChunkIntervalDays,
+                        null, null, 0, 0)
+        );
+    }
+
+    /**
+     * Политика для гипертаблицы фич отдельного контракта: те же сроки, что и у wide_candles
+     */
+    public HypertablePolicy getContractFeaturePolicy(String table) {
+        return new HypertablePolicy(table, wideCandlesChunkIntervalDays,
+                "tf, tag", "ts DESC", wideCandlesCompressAfterDays, getWideCandlesRetentionDays());
+    }
+
+    public List<TagRetention> getTagRetentions() {
+        return List.of(
+                new TagRetention("backtest", "%-backtest", backtestRetentionDays),
+                new TagRetention("lifetime", "%-lifetime", lifetimeRetentionDays)
+        );
+    }
+
+    /**
+     * Срок удаления чанков wide_candles (и таблиц фич контрактов) целиком: 0, если хотя бы один класс тегов хранится бессрочно
+     */
+    public int getWideCandlesRetentionDays() {
+        if (backtestRetentionDays <= 0 || lifetimeRetentionDays <= 0) {
+            return 0;
+        }
+        return Math.max(backtestRetentionDays, lifetimeRetentionDays);
+    }
+}
@@ -0,0 +1,146 @@
+package artskif.trader.storage;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Применяет политики хранения при старте сервиса (и к таблицам фич контрактов, появившимся позже)
+ * и периодически чистит строки фич по классам тегов ограниченными порциями.
+ */
+@ApplicationScoped
+public class StoragePolicyScheduler {
+
+    @Inject
+    StorageConfig config;
+
+    @Inject
+    StoragePolicyService storagePolicyService;
+
+    // Таблицы, к которым политики уже применены; периодическая задача применяет их только к новым таблицам фич контрактов
+    private final Set<String> appliedTables = ConcurrentHashMap.newKeySet();
+    private volatile boolean timescaleAvailable;
+
+    void onStart(@Observes StartupEvent event) {
+        if (!config.isEnabled()) {
+            Log.info("⏸️ Политики хранения отключены (storage.policy.enabled=false)");
+            return;
+        }
+        applyPolicies();
+    }
+
+    /**
+     * Применить политики ко всем гипертаблицам, включая таблицы фич контрактов. Ошибка одной таблицы не мешает остальным.
+     *
+     * @return true, если timescaledb доступен и политики применены ко всем таблицам
+     */
+    public boolean applyPolicies() {
+        List<HypertablePolicy> policies = new ArrayList<>(config.getPolicies());
+        try {
+            if (!storagePolicyService.isTimescaleAvailable()) {
+                Log.warn("⚠️ Расширение timescaledb не установлено — политики хранения не применяются");
+                return false;
+            }
+            for (String table : storagePolicyService.findContractFeatureTables()) {
+                policies.add(config.getContractFeaturePolicy(table));
+            }
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Не удалось получить список гипертаблиц");
+            return false;
+        }
+        return apply(policies);
+    }
+
+    /**
+     * Периодически: применить политики к таблицам фич контрактов, созданным после старта, и дочистить строки по классам тегов
+     */
+    @Scheduled(delay = 5, delayUnit = TimeUnit.MINUTES, every = "{storage.tag-retention.every}")
+    void applyTagRetentionPeriodically() {
+        if (!config.isEnabled() || !timescaleAvailable) {
+            return;
+        }
+
+        List<String> tables = new ArrayList<>();
+        tables.add("wide_candles");
+        try {
+            List<String> contractTables = storagePolicyService.findContractFeatureTables();
+            tables.addAll(contractTables);
+            applyToNewTables(contractTables);
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Не удалось получить список таблиц фич контрактов");
+        }
+
+        int tableRetentionDays = config.getWideCandlesRetentionDays();
+        for (TagRetention retention : config.getTagRetentions()) {
+            // Срок, совпадающий с retention таблицы, уже обеспечивается удалением чанков
+            if (retention.retentionDays() <= 0 || (tableRetentionDays > 0 && retention.retentionDays() >= tableRetentionDays)) {
+                continue;
+            }
+            for (String table : tables) {
+                try {
+                    applyTagRetention(table, retention);
+                } catch (Exception e) {
+                    Log.errorf(e, "❌ Ошибка очистки %s для класса тегов %s", table, retention.name());
+                }
+            }
+        }
+    }
+
+    /**
+     * Удалить строки класса тегов старше его срока: по чанкам, порциями не больше storage.tag-retention.batch-size,
+     * каждая порция — отдельной транзакцией. Чанки старше срока таблицы к этому времени уже удалены целиком.
+     */
+    private void applyTagRetention(String table, TagRetention retention) {
+        LocalDateTime cutoff = LocalDateTime.now(ZoneOffset.UTC).minusDays(retention.retentionDays());
+        int batchSize = config.getTagRetentionBatchSize();
+        long deleted = 0;
+        for (LocalDateTime[] range : storagePolicyService.findChunkRangesBefore(table, cutoff)) {
+            int batch;
+            do {
+                batch = storagePolicyService.deleteTagRowsBatch(table, retention, range[0], range[1], batchSize);
+                deleted += batch;
+            } while (batch >= batchSize);
+        }
+        if (deleted > 0) {
+            Log.infof("🧹 %s: удалено %d строк класса %s старше %d дней", table, deleted, retention.name(), retention.retentionDays());
+        }
+    }
+
+    private void applyToNewTables(List<String> contractTables) {
+        List<HypertablePolicy> policies = new ArrayList<>();
+        for (String table : contractTables) {
+            if (!appliedTables.contains(table)) {
+                policies.add(config.getContractFeaturePolicy(table));
+            }
+        }
+        if (!policies.isEmpty()) {
+            apply(policies);
+        }
+    }
+
+    private boolean apply(List<HypertablePolicy> policies) {
+        timescaleAvailable = true;
+        boolean allApplied = true;
+        for (HypertablePolicy policy : policies) {
+            try {
+                storagePolicyService.applyPolicy(policy);
+                appliedTables.add(policy.table());
+            } catch (Exception e) {
+                allApplied = false;
+                Log.errorf(e, "❌ Ошибка при применении политики хранения к %s", policy.table());
+            }
+        }
+        return allApplied;
+    }
+}
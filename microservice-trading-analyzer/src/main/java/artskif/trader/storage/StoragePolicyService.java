@@ -0,0 +1,269 @@
+package artskif.trader.storage;
+
+import artskif.trader.strategy.database.ContractFeatureTable;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Применение политик хранения TimescaleDB к гипертаблицам анализатора.
+ *
+ * Все операции идемпотентны: размер чанка выставляется всегда (влияет только на новые чанки),
+ * настройки компрессии меняются, только если отличаются от текущих и сжатых чанков ещё нет,
+ * фоновые задачи компрессии и retention пересоздаются, только если их интервал расходится с конфигурацией.
+ */
+@ApplicationScoped
+public class StoragePolicyService {
+
+    private static final String COMPRESSION_PROC = "policy_compression";
+    private static final String RETENTION_PROC = "policy_retention";
+
+    @Inject
+    EntityManager entityManager;
+
+    public boolean isTimescaleAvailable() {
+        Number count = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM pg_extension WHERE extname = 'timescaledb'")
+                .getSingleResult();
+        return count.longValue() > 0;
+    }
+
+    /**
+     * Привести гипертаблицу к политике из конфигурации
+     */
+    @Transactional
+    public void applyPolicy(HypertablePolicy policy) {
+        String table = policy.table();
+
+        entityManager.createNativeQuery(
+                        "SELECT set_chunk_time_interval(CAST(:table AS regclass), make_interval(days => :days))")
+                .setParameter("table", table)
+                .setParameter("days", policy.chunkIntervalDays())
+                .getSingleResult();
+
+        if (policy.isCompressionEnabled()) {
+            applyCompressionSettings(policy);
+            reconcileJob(table, COMPRESSION_PROC, "compress_after", policy.compressAfterDays(),
+                    "SELECT add_compression_policy(CAST(:table AS regclass), make_interval(days => :days), if_not_exists => true)",
+                    "SELECT remove_compression_policy(CAST(:table AS regclass), if_exists => true)");
+        } else {
+            reconcileJob(table, COMPRESSION_PROC, "compress_after", 0, null,
+                    "SELECT remove_compression_policy(CAST(:table AS regclass), if_exists => true)");
+        }
+
+        reconcileJob(table, RETENTION_PROC, "drop_after", policy.retentionDays(),
+                "SELECT add_retention_policy(CAST(:table AS regclass), make_interval(days => :days), if_not_exists => true)",
+                "SELECT remove_retention_policy(CAST(:table AS regclass), if_exists => true)");
+
+        Log.debugf("🗄️ Политика хранения %s: чанк %d д., компрессия %s, retention %s",
+                table, policy.chunkIntervalDays(),
+                policy.isCompressionEnabled() ? "после " + policy.compressAfterDays() + " д. (" + policy.segmentBy() + ")" : "выкл",
+                policy.retentionDays() > 0 ? policy.retentionDays() + " д." : "выкл");
+    }
+
+    /**
+     * Гипертаблицы фич контрактов (раскладка CONTRACT_TABLE)
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> findContractFeatureTables() {
+        return entityManager.createNativeQuery(
+                        "SELECT hypertable_name FROM timescaledb_information.hypertables " +
+                                "WHERE starts_with(hypertable_name, :prefix) ORDER BY hypertable_name")
+                .setParameter("prefix", ContractFeatureTable.TABLE_PREFIX)
+                .getResultList();
+    }
+
+    /**
+     * Диапазоны чанков таблицы, в которых могут быть строки старше cutoff, по возрастанию времени.
+     * Конец последнего диапазона обрезается по cutoff.
+     *
+     * @param table  wide_candles или таблица фич контракта
+     * @param cutoff граница хранения по времени бара (UTC)
+     * @return пары [начало, конец) диапазонов
+     */
+    @Transactional
+    public List<LocalDateTime[]> findChunkRangesBefore(String table, LocalDateTime cutoff) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT range_start, range_end FROM timescaledb_information.chunks " +
+                                "WHERE hypertable_name = :table AND range_start < :cutoff ORDER BY range_start")
+                .setParameter("table", table)
+                .setParameter("cutoff", cutoff)
+                .getResultList();
+
+        List<LocalDateTime[]> ranges = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            LocalDateTime end = toLocalDateTime(row[1]);
+            ranges.add(new LocalDateTime[]{toLocalDateTime(row[0]), end.isAfter(cutoff) ? cutoff : end});
+        }
+        return ranges;
+    }
+
+    /**
+     * Удалить одну порцию строк фич класса тегов в диапазоне одного чанка.
+     * Чанки целиком удаляются retention-политикой таблицы, здесь добирается только более короткий срок класса;
+     * порция ограничена, чтобы не распаковывать и не блокировать сжатые чанки целиком одной транзакцией.
+     *
+     * @param table wide_candles или таблица фич контракта
+     * @param from  начало диапазона (включительно)
+     * @param to    конец диапазона (не включительно)
+     * @param limit максимум строк в порции
+     * @return количество удалённых строк
+     */
+    @Transactional
+    public int deleteTagRowsBatch(String table, TagRetention retention, LocalDateTime from, LocalDateTime to, int limit) {
+        return entityManager.createNativeQuery(
+                        "DELETE FROM " + table + " WHERE (tf, tag, ts) IN (" +
+                                "SELECT tf, tag, ts FROM " + table + " WHERE tag LIKE :pattern " +
+                                "AND ts >= :from AND ts < :to LIMIT :limit)")
+                .setParameter("pattern", retention.tagPattern())
+                .setParameter("from", from)
+                .setParameter("to", to)
+                .setParameter("limit", limit)
+                .executeUpdate();
+    }
+
+    /**
+     * Статистика чанков и компрессии гипертаблицы
+     */
+    @Transactional
+    public HypertableStats getStats(String table) {
+        @SuppressWarnings("unchecked")
+        List<String> intervals = entityManager.createNativeQuery(
+                        "SELECT CAST(time_interval AS text) FROM timescaledb_information.dimensions " +
+                                "WHERE hypertable_name = :table AND dimension_number = 1")
+                .setParameter("table", table)
+                .getResultList();
+        String chunkInterval = intervals.isEmpty() ? null : intervals.get(0);
+
+        Object[] chunks = (Object[]) entityManager.createNativeQuery(
+                        "SELECT COUNT(*), COUNT(*) FILTER (WHERE is_compressed) " +
+                                "FROM timescaledb_information.chunks WHERE hypertable_name = :table")
+                .setParameter("table", table)
+                .getSingleResult();
+
+        Number totalBytes = (Number) entityManager.createNativeQuery(
+                        "SELECT hypertable_size(CAST(:table AS regclass))")
+                .setParameter("table", table)
+                .getSingleResult();
+
+        Object[] compression = (Object[]) entityManager.createNativeQuery(
+                        "SELECT before_compression_total_bytes, after_compression_total_bytes " +
+                                "FROM hypertable_compression_stats(CAST(:table AS regclass))")
+                .setParameter("table", table)
+                .getSingleResult();
+
+        long before = toLong(compression[0]);
+        long after = toLong(compression[1]);
+        return new HypertableStats(
+                table,
+                chunkInterval,
+                toLong(chunks[0]),
+                toLong(chunks[1]),
+                toLong(totalBytes),
+                before,
+                after,
+                after > 0 ? Math.round(before * 100.0 / after) / 100.0 : 0
+        );
+    }
+
+    private void applyCompressionSettings(HypertablePolicy policy) {
+        String table = policy.table();
+
+        @SuppressWarnings("unchecked")
+        List<String> segmentColumns = entityManager.createNativeQuery(
+                        "SELECT attname FROM timescaledb_information.compression_settings " +
+                                "WHERE hypertable_name = :table AND segmentby_column_index IS NOT NULL " +
+                                "ORDER BY segmentby_column_index")
+                .setParameter("table", table)
+                .getResultList();
+        String currentSegmentBy = segmentColumns.isEmpty() ? null : String.join(", ", segmentColumns);
+        if (Objects.equals(currentSegmentBy, policy.segmentBy())) {
+            return;
+        }
+
+        if (currentSegmentBy != null) {
+            Number compressedChunks = (Number) entityManager.createNativeQuery(
+                            "SELECT COUNT(*) FROM timescaledb_information.chunks " +
+                                    "WHERE hypertable_name = :table AND is_compressed")
+                    .setParameter("table", table)
+                    .getSingleResult();
+            if (compressedChunks.longValue() > 0) {
+                Log.warnf("⚠️ У %s уже есть сжатые чанки с segmentby '%s' — настройка '%s' не применена, " +
+                                "нужно распаковать чанки вручную",
+                        table, currentSegmentBy, policy.segmentBy());
+                return;
+            }
+        }
+
+        // Имена таблиц и колонок задаются конфигурацией в коде, параметры в ALTER TABLE не поддерживаются
+        entityManager.createNativeQuery(
+                        "ALTER TABLE " + table + " SET (" +
+                                "timescaledb.compress, " +
+                                "timescaledb.compress_orderby = '" + policy.orderBy() + "', " +
+                                "timescaledb.compress_segmentby = '" + policy.segmentBy() + "')")
+                .executeUpdate();
+        Log.infof("✅ Включена компрессия %s: segmentby '%s', orderby '%s'", table, policy.segmentBy(), policy.orderBy());
+    }
+
+    /**
+     * Пересоздать фоновую задачу Timescale, если её интервал не совпадает с нужным
+     *
+     * @param days      нужный интервал в днях (0 — задача не нужна)
+     * @param addSql    запрос создания задачи
+     * @param removeSql запрос удаления задачи
+     */
+    private void reconcileJob(String table, String proc, String configKey, int days, String addSql, String removeSql) {
+        Number existing = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM timescaledb_information.jobs " +
+                                "WHERE hypertable_name = :table AND proc_name = :proc")
+                .setParameter("table", table)
+                .setParameter("proc", proc)
+                .getSingleResult();
+
+        if (days <= 0) {
+            if (existing.longValue() > 0) {
+                entityManager.createNativeQuery(removeSql).setParameter("table", table).getSingleResult();
+                Log.infof("🗑️ Снята задача %s для %s", proc, table);
+            }
+            return;
+        }
+
+        Number matching = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM timescaledb_information.jobs " +
+                                "WHERE hypertable_name = :table AND proc_name = :proc " +
+                                "AND CAST(config ->> :key AS interval) = make_interval(days => :days)")
+                .setParameter("table", table)
+                .setParameter("proc", proc)
+                .setParameter("key", configKey)
+                .setParameter("days", days)
+                .getSingleResult();
+        if (matching.longValue() > 0) {
+            return;
+        }
+
+        if (existing.longValue() > 0) {
+            entityManager.createNativeQuery(removeSql).setParameter("table", table).getSingleResult();
+        }
+        entityManager.createNativeQuery(addSql)
+                .setParameter("table", table)
+                .setParameter("days", days)
+                .getSingleResult();
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        return value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : (LocalDateTime) value;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,11 @@
+package artskif.trader.storage;
+
+/**
+ * Срок хранения строк wide_candles для класса тегов
+ *
+ * @param name          имя класса (backtest, lifetime)
+ * @param tagPattern    шаблон тега для LIKE
+ * @param retentionDays глубина хранения по времени бара, в днях (0 — бессрочно)
+ */
+public record TagRetention(String name, String tagPattern, int retentionDays) {
+}
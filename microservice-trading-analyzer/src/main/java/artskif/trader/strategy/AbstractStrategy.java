@@ -1,5 +1,7 @@
 package artskif.trader.strategy;
 
+import artskif.trader.ai.xgboost.XGBoostPredictor;
+import artskif.trader.ai.xgboost.XGBoostTrainer;
 import artskif.trader.broker.BrokerConfig;
 import artskif.trader.candle.Candle;
 import artskif.trader.candle.CandleTimeframe;
@@ -8,40 +10,50 @@ import artskif.trader.events.candle.CandleEvent;
 import artskif.trader.events.candle.CandleEventBus;
 import artskif.trader.events.candle.CandleEventListener;
 import artskif.trader.candle.CandleEventType;
-import io.quarkus.runtime.ShutdownEvent;
-import io.quarkus.runtime.StartupEvent;
-import jakarta.enterprise.event.Observes;
+import artskif.trader.events.actor.ActorRuntime;
+import artskif.trader.events.actor.Mailbox;
 import artskif.trader.events.trade.TradeEvent;
 import artskif.trader.events.trade.TradeEventBus;
+import artskif.trader.export.FeatureExportService;
+import artskif.trader.strategy.backtest.BacktestBars;
+import artskif.trader.strategy.backtest.BacktestConfig;
+import artskif.trader.strategy.backtest.BacktestResult;
+import artskif.trader.strategy.backtest.BacktestSignals;
+import artskif.trader.strategy.backtest.BacktestSimulator;
+import artskif.trader.entity.ContractMetadata;
+import artskif.trader.entity.MetadataType;
 import artskif.trader.strategy.database.columns.impl.PositionColumn;
 import artskif.trader.strategy.database.schema.AbstractSchema;
 import artskif.trader.strategy.event.common.Direction;
 import artskif.trader.strategy.event.common.TradeEventData;
+import artskif.trader.strategy.feature.FeatureVector;
+import artskif.trader.strategy.feature.FeatureVectorListener;
+import artskif.trader.strategy.feature.FeatureVectorStage;
 import artskif.trader.strategy.snapshot.DatabaseSnapshot;
 import artskif.trader.strategy.snapshot.DatabaseSnapshotBuilder;
+import artskif.trader.strategy.snapshot.LiveSnapshotWriter;
 import artskif.trader.strategy.event.TradeEventProcessor;
 import io.quarkus.logging.Log;
-import org.ta4j.core.*;
-import org.ta4j.core.analysis.cost.ZeroCostModel;
-import org.ta4j.core.backtest.TradeOnCurrentCloseModel;
-import org.ta4j.core.criteria.NumberOfPositionsCriterion;
-import org.ta4j.core.criteria.NumberOfWinningPositionsCriterion;
-import org.ta4j.core.criteria.PositionsRatioCriterion;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBarSeries;
 import org.ta4j.core.num.DecimalNum;
 import org.ta4j.core.num.Num;
 import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
-public abstract class AbstractStrategy implements CandleEventListener {
+public abstract class AbstractStrategy implements CandleEventListener, FeatureVectorListener {
 
     // Общие константы для расчетов
     protected static final DecimalNum ONE = DecimalNum.valueOf(1);
@@ -56,154 +68,279 @@ public abstract class AbstractStrategy implements CandleEventListener {
      */
     protected boolean reprocessCandleSeries = true;
 
-    // Промежуточная шина событий (отдельный поток)
-    private final BlockingQueue<CandleEvent> eventQueue = new ArrayBlockingQueue<>(1000);
-    private final ExecutorService threadProcessor;
-    private volatile boolean processorRunning = true;
+    // Почтовый ящик актора стратегии: векторы фич и события свечей (CANDLE_HISTORY, быстрый путь сигналов)
+    private static final int MAILBOX_CAPACITY = 1000;
+    private volatile Mailbox<Object> mailbox;
+
+    // Последнее обновление формирующейся свечи, ожидающее актора (промежуточные обновления схлопываются)
+    private final AtomicReference<CandleEvent> pendingFormingEvent = new AtomicReference<>();
+    // Кандидат в сигнал, подготовленный по формирующейся свече (доступ только из потока актора)
+    private StagedSignal stagedSignal;
+    // Бар, по которому торговое событие уже опубликовано (доступ только из потока актора)
+    private Instant publishedBucket;
+    // Первая оценка уже залогирована (доступ только из потока актора)
+    private boolean firstEvaluationLogged;
 
     // Общие зависимости для всех стратегий
     protected final Candle candle;
     protected final TradeEventProcessor shortTradeEventProcessor;
     protected final TradeEventProcessor longTradeEventProcessor;
     protected final StrategyDataService dataService;
+    protected final LiveSnapshotWriter liveSnapshotWriter;
     protected final DatabaseSnapshotBuilder snapshotBuilder;
     protected final TradeEventBus tradeEventBus;
     protected final CandleEventBus candleEventBus;
+    protected final FeatureVectorStage featureVectorStage;
     protected final BrokerConfig brokerConfig;
+    protected final BacktestConfig backtestConfig;
+    protected final FeatureExportService featureExportService;
+    protected final XGBoostTrainer xgBoostTrainer;
+    protected final XGBoostPredictor xgBoostPredictor;
 
     protected AbstractStrategy(Candle candle, TradeEventProcessor shortTradeEventProcessor, TradeEventProcessor longTradeEventProcessor,
                                DatabaseSnapshotBuilder snapshotBuilder, StrategyDataService dataService,
-                               TradeEventBus tradeEventBus, CandleEventBus candleEventBus, BrokerConfig brokerConfig) {
+                               LiveSnapshotWriter liveSnapshotWriter, TradeEventBus tradeEventBus, CandleEventBus candleEventBus,
+                               FeatureVectorStage featureVectorStage, BrokerConfig brokerConfig, BacktestConfig backtestConfig,
+                               FeatureExportService featureExportService, XGBoostTrainer xgBoostTrainer,
+                               XGBoostPredictor xgBoostPredictor) {
         this.candle = candle;
         this.shortTradeEventProcessor = shortTradeEventProcessor;
         this.longTradeEventProcessor = longTradeEventProcessor;
         this.snapshotBuilder = snapshotBuilder;
         this.dataService = dataService;
+        this.liveSnapshotWriter = liveSnapshotWriter;
         this.tradeEventBus = tradeEventBus;
         this.candleEventBus = candleEventBus;
+        this.featureVectorStage = featureVectorStage;
         this.brokerConfig = brokerConfig;
-        this.threadProcessor = (candle != null) ? Executors.newSingleThreadExecutor(r -> {
-            Thread t = new Thread(r, "Strategy-EventProcessor-" + getClass().getSimpleName());
-            t.setDaemon(false);
-            return t;
-        }) : null;
+        this.backtestConfig = backtestConfig;
+        this.featureExportService = featureExportService;
+        this.xgBoostTrainer = xgBoostTrainer;
+        this.xgBoostPredictor = xgBoostPredictor;
     }
 
-    void onStart(@Observes StartupEvent event) {
-        if (candleEventBus == null || threadProcessor == null) {
-            Log.warnf("⚠️ Стратегия %s не может быть запущена: candleEventBus или threadProcessor не инициализированы", getName());
-            return;
+    /**
+     * Запуск стратегии как актора в среде исполнения. Вызывается из StrategyService.
+     *
+     * @return true если стратегия запущена
+     */
+    public boolean start(ActorRuntime actorRuntime) {
+        if (candleEventBus == null) {
+            Log.warnf("⚠️ Стратегия %s не может быть запущена: candleEventBus не инициализирован", getName());
+            return false;
         }
 
         if (brokerConfig != null && !brokerConfig.isAllStrategiesEnabled()) {
             Log.infof("⏸️ Все стратегии глобально отключены (strategy.all-enabled=false), стратегия %s не запущена", getName());
-            return;
+            return false;
         }
 
         if (!isEnabled()) {
             Log.infof("⏸️ Стратегия %s отключена (isEnabled=false), пропускаем запуск", getName());
-            return;
+            return false;
+        }
+
+        if (mailbox != null) {
+            Log.warnf("⚠️ Стратегия %s уже запущена", getName());
+            return true;
         }
 
         Log.infof("🔧 Стратегия %s запускается...", getName());
 
         dataService.checkColumnsExist(getLifetimeSchema());
         lifetimeBarSeries = candle.getInstance(getTimeframe()).getLiveBarSeries();
-        // Запускаем поток обработки событий
-        threadProcessor.submit(this::processEvents);
+        // Регистрируем актор стратегии и подписываемся на события:
+        // подтверждённые бары приходят уже посчитанными векторами из общей стадии фич,
+        // с шины свечей нужны события загрузки истории и обновления для предварительной оценки сигналов
+        mailbox = actorRuntime.register("strategy-" + getName(), MAILBOX_CAPACITY, this::processEvent);
+        featureVectorStage.subscribe(this, getTimeframe(), getRequiredFeatureNames());
         candleEventBus.subscribe(this);
-        processorRunning = true;
 
         Log.infof("✅ Стратегия запущена: %s", getName());
+        return true;
     }
 
-    void onShutdown(@Observes ShutdownEvent event) {
-        if (candleEventBus == null || threadProcessor == null) {
-            return;
-        }
-
-        if (brokerConfig != null && !brokerConfig.isAllStrategiesEnabled()) {
-            return;
-        }
-
-        if (!isEnabled()) {
+    /**
+     * Остановка стратегии: отписка от событий и дообработка уже принятых сообщений
+     */
+    public void stop(ActorRuntime actorRuntime) {
+        Mailbox<Object> current = mailbox;
+        if (current == null) {
             return;
         }
 
         Log.infof("🛑 Стратегия %s останавливается...", getName());
 
         // Отписываемся от событий
+        featureVectorStage.unsubscribe(this);
         candleEventBus.unsubscribe(this);
-
+        actorRuntime.unregister(current, Duration.ofSeconds(30));
+        mailbox = null;
         lifetimeBarSeries = null;
-        // Останавливаем поток обработки
-        processorRunning = false;
-        threadProcessor.shutdown();
-        try {
-            if (!threadProcessor.awaitTermination(30, TimeUnit.SECONDS)) {
-                threadProcessor.shutdownNow();
-            }
-        } catch (InterruptedException e) {
-            threadProcessor.shutdownNow();
-            Thread.currentThread().interrupt();
-        }
 
         Log.infof("🛑 Стратегия %s остановлена", getName());
     }
 
+    public boolean isRunning() {
+        return mailbox != null;
+    }
+
     /**
-     * Основной цикл обработки событий в отдельном потоке
+     * Колонки, которые стратегия получает из общей стадии фич:
+     * FEATURE/METRIC колонки лайв-схемы и колонки, которые читают торговые процессоры
      */
-    private void processEvents() {
-        Log.debugf("⚡ Поток обработки событий стратегии %s запущен", getName());
-
-        while (processorRunning) {
-            try {
-                if (reprocessCandleSeries && lifetimeBarSeries.getBarCount() == lifetimeBarSeries.getMaximumBarCount()) {
-                    Log.infof("🔧 Начало создания лайф графика для стратегии %s", getName());
-                    processCandleSeries(lifetimeBarSeries, getName() + "-lifetime", getLifetimeSchema(), true);
-                    reprocessCandleSeries = false; // Сбрасываем флаг после первой обработки серии
-                    Log.infof("✅ Стратегия %s завершила создание лайф графика", getName());
-                }
-
-                CandleEvent event = eventQueue.poll(1, TimeUnit.SECONDS);
-
-                if (event == null) {
-                    continue;
+    protected Set<String> getRequiredFeatureNames() {
+        Set<String> names = new LinkedHashSet<>();
+        for (ContractMetadata metadata : getLifetimeSchema().getContract().metadata) {
+            if (metadata.metadataType == MetadataType.FEATURE || metadata.metadataType == MetadataType.METRIC) {
+                names.add(metadata.name);
+            }
+        }
+        for (TradeEventProcessor processor : List.of(shortTradeEventProcessor, longTradeEventProcessor)) {
+            for (ColumnTypeMetadata column : processor.getRequiredFeatures()) {
+                names.add(column.getName());
+            }
+        }
+        // Модели обучаются по фичам бэктест-контракта — те же колонки нужны в live-векторе для прогноза
+        if (isInferenceEnabled()) {
+            for (ContractMetadata metadata : getBacktestSchema().getContract().metadata) {
+                if (metadata.metadataType == MetadataType.FEATURE) {
+                    names.add(metadata.name);
                 }
+            }
+        }
+        return names;
+    }
 
-                handleCandleEvent(event);
+    /**
+     * Обработка одного сообщения актором стратегии (последовательно, в порядке поступления)
+     */
+    private void processEvent(Object message) {
+        if (lifetimeBarSeries == null) {
+            return;
+        }
 
-            } catch (InterruptedException e) {
-                Log.infof("🛑 Поток обработки событий стратегии %s прерван", getName());
-                Thread.currentThread().interrupt();
-                break;
-            } catch (Exception e) {
-                Log.errorf(e, "❌ Ошибка при обработке события в стратегии %s", getName());
-            }
+        reprocessSeriesIfRequired();
+        if (message instanceof FeatureVector vector) {
+            onBar(vector);
+        } else if (message instanceof CandleEvent event) {
+            handleCandleEvent(event);
         }
+        // После CANDLE_HISTORY серия может быть уже заполнена — переобрабатываем сразу, не дожидаясь следующей свечи
+        reprocessSeriesIfRequired();
+    }
 
-        Log.infof("🛑 Поток обработки событий стратегии %s остановлен", getName());
+    private void reprocessSeriesIfRequired() {
+        if (reprocessCandleSeries && lifetimeBarSeries.getBarCount() == lifetimeBarSeries.getMaximumBarCount()) {
+            Log.infof("🔧 Начало создания лайф графика для стратегии %s", getName());
+            processCandleSeries(lifetimeBarSeries, getName() + "-lifetime", getLifetimeSchema(), true);
+            reprocessCandleSeries = false; // Сбрасываем флаг после первой обработки серии
+            Log.infof("✅ Стратегия %s завершила создание лайф графика", getName());
+        }
     }
 
     /**
-     * Внутренний обработчик события свечи — выполняется в отдельном потоке
+     * Внутренний обработчик события свечи — выполняется в потоке актора
      */
     private void handleCandleEvent(CandleEvent event) {
         if (event.period() != getTimeframe()) {
             return;
         }
 
-        if (event.type() == CandleEventType.CANDLE_TICK) {
-            CandlestickDto candleDto = event.candle();
-            if (candleDto == null) {
-                return;
+        if (event.type() == CandleEventType.CANDLE_HISTORY) {
+            reprocessCandleSeries = true; // Устанавливаем флаг для переобработки серии
+            stagedSignal = null;
+        } else if (event.type() == CandleEventType.CANDLE_FORMING) {
+            CandleEvent latest = pendingFormingEvent.getAndSet(null);
+            if (latest != null && latest.candle() != null) {
+                preStageSignal(latest.bucket(), latest.candle());
             }
+        } else if (event.type() == CandleEventType.CANDLE_TICK) {
+            confirmStagedSignal(event);
+        }
+    }
+
+    /**
+     * Предварительная оценка процессоров по формирующейся свече.
+     * Серия не изменяется; если сигнал ожидается, процессор запоминается как кандидат для быстрого пути подтверждения.
+     */
+    private void preStageSignal(Instant bucket, CandlestickDto forming) {
+        if (reprocessCandleSeries || lifetimeBarSeries.isEmpty()
+                || !lifetimeBarSeries.getLastBar().getEndTime().equals(bucket)) {
+            return;
+        }
+
+        Num formingClose = lifetimeBarSeries.numFactory().numOf(forming.getClose());
+        TradeEventProcessor processor = null;
+        if (shortTradeEventProcessor.peekMarketEnter(formingClose)) {
+            processor = shortTradeEventProcessor;
+        }
+        if (longTradeEventProcessor.peekMarketEnter(formingClose)) {
+            processor = longTradeEventProcessor;
+        }
+
+        if (processor == null) {
+            stagedSignal = null;
+            return;
+        }
+        if (stagedSignal != null && stagedSignal.bucket().equals(bucket) && stagedSignal.processor() == processor) {
+            return;
+        }
+
+        stagedSignal = new StagedSignal(bucket, processor);
+        Log.debugf("🔮 [%s] Подготовлен кандидат в сигнал %s для бара %s (close=%s)",
+                getName(), processor.getTradeDirection(), bucket, forming.getClose());
+    }
+
+    /**
+     * Быстрый путь при подтверждении свечи: проверяем подготовленный сигнал на подтверждённом баре и сразу публикуем,
+     * не дожидаясь расчёта вектора фич
+     */
+    private void confirmStagedSignal(CandleEvent event) {
+        StagedSignal staged = stagedSignal;
+        stagedSignal = null;
+        if (staged == null || !staged.bucket().equals(event.bucket()) || event.bucket().equals(publishedBucket)) {
+            return;
+        }
+
+        int index = lifetimeBarSeries.getEndIndex();
+        Bar bar = lifetimeBarSeries.getBar(index);
+        if (!bar.getBeginTime().equals(event.bucket())) {
+            return;
+        }
 
-            onBar(candleDto);
-        } else if (event.type() == CandleEventType.CANDLE_HISTORY) {
-            reprocessCandleSeries = true; // Устанавливаем флаг для переобработки серии при следующем цикле
+        TradeEventProcessor processor = staged.processor();
+        if (!processor.shouldMarketEnter(index, null, true)) {
+            Log.debugf("🔮 [%s] Кандидат в сигнал %s для бара %s не подтвердился", getName(), processor.getTradeDirection(), event.bucket());
+            return;
         }
+
+        // Данные события считаются по подтверждённому бару: до его закрытия в серии нет индекса, к которому они относятся
+        publishTradeEvent(processor.getLifeTradeEventData(index), event.instrument(), event.bucket());
+    }
+
+    private void publishTradeEvent(TradeEventData eventData, String instrument, Instant timestamp) {
+        Log.infof(
+                "✅ Произошло торговое событие: %s %s",
+                eventData.type(),
+                eventData.direction()
+        );
+
+        // Публикуем событие TradeEvent
+        tradeEventBus.publish(new TradeEvent(
+                eventData,
+                instrument,
+                getName() + "-lifetime",
+                timestamp,
+                false
+        ));
+        publishedBucket = timestamp;
+    }
+
+    /**
+     * Кандидат в сигнал для формирующегося бара
+     */
+    private record StagedSignal(Instant bucket, TradeEventProcessor processor) {
     }
 
     public abstract String getName();
@@ -216,69 +353,128 @@ public abstract class AbstractStrategy implements CandleEventListener {
 
     @Override
     public void onCandle(CandleEvent event) {
-        // Асинхронно добавляем событие в очередь, не блокируя вызывающий поток
-        if (!eventQueue.offer(event)) {
+        Mailbox<Object> current = mailbox;
+        if (current == null) {
+            return;
+        }
+        if (event.period() != getTimeframe()) {
+            return;
+        }
+
+        boolean accepted = true;
+        if (event.type() == CandleEventType.CANDLE_HISTORY) {
+            accepted = current.offer(event);
+        } else if (isSpeculativeEnabled()) {
+            // Подтверждённые тики обрабатываются через стадию фич, здесь — только быстрый путь подготовленного сигнала
+            if (event.type() == CandleEventType.CANDLE_TICK) {
+                accepted = current.offer(event);
+            } else if (event.type() == CandleEventType.CANDLE_FORMING && pendingFormingEvent.getAndSet(event) == null) {
+                accepted = current.offer(event);
+                if (!accepted) {
+                    pendingFormingEvent.set(null);
+                }
+            }
+        }
+        if (!accepted) {
             Log.warnf("⚠️ Очередь событий стратегии %s переполнена, отбрасываем CandleEvent: %s", getName(), event);
         }
     }
 
+    private boolean isInferenceEnabled() {
+        return xgBoostPredictor != null && xgBoostPredictor.isInferenceEnabled();
+    }
+
+    /**
+     * Хук: прогнозы последних моделей бэктест-контракта по бару (label -> значение, NaN — прогноз не удался).
+     * Вызывается в потоке актора до проверки сигналов.
+     */
+    protected void onModelPredictions(FeatureVector vector, Map<String, Float> predictions) {
+        Log.debugf("🔮 [%s] Прогнозы моделей для %s: %s", getName(), vector.getTimestamp(), predictions);
+    }
+
+    private boolean isSpeculativeEnabled() {
+        return brokerConfig != null && brokerConfig.isSpeculativeEnabled();
+    }
+
+    @Override
+    public void onFeatureVector(FeatureVector vector) {
+        Mailbox<Object> current = mailbox;
+        if (current == null) {
+            return;
+        }
+        if (vector.getTimeframe() == getTimeframe() && !current.offer(vector)) {
+            Log.warnf("⚠️ Очередь событий стратегии %s переполнена, отбрасываем FeatureVector: %s", getName(), vector);
+        }
+    }
+
     /**
-     * Метод вызывается при поступлении нового бара
+     * Метод вызывается при поступлении вектора фич нового бара
      */
-    public void onBar(CandlestickDto candle) {
+    public void onBar(FeatureVector vector) {
         if (lifetimeBarSeries == null) {
             Log.warn("⏳ Серия баров еще не инициализирована, пропускаем обработку");
             return;
         }
 
         Map<ColumnTypeMetadata, Num> additionalColumns = new HashMap<>();
-        int endIndex = lifetimeBarSeries.getEndIndex();
-        Bar bar = lifetimeBarSeries.getBar(endIndex);
+        int barIndex = vector.getBarIndex();
+        if (barIndex < lifetimeBarSeries.getBeginIndex() || barIndex > lifetimeBarSeries.getEndIndex()) {
+            Log.warnf("⏳ Индекс бара %d вектора фич вне диапазона серии, пропускаем обработку", barIndex);
+            return;
+        }
+        Bar bar = lifetimeBarSeries.getBar(barIndex);
 
-        if (candle.getTimestamp() != bar.getBeginTime()) {
+        if (!bar.getBeginTime().equals(vector.getTimestamp())) {
             Log.warnf(
-                    "⏳ Полученный бар с timestamp %s не совпадает с последним баром серии с timestamp %s, пропускаем обработку",
-                    candle.getTimestamp(),
+                    "⏳ Полученный бар с timestamp %s не совпадает с баром серии с timestamp %s, пропускаем обработку",
+                    vector.getTimestamp(),
                     bar.getBeginTime()
             );
             return;
         }
 
-        Log.debugf("🕯️ [%s] Обработка свечи: timestamp=%s, close=%s", getName(), candle.getTimestamp(), candle.getClose());
-        DatabaseSnapshot dbRow = snapshotBuilder.build(bar, getName() + "-lifetime", getLifetimeSchema(), additionalColumns, endIndex, true);
-        // Сохраняем в БД
-        dataService.insertFeatureRow(dbRow);
+        if (!firstEvaluationLogged) {
+            firstEvaluationLogged = true;
+            Log.infof("⏱️ [%s] Первая оценка стратегии через %d мс после старта процесса", getName(),
+                    System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
+        }
+
+        Log.debugf("🕯️ [%s] Обработка свечи: timestamp=%s, close=%s", getName(), vector.getTimestamp(), vector.getClose());
+        DatabaseSnapshot dbRow = snapshotBuilder.build(bar, getName() + "-lifetime", getLifetimeSchema(), additionalColumns, vector);
+        // Передаём строку асинхронному писателю — сигнальный путь не ждёт БД
+        liveSnapshotWriter.submit(dbRow);
+
+        if (isInferenceEnabled()) {
+            Map<String, Float> predictions = xgBoostPredictor.predict(getBacktestSchema().getContractHash(), vector);
+            if (!predictions.isEmpty()) {
+                onModelPredictions(vector, predictions);
+            }
+        }
+
+        // Сигнал по этому бару уже опубликован быстрым путём подготовленного кандидата
+        if (vector.getTimestamp().equals(publishedBucket)) {
+            Log.infof("✅ [%s] Свеча обработана стратегией: timestamp=%s, close=%s (сигнал опубликован заранее)",
+                    getName(), vector.getTimestamp(), vector.getClose());
+            return;
+        }
 
         // Обработка торговых событий (если процессор настроен)
         TradeEventData eventData = null;
 
-        if (shortTradeEventProcessor.shouldMarketEnter(endIndex, null, true)) {
-            eventData = shortTradeEventProcessor.getLifeTradeEventData(endIndex);
+        if (shortTradeEventProcessor.shouldMarketEnter(vector)) {
+            eventData = shortTradeEventProcessor.getLifeTradeEventData(barIndex);
         }
 
-        if (longTradeEventProcessor.shouldMarketEnter(endIndex, null, true)) {
-            eventData = longTradeEventProcessor.getLifeTradeEventData(endIndex);
+        if (longTradeEventProcessor.shouldMarketEnter(vector)) {
+            eventData = longTradeEventProcessor.getLifeTradeEventData(barIndex);
         }
 
         if (eventData != null) {
-            Log.infof(
-                    "✅ Произошло торговое событие: %s %s",
-                    eventData.type(),
-                    eventData.direction()
-            );
-
-            // Публикуем событие TradeEvent
-            tradeEventBus.publish(new TradeEvent(
-                    eventData,
-                    candle.getInstrument(),
-                    getName() + "-lifetime",
-                    candle.getTimestamp(),
-                    false
-            ));
+            publishTradeEvent(eventData, vector.getInstrument(), vector.getTimestamp());
         }
 
         Log.infof("✅ [%s] Свеча обработана стратегией: timestamp=%s, close=%s",
-                getName(), candle.getTimestamp(), candle.getClose());
+                getName(), vector.getTimestamp(), vector.getClose());
     }
 
     /**
@@ -300,31 +496,31 @@ public abstract class AbstractStrategy implements CandleEventListener {
 
         BaseBarSeries historicalBarSeries = candle.getInstance(getTimeframe()).getHistoricalBarSeries();
 
-        TradingRecord tradingRecord;
+        BacktestResult backtestResult;
         if (startIndex != null || endIndex != null) {
             Log.infof("📋 Бэктест запущен с индекса: %d по индекс: %s", startIndex, endIndex);
-            tradingRecord = processCandleSeries(historicalBarSeries, getName() + "-backtest", getBacktestSchema(), false, startIndex, endIndex);
+            backtestResult = processCandleSeries(historicalBarSeries, getName() + "-backtest", getBacktestSchema(), false, startIndex, endIndex);
         } else {
-            tradingRecord = processCandleSeries(historicalBarSeries, getName() + "-backtest", getBacktestSchema(), false);
+            backtestResult = processCandleSeries(historicalBarSeries, getName() + "-backtest", getBacktestSchema(), false);
         }
 
-        if (tradingRecord != null) {
+        if (backtestResult != null) {
             Log.info("📊 Выполняем торговый анализ стратегии...");
-            strategyAnalysis(tradingRecord, historicalBarSeries);
+            strategyAnalysis(backtestResult);
         }
 
         Log.infof("✅ Завершено тестирование.");
     }
 
-    private TradingRecord processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife) {
+    private BacktestResult processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife) {
         return processCandleSeries(barSeries, tagName, schema, isLife, barSeries != null ? barSeries.getBeginIndex() : 0, null);
     }
 
-    private TradingRecord processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife, Integer startIndex) {
+    private BacktestResult processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife, Integer startIndex) {
         return processCandleSeries(barSeries, tagName, schema, isLife, startIndex, null);
     }
 
-    private TradingRecord processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife, Integer startIndex, Integer endIndex) {
+    private BacktestResult processCandleSeries(BarSeries barSeries, String tagName, AbstractSchema schema, boolean isLife, Integer startIndex, Integer endIndex) {
         if (barSeries == null || barSeries.isEmpty()) {
             Log.warnf("⚠️ BarSeries пуста или null для стратегии %s, пропускаем обработку", getName());
             return null;
@@ -338,22 +534,17 @@ public abstract class AbstractStrategy implements CandleEventListener {
         List<DatabaseSnapshot> dbRows = new ArrayList<>();
         Map<ColumnTypeMetadata, Num> additionalColumns = new HashMap<>();
 
-        TradingRecord shortTradingRecord = null;
-        TradingRecord longTradingRecord = null;
-        TradeOnCurrentCloseModel tradeExecutionModel = null;
-
+        // Симуляция сделок выполняется один раз по всему диапазону, метрики позиций берутся из колонок результата
+        BacktestResult backtestResult = null;
         if (!isLife) {
-            shortTradingRecord = getTradingRecord(barSeries, shortTradeEventProcessor.getTradeDirection());
-            longTradingRecord = getTradingRecord(barSeries, longTradeEventProcessor.getTradeDirection());
-            tradeExecutionModel = new TradeOnCurrentCloseModel();
+            backtestResult = simulateBacktest(barSeries, effectiveStartIndex, effectiveEndIndex);
         }
 
         int processedCount = 0;
         for (int index = effectiveStartIndex; index <= effectiveEndIndex; index++) {
 
-            // Хук для обработки каждой свечи - здесь можно открывать/закрывать позиции и сохранять метрики
-            if (!isLife) {
-                additionalColumns = captureBacktestPositionMetrics(index, barSeries, shortTradingRecord, longTradingRecord, tradeExecutionModel);
+            if (backtestResult != null) {
+                additionalColumns = captureBacktestPositionMetrics(index, backtestResult);
             }
 
             Bar bar = barSeries.getBar(index);
@@ -371,80 +562,76 @@ public abstract class AbstractStrategy implements CandleEventListener {
         // Сохраняем в БД
         dataService.saveContractSnapshotRowsBatch(dbRows, tagName);
 
-        return shortTradingRecord;
-    }
+        // Строки бэктеста уже в памяти — выгружаем их для обучения без повторного чтения из БД
+        if (!isLife && featureExportService != null && featureExportService.isBacktestExportEnabled()) {
+            try {
+                featureExportService.exportSnapshots(schema.getContract(), tagName, dbRows);
+            } catch (Exception e) {
+                Log.errorf(e, "❌ Не удалось выгрузить строки бэктеста %s", tagName);
+            }
+        }
 
-    private TradingRecord getTradingRecord(BarSeries historicalBarSeries, Direction tradeDirection) {
-        TradingRecord tradingRecord;
+        // Обучение моделей по тем же строкам идёт в фоне и не задерживает бэктест
+        if (!isLife && xgBoostTrainer != null && xgBoostTrainer.isTrainingEnabled()) {
+            xgBoostTrainer.submit(schema.getContract(), dbRows);
+        }
 
-        // Инициализация торговых моделей
-        ZeroCostModel transactionCostModel = new ZeroCostModel();
-        ZeroCostModel holdingCostModel = new ZeroCostModel();
+        return backtestResult;
+    }
 
-        tradingRecord = new BaseTradingRecord(
-                tradeDirection == Direction.LONG ? Trade.TradeType.BUY : Trade.TradeType.SELL,
-                historicalBarSeries.getBeginIndex(),
-                historicalBarSeries.getEndIndex(),
-                transactionCostModel,
-                holdingCostModel
-        );
-        return tradingRecord;
+    /**
+     * Прогон сделок по историческому диапазону: сигналы обоих процессоров рассчитываются один раз,
+     * дальше симулятор работает только с примитивными массивами
+     */
+    private BacktestResult simulateBacktest(BarSeries barSeries, int startIndex, int endIndex) {
+        BacktestBars bars = BacktestBars.fromSeries(barSeries, startIndex, endIndex);
+        BacktestSignals signals = BacktestSignals.evaluate(bars, longTradeEventProcessor, shortTradeEventProcessor,
+                this::isUnstableAt);
+
+        long started = System.nanoTime();
+        BacktestResult result = BacktestSimulator.simulate(bars, signals, backtestConfig.toParams());
+        Log.debugf("⚡ Симуляция %d баров заняла %d мкс", bars.size(),
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+        return result;
     }
 
-    private void strategyAnalysis(TradingRecord tradingRecord, BaseBarSeries historicalBarSeries) {
-        Num numberOfPositions = new NumberOfPositionsCriterion().calculate(historicalBarSeries, tradingRecord);
-        Log.debugf("Количество позиций: %s", numberOfPositions.intValue());
-        Num numberOfWiningPositions = new NumberOfWinningPositionsCriterion().calculate(historicalBarSeries, tradingRecord);
-        Log.debugf("Количество выигрышных позиций: %s", numberOfWiningPositions.intValue());
-        var positionsRatio = new PositionsRatioCriterion(AnalysisCriterion.PositionFilter.PROFIT).calculate(historicalBarSeries, tradingRecord);
-        Log.debugf("Соотношение выигрышных позиций: %s", positionsRatio.bigDecimalValue());
+    private void strategyAnalysis(BacktestResult result) {
+        for (Direction direction : Direction.values()) {
+            BacktestResult.Track track = result.get(direction);
+            Log.debugf("[%s] Количество позиций: %d", direction, track.getPositions());
+            Log.debugf("[%s] Количество выигрышных позиций: %d", direction, track.getWinningPositions());
+            Log.debugf("[%s] Соотношение выигрышных позиций: %.4f", direction, track.getWinRate());
+            Log.debugf("[%s] Срабатываний SL/TP: %d/%d", direction, track.getStopLossHits(), track.getTakeProfitHits());
+            Log.debugf("[%s] Суммарная доходность: %.4f%%, итоговый капитал: %.6f",
+                    direction, track.getSumReturn() * 100, track.getEquity());
+        }
     }
 
     /**
-     * Хук для обработки каждого бара в процессе бэктеста.
-     * Переопределяйте в подклассах для добавления специфичной логики (например, открытие/закрытие позиций).
+     * Хук для формирования дополнительных колонок бара по результату симуляции.
+     * Переопределяйте в подклассах для вывода специфичных метрик.
+     * По умолчанию в колонки позиции пишется открытая шорт-позиция, а если её нет — лонг.
      *
-     * @param index               индекс текущего бара
-     * @param historicalBarSeries серия исторических данных
-     * @param shortTradingRecord       торговый рекорд для управления позициями
-     * @param longTradingRecord      торговый рекорд для управления позициями
-     * @param tradeExecutionModel модель исполнения сделок
-     * @return дополнительные колонки для сохранения в БД (например, позиции, стоп-лосс, тейк-профит)
+     * @param index  индекс текущего бара в серии
+     * @param result результат симуляции с колоночными метриками позиций
+     * @return дополнительные колонки для сохранения в БД (позиция, стоп-лосс, тейк-профит)
      */
-    protected Map<ColumnTypeMetadata, Num> captureBacktestPositionMetrics(int index,
-                                                                          BarSeries historicalBarSeries,
-                                                                          TradingRecord shortTradingRecord,
-                                                                          TradingRecord longTradingRecord,
-                                                                          TradeOnCurrentCloseModel tradeExecutionModel) {
-
+    protected Map<ColumnTypeMetadata, Num> captureBacktestPositionMetrics(int index, BacktestResult result) {
         Map<ColumnTypeMetadata, Num> additionalColumns = new HashMap<>();
 
-        // Торговая логика
-        boolean shouldOperate = false;
-        Position position = shortTradingRecord.getCurrentPosition();
-        // TODO: добавить логику для longTradeEventProcessor, если нужно тестировать обе модели в одном бэктесте
-
-        if (position.isNew()) {
-            shouldOperate = !isUnstableAt(index) && shortTradeEventProcessor.shouldMarketEnter(index, shortTradingRecord, false);
-        } else if (position.isOpened()) {
-            shouldOperate = !isUnstableAt(index) && shortTradeEventProcessor.shouldMarketExit(index, shortTradingRecord, false);
-        }
-
-        if (shouldOperate) {
-            tradeExecutionModel.execute(index, shortTradingRecord, historicalBarSeries, historicalBarSeries.numFactory().one());
-        }
+        int i = index - result.getBeginIndex();
+        BacktestResult.Track track = !Double.isNaN(result.getShort().entryPrice()[i]) ? result.getShort() : result.getLong();
 
-        // Обновление дополнительных колонок
-        if (position.isOpened()) {
-            Num netPrice = position.getEntry().getNetPrice();
-//            Num stopLoss = netPrice.multipliedBy(ONE.plus(shortTradeEventProcessor.getStopLossPercentage().dividedBy(HUNDRED)));
-//            Num takeProfit = netPrice.multipliedBy(ONE.minus(shortTradeEventProcessor.getTakeProfitPercentage().dividedBy(HUNDRED)));
+        putIfPresent(additionalColumns, PositionColumn.PositionColumnType.POSITION_PRICE_1M, track.entryPrice()[i]);
+        putIfPresent(additionalColumns, PositionColumn.PositionColumnType.STOPLOSS_1M, track.stopLoss()[i]);
+        putIfPresent(additionalColumns, PositionColumn.PositionColumnType.TAKEPROFIT_1M, track.takeProfit()[i]);
+        return additionalColumns;
+    }
 
-            additionalColumns.put(PositionColumn.PositionColumnType.POSITION_PRICE_1M, netPrice);
-//            additionalColumns.put(PositionColumn.PositionColumnType.STOPLOSS_1M, stopLoss);
-//            additionalColumns.put(PositionColumn.PositionColumnType.TAKEPROFIT_1M, takeProfit);
+    private static void putIfPresent(Map<ColumnTypeMetadata, Num> columns, ColumnTypeMetadata type, double value) {
+        if (!Double.isNaN(value)) {
+            columns.put(type, DecimalNum.valueOf(value));
         }
-        return additionalColumns;
     }
 
     /**
@@ -2,8 +2,12 @@ package artskif.trader.strategy;
 
 import artskif.trader.entity.ContractMetadata;
 import artskif.trader.strategy.database.ColumnsRegistry;
+import artskif.trader.strategy.database.ContractFeatureTable;
+import artskif.trader.strategy.database.FeatureStorageLayout;
 import artskif.trader.strategy.database.columns.Column;
 import artskif.trader.entity.Contract;
+import artskif.trader.repository.copy.PgBinaryCopyWriter;
+import artskif.trader.repository.copy.PgCopyType;
 import artskif.trader.strategy.database.schema.AbstractSchema;
 import artskif.trader.strategy.snapshot.DatabaseSnapshot;
 import io.quarkus.logging.Log;
@@ -11,18 +15,39 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
-
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Сервис для работы с данными стратегий и фичами в базе данных.
  *
  * Основные функции:
  * - Сохранение и управление строками фич (DatabaseSnapshotRow) в таблице wide_candles
- * - Пакетная загрузка данных через промежуточную таблицу stage_wide_candles с использованием PostgreSQL COPY
+ *   или в отдельной гипертаблице контракта (раскладка {@link FeatureStorageLayout#CONTRACT_TABLE})
+ * - Пакетная загрузка данных через временную промежуточную таблицу (по образцу stage_wide_candles) с использованием PostgreSQL COPY
  * - Управление динамическими колонками в таблицах wide_candles и stage_wide_candles
+ * - Создание гипертаблиц контрактов и представлений для Grafana
  * - CRUD операции для контрактов (Contract) и их метаданных
  * - Удаление контрактов со всеми зависимыми данными (фичи, метаданные)
  *
@@ -39,72 +64,140 @@ public class StrategyDataService {
     ColumnsRegistry registry;
 
     /**
-     * Вставить или обновить строку фич (UPSERT)
-     * Если строка с таким tf, tag и ts существует, она обновляется, иначе вставляется новая
+     * Контракты, фичи которых хранятся в отдельной гипертаблице, а не в wide_candles
      */
-    @Transactional
-    public void insertFeatureRow(DatabaseSnapshot row) {
-        Map<String, Object> features = row.getAllColumns();
+    @Inject
+    @ConfigProperty(name = "strategy.feature-storage.contract-tables")
+    Optional<List<String>> contractTableContracts;
 
-        // Формируем SQL для INSERT ... ON CONFLICT DO UPDATE
-        StringBuilder columns = new StringBuilder("tf, tag, ts, contract_hash");
-        StringBuilder values = new StringBuilder(":tf, :tag, :ts, :contractHash");
-        StringBuilder updateSet = new StringBuilder();
+    /**
+     * Таблица строк фич по contract_hash; контракты, которых здесь нет, пишутся в wide_candles
+     */
+    private final Map<String, String> featureTables = new ConcurrentHashMap<>();
 
-        for (String featureName : features.keySet()) {
-            columns.append(", ").append(featureName);
-            values.append(", :").append(featureName);
+    private static final String WIDE_TABLE = "wide_candles";
+    private static final String WIDE_STAGE_TEMPLATE = "stage_wide_candles";
 
-            if (updateSet.length() > 0) {
-                updateSet.append(", ");
-            }
-            updateSet.append(featureName).append(" = EXCLUDED.").append(featureName);
+    /**
+     * Кэш SQL для пакетного UPSERT: ключ — contract_hash + отсортированный набор колонок
+     */
+    private final Map<String, String> upsertSqlCache = new ConcurrentHashMap<>();
+
+    /**
+     * Базовые колонки свечи в строке фич (тип numeric в wide_candles и stage_wide_candles)
+     */
+    private static final Set<String> CANDLE_VALUE_COLUMNS = Set.of("open", "high", "low", "close", "volume");
+
+    /**
+     * Промежуточные таблицы сессии — как tmp_stage_candles в CandleRepository: у каждого соединения своя копия,
+     * строки очищаются при коммите, поэтому параллельные пакетные сохранения не блокируют и не затирают друг друга.
+     * Имя включает шаблон и SHA-256 списка колонок COPY: при расширении набора фич сессия создаёт новую таблицу
+     * по текущему шаблону, а не пишет в копию со старым набором колонок.
+     */
+    private static final String STAGE_TABLE_PREFIX = "tmp_";
+    // 128 бит дайджеста: имя с самым длинным шаблоном укладывается в 63 символа идентификатора PostgreSQL
+    private static final int STAGE_DIGEST_HEX_LENGTH = 32;
+
+    /**
+     * Пакетный UPSERT лайв-строк фич через JDBC batch.
+     * Строки группируются по contract_hash и набору колонок; SQL для каждой группы
+     * строится один раз и кэшируется, так что драйвер переиспользует серверный prepared statement.
+     *
+     * @param rows строки фич, накопленные асинхронным писателем
+     * @return количество записанных строк
+     */
+    @Transactional
+    public int upsertFeatureRowsBatch(List<DatabaseSnapshot> rows) {
+        if (rows.isEmpty()) {
+            return 0;
         }
 
-        // Добавляем contract_hash в UPDATE SET
-        if (updateSet.length() > 0) {
-            updateSet.append(", ");
+        // Группируем строки по ключу prepared statement (contract_hash + отсортированные колонки)
+        Map<String, List<DatabaseSnapshot>> groups = new LinkedHashMap<>();
+        Map<String, List<String>> groupColumns = new HashMap<>();
+        for (DatabaseSnapshot row : rows) {
+            List<String> featureNames = new ArrayList<>(row.getAllColumns().keySet());
+            Collections.sort(featureNames);
+            String key = featureTable(row.contractHash()) + "|" + safe(row.contractHash()) + "|" + String.join(",", featureNames);
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+            groupColumns.putIfAbsent(key, featureNames);
         }
-        updateSet.append("contract_hash = EXCLUDED.contract_hash");
 
-        String sql = String.format(
-                "INSERT INTO wide_candles (%s) VALUES (%s) " +
-                "ON CONFLICT (tf, tag, ts) DO UPDATE SET %s",
-                columns, values, updateSet
-        );
+        final int[] written = new int[1];
+        org.hibernate.Session session = entityManager.unwrap(org.hibernate.Session.class);
+        session.doWork(conn -> {
+            for (Map.Entry<String, List<DatabaseSnapshot>> group : groups.entrySet()) {
+                List<String> featureNames = groupColumns.get(group.getKey());
+                String table = featureTable(group.getValue().get(0).contractHash());
+                String sql = upsertSqlCache.computeIfAbsent(group.getKey(), k -> buildRowUpsertSql(table, featureNames));
+
+                try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                    for (DatabaseSnapshot row : group.getValue()) {
+                        int i = 1;
+                        ps.setString(i++, formatDuration(row.getTimeframe()));
+                        ps.setString(i++, row.tag());
+                        ps.setTimestamp(i++, Timestamp.valueOf(LocalDateTime.ofInstant(row.getTimestamp(), ZoneOffset.UTC)));
+                        ps.setString(i++, row.contractHash());
+
+                        Map<String, Object> features = row.getAllColumns();
+                        for (String featureName : featureNames) {
+                            ps.setObject(i++, features.get(featureName));
+                        }
+                        ps.addBatch();
+                    }
+                    for (int count : ps.executeBatch()) {
+                        written[0] += Math.max(count, 0);
+                    }
+                }
+            }
+        });
 
-        var query = entityManager.createNativeQuery(sql)
-                .setParameter("tf", formatDuration(row.getTimeframe()))
-                .setParameter("tag", row.tag())
-                .setParameter("ts", row.getTimestamp())
-                .setParameter("contractHash", row.contractHash());
+        Log.tracef("💾 Пакетно записано лайв-строк фич: %d (групп: %d)", written[0], groups.size());
+        return written[0];
+    }
 
-        // Добавляем параметры для фич
-        for (Map.Entry<String, Object> entry : features.entrySet()) {
-            query.setParameter(entry.getKey(), entry.getValue());
-        }
+    /**
+     * Формирует позиционный SQL для UPSERT одной строки в таблицу фич
+     */
+    private String buildRowUpsertSql(String table, List<String> featureNames) {
+        StringBuilder columns = new StringBuilder("tf, tag, ts, contract_hash");
+        StringBuilder values = new StringBuilder("?, ?, ?, ?");
+        StringBuilder updateSet = new StringBuilder();
 
-        query.executeUpdate();
+        for (String featureName : featureNames) {
+            columns.append(", ").append(featureName);
+            values.append(", ?");
+            updateSet.append(featureName).append(" = EXCLUDED.").append(featureName).append(", ");
+        }
+        updateSet.append("contract_hash = EXCLUDED.contract_hash");
 
-        Log.tracef("💾 Вставлена/обновлена строка фич: %s", row);
+        return String.format(
+                "INSERT INTO %s (%s) VALUES (%s) " +
+                        "ON CONFLICT (tf, tag, ts) DO UPDATE SET %s",
+                table, columns, values, updateSet
+        );
     }
 
     /**
-     * Пакетное сохранение строк фич через промежуточную таблицу stage_wide_candles
+     * Пакетное сохранение строк фич через промежуточную таблицу сессии
      * Использует PostgreSQL COPY для быстрой загрузки данных
+     *
+     * @return количество строк, затронутых upsert из промежуточной таблицы
      */
     @Transactional
-    public void saveContractSnapshotRowsBatch(Iterable<DatabaseSnapshot> rows, String tagName) {
+    public int saveContractSnapshotRowsBatch(Iterable<DatabaseSnapshot> rows, String tagName) {
         var iterator = rows.iterator();
         if (!iterator.hasNext()) {
             Log.warn("⚠️ Пустой список строк для сохранения");
-            return;
+            return 0;
         }
 
         DatabaseSnapshot firstRow = iterator.next();
+        String table = featureTable(firstRow.contractHash());
+        String stageTemplate = WIDE_TABLE.equals(table) ? WIDE_STAGE_TEMPLATE : table;
 
         // Проверяем, существует ли запись для этого тега
-        String checkSql = "SELECT COUNT(*) FROM wide_candles WHERE tag = :tagName";
+        String checkSql = "SELECT COUNT(*) FROM " + table + " WHERE tag = :tagName";
         Long existingCount = (Long) entityManager.createNativeQuery(checkSql)
                 .setParameter("tagName", tagName)
                 .getSingleResult();
@@ -113,7 +206,7 @@ public class StrategyDataService {
             Log.debugf("⚠️ Найдено %d существующих записей для стратегии %s. Удаляем их...",
                     existingCount, tagName);
 
-            String deleteSql = "DELETE FROM wide_candles WHERE tag = :tagName";
+            String deleteSql = "DELETE FROM " + table + " WHERE tag = :tagName";
             int deleted = entityManager.createNativeQuery(deleteSql)
                     .setParameter("tagName", tagName)
                     .executeUpdate();
@@ -121,99 +214,96 @@ public class StrategyDataService {
             Log.debugf("✅ Удалено %d записей для стратегии %s", deleted, tagName);
         }
 
-        // Собираем все строки обратно в список для формирования CSV
+        // Собираем все строки обратно в список для бинарного COPY
         java.util.List<DatabaseSnapshot> rowList = new java.util.ArrayList<>();
         rowList.add(firstRow);
         iterator.forEachRemaining(rowList::add);
 
-        // Строим CSV из всех строк фич
-        String csv = buildFeatureCsv(rowList);
-
-        if (csv.isEmpty()) {
-            Log.warn("⚠️ Не удалось сформировать CSV для вставки");
-            return;
+        // Колонки фич в отсортированном порядке и их типы для бинарного формата
+        java.util.List<String> featureNames = new java.util.ArrayList<>(firstRow.getAllColumns().keySet());
+        java.util.Collections.sort(featureNames);
+        PgCopyType[] featureTypes = new PgCopyType[featureNames.size()];
+        for (int i = 0; i < featureTypes.length; i++) {
+            featureTypes[i] = resolveCopyType(featureNames.get(i));
         }
 
+        String columnList = buildCopyColumnList(firstRow);
+        String stageTable = stageTableName(stageTemplate, columnList);
+
         final int[] affected = new int[1];
         org.hibernate.Session session = entityManager.unwrap(org.hibernate.Session.class);
 
         try {
             session.doWork(conn -> {
                 try (java.sql.Statement stmt = conn.createStatement()) {
-                    // Очищаем staging таблицу
-                    stmt.execute("TRUNCATE TABLE stage_wide_candles");
-
-                    org.postgresql.PGConnection pgConn = conn.unwrap(org.postgresql.PGConnection.class);
-                    org.postgresql.copy.CopyManager cm = pgConn.getCopyAPI();
-
-                    // Формируем список колонок для COPY
-                    String columnList = buildCopyColumnList(firstRow);
-                    String copySql = "COPY stage_wide_candles(" + columnList + ") " +
-                            "FROM STDIN WITH (FORMAT csv, DELIMITER ',', NULL '', HEADER false)";
-
-                    long copied = cm.copyIn(copySql, new java.io.StringReader(csv));
+                    // Промежуточная таблица сессии создаётся один раз на соединение и набор колонок
+                    stmt.execute("CREATE TEMP TABLE IF NOT EXISTS " + stageTable +
+                            " (LIKE " + stageTemplate + " INCLUDING DEFAULTS) ON COMMIT DELETE ROWS");
+
+                    PGConnection pgConn = conn.unwrap(PGConnection.class);
+                    String copySql = "COPY " + stageTable + "(" + columnList + ") FROM STDIN WITH (FORMAT binary)";
+
+                    long copied;
+                    try (PGCopyOutputStream out = new PGCopyOutputStream(pgConn, copySql)) {
+                        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(out);
+                        for (DatabaseSnapshot row : rowList) {
+                            if (row != null) {
+                                writeCopyRow(writer, row, featureNames, featureTypes);
+                            }
+                        }
+                        writer.finish();
+                        copied = out.endCopy();
+                    }
                     Log.debugf("💾 В staging загружено строк: %d", copied);
 
                     // Формируем INSERT ... SELECT с динамическими колонками
-                    String upsertSql = buildUpsertSql(firstRow);
+                    String upsertSql = buildUpsertSql(table, stageTable, firstRow);
                     affected[0] = stmt.executeUpdate(upsertSql);
                     Log.debugf("💾 Upsert затронул строк: %d", affected[0]);
-
-                    // Очищаем staging таблицу
-                    stmt.execute("TRUNCATE TABLE stage_wide_candles");
-
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
             });
 
             Log.debugf("✅ Завершено пакетное сохранение: %d строк", affected[0]);
+            return affected[0];
 
         } catch (RuntimeException ex) {
-            Log.errorf(ex, "❌ Ошибка при сохранении фич через COPY -> stage_wide_candles");
-            throw new RuntimeException("Не удалось сохранить фичи через stage_wide_candles", ex);
+            Log.errorf(ex, "❌ Ошибка при сохранении фич через COPY -> %s", stageTable);
+            throw new RuntimeException("Не удалось сохранить фичи через " + stageTable, ex);
         }
     }
 
     /**
-     * Формирует CSV из списка ContractSnapshotRow
+     * Записывает строку фич в бинарный COPY в порядке колонок {@link #buildCopyColumnList}
      */
-    private String buildFeatureCsv(java.util.List<DatabaseSnapshot> rows) {
-        return rows.stream()
-                .filter(row -> row != null)
-                .map(this::ContractSnapshotToCsvLine)
-                .filter(line -> line != null && !line.isEmpty())
-                .collect(java.util.stream.Collectors.joining("\n"));
+    private void writeCopyRow(PgBinaryCopyWriter writer, DatabaseSnapshot row,
+                              java.util.List<String> featureNames, PgCopyType[] featureTypes) throws java.io.IOException {
+        writer.startRow(4 + featureNames.size());
+        writer.writeText(formatDuration(row.getTimeframe()));
+        writer.writeText(row.tag());
+        writer.writeTimestamp(row.getTimestamp());
+        writer.writeText(row.contractHash());
+
+        Map<String, Object> features = row.getAllColumns();
+        for (int i = 0; i < featureTypes.length; i++) {
+            writer.writeValue(featureTypes[i], features.get(featureNames.get(i)));
+        }
     }
 
     /**
-     * Преобразует ContractSnapshotRow в CSV строку
+     * Тип колонки для бинарного COPY: базовые колонки свечи — numeric, колонки фич — по типу из реестра
      */
-    private String ContractSnapshotToCsvLine(DatabaseSnapshot row) {
-        try {
-            java.util.List<String> values = new java.util.ArrayList<>();
-
-            // Добавляем базовые колонки
-            values.add(formatDuration(row.getTimeframe()));
-            values.add(safe(row.tag()));
-            values.add(formatTimestamp(row.getTimestamp()));
-            values.add(safe(row.contractHash()));
-
-            // Добавляем фичи в отсортированном порядке
-            Map<String, Object> features = row.getAllColumns();
-            java.util.List<String> featureNames = new java.util.ArrayList<>(features.keySet());
-            java.util.Collections.sort(featureNames);
-
-            for (String featureName : featureNames) {
-                Object value = features.get(featureName);
-                values.add(formatValue(value));
-            }
-
-            return String.join(",", values);
-        } catch (Exception ex) {
-            Log.warnf(ex, "❌ Не удалось сформировать CSV-строку для ContractSnapshotRow: %s", row);
-            return null;
+    private PgCopyType resolveCopyType(String columnName) {
+        if (CANDLE_VALUE_COLUMNS.contains(columnName)) {
+            return PgCopyType.NUMERIC;
+        }
+        if ("confirmed".equals(columnName)) {
+            return PgCopyType.BOOL;
         }
+        Column column = registry.getColumn(columnName)
+                .orElseThrow(() -> new IllegalStateException("Колонка " + columnName + " не существует в реестре для колонок"));
+        return PgCopyType.fromSqlType(column.getColumnTypeMetadataByName(columnName).getDataType());
     }
 
     /**
@@ -237,7 +327,7 @@ public class StrategyDataService {
     /**
      * Формирует SQL для INSERT ... SELECT с динамическими колонками
      */
-    private String buildUpsertSql(DatabaseSnapshot sampleRow) {
+    private String buildUpsertSql(String table, String stageTable, DatabaseSnapshot sampleRow) {
         java.util.List<String> featureNames = new java.util.ArrayList<>(sampleRow.getAllColumns().keySet());
         java.util.Collections.sort(featureNames);
 
@@ -255,59 +345,131 @@ public class StrategyDataService {
         }
 
         return String.format(
-                "INSERT INTO wide_candles(%s) SELECT %s FROM stage_wide_candles " +
+                "INSERT INTO %s(%s) SELECT %s FROM %s " +
                         "ON CONFLICT (tf, tag, ts) DO UPDATE SET %s",
-                columns, selectColumns, updateSet
+                table, columns, selectColumns, stageTable, updateSet
         );
     }
 
     /**
-     * Форматирует значение для CSV
+     * Имя промежуточной таблицы сессии для шаблона и списка колонок COPY
      */
-    private String formatValue(Object value) {
-        if (value == null) {
-            return "";
-        }
-        if (value instanceof java.math.BigDecimal) {
-            return ((java.math.BigDecimal) value).toPlainString();
-        }
-        if (value instanceof Number) {
-            return value.toString();
-        }
-        if (value instanceof Boolean) {
-            return value.toString();
+    static String stageTableName(String stageTemplate, String columnList) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(columnList.getBytes(StandardCharsets.UTF_8));
+            return STAGE_TABLE_PREFIX + stageTemplate + "_"
+                    + HexFormat.of().formatHex(digest).substring(0, STAGE_DIGEST_HEX_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
         }
-        return String.valueOf(value);
     }
 
     /**
-     * Форматирует timestamp для CSV
+     * Безопасное преобразование строки
      */
-    private String formatTimestamp(Instant timestamp) {
-        if (timestamp == null) {
-            return "";
-        }
-        java.time.format.DateTimeFormatter formatter =
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
-        return formatter.format(java.time.LocalDateTime.ofInstant(timestamp, java.time.ZoneOffset.UTC));
+    private String safe(String s) {
+        return s == null ? "" : s;
     }
 
     /**
-     * Безопасное преобразование строки
+     * Таблица, в которую пишутся строки фич контракта
      */
-    private String safe(String s) {
-        return s == null ? "" : s;
+    private String featureTable(String contractHash) {
+        return contractHash == null ? WIDE_TABLE : featureTables.getOrDefault(contractHash, WIDE_TABLE);
+    }
+
+    /**
+     * Раскладка хранения фич контракта по конфигурации strategy.feature-storage.contract-tables
+     */
+    public FeatureStorageLayout getStorageLayout(Contract contract) {
+        return contractTableContracts.map(names -> names.contains(contract.name)).orElse(false)
+                ? FeatureStorageLayout.CONTRACT_TABLE
+                : FeatureStorageLayout.WIDE;
     }
 
     /**
-     * Проверка и создание колонок для схемы в базе данных
+     * Проверка и создание колонок для схемы в базе данных.
+     * Для раскладки {@link FeatureStorageLayout#CONTRACT_TABLE} вместо расширения wide_candles
+     * создаётся (при необходимости) отдельная гипертаблица контракта.
      *
      * @param schema схема, для которой необходимо проверить колонки
      */
     protected void checkColumnsExist(AbstractSchema schema) {
-        for (ContractMetadata metadata : schema.getContract().metadata) {
+        Contract contract = schema.getContract();
+        if (getStorageLayout(contract) == FeatureStorageLayout.CONTRACT_TABLE) {
+            ensureContractTable(contract);
+            return;
+        }
+
+        for (ContractMetadata metadata : contract.metadata) {
             ensureColumnExist(metadata.name);
         }
+        featureTables.remove(contract.contractHash);
+    }
+
+    /**
+     * Создать гипертаблицу фич контракта и представление для Grafana, если их ещё нет.
+     * Колонки берутся из метаданных контракта в порядке sequence_order; существующая таблица не изменяется.
+     *
+     * @param contract контракт
+     * @return имя таблицы фич контракта
+     */
+    @Transactional
+    public String ensureContractTable(Contract contract) {
+        String table = ContractFeatureTable.tableName(contract.contractHash);
+        String view = ContractFeatureTable.viewName(contract.name);
+
+        Number tableCount = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = :table")
+                .setParameter("table", table)
+                .getSingleResult();
+        if (tableCount.longValue() == 0) {
+            entityManager.createNativeQuery(buildContractTableSql(table, contract)).executeUpdate();
+            entityManager.createNativeQuery("SELECT create_hypertable(CAST(:table AS regclass), 'ts', if_not_exists => TRUE)")
+                    .setParameter("table", table)
+                    .getSingleResult();
+            Log.infof("✅ Создана таблица фич %s для контракта '%s' (%d колонок)",
+                    table, contract.name, contract.metadata.size());
+        }
+
+        // Представление переключается на таблицу текущей версии контракта
+        Number viewCount = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM information_schema.view_table_usage " +
+                                "WHERE view_name = :view AND table_name = :table")
+                .setParameter("view", view)
+                .setParameter("table", table)
+                .getSingleResult();
+        if (viewCount.longValue() == 0) {
+            entityManager.createNativeQuery("DROP VIEW IF EXISTS " + view).executeUpdate();
+            entityManager.createNativeQuery("CREATE VIEW " + view + " AS SELECT * FROM " + table).executeUpdate();
+            Log.infof("✅ Представление %s указывает на %s", view, table);
+        }
+
+        featureTables.put(contract.contractHash, table);
+        return table;
+    }
+
+    /**
+     * DDL таблицы фич контракта: базовые колонки свечи как в wide_candles и колонки метаданных контракта
+     */
+    private String buildContractTableSql(String table, Contract contract) {
+        StringBuilder sql = new StringBuilder("CREATE TABLE IF NOT EXISTS ").append(table).append(" (")
+                .append("tf varchar(10) NOT NULL, ")
+                .append("ts timestamp NOT NULL, ")
+                .append("open numeric(18, 8) NOT NULL, ")
+                .append("high numeric(18, 8) NOT NULL, ")
+                .append("low numeric(18, 8) NOT NULL, ")
+                .append("tag varchar(255) NOT NULL, ")
+                .append("close numeric(18, 8) NOT NULL, ")
+                .append("volume numeric(30, 8), ")
+                .append("contract_hash varchar(64), ")
+                .append("confirmed boolean NOT NULL DEFAULT true");
+
+        contract.metadata.stream()
+                .sorted(Comparator.comparing(metadata -> metadata.sequenceOrder))
+                .forEach(metadata -> sql.append(", ").append(metadata.name).append(" ").append(metadata.dataType));
+
+        return sql.append(", PRIMARY KEY (tf, tag, ts))").toString();
     }
 
     /**
@@ -402,6 +564,62 @@ public class StrategyDataService {
         }
     }
 
+    /**
+     * Найти контракт по хэшу
+     *
+     * @param contractHash contract_hash контракта
+     * @return контракт или null если не найден
+     */
+    @Transactional
+    public Contract findContractByHash(String contractHash) {
+        try {
+            String query = "SELECT c FROM Contract c LEFT JOIN FETCH c.metadata WHERE c.contractHash = :contractHash";
+            return entityManager.createQuery(query, Contract.class)
+                    .setParameter("contractHash", contractHash)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(null);
+        } catch (Exception e) {
+            Log.errorf(e, "❌ Ошибка при поиске контракта по хэшу: %s", contractHash);
+            return null;
+        }
+    }
+
+    /**
+     * Таблица, в которой лежат строки фич контракта: таблица контракта, если она создана, иначе wide_candles
+     */
+    @Transactional
+    public String resolveFeatureTable(Contract contract) {
+        String registered = featureTables.get(contract.contractHash);
+        if (registered != null) {
+            return registered;
+        }
+        String table = ContractFeatureTable.tableName(contract.contractHash);
+        Number tableCount = (Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM information_schema.tables WHERE table_name = :table")
+                .setParameter("table", table)
+                .getSingleResult();
+        return tableCount.longValue() > 0 ? table : WIDE_TABLE;
+    }
+
+    /**
+     * Колонки таблицы фич и их SQL-типы в порядке следования в таблице
+     */
+    @Transactional
+    public Map<String, String> getTableColumnTypes(String table) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                        "SELECT column_name, data_type FROM information_schema.columns " +
+                                "WHERE table_name = :table ORDER BY ordinal_position")
+                .setParameter("table", table)
+                .getResultList();
+        Map<String, String> columns = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            columns.put((String) row[0], (String) row[1]);
+        }
+        return columns;
+    }
+
     /**
      * Сохранить новый контракт в БД (без проверки существования)
      *
@@ -449,13 +667,19 @@ public class StrategyDataService {
             String contractName = contract.name;
             String contractHash = contract.contractHash;
 
-            // 1. Удаляем все строки фич из таблицы wide_candles
+            // 1. Удаляем все строки фич из таблицы wide_candles и таблицу фич контракта вместе с представлением
             String deleteFeaturesSql = "DELETE FROM wide_candles WHERE contract_hash = :contractHash";
             int deletedFeatures = entityManager.createNativeQuery(deleteFeaturesSql)
                     .setParameter("contractHash", contractHash)
                     .executeUpdate();
             Log.infof("🗑️ Удалено %d строк фич для контракта '%s'", deletedFeatures, contractName);
 
+            if (contractHash != null) {
+                entityManager.createNativeQuery("DROP VIEW IF EXISTS " + ContractFeatureTable.viewName(contractName)).executeUpdate();
+                entityManager.createNativeQuery("DROP TABLE IF EXISTS " + ContractFeatureTable.tableName(contractHash)).executeUpdate();
+                featureTables.remove(contractHash);
+            }
+
             // 2. Удаляем все метаданные контракта (cascade = ALL, orphanRemoval = true делает это автоматически)
             // Но для явности можем удалить вручную
             String deleteMetadataSql = "DELETE FROM contract_metadata WHERE contract_id = :contractId";
@@ -1,9 +1,13 @@
 package artskif.trader.strategy;
 
+import artskif.trader.events.actor.ActorRuntime;
 import artskif.trader.strategy.database.ColumnsRegistry;
 import artskif.trader.strategy.database.schema.AbstractSchema;
 import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
 import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
@@ -18,14 +22,17 @@ import java.util.concurrent.ConcurrentHashMap;
 public class StrategyService {
 
     ColumnsRegistry registry;
+    private final ActorRuntime actorRuntime;
     private final Map<String, AbstractSchema> contractMap = new HashMap<>();
     private final Map<String, AbstractStrategy> strategyMap = new ConcurrentHashMap<>();
 
     @Inject
     public StrategyService(ColumnsRegistry registry,
+                           ActorRuntime actorRuntime,
                            Instance<AbstractSchema> contractInstances,
                            Instance<AbstractStrategy> strategyInstances) {
         this.registry = registry;
+        this.actorRuntime = actorRuntime;
 
         // Регистрируем схему
         contractInstances.forEach(contract -> {
@@ -42,6 +49,36 @@ public class StrategyService {
         });
     }
 
+    /**
+     * Централизованный запуск всех зарегистрированных стратегий как акторов
+     */
+    void onStart(@Observes StartupEvent event) {
+        int started = 0;
+        for (AbstractStrategy strategy : strategyMap.values()) {
+            try {
+                if (strategy.start(actorRuntime)) {
+                    started++;
+                }
+            } catch (Exception e) {
+                Log.errorf(e, "❌ Ошибка при запуске стратегии: %s", strategy.getName());
+            }
+        }
+        Log.infof("🚀 Запущено стратегий: %d из %d", started, strategyMap.size());
+    }
+
+    /**
+     * Централизованная остановка всех стратегий
+     */
+    void onShutdown(@Observes ShutdownEvent event) {
+        for (AbstractStrategy strategy : strategyMap.values()) {
+            try {
+                strategy.stop(actorRuntime);
+            } catch (Exception e) {
+                Log.errorf(e, "❌ Ошибка при остановке стратегии: %s", strategy.getName());
+            }
+        }
+    }
+
     /**
      * Получить список всех зарегистрированных стратегий
      *
@@ -63,7 +100,7 @@ public class StrategyService {
      */
     public boolean isStrategyRunning(String strategyName) {
         AbstractStrategy strategy = strategyMap.get(strategyName);
-        return strategy != null && strategy.isEnabled();
+        return strategy != null && strategy.isRunning();
     }
 
     /**
@@ -0,0 +1,76 @@
+package artskif.trader.strategy.backtest;
+
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+
+/**
+ * Цены баров в виде примитивных массивов для внутреннего цикла симулятора.
+ * Индекс массива i соответствует индексу серии {@code beginIndex + i}.
+ */
+public final class BacktestBars {
+
+    private final int beginIndex;
+    private final double[] open;
+    private final double[] high;
+    private final double[] low;
+    private final double[] close;
+
+    public BacktestBars(int beginIndex, double[] open, double[] high, double[] low, double[] close) {
+        if (open.length != high.length || open.length != low.length || open.length != close.length) {
+            throw new IllegalArgumentException("Массивы цен должны быть одинаковой длины");
+        }
+        this.beginIndex = beginIndex;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+    }
+
+    /**
+     * Однократно выгружает цены из серии ta4j в примитивные массивы
+     *
+     * @param series     серия баров
+     * @param startIndex первый индекс серии (включительно)
+     * @param endIndex   последний индекс серии (включительно)
+     */
+    public static BacktestBars fromSeries(BarSeries series, int startIndex, int endIndex) {
+        int size = Math.max(0, endIndex - startIndex + 1);
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+
+        for (int i = 0; i < size; i++) {
+            Bar bar = series.getBar(startIndex + i);
+            open[i] = bar.getOpenPrice().doubleValue();
+            high[i] = bar.getHighPrice().doubleValue();
+            low[i] = bar.getLowPrice().doubleValue();
+            close[i] = bar.getClosePrice().doubleValue();
+        }
+        return new BacktestBars(startIndex, open, high, low, close);
+    }
+
+    public int size() {
+        return close.length;
+    }
+
+    public int getBeginIndex() {
+        return beginIndex;
+    }
+
+    public double[] open() {
+        return open;
+    }
+
+    public double[] high() {
+        return high;
+    }
+
+    public double[] low() {
+        return low;
+    }
+
+    public double[] close() {
+        return close;
+    }
+}
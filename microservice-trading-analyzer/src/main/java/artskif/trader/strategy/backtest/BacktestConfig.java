@@ -0,0 +1,45 @@
+package artskif.trader.strategy.backtest;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Конфигурация симулятора бэктеста (уровни SL/TP и модель издержек).
+ * По умолчанию всё отключено — результат совпадает с прежним бэктестом на ZeroCostModel.
+ */
+@ApplicationScoped
+public class BacktestConfig {
+
+    /**
+     * Отклонение стоп-лосса от цены входа, %. 0 — стоп-лосс не используется.
+     */
+    @Inject
+    @ConfigProperty(name = "strategy.backtest.stop-loss-percent", defaultValue = "0")
+    double stopLossPercent;
+
+    /**
+     * Отклонение тейк-профита от цены входа, %. 0 — тейк-профит не используется.
+     */
+    @Inject
+    @ConfigProperty(name = "strategy.backtest.take-profit-percent", defaultValue = "0")
+    double takeProfitPercent;
+
+    /**
+     * Комиссия биржи за одну сторону сделки, %. 0 — без комиссии.
+     */
+    @Inject
+    @ConfigProperty(name = "strategy.backtest.fee-percent", defaultValue = "0")
+    double feePercent;
+
+    /**
+     * Проскальзывание исполнения против позиции, %. 0 — исполнение точно по цене.
+     */
+    @Inject
+    @ConfigProperty(name = "strategy.backtest.slippage-percent", defaultValue = "0")
+    double slippagePercent;
+
+    public BacktestParams toParams() {
+        return new BacktestParams(stopLossPercent, takeProfitPercent, feePercent, slippagePercent);
+    }
+}
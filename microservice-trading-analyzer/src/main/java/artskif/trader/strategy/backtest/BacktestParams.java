@@ -0,0 +1,19 @@
+package artskif.trader.strategy.backtest;
+
+/**
+ * Параметры симуляции. Все значения — в процентах; 0 отключает соответствующий механизм.
+ *
+ * @param stopLossPercent   отклонение стоп-лосса от цены входа
+ * @param takeProfitPercent отклонение тейк-профита от цены входа
+ * @param feePercent        комиссия за одну сторону сделки (вход или выход)
+ * @param slippagePercent   проскальзывание исполнения против позиции
+ */
+public record BacktestParams(double stopLossPercent, double takeProfitPercent,
+                             double feePercent, double slippagePercent) {
+
+    public BacktestParams {
+        if (stopLossPercent < 0 || takeProfitPercent < 0 || feePercent < 0 || slippagePercent < 0) {
+            throw new IllegalArgumentException("Параметры бэктеста не могут быть отрицательными");
+        }
+    }
+}
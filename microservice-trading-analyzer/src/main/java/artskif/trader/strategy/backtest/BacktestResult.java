@@ -0,0 +1,137 @@
+package artskif.trader.strategy.backtest;
+
+import artskif.trader.strategy.event.common.Direction;
+
+/**
+ * Результат симуляции: метрики позиций в виде колоночных векторов (по одному значению на бар)
+ * и агрегированная статистика отдельно для лонга и шорта.
+ */
+public final class BacktestResult {
+
+    private final int beginIndex;
+    private final Track longTrack;
+    private final Track shortTrack;
+
+    BacktestResult(int beginIndex, int size) {
+        this.beginIndex = beginIndex;
+        this.longTrack = new Track(Direction.LONG, size);
+        this.shortTrack = new Track(Direction.SHORT, size);
+    }
+
+    public int getBeginIndex() {
+        return beginIndex;
+    }
+
+    public int size() {
+        return longTrack.entryPrice.length;
+    }
+
+    public Track getLong() {
+        return longTrack;
+    }
+
+    public Track getShort() {
+        return shortTrack;
+    }
+
+    public Track get(Direction direction) {
+        return direction == Direction.LONG ? longTrack : shortTrack;
+    }
+
+    @Override
+    public String toString() {
+        return "BacktestResult{bars=" + size() + ", long=" + longTrack + ", short=" + shortTrack + '}';
+    }
+
+    /**
+     * Колонки и статистика по одному направлению.
+     * Если на баре позиции нет — в колонках NaN.
+     */
+    public static final class Track {
+        private final Direction direction;
+        final double[] entryPrice;
+        final double[] stopLoss;
+        final double[] takeProfit;
+
+        int positions;
+        int winningPositions;
+        int stopLossHits;
+        int takeProfitHits;
+        double sumReturn;
+        double equity = 1.0;
+
+        Track(Direction direction, int size) {
+            this.direction = direction;
+            this.entryPrice = new double[size];
+            this.stopLoss = new double[size];
+            this.takeProfit = new double[size];
+        }
+
+        void closePosition(double netReturn) {
+            positions++;
+            if (netReturn > 0) {
+                winningPositions++;
+            }
+            sumReturn += netReturn;
+            equity *= 1.0 + netReturn;
+        }
+
+        public Direction getDirection() {
+            return direction;
+        }
+
+        /** Цена входа открытой позиции по барам (NaN — позиции нет) */
+        public double[] entryPrice() {
+            return entryPrice;
+        }
+
+        /** Уровень стоп-лосса открытой позиции по барам (NaN — нет позиции или SL отключён) */
+        public double[] stopLoss() {
+            return stopLoss;
+        }
+
+        /** Уровень тейк-профита открытой позиции по барам (NaN — нет позиции или TP отключён) */
+        public double[] takeProfit() {
+            return takeProfit;
+        }
+
+        /** Количество закрытых позиций */
+        public int getPositions() {
+            return positions;
+        }
+
+        public int getWinningPositions() {
+            return winningPositions;
+        }
+
+        public int getStopLossHits() {
+            return stopLossHits;
+        }
+
+        public int getTakeProfitHits() {
+            return takeProfitHits;
+        }
+
+        /** Доля прибыльных позиций (0..1) */
+        public double getWinRate() {
+            return positions == 0 ? 0.0 : (double) winningPositions / positions;
+        }
+
+        /** Сумма доходностей закрытых позиций с учётом комиссий и проскальзывания (доля, не проценты) */
+        public double getSumReturn() {
+            return sumReturn;
+        }
+
+        /** Итоговый множитель капитала при реинвестировании (1.0 — без изменений) */
+        public double getEquity() {
+            return equity;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s{positions=%d, wins=%d, winRate=%.2f%%, sl=%d, tp=%d, sumReturn=%.4f%%, equity=%.6f}",
+                    direction, positions, winningPositions, getWinRate() * 100, stopLossHits, takeProfitHits,
+                    sumReturn * 100, equity);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package artskif.trader.strategy.backtest;
+
+import artskif.trader.strategy.event.TradeEventProcessor;
+import artskif.trader.strategy.event.common.Direction;
+import org.ta4j.core.BaseTradingRecord;
+import org.ta4j.core.Trade;
+import org.ta4j.core.TradingRecord;
+import org.ta4j.core.analysis.cost.ZeroCostModel;
+import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.Num;
+
+import java.util.function.IntPredicate;
+
+/**
+ * Предрассчитанные сигналы входа/выхода для лонга и шорта.
+ * Процессоры опрашиваются один раз на бар, дальше симулятор работает только с массивами —
+ * это позволяет прогонять один и тот же набор сигналов с разными параметрами (SL/TP, комиссии).
+ *
+ * Процессоры получают торговый рекорд своего направления, который ведётся по их собственным сигналам
+ * так же, как в пошаговом бэктесте на ta4j: вход по закрытию бара, когда позиции нет, выход — когда она открыта.
+ * Если SL/TP симулятора закрывают позицию раньше, рекорд об этом не знает — сигналы, зависящие
+ * от открытой позиции, считаются по траектории без SL/TP.
+ */
+public record BacktestSignals(boolean[] longEnter, boolean[] longExit,
+                              boolean[] shortEnter, boolean[] shortExit) {
+
+    /**
+     * Рассчитать сигналы процессоров по историческому ряду
+     *
+     * @param bars           цены баров диапазона (по ним ведутся торговые рекорды процессоров)
+     * @param longProcessor  процессор лонговых сигналов (может быть null)
+     * @param shortProcessor процессор шортовых сигналов (может быть null)
+     * @param isUnstableAt   предикат нестабильных баров — на них сигналы не генерируются
+     */
+    public static BacktestSignals evaluate(BacktestBars bars,
+                                           TradeEventProcessor longProcessor,
+                                           TradeEventProcessor shortProcessor,
+                                           IntPredicate isUnstableAt) {
+        int size = bars.size();
+        boolean[] longEnter = new boolean[size];
+        boolean[] longExit = new boolean[size];
+        boolean[] shortEnter = new boolean[size];
+        boolean[] shortExit = new boolean[size];
+
+        if (longProcessor != null) {
+            evaluateDirection(bars, longProcessor, Direction.LONG, isUnstableAt, longEnter, longExit);
+        }
+        if (shortProcessor != null) {
+            evaluateDirection(bars, shortProcessor, Direction.SHORT, isUnstableAt, shortEnter, shortExit);
+        }
+        return new BacktestSignals(longEnter, longExit, shortEnter, shortExit);
+    }
+
+    private static void evaluateDirection(BacktestBars bars, TradeEventProcessor processor, Direction direction,
+                                          IntPredicate isUnstableAt, boolean[] enter, boolean[] exit) {
+        int beginIndex = bars.getBeginIndex();
+        int endIndex = beginIndex + bars.size() - 1;
+        TradingRecord tradingRecord = new BaseTradingRecord(
+                direction == Direction.LONG ? Trade.TradeType.BUY : Trade.TradeType.SELL,
+                beginIndex, endIndex, new ZeroCostModel(), new ZeroCostModel());
+        Num amount = DecimalNum.valueOf(1);
+
+        for (int i = 0; i < enter.length; i++) {
+            int index = beginIndex + i;
+            if (isUnstableAt.test(index)) {
+                continue;
+            }
+            enter[i] = processor.shouldMarketEnter(index, tradingRecord, false);
+            exit[i] = processor.shouldMarketExit(index, tradingRecord, false);
+
+            boolean opened = tradingRecord.getCurrentPosition().isOpened();
+            if (opened ? exit[i] : enter[i]) {
+                tradingRecord.operate(index, DecimalNum.valueOf(bars.close()[i]), amount);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package artskif.trader.strategy.backtest;
+
+/**
+ * Событийный симулятор бэктеста на примитивных массивах.
+ *
+ * Модель исполнения:
+ * - вход по цене закрытия сигнального бара (как TradeOnCurrentCloseModel) с учётом проскальзывания;
+ * - на следующих барах стоп-лосс и тейк-профит проверяются по внутрибарным high/low,
+ *   при гэпе через уровень исполнение идёт по цене открытия бара;
+ * - если на одном баре задеты и SL, и TP — считаем, что первым сработал SL (консервативно);
+ * - сигнал выхода процессора исполняется по цене закрытия;
+ * - комиссия списывается за вход и за выход, повторный вход на баре выхода не выполняется;
+ * - позиция, открытая на последнем баре, в статистику не попадает.
+ *
+ * Лонг и шорт ведутся независимо и могут быть открыты одновременно.
+ * Во внутреннем цикле нет аллокаций и обращений к ta4j, поэтому его можно использовать
+ * для перебора параметров поверх одного набора {@link BacktestSignals}.
+ */
+public final class BacktestSimulator {
+
+    private BacktestSimulator() {
+    }
+
+    public static BacktestResult simulate(BacktestBars bars, BacktestSignals signals, BacktestParams params) {
+        int size = bars.size();
+        if (signals.longEnter().length != size || signals.shortEnter().length != size) {
+            throw new IllegalArgumentException("Размер сигналов не совпадает с количеством баров");
+        }
+
+        BacktestResult result = new BacktestResult(bars.getBeginIndex(), size);
+        simulateDirection(bars, signals.longEnter(), signals.longExit(), params, result.getLong(), true);
+        simulateDirection(bars, signals.shortEnter(), signals.shortExit(), params, result.getShort(), false);
+        return result;
+    }
+
+    private static void simulateDirection(BacktestBars bars, boolean[] enter, boolean[] exit,
+                                          BacktestParams params, BacktestResult.Track track, boolean isLong) {
+        final double[] open = bars.open();
+        final double[] high = bars.high();
+        final double[] low = bars.low();
+        final double[] close = bars.close();
+        final double[] entryColumn = track.entryPrice;
+        final double[] stopLossColumn = track.stopLoss;
+        final double[] takeProfitColumn = track.takeProfit;
+
+        final double slRate = params.stopLossPercent() / 100.0;
+        final double tpRate = params.takeProfitPercent() / 100.0;
+        final double feeRate = params.feePercent() / 100.0;
+        final double slipRate = params.slippagePercent() / 100.0;
+        final double side = isLong ? 1.0 : -1.0;
+
+        boolean inPosition = false;
+        double entry = Double.NaN;
+        double stopLevel = Double.NaN;
+        double takeLevel = Double.NaN;
+
+        for (int i = 0, n = close.length; i < n; i++) {
+            boolean exited = false;
+
+            if (inPosition) {
+                double exitLevel = Double.NaN;
+                if (isLong) {
+                    if (!Double.isNaN(stopLevel) && low[i] <= stopLevel) {
+                        exitLevel = Math.min(stopLevel, open[i]);
+                        track.stopLossHits++;
+                    } else if (!Double.isNaN(takeLevel) && high[i] >= takeLevel) {
+                        exitLevel = Math.max(takeLevel, open[i]);
+                        track.takeProfitHits++;
+                    }
+                } else {
+                    if (!Double.isNaN(stopLevel) && high[i] >= stopLevel) {
+                        exitLevel = Math.max(stopLevel, open[i]);
+                        track.stopLossHits++;
+                    } else if (!Double.isNaN(takeLevel) && low[i] <= takeLevel) {
+                        exitLevel = Math.min(takeLevel, open[i]);
+                        track.takeProfitHits++;
+                    }
+                }
+                if (Double.isNaN(exitLevel) && exit[i]) {
+                    exitLevel = close[i];
+                }
+
+                if (!Double.isNaN(exitLevel)) {
+                    double fill = exitLevel * (1.0 - side * slipRate);
+                    double grossReturn = side * (fill - entry) / entry;
+                    track.closePosition(grossReturn - 2.0 * feeRate);
+                    inPosition = false;
+                    exited = true;
+                }
+            }
+
+            if (!inPosition && !exited && enter[i]) {
+                entry = close[i] * (1.0 + side * slipRate);
+                stopLevel = slRate > 0 ? entry * (1.0 - side * slRate) : Double.NaN;
+                takeLevel = tpRate > 0 ? entry * (1.0 + side * tpRate) : Double.NaN;
+                inPosition = true;
+            }
+
+            if (inPosition) {
+                entryColumn[i] = entry;
+                stopLossColumn[i] = stopLevel;
+                takeProfitColumn[i] = takeLevel;
+            } else {
+                entryColumn[i] = Double.NaN;
+                stopLossColumn[i] = Double.NaN;
+                takeProfitColumn[i] = Double.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package artskif.trader.strategy.database;
+
+import java.util.Locale;
+
+/**
+ * Имена объектов БД для контрактов с раскладкой {@link FeatureStorageLayout#CONTRACT_TABLE}
+ */
+public final class ContractFeatureTable {
+
+    /**
+     * Префикс гипертаблиц контрактов (по нему их находит модуль политик хранения)
+     */
+    public static final String TABLE_PREFIX = "wc_";
+
+    /**
+     * Префикс представлений для Grafana
+     */
+    public static final String VIEW_PREFIX = "features_";
+
+    private static final int HASH_LENGTH = 16;
+
+    private ContractFeatureTable() {
+    }
+
+    /**
+     * Таблица версии контракта: имя зависит от contract_hash, поэтому изменение метаданных не затрагивает старую таблицу
+     */
+    public static String tableName(String contractHash) {
+        if (contractHash == null || contractHash.length() < HASH_LENGTH) {
+            throw new IllegalArgumentException("Некорректный contract_hash для таблицы фич: " + contractHash);
+        }
+        return TABLE_PREFIX + contractHash.substring(0, HASH_LENGTH).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Представление с постоянным именем контракта, которое указывает на таблицу его текущей версии
+     */
+    public static String viewName(String contractName) {
+        return VIEW_PREFIX + contractName.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+    }
+}
@@ -0,0 +1,16 @@
+package artskif.trader.strategy.database;
+
+/**
+ * Способ хранения строк фич контракта
+ */
+public enum FeatureStorageLayout {
+    /**
+     * Общая таблица wide_candles: каждая новая фича добавляется колонкой через ALTER TABLE
+     */
+    WIDE,
+    /**
+     * Отдельная гипертаблица контракта с колонками только из его метаданных.
+     * Создаётся один раз на contract_hash и не изменяется — новая версия контракта получает новую таблицу.
+     */
+    CONTRACT_TABLE
+}
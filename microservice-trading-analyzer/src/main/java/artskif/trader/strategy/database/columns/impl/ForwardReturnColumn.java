@@ -0,0 +1,89 @@
+package artskif.trader.strategy.database.columns.impl;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.entity.MetadataType;
+import artskif.trader.strategy.database.columns.AbstractColumn;
+import artskif.trader.strategy.database.columns.ColumnMetadata;
+import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
+import artskif.trader.strategy.indicators.base.ForwardReturnIndicator;
+import artskif.trader.strategy.indicators.multi.ClosePriceIndicatorM;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.util.List;
+
+/**
+ * Лейблы для обучения моделей: доходность закрытия через несколько баров вперёд.
+ * Считаются только по исторической серии (бэктест); в live-серии будущее неизвестно и значение — NaN.
+ */
+@ApplicationScoped
+public class ForwardReturnColumn extends AbstractColumn<ClosePriceIndicatorM> {
+
+    /**
+     * Перечислимый тип для горизонтов доходности
+     */
+    public enum ForwardReturnColumnType implements ColumnTypeMetadata {
+        FORWARD_RETURN_15_1M(
+                "label_forward_return_15_1m",
+                "Доходность закрытия через 15 баров на таймфрейме 1m",
+                "numeric(12, 8)",
+                CandleTimeframe.CANDLE_1M,
+                15
+        ),
+        FORWARD_RETURN_12_5M(
+                "label_forward_return_12_5m",
+                "Доходность закрытия через 12 баров на таймфрейме 5m",
+                "numeric(12, 8)",
+                CandleTimeframe.CANDLE_5M,
+                12
+        );
+
+        private final ColumnMetadata metadata;
+        private final int horizon;
+
+        ForwardReturnColumnType(String name, String description, String dataType, CandleTimeframe timeframe, int horizon) {
+            this.metadata = new ColumnMetadata(name, description, dataType, timeframe, null, MetadataType.LABEL);
+            this.horizon = horizon;
+        }
+
+        @Override
+        public ColumnMetadata getMetadata() {
+            return metadata;
+        }
+
+        public int getHorizon() {
+            return horizon;
+        }
+    }
+
+    // No-args constructor required by CDI
+    protected ForwardReturnColumn() {
+        super(null);
+    }
+
+    @Inject
+    public ForwardReturnColumn(ClosePriceIndicatorM closePriceIndicatorM) {
+        super(closePriceIndicatorM);
+    }
+
+    @Override
+    public Num getValueByName(boolean isLiveSeries, String valueName, int index) {
+        if (isLiveSeries) {
+            return NaN.NaN;
+        }
+        ForwardReturnColumnType type = ColumnTypeMetadata.findByName(ForwardReturnColumnType.values(), valueName);
+        return new ForwardReturnIndicator(getIndicator(type.getTimeframe(), false), type.getHorizon()).getValue(index);
+    }
+
+    @Override
+    public List<String> getColumnNames() {
+        return ColumnTypeMetadata.getNames(ForwardReturnColumnType.values());
+    }
+
+    @Override
+    public ColumnTypeMetadata getColumnTypeMetadataByName(String name) {
+        return ColumnTypeMetadata.findByName(ForwardReturnColumnType.values(), name);
+    }
+}
@@ -1,12 +1,15 @@
 package artskif.trader.strategy.event;
 
 import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
 import artskif.trader.strategy.event.common.Direction;
 import artskif.trader.strategy.event.common.TradeEventData;
 import artskif.trader.strategy.event.common.TradeEventType;
+import artskif.trader.strategy.feature.FeatureVector;
 import org.ta4j.core.TradingRecord;
 import org.ta4j.core.num.Num;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface TradeEventProcessor {
@@ -29,6 +32,36 @@ public interface TradeEventProcessor {
      */
     boolean shouldMarketEnter(int index, TradingRecord tradingRecord, boolean isLiveSeries);
 
+    /**
+     * Проверить условия входа по рассчитанному вектору фич live-бара.
+     * По умолчанию вычисляет условие по индикаторам для индекса бара вектора.
+     *
+     * @param features вектор фич подтверждённого бара
+     * @return true если условия входа выполнены, false иначе
+     */
+    default boolean shouldMarketEnter(FeatureVector features) {
+        return shouldMarketEnter(features.getBarIndex(), null, true);
+    }
+
+    /**
+     * Предварительная проверка условий входа по формирующейся (неподтверждённой) свече.
+     * Реализация не должна изменять серию и кэши индикаторов. По умолчанию сигнал не предсказывается.
+     *
+     * @param formingClose текущая цена закрытия формирующейся свечи
+     * @return true если при закрытии по этой цене условия входа будут выполнены
+     */
+    default boolean peekMarketEnter(Num formingClose) {
+        return false;
+    }
+
+    /**
+     * Колонки, которые процессор читает из вектора фич.
+     * Они добавляются в общий набор, рассчитываемый стадией фич один раз на бар.
+     */
+    default List<ColumnTypeMetadata> getRequiredFeatures() {
+        return List.of();
+    }
+
     /**
      * Проверить, удовлетворяет ли текущий бар условиям выхода из сделки
      *
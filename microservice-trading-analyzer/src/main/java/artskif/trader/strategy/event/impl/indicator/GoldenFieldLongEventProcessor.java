@@ -1,13 +1,19 @@
 package artskif.trader.strategy.event.impl.indicator;
 
 import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
+import artskif.trader.strategy.database.columns.impl.RSIColumn;
 import artskif.trader.strategy.event.AbstractTradeEventProcessor;
 import artskif.trader.strategy.event.common.Direction;
 import artskif.trader.strategy.event.common.TradeEventType;
+import artskif.trader.strategy.feature.FeatureVector;
 import jakarta.enterprise.context.ApplicationScoped;
 import org.ta4j.core.TradingRecord;
 import org.ta4j.core.indicators.RSIIndicator;
 import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.Num;
+
+import java.util.List;
 
 @ApplicationScoped
 public class GoldenFieldLongEventProcessor extends AbstractTradeEventProcessor {
@@ -19,6 +25,26 @@ public class GoldenFieldLongEventProcessor extends AbstractTradeEventProcessor {
         return indicator.getValue(index) != null && indicator.getValue(index).isLessThan(DecimalNum.valueOf(31));
     }
 
+    @Override
+    public boolean shouldMarketEnter(FeatureVector features) {
+        double rsi = features.get(RSIColumn.RSIColumnType.RSI_1M.getName());
+        if (Double.isNaN(rsi)) {
+            return shouldMarketEnter(features.getBarIndex(), null, true);
+        }
+        return rsi < 31;
+    }
+
+    @Override
+    public boolean peekMarketEnter(Num formingClose) {
+        Num rsi = rsiIndicatorM.peekNext(getTimeframe(), formingClose);
+        return !rsi.isNaN() && rsi.isLessThan(DecimalNum.valueOf(31));
+    }
+
+    @Override
+    public List<ColumnTypeMetadata> getRequiredFeatures() {
+        return List.of(RSIColumn.RSIColumnType.RSI_1M);
+    }
+
     @Override
     public boolean shouldMarketExit(int index, TradingRecord tradingRecord, boolean isLiveSeries) {
         return false;
@@ -1,12 +1,15 @@
 package artskif.trader.strategy.event.impl.indicator;
 
 import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
+import artskif.trader.strategy.database.columns.impl.RSIColumn;
 import artskif.trader.strategy.event.common.Direction;
 import artskif.trader.strategy.event.common.TradeEventType;
 import artskif.trader.strategy.indicators.base.MultiMAIndicator;
 import artskif.trader.strategy.indicators.base.ShortTrendIndicator;
 import artskif.trader.strategy.indicators.multi.HighPriceIndicatorM;
 import artskif.trader.strategy.event.AbstractTradeEventProcessor;
+import artskif.trader.strategy.feature.FeatureVector;
 import artskif.trader.strategy.indicators.multi.MultiMAIndicatorM;
 import artskif.trader.strategy.indicators.multi.RSIIndicatorM;
 import artskif.trader.strategy.indicators.multi.TripleMAIndicatorM;
@@ -19,6 +22,8 @@ import org.ta4j.core.indicators.RSIIndicator;
 import org.ta4j.core.num.DecimalNum;
 import org.ta4j.core.num.Num;
 
+import java.util.List;
+
 
 @ApplicationScoped
 public class GoldenFieldShortEventProcessor extends AbstractTradeEventProcessor {
@@ -29,6 +34,26 @@ public class GoldenFieldShortEventProcessor extends AbstractTradeEventProcessor
         return indicator.getValue(index) != null && indicator.getValue(index).isGreaterThan(DecimalNum.valueOf(69));
     }
 
+    @Override
+    public boolean shouldMarketEnter(FeatureVector features) {
+        double rsi = features.get(RSIColumn.RSIColumnType.RSI_1M.getName());
+        if (Double.isNaN(rsi)) {
+            return shouldMarketEnter(features.getBarIndex(), null, true);
+        }
+        return rsi > 69;
+    }
+
+    @Override
+    public boolean peekMarketEnter(Num formingClose) {
+        Num rsi = rsiIndicatorM.peekNext(getTimeframe(), formingClose);
+        return !rsi.isNaN() && rsi.isGreaterThan(DecimalNum.valueOf(69));
+    }
+
+    @Override
+    public List<ColumnTypeMetadata> getRequiredFeatures() {
+        return List.of(RSIColumn.RSIColumnType.RSI_1M);
+    }
+
     @Override
     public boolean shouldMarketExit(int index, TradingRecord tradingRecord, boolean isLiveSeries) {
         return false;
@@ -0,0 +1,60 @@
+package artskif.trader.strategy.feature;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Неизменяемая раскладка вектора фич: имя колонки -> номер слота.
+ * Раскладка пересобирается при изменении набора подписчиков, векторы ссылаются на ту, с которой были посчитаны.
+ */
+public final class FeatureLayout {
+
+    public static final FeatureLayout EMPTY = new FeatureLayout(List.of());
+
+    private final List<String> names;
+    private final Map<String, Integer> slots;
+
+    private FeatureLayout(List<String> names) {
+        this.names = List.copyOf(names);
+        Map<String, Integer> index = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+        }
+        this.slots = Map.copyOf(index);
+    }
+
+    /**
+     * Построить раскладку из объединения имён колонок (дубликаты схлопываются, порядок — по имени)
+     */
+    public static FeatureLayout of(Collection<String> columnNames) {
+        return columnNames.isEmpty() ? EMPTY : new FeatureLayout(List.copyOf(new TreeSet<>(columnNames)));
+    }
+
+    /**
+     * Номер слота колонки или -1, если колонка не входит в раскладку
+     */
+    public int slotOf(String columnName) {
+        Integer slot = slots.get(columnName);
+        return slot != null ? slot : -1;
+    }
+
+    public String nameAt(int slot) {
+        return names.get(slot);
+    }
+
+    public List<String> getNames() {
+        return names;
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureLayout" + names;
+    }
+}
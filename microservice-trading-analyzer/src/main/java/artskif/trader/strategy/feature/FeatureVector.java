@@ -0,0 +1,96 @@
+package artskif.trader.strategy.feature;
+
+import artskif.trader.candle.CandleTimeframe;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Неизменяемый вектор фич подтверждённого бара, посчитанный один раз для (инструмент, таймфрейм).
+ * Значения хранятся по слотам {@link FeatureLayout} в том виде, в каком их вернули индикаторы (Num без потери точности);
+ * отсутствующее значение — NaN.
+ */
+public final class FeatureVector {
+
+    private final String instrument;
+    private final CandleTimeframe timeframe;
+    private final Instant timestamp;
+    private final int barIndex;
+    private final Num close;
+    private final FeatureLayout layout;
+    private final Num[] values;
+
+    public FeatureVector(String instrument, CandleTimeframe timeframe, Instant timestamp, int barIndex,
+                         Num close, FeatureLayout layout, Num[] values) {
+        if (values.length != layout.size()) {
+            throw new IllegalArgumentException("Размер вектора не совпадает с раскладкой фич");
+        }
+        this.instrument = instrument;
+        this.timeframe = timeframe;
+        this.timestamp = timestamp;
+        this.barIndex = barIndex;
+        this.close = close;
+        this.layout = layout;
+        this.values = values.clone();
+    }
+
+    public String getInstrument() {
+        return instrument;
+    }
+
+    public CandleTimeframe getTimeframe() {
+        return timeframe;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Индекс бара в live-серии, для которого посчитан вектор
+     */
+    public int getBarIndex() {
+        return barIndex;
+    }
+
+    public Num getClose() {
+        return close;
+    }
+
+    public FeatureLayout getLayout() {
+        return layout;
+    }
+
+    public boolean has(String columnName) {
+        return layout.slotOf(columnName) >= 0;
+    }
+
+    /**
+     * Значение фичи по имени колонки в виде double (для порогов и моделей); NaN если колонки нет в векторе или значение не рассчитано
+     */
+    public double get(String columnName) {
+        int slot = layout.slotOf(columnName);
+        return slot >= 0 ? get(slot) : Double.NaN;
+    }
+
+    public double get(int slot) {
+        Num value = values[slot];
+        return value.isNaN() ? Double.NaN : value.doubleValue();
+    }
+
+    /**
+     * Значение фичи в исходной точности для кода, работающего с ta4j и БД; NaN если колонки нет в векторе
+     */
+    public Num getNum(String columnName) {
+        int slot = layout.slotOf(columnName);
+        return slot >= 0 ? values[slot] : NaN.NaN;
+    }
+
+    @Override
+    public String toString() {
+        return "FeatureVector{" + instrument + " " + timeframe + " " + timestamp +
+                ", index=" + barIndex + ", " + layout.getNames() + "=" + Arrays.toString(values) + '}';
+    }
+}
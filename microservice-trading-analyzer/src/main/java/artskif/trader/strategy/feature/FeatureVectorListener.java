@@ -0,0 +1,12 @@
+package artskif.trader.strategy.feature;
+
+/**
+ * Потребитель векторов фич (стратегии, ML-модели и т.п.)
+ */
+public interface FeatureVectorListener {
+
+    /**
+     * Вызывается из потока стадии фич — реализация не должна блокироваться надолго
+     */
+    void onFeatureVector(FeatureVector vector);
+}
@@ -0,0 +1,256 @@
+package artskif.trader.strategy.feature;
+
+import artskif.trader.candle.Candle;
+import artskif.trader.candle.CandleEventType;
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.events.actor.ActorRuntime;
+import artskif.trader.events.actor.Mailbox;
+import artskif.trader.events.candle.CandleEvent;
+import artskif.trader.events.candle.CandleEventBus;
+import artskif.trader.events.candle.CandleEventListener;
+import artskif.trader.strategy.database.ColumnsRegistry;
+import artskif.trader.strategy.database.columns.Column;
+import io.quarkus.logging.Log;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.ta4j.core.Bar;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Общая стадия расчёта фич.
+ *
+ * На каждый подтверждённый бар (инструмент, таймфрейм) один раз считает объединение колонок,
+ * запрошенных всеми подписчиками таймфрейма, и рассылает неизменяемый {@link FeatureVector}.
+ * Стоимость расчёта на бар не зависит от количества стратегий.
+ * Для каждой пары (инструмент, таймфрейм) расчёт идёт в отдельном акторе, чтобы не задерживать поток публикации свечей
+ * и не смешивать серии разных инструментов; акторы создаются по первому бару инструмента.
+ * Бары инструментов, для которых у {@link Candle} нет собственной серии (например, тестовые события), пропускаются:
+ * фичи считаются по live-серии таймфрейма и иначе были бы подписаны чужим инструментом.
+ */
+@ApplicationScoped
+public class FeatureVectorStage implements CandleEventListener {
+
+    private static final int MAILBOX_CAPACITY = 1000;
+
+    private final Candle candle;
+    private final ColumnsRegistry registry;
+    private final CandleEventBus candleEventBus;
+    private final ActorRuntime actorRuntime;
+
+    private final Map<CandleTimeframe, TimeframeSubscriptions> subscriptions = new EnumMap<>(CandleTimeframe.class);
+    private final Map<StageKey, InstrumentStage> stages = new HashMap<>();
+    // Инструменты без собственной серии, о пропуске которых уже предупредили
+    private final Set<String> skippedInstruments = new HashSet<>();
+    private boolean subscribedToCandles = false;
+
+    // Конструктор без параметров для CDI proxy
+    protected FeatureVectorStage() {
+        this(null, null, null, null);
+    }
+
+    @Inject
+    public FeatureVectorStage(Candle candle, ColumnsRegistry registry, CandleEventBus candleEventBus, ActorRuntime actorRuntime) {
+        this.candle = candle;
+        this.registry = registry;
+        this.candleEventBus = candleEventBus;
+        this.actorRuntime = actorRuntime;
+    }
+
+    /**
+     * Подписка на векторы фич таймфрейма (по всем инструментам)
+     *
+     * @param listener    потребитель векторов
+     * @param timeframe   таймфрейм баров
+     * @param columnNames колонки, которые нужны потребителю (попадут в общее объединение)
+     */
+    public synchronized void subscribe(FeatureVectorListener listener, CandleTimeframe timeframe, Collection<String> columnNames) {
+        TimeframeSubscriptions timeframeSubscriptions = subscriptions.computeIfAbsent(timeframe, TimeframeSubscriptions::new);
+        timeframeSubscriptions.listeners.add(new Subscription(listener, Set.copyOf(columnNames)));
+        timeframeSubscriptions.rebuildLayout();
+
+        if (!subscribedToCandles) {
+            candleEventBus.subscribe(this);
+            subscribedToCandles = true;
+        }
+    }
+
+    public synchronized void unsubscribe(FeatureVectorListener listener) {
+        subscriptions.values().removeIf(timeframeSubscriptions -> {
+            timeframeSubscriptions.listeners.removeIf(s -> s.listener() == listener);
+            if (!timeframeSubscriptions.listeners.isEmpty()) {
+                timeframeSubscriptions.rebuildLayout();
+                return false;
+            }
+            return true;
+        });
+        stages.values().removeIf(stage -> {
+            if (subscriptions.containsKey(stage.key.timeframe())) {
+                return false;
+            }
+            actorRuntime.unregister(stage.mailbox, Duration.ofSeconds(10));
+            return true;
+        });
+
+        if (subscriptions.isEmpty() && subscribedToCandles) {
+            candleEventBus.unsubscribe(this);
+            subscribedToCandles = false;
+        }
+    }
+
+    /**
+     * Текущая раскладка фич таймфрейма (пустая, если подписчиков нет)
+     */
+    public synchronized FeatureLayout getLayout(CandleTimeframe timeframe) {
+        TimeframeSubscriptions timeframeSubscriptions = subscriptions.get(timeframe);
+        return timeframeSubscriptions != null ? timeframeSubscriptions.layout : FeatureLayout.EMPTY;
+    }
+
+    @Override
+    public void onCandle(CandleEvent event) {
+        if (event.type() != CandleEventType.CANDLE_TICK || event.candle() == null || event.instrument() == null) {
+            return;
+        }
+        InstrumentStage stage = stageFor(new StageKey(event.instrument(), event.period()));
+        if (stage != null && !stage.mailbox.offer(event)) {
+            Log.warnf("⚠️ Очередь стадии фич %s переполнена, отбрасываем CandleEvent: %s", stage.key, event);
+        }
+    }
+
+    /**
+     * Актор пары (инструмент, таймфрейм); null, если на таймфрейм никто не подписан
+     * или у инструмента нет собственной серии баров
+     */
+    private synchronized InstrumentStage stageFor(StageKey key) {
+        InstrumentStage stage = stages.get(key);
+        if (stage == null) {
+            TimeframeSubscriptions timeframeSubscriptions = subscriptions.get(key.timeframe());
+            if (timeframeSubscriptions == null) {
+                return null;
+            }
+            if (!candle.hasSeries(key.instrument())) {
+                if (skippedInstruments.add(key.instrument())) {
+                    Log.warnf("⚠️ Для инструмента %s нет собственной серии баров, стадия фич его пропускает", key.instrument());
+                }
+                return null;
+            }
+            stage = new InstrumentStage(key, timeframeSubscriptions);
+            stage.mailbox = actorRuntime.register("feature-stage-" + key.instrument() + "-" + key.timeframe().name(),
+                    MAILBOX_CAPACITY, stage::compute);
+            stages.put(key, stage);
+            Log.infof("🧮 Стадия фич запущена для %s", key);
+        }
+        return stage;
+    }
+
+    private record StageKey(String instrument, CandleTimeframe timeframe) {
+        @Override
+        public String toString() {
+            return instrument + " " + timeframe;
+        }
+    }
+
+    private record Subscription(FeatureVectorListener listener, Set<String> columnNames) {
+    }
+
+    /**
+     * Подписчики таймфрейма и общая раскладка их колонок
+     */
+    private final class TimeframeSubscriptions {
+        private final CandleTimeframe timeframe;
+        private final List<Subscription> listeners = new CopyOnWriteArrayList<>();
+        private volatile FeatureLayout layout = FeatureLayout.EMPTY;
+
+        private TimeframeSubscriptions(CandleTimeframe timeframe) {
+            this.timeframe = timeframe;
+        }
+
+        private void rebuildLayout() {
+            Set<String> union = new HashSet<>();
+            for (Subscription subscription : listeners) {
+                for (String name : subscription.columnNames()) {
+                    if (registry.getColumn(name).isPresent()) {
+                        union.add(name);
+                    } else {
+                        Log.warnf("⚠️ Колонка %s не найдена в реестре и не будет рассчитываться стадией фич", name);
+                    }
+                }
+            }
+            layout = FeatureLayout.of(union);
+            Log.infof("🧮 Стадия фич %s: подписчиков %d, колонок %d %s",
+                    timeframe, listeners.size(), layout.size(), layout.getNames());
+        }
+    }
+
+    /**
+     * Состояние стадии одной пары (инструмент, таймфрейм)
+     */
+    private final class InstrumentStage {
+        private final StageKey key;
+        private final TimeframeSubscriptions timeframeSubscriptions;
+        private Mailbox<CandleEvent> mailbox;
+
+        private InstrumentStage(StageKey key, TimeframeSubscriptions timeframeSubscriptions) {
+            this.key = key;
+            this.timeframeSubscriptions = timeframeSubscriptions;
+        }
+
+        /**
+         * Расчёт вектора для последнего бара live-серии и рассылка подписчикам
+         */
+        private void compute(CandleEvent event) {
+            BarSeries series = candle.getInstance(key.timeframe()).getLiveBarSeries();
+            if (series == null || series.isEmpty()) {
+                return;
+            }
+
+            int endIndex = series.getEndIndex();
+            Bar bar = series.getBar(endIndex);
+            if (!bar.getBeginTime().equals(event.candle().getTimestamp())) {
+                Log.warnf("⏳ Полученный бар с timestamp %s не совпадает с последним баром серии %s с timestamp %s, пропускаем расчёт фич",
+                        event.candle().getTimestamp(), key, bar.getBeginTime());
+                return;
+            }
+
+            FeatureLayout currentLayout = timeframeSubscriptions.layout;
+            Num[] values = new Num[currentLayout.size()];
+            for (int slot = 0; slot < values.length; slot++) {
+                values[slot] = computeValue(currentLayout.nameAt(slot), endIndex);
+            }
+
+            FeatureVector vector = new FeatureVector(key.instrument(), key.timeframe(), bar.getBeginTime(), endIndex,
+                    bar.getClosePrice(), currentLayout, values);
+            Log.tracef("🧮 Рассчитан вектор фич: %s", vector);
+
+            for (Subscription subscription : timeframeSubscriptions.listeners) {
+                try {
+                    subscription.listener().onFeatureVector(vector);
+                } catch (Exception e) {
+                    Log.errorf(e, "❌ Ошибка при передаче вектора фич подписчику %s", subscription.listener());
+                }
+            }
+        }
+
+        private Num computeValue(String columnName, int index) {
+            try {
+                Column column = registry.getColumn(columnName).orElse(null);
+                Num value = column != null ? column.getValueByName(true, columnName, index) : null;
+                return value != null ? value : NaN.NaN;
+            } catch (Exception e) {
+                Log.errorf(e, "❌ Ошибка при расчёте фичи %s для индекса %d", columnName, index);
+                return NaN.NaN;
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package artskif.trader.strategy.indicators.base;
+
+import org.ta4j.core.Indicator;
+import org.ta4j.core.indicators.AbstractIndicator;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+/**
+ * Доходность цены через {@code horizon} баров вперёд: {@code price[i + horizon] / price[i] - 1}.
+ * <p>
+ * Индикатор заглядывает в будущее и служит только источником лейблов для обучения на исторической серии.
+ * Пока бара {@code i + horizon} в серии нет, значение — NaN. Значения не кэшируются: по мере роста серии
+ * NaN в конце сменяется рассчитанной доходностью.
+ */
+public class ForwardReturnIndicator extends AbstractIndicator<Num> {
+
+    private final Indicator<Num> price;
+    private final int horizon;
+
+    /**
+     * @param price   индикатор цены (обычно цена закрытия)
+     * @param horizon количество баров вперёд (должно быть >= 1)
+     */
+    public ForwardReturnIndicator(Indicator<Num> price, int horizon) {
+        super(price.getBarSeries());
+        if (horizon < 1) {
+            throw new IllegalArgumentException("horizon must be >= 1, got: " + horizon);
+        }
+        this.price = price;
+        this.horizon = horizon;
+    }
+
+    @Override
+    public Num getValue(int index) {
+        if (index < getBarSeries().getBeginIndex() || index + horizon > getBarSeries().getEndIndex()) {
+            return NaN.NaN;
+        }
+        Num current = price.getValue(index);
+        if (current.isNaN() || current.isZero()) {
+            return NaN.NaN;
+        }
+        return price.getValue(index + horizon).dividedBy(current).minus(getBarSeries().numFactory().one());
+    }
+
+    @Override
+    public int getCountOfUnstableBars() {
+        return 0;
+    }
+}
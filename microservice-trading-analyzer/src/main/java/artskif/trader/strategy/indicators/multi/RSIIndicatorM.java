@@ -5,7 +5,17 @@ import artskif.trader.candle.CandleTimeframe;
 import artskif.trader.strategy.indicators.MultiAbstractIndicator;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import org.ta4j.core.BarSeries;
 import org.ta4j.core.indicators.RSIIndicator;
+import org.ta4j.core.indicators.averages.MMAIndicator;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.indicators.helpers.GainIndicator;
+import org.ta4j.core.indicators.helpers.LossIndicator;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ApplicationScoped
 public class RSIIndicatorM extends MultiAbstractIndicator<RSIIndicator> {
@@ -14,6 +24,9 @@ public class RSIIndicatorM extends MultiAbstractIndicator<RSIIndicator> {
 
     private final ClosePriceIndicatorM closeIndicator;
 
+    // Сглаженные средние прироста/падения live-серии для предварительного расчёта RSI формирующейся свечи
+    private final Map<CandleTimeframe, MMAIndicator[]> liveAverages = new ConcurrentHashMap<>();
+
     // No-args constructor required by CDI
     protected RSIIndicatorM() {
         super(null);
@@ -31,5 +44,54 @@ public class RSIIndicatorM extends MultiAbstractIndicator<RSIIndicator> {
         return new RSIIndicator(closeIndicator.getIndicator(timeframe, isLifeSeries), RSI_PERIOD);
     }
 
+    /**
+     * Предварительное значение RSI для формирующейся (неподтверждённой) свечи.
+     * Выполняет один шаг сглаживания Уайлдера от последнего подтверждённого бара live-серии
+     * с ценой закрытия formingClose. Серия и кэши индикаторов не изменяются.
+     * Серия читается под блокировкой чтения live-серии, чтобы подтверждённый бар не добавился посреди расчёта.
+     *
+     * @param timeframe    таймфрейм live-серии
+     * @param formingClose текущая цена закрытия формирующейся свечи
+     * @return значение RSI или NaN, если истории недостаточно
+     */
+    public Num peekNext(CandleTimeframe timeframe, Num formingClose) {
+        return candle.getInstance(timeframe).readLiveSeries(liveSeries -> peekNextLocked(timeframe, formingClose));
+    }
+
+    private Num peekNextLocked(CandleTimeframe timeframe, Num formingClose) {
+        ClosePriceIndicator close = closeIndicator.getIndicator(timeframe, true);
+        BarSeries series = close.getBarSeries();
+        if (series.getBarCount() <= RSI_PERIOD) {
+            return NaN.NaN;
+        }
 
+        MMAIndicator[] averages = liveAverages.computeIfAbsent(timeframe, tf -> new MMAIndicator[]{
+                new MMAIndicator(new GainIndicator(close), RSI_PERIOD),
+                new MMAIndicator(new LossIndicator(close), RSI_PERIOD)
+        });
+
+        int endIndex = series.getEndIndex();
+        Num zero = series.numFactory().zero();
+        Num period = series.numFactory().numOf(RSI_PERIOD);
+        Num hundred = series.numFactory().hundred();
+
+        Num change = formingClose.minus(close.getValue(endIndex));
+        Num gain = change.isPositive() ? change : zero;
+        Num loss = change.isNegative() ? change.negate() : zero;
+
+        // Блокировка чтения допускает несколько читателей, а кэш средних не потокобезопасен
+        Num lastGain;
+        Num lastLoss;
+        synchronized (averages) {
+            lastGain = averages[0].getValue(endIndex);
+            lastLoss = averages[1].getValue(endIndex);
+        }
+        Num averageGain = lastGain.plus(gain.minus(lastGain).dividedBy(period));
+        Num averageLoss = lastLoss.plus(loss.minus(lastLoss).dividedBy(period));
+        if (averageLoss.isZero()) {
+            return averageGain.isZero() ? zero : hundred;
+        }
+        Num relativeStrength = averageGain.dividedBy(averageLoss);
+        return hundred.minus(hundred.dividedBy(series.numFactory().one().plus(relativeStrength)));
+    }
 }
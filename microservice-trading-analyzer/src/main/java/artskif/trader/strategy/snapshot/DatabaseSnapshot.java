@@ -15,6 +15,11 @@ public interface DatabaseSnapshot {
     /** Все фичи в виде мапы */
     Map<String, Object> getAllColumns();
 
+    /** Значение одной колонки без копирования всей строки */
+    default Object getColumnValue(String columnName) {
+        return getAllColumns().get(columnName);
+    }
+
     Duration getTimeframe();
 
     Instant getTimestamp();
@@ -8,6 +8,7 @@ import artskif.trader.strategy.database.ColumnsRegistry;
 import artskif.trader.strategy.database.columns.Column;
 import artskif.trader.strategy.database.columns.ColumnTypeMetadata;
 import artskif.trader.strategy.database.schema.AbstractSchema;
+import artskif.trader.strategy.feature.FeatureVector;
 import artskif.trader.strategy.snapshot.impl.DatabaseSnapshotRow;
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
@@ -27,7 +28,29 @@ public class DatabaseSnapshotBuilder {
         this.registry = registry;
     }
 
+    /**
+     * Построить строку по бару серии. Для исторической серии (бэктест) заполняются и LABEL-колонки:
+     * их индикаторы заглядывают вперёд по серии.
+     */
     public DatabaseSnapshot build(Bar bar, String tag, AbstractSchema schema, Map<ColumnTypeMetadata, Num> additionalColumns, int barIndex, boolean isLive) {
+        return build(bar, tag, schema, additionalColumns,
+                (column, name) -> column.getValueByName(isLive, name, barIndex), !isLive);
+    }
+
+    /**
+     * Построить лайв-строку по заранее рассчитанному вектору фич.
+     * Значения FEATURE/METRIC берутся из вектора; колонки, которых в векторе нет, досчитываются по индикатору.
+     * LABEL-колонки остаются пустыми: будущее для лайв-бара ещё неизвестно.
+     */
+    public DatabaseSnapshot build(Bar bar, String tag, AbstractSchema schema, Map<ColumnTypeMetadata, Num> additionalColumns, FeatureVector features) {
+        return build(bar, tag, schema, additionalColumns,
+                (column, name) -> features.has(name)
+                        ? features.getNum(name)
+                        : column.getValueByName(true, name, features.getBarIndex()), false);
+    }
+
+    private DatabaseSnapshot build(Bar bar, String tag, AbstractSchema schema, Map<ColumnTypeMetadata, Num> additionalColumns,
+                                   ValueResolver valueResolver, boolean resolveLabels) {
 
         CandleTimeframe timeframe = schema.getTimeframe();
         Contract contract = schema.getContract();
@@ -56,9 +79,11 @@ public class DatabaseSnapshotBuilder {
                         Num columnValue = null;
                         if (columnTypeMetadataByValueName.getMetadataType() == MetadataType.FEATURE
                                 || columnTypeMetadataByValueName.getMetadataType() == MetadataType.METRIC) {
-                            columnValue = column.getValueByName(isLive, metadata.name, barIndex);
+                            columnValue = valueResolver.resolve(column, metadata.name);
                         } else if (columnTypeMetadataByValueName.getMetadataType() == MetadataType.ADDITIONAL) {
                             columnValue = additionalColumns.get(columnTypeMetadataByValueName);
+                        } else if (columnTypeMetadataByValueName.getMetadataType() == MetadataType.LABEL && resolveLabels) {
+                            columnValue = valueResolver.resolve(column, metadata.name);
                         }
                         row.addColumn(metadata.name, columnValue != null && !columnValue.isNaN() ? columnValue.bigDecimalValue() : null);
                     } else {
@@ -80,4 +105,12 @@ public class DatabaseSnapshotBuilder {
 
         return row;
     }
+
+    /**
+     * Источник значения FEATURE/METRIC (и LABEL для исторической серии) колонки
+     */
+    @FunctionalInterface
+    private interface ValueResolver {
+        Num resolve(Column column, String columnName);
+    }
 }
@@ -0,0 +1,211 @@
+package artskif.trader.strategy.snapshot;
+
+import artskif.trader.strategy.StrategyDataService;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронный писатель лайв-строк фич (write-behind).
+ *
+ * Стратегии только кладут снапшот в ограниченный буфер и сразу продолжают обработку сигналов.
+ * Отдельный поток забирает строки микро-пакетами (каждые N строк или T мс) и пишет их
+ * через {@link StrategyDataService#upsertFeatureRowsBatch(List)}.
+ *
+ * При ошибке записи поток повторяет пакет с нарастающей паузой, а новые строки продолжают копиться в буфере.
+ * После {@code strategy.live-writer.max-retries} неудачных попыток пакет отбрасывается (с ключами строк в логе),
+ * чтобы одна «ядовитая» строка не останавливала запись всех последующих. Если буфер переполнен —
+ * вытесняются самые старые строки.
+ */
+@ApplicationScoped
+public class LiveSnapshotWriter {
+
+    private static final long MAX_RETRY_BACKOFF_MS = 30_000L;
+
+    @Inject
+    StrategyDataService dataService;
+
+    @ConfigProperty(name = "strategy.live-writer.batch-size", defaultValue = "100")
+    int batchSize;
+
+    @ConfigProperty(name = "strategy.live-writer.flush-interval-ms", defaultValue = "500")
+    long flushIntervalMs;
+
+    @ConfigProperty(name = "strategy.live-writer.buffer-size", defaultValue = "50000")
+    int bufferSize;
+
+    @ConfigProperty(name = "strategy.live-writer.max-retries", defaultValue = "10")
+    int maxRetries;
+
+    private BlockingQueue<DatabaseSnapshot> buffer;
+    private Thread flusherThread;
+    private volatile boolean running = false;
+
+    private final AtomicLong droppedRows = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        running = true;
+        flusherThread = new Thread(this::flushLoop, "LiveSnapshotWriter-Flusher");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+        Log.infof("✅ Писатель лайв-фич запущен: batchSize=%d, flushIntervalMs=%d, bufferSize=%d",
+                batchSize, flushIntervalMs, bufferSize);
+    }
+
+    void onShutdown(@Observes ShutdownEvent event) {
+        running = false;
+        if (flusherThread == null) {
+            return;
+        }
+        try {
+            flusherThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusherThread.isAlive()) {
+            flusherThread.interrupt();
+        }
+        Log.infof("🛑 Писатель лайв-фич остановлен: записано=%d, отброшено=%d, в буфере=%d",
+                writtenRows.get(), droppedRows.get(), buffer.size());
+    }
+
+    /**
+     * Поставить строку фич в очередь на запись. Никогда не блокирует вызывающий поток.
+     */
+    public void submit(DatabaseSnapshot row) {
+        if (row == null) {
+            return;
+        }
+        while (!buffer.offer(row)) {
+            // Буфер переполнен (БД долго недоступна) — вытесняем самую старую строку
+            if (buffer.poll() != null) {
+                long dropped = droppedRows.incrementAndGet();
+                if (dropped == 1 || dropped % 1000 == 0) {
+                    Log.warnf("⚠️ Буфер лайв-фич переполнен (%d), отброшено строк: %d", bufferSize, dropped);
+                }
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return buffer.size();
+    }
+
+    public long getDroppedCount() {
+        return droppedRows.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenRows.get();
+    }
+
+    /**
+     * Цикл сбора микро-пакетов и записи в БД
+     */
+    private void flushLoop() {
+        List<DatabaseSnapshot> batch = new ArrayList<>(batchSize);
+        int failedAttempts = 0;
+
+        while (running || !buffer.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    collectBatch(batch);
+                    if (batch.isEmpty()) {
+                        continue;
+                    }
+                }
+
+                int written = dataService.upsertFeatureRowsBatch(batch);
+                writtenRows.addAndGet(written);
+                if (failedAttempts > 0) {
+                    Log.infof("✅ Запись лайв-фич восстановлена после %d неудачных попыток", failedAttempts);
+                }
+                failedAttempts = 0;
+                batch.clear();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                failedAttempts++;
+                if (failedAttempts > maxRetries) {
+                    dropBatch(batch, failedAttempts, e);
+                    failedAttempts = 0;
+                    continue;
+                }
+                long backoff = Math.min(flushIntervalMs * failedAttempts, MAX_RETRY_BACKOFF_MS);
+                Log.warnf("⚠️ Не удалось записать пакет лайв-фич (%d строк, попытка %d), повтор через %d мс: %s",
+                        batch.size(), failedAttempts, backoff, e.getMessage());
+                if (!running) {
+                    Log.errorf("❌ Остановка приложения: пакет лайв-фич из %d строк не записан", batch.size());
+                    break;
+                }
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Пакет, который не удалось записать за maxRetries попыток, отбрасывается — иначе он блокирует все следующие
+     */
+    private void dropBatch(List<DatabaseSnapshot> batch, int attempts, Exception cause) {
+        long dropped = droppedRows.addAndGet(batch.size());
+        Log.errorf(cause, "❌ Пакет лайв-фич из %d строк отброшен после %d попыток (всего отброшено: %d)",
+                batch.size(), attempts, dropped);
+        for (DatabaseSnapshot row : batch) {
+            Log.warnf("🗑️ Отброшена строка лайв-фич: contract=%s tag=%s tf=%s ts=%s",
+                    row.contractHash(), row.tag(), row.getTimeframe(), row.getTimestamp());
+        }
+        batch.clear();
+    }
+
+    /**
+     * Собирает пакет: ждёт первую строку, затем добирает до batchSize, но не дольше flushIntervalMs
+     */
+    private void collectBatch(List<DatabaseSnapshot> batch) throws InterruptedException {
+        DatabaseSnapshot first = buffer.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize) {
+            if (buffer.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                break;
+            }
+            DatabaseSnapshot next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+}
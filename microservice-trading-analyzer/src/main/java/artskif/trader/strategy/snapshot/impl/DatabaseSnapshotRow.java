@@ -34,6 +34,7 @@ public final class DatabaseSnapshotRow implements DatabaseSnapshot {
     /**
      * Получить значение фичи
      */
+    @Override
     public Object getColumnValue(String columnName) {
         return columns.get(columnName);
     }
@@ -1,18 +1,24 @@
 package artskif.trader.strategy.strategy;
 
+import artskif.trader.ai.xgboost.XGBoostPredictor;
+import artskif.trader.ai.xgboost.XGBoostTrainer;
 import artskif.trader.broker.BrokerConfig;
 import artskif.trader.candle.Candle;
 import artskif.trader.candle.CandleTimeframe;
 import artskif.trader.events.candle.CandleEventBus;
 import artskif.trader.events.trade.TradeEventBus;
+import artskif.trader.export.FeatureExportService;
 import artskif.trader.strategy.AbstractStrategy;
 import artskif.trader.strategy.StrategyDataService;
+import artskif.trader.strategy.backtest.BacktestConfig;
 import artskif.trader.strategy.database.schema.AbstractSchema;
 import artskif.trader.strategy.database.schema.impl.TF1mBacktestSchema;
 import artskif.trader.strategy.database.schema.impl.TF1mLifetimeSchema;
 import artskif.trader.strategy.event.impl.indicator.GoldenFieldLongEventProcessor;
 import artskif.trader.strategy.event.impl.indicator.GoldenFieldShortEventProcessor;
+import artskif.trader.strategy.feature.FeatureVectorStage;
 import artskif.trader.strategy.snapshot.DatabaseSnapshotBuilder;
+import artskif.trader.strategy.snapshot.LiveSnapshotWriter;
 import io.quarkus.runtime.Startup;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
@@ -26,7 +32,7 @@ public class GoldenField1MLifetimeStrategy extends AbstractStrategy {
 
     // Конструктор без параметров для CDI proxy
     protected GoldenField1MLifetimeStrategy() {
-        super(null, null, null, null,null, null, null, null);
+        super(null, null, null, null, null, null, null, null, null, null, null, null, null, null);
         this.tf1mBacktestSchema = null;
         this.tf1mLifetimeSchema = null;
     }
@@ -37,12 +43,18 @@ public class GoldenField1MLifetimeStrategy extends AbstractStrategy {
                                          GoldenFieldLongEventProcessor longEventProcessor,
                                          DatabaseSnapshotBuilder snapshotBuilder,
                                          StrategyDataService dataService,
+                                         LiveSnapshotWriter liveSnapshotWriter,
                                          TF1mBacktestSchema tf1mBacktestSchema,
                                          TF1mLifetimeSchema tf1mLifetimeSchema,
                                          TradeEventBus tradeEventBus,
                                          CandleEventBus candleEventBus,
-                                         BrokerConfig brokerConfig) {
-        super(candle, shortEventProcessor, longEventProcessor, snapshotBuilder, dataService, tradeEventBus, candleEventBus, brokerConfig);
+                                         FeatureVectorStage featureVectorStage,
+                                         BrokerConfig brokerConfig,
+                                         BacktestConfig backtestConfig,
+                                         FeatureExportService featureExportService,
+                                         XGBoostTrainer xgBoostTrainer,
+                                         XGBoostPredictor xgBoostPredictor) {
+        super(candle, shortEventProcessor, longEventProcessor, snapshotBuilder, dataService, liveSnapshotWriter, tradeEventBus, candleEventBus, featureVectorStage, brokerConfig, backtestConfig, featureExportService, xgBoostTrainer, xgBoostPredictor);
         this.tf1mBacktestSchema = tf1mBacktestSchema;
         this.tf1mLifetimeSchema = tf1mLifetimeSchema;
 
@@ -10,7 +10,7 @@ SELECT
     additional_position_price_1m,
     additional_takeprofit_1m,
     additional_stoploss_1m
-FROM wide_candles
+FROM features_tf1mbacktestvisualization
 WHERE
     tf = '1m' AND
     tag = 'GoldenField1M-backtest' AND
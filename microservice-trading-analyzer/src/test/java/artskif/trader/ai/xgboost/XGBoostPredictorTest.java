@@ -0,0 +1,151 @@
+package artskif.trader.ai.xgboost;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.strategy.feature.FeatureLayout;
+import artskif.trader.strategy.feature.FeatureVector;
+import ml.dmlc.xgboost4j.java.Booster;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import ml.dmlc.xgboost4j.java.XGBoost;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.Num;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XGBoostPredictorTest {
+
+    private static final String CONTRACT = "test-hash";
+    private static final String LABEL = "label_x";
+    private static final FeatureLayout LAYOUT = FeatureLayout.of(List.of("f_x", "f_y"));
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    private XGBoostConfig config;
+    private XGBoostPredictor predictor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        config = new XGBoostConfig();
+        config.inferenceEnabled = true;
+        config.inferenceBudgetMicros = 1_000_000;
+        predictor = new XGBoostPredictor();
+        predictor.config = config;
+        predictor.publish(new TrainedModel(CONTRACT, "test", LABEL, List.of("f_x", "f_y"), "model.ubj",
+                START, 100, 0, "", 0, 0, trainIdentityOfX()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        predictor.stop();
+    }
+
+    @Test
+    void barsOfSeveralInstrumentsClosingTogetherShareOneModelCall() throws Exception {
+        // Без окна: прогнозы по одному, предиктор запоминает инструменты контракта
+        config.inferenceBatchWindowMicros = 0;
+        predictor.predict(CONTRACT, vector("BTC-USDT-SWAP", START, 0.5));
+        predictor.predict(CONTRACT, vector("ETH-USDT-SWAP", START, -0.5));
+        assertEquals(2, calls());
+
+        config.inferenceBatchWindowMicros = TimeUnit.SECONDS.toMicros(10);
+        Instant bar = START.plusSeconds(60);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CyclicBarrier barrier = new CyclicBarrier(2);
+            CompletableFuture<Map<String, Float>> btc = CompletableFuture.supplyAsync(
+                    () -> predictAfter(barrier, vector("BTC-USDT-SWAP", bar, 0.5)), executor);
+            CompletableFuture<Map<String, Float>> eth = CompletableFuture.supplyAsync(
+                    () -> predictAfter(barrier, vector("ETH-USDT-SWAP", bar, -0.5)), executor);
+
+            assertEquals(0.5, btc.get(30, TimeUnit.SECONDS).get(LABEL), 0.1);
+            assertEquals(-0.5, eth.get(30, TimeUnit.SECONDS).get(LABEL), 0.1);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(3, calls());
+    }
+
+    @Test
+    void singleInstrumentDoesNotWaitForBatch() {
+        config.inferenceBatchWindowMicros = TimeUnit.SECONDS.toMicros(10);
+
+        long started = System.nanoTime();
+        Map<String, Float> prediction = predictor.predict(CONTRACT, vector("BTC-USDT-SWAP", START, 0.5));
+
+        assertEquals(0.5, prediction.get(LABEL), 0.1);
+        assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    void budgetOverrunsAreCounted() {
+        config.inferenceBatchWindowMicros = 0;
+        config.inferenceBudgetMicros = -1;
+
+        for (int i = 0; i < 5; i++) {
+            predictor.predict(CONTRACT, vector("BTC-USDT-SWAP", START.plusSeconds(60L * i), 0.25));
+        }
+
+        XGBoostPredictor.InferenceStats stats = predictor.getStats().get(0);
+        assertEquals(5, stats.predictions());
+        assertEquals(5, stats.budgetOverruns());
+    }
+
+    private Map<String, Float> predictAfter(CyclicBarrier barrier, FeatureVector vector) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return new HashMap<>(predictor.predict(CONTRACT, vector));
+    }
+
+    private long calls() {
+        return predictor.getStats().get(0).predictions();
+    }
+
+    private static FeatureVector vector(String instrument, Instant timestamp, double x) {
+        Num[] values = new Num[LAYOUT.size()];
+        values[LAYOUT.slotOf("f_x")] = DecimalNum.valueOf(x);
+        values[LAYOUT.slotOf("f_y")] = DecimalNum.valueOf(0);
+        return new FeatureVector(instrument, CandleTimeframe.CANDLE_1M, timestamp, 0, DecimalNum.valueOf(100), LAYOUT, values);
+    }
+
+    /**
+     * Модель, прогноз которой равен первой фиче
+     */
+    private static Booster trainIdentityOfX() throws Exception {
+        int rows = 400;
+        float[] data = new float[rows * 2];
+        float[] labels = new float[rows];
+        for (int i = 0; i < rows; i++) {
+            float x = -1 + 2f * i / rows;
+            data[i * 2] = x;
+            data[i * 2 + 1] = 0;
+            labels[i] = x;
+        }
+        DMatrix train = new DMatrix(data, rows, 2, Float.NaN);
+        try {
+            train.setLabel(labels);
+            Map<String, Object> params = new HashMap<>();
+            params.put("objective", "reg:squarederror");
+            params.put("eta", 0.5);
+            params.put("max_depth", 6);
+            params.put("nthread", 1);
+            return XGBoost.train(train, params, 50, Map.of(), null, null);
+        } finally {
+            train.dispose();
+        }
+    }
+}
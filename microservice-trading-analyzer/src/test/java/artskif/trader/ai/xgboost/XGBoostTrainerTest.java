@@ -0,0 +1,141 @@
+package artskif.trader.ai.xgboost;
+
+import artskif.trader.entity.Contract;
+import artskif.trader.entity.ContractMetadata;
+import artskif.trader.entity.MetadataType;
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import artskif.trader.strategy.snapshot.impl.DatabaseSnapshotRow;
+import ml.dmlc.xgboost4j.java.DMatrix;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class XGBoostTrainerTest {
+
+    private static final String LABEL = "label_forward_return_15_1m";
+    private static final int ROWS = 2_000;
+
+    @TempDir
+    Path modelsDirectory;
+
+    @Test
+    void trainsModelOnLabeledRows() throws Exception {
+        XGBoostTrainer trainer = trainer();
+        Contract contract = contract();
+
+        List<TrainedModel> models = trainer.submit(contract, rows(contract, ROWS)).get(1, TimeUnit.MINUTES);
+
+        assertEquals(1, models.size());
+        TrainedModel model = models.get(0);
+        assertEquals(LABEL, model.label());
+        assertEquals(List.of("f_x", "f_y"), model.features());
+        // Строки без лейбла (конец бэктеста) и горизонт лейбла между обучением и валидацией в выборку не попадают
+        assertEquals(ROWS - 15 - 15, model.trainRows() + model.evalRows());
+        assertTrue(Files.exists(Path.of(model.file())));
+        assertTrue(trainer.predictor.getLatest(contract.contractHash, LABEL).isPresent());
+
+        // Лейбл — 2x - y: модель должна уловить зависимость на валидационной части
+        DMatrix sample = new DMatrix(new float[]{0.5f, -0.5f}, 1, 2, Float.NaN);
+        try {
+            assertEquals(1.5, model.booster().predict(sample)[0][0], 0.25);
+        } finally {
+            sample.dispose();
+        }
+    }
+
+    @Test
+    void matrixSkipsRowsWithoutLabel() throws Exception {
+        Contract contract = contract();
+        List<DatabaseSnapshot> rows = rows(contract, 20);
+
+        DMatrix matrix = DMatrixBuilder.build(rows, 0, rows.size(), List.of("f_x", "f_y"), LABEL);
+        try {
+            assertEquals(5, matrix.rowNum());
+            assertEquals(5, matrix.getLabel().length);
+        } finally {
+            matrix.dispose();
+        }
+        assertNull(DMatrixBuilder.build(rows, 5, rows.size(), List.of("f_x", "f_y"), LABEL));
+    }
+
+    @Test
+    void validationStartsAfterLabelHorizon() {
+        Contract contract = contract();
+        List<DatabaseSnapshot> rows = rows(contract, 100);
+
+        // Лейбл строки 79 смотрит на закрытие строки 94: валидация начинается с 95-й
+        assertEquals(95, XGBoostTrainer.purgedEvalStart(rows, 80, LABEL));
+        assertEquals(80, XGBoostTrainer.purgedEvalStart(rows, 80, "label_unknown"));
+        assertEquals(100, XGBoostTrainer.purgedEvalStart(rows, 90, LABEL));
+        assertEquals(0, XGBoostTrainer.purgedEvalStart(rows, 0, LABEL));
+    }
+
+    private XGBoostTrainer trainer() {
+        XGBoostConfig config = new XGBoostConfig();
+        config.trainingEnabled = true;
+        config.modelsDirectory = modelsDirectory.toString();
+        config.validationFraction = 0.2;
+        config.rounds = 60;
+        config.maxDepth = 4;
+        config.minChildWeight = 1;
+        config.eta = 0.3;
+        config.subsample = 1;
+        config.colsampleBytree = 1;
+        config.objective = "reg:squarederror";
+        config.evalMetric = "rmse";
+        config.nthread = 1;
+
+        XGBoostTrainer trainer = new XGBoostTrainer();
+        trainer.config = config;
+        trainer.predictor = new XGBoostPredictor();
+        trainer.predictor.config = config;
+        return trainer;
+    }
+
+    private static Contract contract() {
+        Contract contract = new Contract("xgb-test", "test", "fs-1");
+        contract.contractHash = "test-hash";
+        contract.addMetadata(new ContractMetadata("f_x", "x", 1, "numeric(12, 8)", MetadataType.FEATURE, contract));
+        contract.addMetadata(new ContractMetadata("f_y", "y", 2, "numeric(12, 8)", MetadataType.FEATURE, contract));
+        contract.addMetadata(new ContractMetadata("metric_close", "close", 3, "numeric(18, 2)", MetadataType.METRIC, contract));
+        contract.addMetadata(new ContractMetadata(LABEL, "label", 4, "numeric(12, 8)", MetadataType.LABEL, contract));
+        return contract;
+    }
+
+    /**
+     * Строки как из бэктеста: у последних 15 строк лейбла ещё нет
+     */
+    private static List<DatabaseSnapshot> rows(Contract contract, int count) {
+        Random random = new Random(42);
+        List<DatabaseSnapshot> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * 2 - 1;
+            double y = random.nextDouble() * 2 - 1;
+            rows.add(row(contract, i, x, y, i < count - 15 ? 2 * x - y : null));
+        }
+        return rows;
+    }
+
+    private static DatabaseSnapshot row(Contract contract, int index, double x, double y, Double label) {
+        DatabaseSnapshotRow row = new DatabaseSnapshotRow(Duration.ofMinutes(1),
+                Instant.parse("2024-01-01T00:00:00Z").plusSeconds(60L * index), contract.contractHash, "test-backtest");
+        row.addColumn("f_x", BigDecimal.valueOf(x));
+        row.addColumn("f_y", BigDecimal.valueOf(y));
+        row.addColumn("metric_close", BigDecimal.valueOf(100));
+        row.addColumn(LABEL, label != null ? BigDecimal.valueOf(label) : null);
+        return row;
+    }
+}
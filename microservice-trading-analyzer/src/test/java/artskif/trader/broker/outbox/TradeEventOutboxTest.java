@@ -0,0 +1,189 @@
+package artskif.trader.broker.outbox;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.entity.TradeEventEntity;
+import artskif.trader.repository.TradeEventRepository;
+import artskif.trader.strategy.event.common.Direction;
+import artskif.trader.strategy.event.common.TradeEventType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradeEventOutboxTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path dir;
+
+    private final StubRepository repository = new StubRepository();
+    private TradeEventOutbox outbox;
+
+    @AfterEach
+    void tearDown() {
+        if (outbox != null) {
+            repository.down = false;
+            outbox.onShutdown(null);
+        }
+    }
+
+    @Test
+    void recoversJournalSkippingTornLastLineAndDuplicates() throws Exception {
+        String first = MAPPER.writeValueAsString(TradeEventRecord.from(event("a", 1)));
+        String second = MAPPER.writeValueAsString(TradeEventRecord.from(event("b", 2)));
+        String torn = MAPPER.writeValueAsString(TradeEventRecord.from(event("c", 3)));
+        Files.writeString(dir.resolve("trade-events.jsonl"),
+                first + "\n" + second + "\n" + first + "\n" + torn.substring(0, torn.length() / 2),
+                StandardCharsets.UTF_8);
+
+        outbox = start();
+        assertEquals(2, outbox.getPendingCount());
+
+        outbox.flush();
+        assertEquals(List.of("a", "b"), repository.insertedTags);
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    void acknowledgedBatchTruncatesJournal() throws Exception {
+        outbox = start();
+        outbox.append(event("a", 1));
+        outbox.append(event("b", 2));
+        Path journal = dir.resolve("trade-events.jsonl");
+        assertEquals(2, Files.readAllLines(journal).size());
+
+        outbox.flush();
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(0, Files.size(journal));
+
+        // После обнуления журнал продолжает принимать записи с начала файла
+        outbox.append(event("c", 3));
+        assertEquals(1, Files.readAllLines(journal).size());
+    }
+
+    @Test
+    void transientErrorKeepsEventsPendingAndJournaled() throws Exception {
+        outbox = start();
+        outbox.append(event("a", 1));
+        outbox.append(event("b", 2));
+        repository.down = true;
+
+        outbox.flush();
+        assertEquals(2, outbox.getPendingCount());
+        assertEquals(2, Files.readAllLines(dir.resolve("trade-events.jsonl")).size());
+        assertFalse(Files.exists(dir.resolve("trade-events.dead.jsonl")));
+
+        repository.down = false;
+        outbox.flush();
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(List.of("a", "b"), repository.insertedTags);
+    }
+
+    @Test
+    void rejectedEventGoesToDeadLetterFileAndOthersAreInserted() throws Exception {
+        outbox = start();
+        outbox.batchSize = 2;
+        outbox.append(event("a", 1));
+        outbox.append(event("bad", 2));
+        outbox.append(event("c", 3));
+        outbox.append(event("d", 4));
+
+        outbox.flush();
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(List.of("a", "c", "d"), repository.insertedTags);
+        assertEquals(0, Files.size(dir.resolve("trade-events.jsonl")));
+
+        List<String> dead = Files.readAllLines(dir.resolve("trade-events.dead.jsonl"));
+        assertEquals(1, dead.size());
+        assertEquals("bad", MAPPER.readValue(dead.get(0), TradeEventRecord.class).tag());
+    }
+
+    @Test
+    void databaseOutageDuringRowByRowFallbackStopsAtFailedRow() throws Exception {
+        outbox = start();
+        outbox.append(event("bad", 1));
+        outbox.append(event("b", 2));
+        repository.outageAfterRejectedRow = true;
+
+        outbox.flush();
+        // Плохая строка перенесена, следующая ждёт восстановления БД
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(1, Files.readAllLines(dir.resolve("trade-events.dead.jsonl")).size());
+
+        repository.down = false;
+        outbox.flush();
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(List.of("b"), repository.insertedTags);
+    }
+
+    @Test
+    void classifiesDataErrorsBySqlState() {
+        assertTrue(TradeEventOutbox.isDataError(new RuntimeException(new SQLException("check", "23514"))));
+        assertTrue(TradeEventOutbox.isDataError(new RuntimeException(new SQLException("overflow", "22003"))));
+        assertTrue(TradeEventOutbox.isDataError(new NullPointerException()));
+        assertFalse(TradeEventOutbox.isDataError(new RuntimeException(new SQLException("connection", "08006"))));
+        assertFalse(TradeEventOutbox.isDataError(new RuntimeException(new SQLException("acquisition timeout"))));
+
+        BatchUpdateException batch = new BatchUpdateException("batch", "40001", new int[0]);
+        batch.setNextException(new SQLException("unique", "23505"));
+        assertTrue(TradeEventOutbox.isDataError(new RuntimeException(batch)));
+    }
+
+    private TradeEventOutbox start() {
+        TradeEventOutbox outbox = new TradeEventOutbox();
+        outbox.tradeEventRepository = repository;
+        outbox.directory = dir.toString();
+        outbox.batchSize = 500;
+        outbox.onStart(null);
+        return outbox;
+    }
+
+    private static TradeEventEntity event(String tag, long second) {
+        return new TradeEventEntity(TradeEventType.GOLDEN_FIELD, Direction.LONG, "BTC-USDT",
+                BigDecimal.valueOf(100_000), null, null, CandleTimeframe.CANDLE_1H, tag, Instant.ofEpochSecond(second),
+                false, null, null, null, null, null, null);
+    }
+
+    /**
+     * Отклоняет пакеты с событием tag=bad нарушением ограничения; down имитирует недоступную БД
+     */
+    private static class StubRepository extends TradeEventRepository {
+        final List<String> insertedTags = new ArrayList<>();
+        boolean down;
+        // БД становится недоступна сразу после того, как отклонила одиночную вставку плохого события
+        boolean outageAfterRejectedRow;
+
+        @Override
+        public int insertAllIgnoringDuplicates(List<TradeEventEntity> entities) {
+            if (entities.size() == 1 && outageAfterRejectedRow && entities.get(0).id.tag.equals("bad")) {
+                down = true;
+                throw new RuntimeException(new SQLException("violates check constraint", "23514"));
+            }
+            if (down) {
+                throw new RuntimeException(new SQLException("Connection refused", "08001"));
+            }
+            if (entities.stream().anyMatch(e -> e.id.tag.equals("bad"))) {
+                BatchUpdateException batch = new BatchUpdateException("Batch entry was aborted", "23514", new int[0]);
+                batch.setNextException(new SQLException("violates check constraint", "23514"));
+                throw new RuntimeException(batch);
+            }
+            entities.forEach(e -> insertedTags.add(e.id.tag));
+            return entities.size();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package artskif.trader.broker.params;
+
+import artskif.trader.entity.OrderCreationParams;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderCreationParamsIndexTest {
+
+    @Test
+    void findsIntervalByInclusiveBounds() {
+        OrderCreationParams low = params(1L, 2, 0, 9);
+        OrderCreationParams high = params(2L, 2, 10, 19);
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(low, high));
+
+        assertSame(low, index.find(2, 0));
+        assertSame(low, index.find(2, 9));
+        assertSame(high, index.find(2, 10));
+        assertSame(high, index.find(2, 19));
+        assertNull(index.find(2, -1));
+        assertNull(index.find(2, 20));
+        assertNull(index.find(3, 5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void gapBetweenIntervalsHasNoParams() {
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(
+                params(1L, 1, 0, 4),
+                params(2L, 1, 10, 14)));
+
+        assertNull(index.find(1, 5));
+        assertNull(index.find(1, 9));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void overlappingRangesAreSplitAndOwnedByLowestId() {
+        // id=2 покрывает 0..20, id=1 внутри него 5..10: отрезки 0..4 (2), 5..10 (1), 11..20 (2)
+        OrderCreationParams wide = params(2L, 1, 0, 20);
+        OrderCreationParams inner = params(1L, 1, 5, 10);
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(wide, inner));
+
+        assertSame(wide, index.find(1, 4));
+        assertSame(inner, index.find(1, 5));
+        assertSame(inner, index.find(1, 10));
+        assertSame(wide, index.find(1, 11));
+        assertSame(wide, index.find(1, 20));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void adjacentSegmentsOfSameOwnerAreMerged() {
+        // id=3 целиком закрыт id=1, от id=1 остаётся один отрезок 0..15
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(
+                params(1L, 1, 0, 15),
+                params(3L, 1, 5, 10)));
+
+        assertEquals(1, index.size());
+        assertEquals(1L, index.find(1, 7).id);
+    }
+
+    @Test
+    void invalidRowsAreSkipped() {
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(
+                params(1L, 1, 10, 5),
+                params(2L, 1, null, 5),
+                params(3L, null, 0, 5)));
+
+        assertEquals(0, index.size());
+        assertNull(index.find(1, 7));
+    }
+
+    @Test
+    void contentComparesFieldValues() {
+        OrderCreationParams first = params(1L, 1, 0, 10);
+        OrderCreationParams sameValues = params(1L, 1, 0, 10);
+        sameValues.longDepositRiskPercent = new BigDecimal("1.5000");
+        sameValues.createdAt = Instant.now();
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, List.of(first));
+
+        assertTrue(index.hasSameContent(OrderCreationParamsIndex.build(2, List.of(sameValues))));
+
+        OrderCreationParams changed = params(1L, 1, 0, 10);
+        changed.waitMinutes = 30;
+        assertFalse(index.hasSameContent(OrderCreationParamsIndex.build(2, List.of(changed))));
+
+        OrderCreationParams changedFlag = params(1L, 1, 0, 10);
+        changedFlag.closeOppositeShort = true;
+        assertFalse(index.hasSameContent(OrderCreationParamsIndex.build(2, List.of(changedFlag))));
+
+        assertFalse(index.hasSameContent(OrderCreationParamsIndex.EMPTY));
+    }
+
+    /**
+     * Время поиска на таблице типичного размера. Порог не проверяется — цифра выводится для сравнения между запусками.
+     */
+    @Test
+    void lookupLatency() {
+        List<OrderCreationParams> rows = new ArrayList<>();
+        long id = 1;
+        for (int strength = 0; strength <= 10; strength++) {
+            for (int from = 0; from < 100; from += 5) {
+                rows.add(params(id++, strength, from, from + 4));
+            }
+        }
+        OrderCreationParamsIndex index = OrderCreationParamsIndex.build(1, rows);
+
+        int lookups = 10_000_000;
+        int[] strengths = new int[1024];
+        int[] stabilities = new int[1024];
+        Random random = new Random(7);
+        for (int i = 0; i < strengths.length; i++) {
+            strengths[i] = random.nextInt(11);
+            stabilities[i] = random.nextInt(100);
+        }
+
+        long found = 0;
+        for (int round = 0; round < 3; round++) {
+            found += lookup(index, strengths, stabilities, lookups);
+        }
+        long started = System.nanoTime();
+        found += lookup(index, strengths, stabilities, lookups);
+        long elapsed = System.nanoTime() - started;
+
+        System.out.printf("OrderCreationParamsIndex: %d интервалов, %.1f нс на поиск%n",
+                index.size(), (double) elapsed / lookups);
+        assertEquals(4L * lookups, found);
+    }
+
+    private static long lookup(OrderCreationParamsIndex index, int[] strengths, int[] stabilities, int lookups) {
+        long found = 0;
+        for (int i = 0; i < lookups; i++) {
+            int slot = i & (strengths.length - 1);
+            if (index.find(strengths[slot], stabilities[slot]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static OrderCreationParams params(Long id, Integer strength, Integer from, Integer to) {
+        OrderCreationParams params = new OrderCreationParams(strength, from, to,
+                new BigDecimal("1.5"), false, new BigDecimal("1.5"), false,
+                new BigDecimal("0.5"), 15, new BigDecimal("10"), false, false);
+        params.id = id;
+        return params;
+    }
+}
@@ -0,0 +1,101 @@
+package artskif.trader.export;
+
+import artskif.trader.entity.Contract;
+import artskif.trader.entity.ContractMetadata;
+import artskif.trader.entity.MetadataType;
+import artskif.trader.export.arrow.ArrowType;
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureExportServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void columnsWithoutTypeMetadataAreInferredFromValues() throws IOException {
+        Contract contract = new Contract("test-contract", "test", "fs-1");
+        contract.addMetadata(new ContractMetadata("rsi_14", "RSI", 1, "numeric(8, 4)", MetadataType.FEATURE, contract));
+        contract.addMetadata(new ContractMetadata("ema_cross", "без типа", 2, null, MetadataType.FEATURE, contract));
+        contract.addMetadata(new ContractMetadata("regime", "без типа", 3, null, MetadataType.FEATURE, contract));
+
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        List<DatabaseSnapshot> rows = List.of(
+                snapshot(start, Map.of("close", 100.5, "rsi_14", 55.0, "ema_cross", 1.5, "regime", "trend")),
+                snapshot(start.plusSeconds(60), Map.of("close", 101.0, "rsi_14", 60.0)));
+
+        FeatureExportService service = new FeatureExportService();
+        service.directory = directory.toString();
+        service.defaultRowGroupSize = 16;
+
+        FeatureExportResult result = service.exportSnapshots(contract, "lifetime", rows);
+
+        assertEquals(2, result.rows());
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(FileChannel.open(Path.of(result.file())), allocator)) {
+            assertTrue(reader.loadNextBatch());
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Float8Vector emaCross = (Float8Vector) root.getVector("ema_cross");
+            VarCharVector regime = (VarCharVector) root.getVector("regime");
+
+            assertEquals(1.5, emaCross.get(0));
+            assertTrue(emaCross.isNull(1));
+            assertEquals("trend", regime.getObject(0).toString());
+            assertEquals(55.0, ((Float8Vector) root.getVector("rsi_14")).get(0));
+        }
+    }
+
+    @Test
+    void columnWithoutValuesDefaultsToFloat() {
+        assertEquals(ArrowType.FLOAT64, FeatureExportService.inferType("missing", List.of()));
+    }
+
+    private static DatabaseSnapshot snapshot(Instant timestamp, Map<String, Object> values) {
+        Map<String, Object> columns = new LinkedHashMap<>(values);
+        return new DatabaseSnapshot() {
+            @Override
+            public String contractHash() {
+                return "hash";
+            }
+
+            @Override
+            public String tag() {
+                return "lifetime";
+            }
+
+            @Override
+            public Duration getTimeframe() {
+                return Duration.ofMinutes(1);
+            }
+
+            @Override
+            public Map<String, Object> getAllColumns() {
+                return columns;
+            }
+
+            @Override
+            public Instant getTimestamp() {
+                return timestamp;
+            }
+        };
+    }
+}
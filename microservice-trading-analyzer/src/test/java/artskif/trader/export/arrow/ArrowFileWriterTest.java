@@ -0,0 +1,132 @@
+package artskif.trader.export.arrow;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType.FloatingPoint;
+import org.apache.arrow.vector.types.pojo.ArrowType.Int;
+import org.apache.arrow.vector.types.pojo.ArrowType.Timestamp;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.util.ByteArrayReadableSeekableByteChannel;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Файл, записанный {@link ArrowFileWriter}, читается эталонным Arrow Java
+ */
+class ArrowFileWriterTest {
+
+    private static final List<ArrowColumn> COLUMNS = List.of(
+            new ArrowColumn("ts", ArrowType.TIMESTAMP),
+            new ArrowColumn("close", ArrowType.FLOAT64),
+            new ArrowColumn("count", ArrowType.INT64),
+            new ArrowColumn("flag", ArrowType.BOOL),
+            new ArrowColumn("label", ArrowType.UTF8));
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void schemaIsReadByArrowJava() throws IOException {
+        byte[] file = write(3, 10);
+
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(new ByteArrayReadableSeekableByteChannel(file), allocator)) {
+            List<Field> fields = reader.getVectorSchemaRoot().getSchema().getFields();
+
+            assertEquals(List.of("ts", "close", "count", "flag", "label"), fields.stream().map(Field::getName).toList());
+            assertEquals(new Timestamp(TimeUnit.MICROSECOND, "UTC"), fields.get(0).getType());
+            assertEquals(new FloatingPoint(FloatingPointPrecision.DOUBLE), fields.get(1).getType());
+            assertEquals(new Int(64, true), fields.get(2).getType());
+            assertEquals(org.apache.arrow.vector.types.pojo.ArrowType.Bool.INSTANCE, fields.get(3).getType());
+            assertEquals(org.apache.arrow.vector.types.pojo.ArrowType.Utf8.INSTANCE, fields.get(4).getType());
+            assertTrue(fields.stream().allMatch(Field::isNullable));
+        }
+    }
+
+    @Test
+    void valuesAndNullsRoundTripAcrossRowGroups() throws IOException {
+        int rows = 10;
+        int rowGroupSize = 3;
+        byte[] file = write(rowGroupSize, rows);
+
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(new ByteArrayReadableSeekableByteChannel(file), allocator)) {
+            assertEquals(4, reader.getRecordBlocks().size());
+
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            int row = 0;
+            while (reader.loadNextBatch()) {
+                TimeStampMicroTZVector ts = (TimeStampMicroTZVector) root.getVector(0);
+                Float8Vector close = (Float8Vector) root.getVector(1);
+                BigIntVector count = (BigIntVector) root.getVector(2);
+                BitVector flag = (BitVector) root.getVector(3);
+                VarCharVector label = (VarCharVector) root.getVector(4);
+
+                for (int i = 0; i < root.getRowCount(); i++, row++) {
+                    assertEquals(START.plusSeconds(60L * row).toEpochMilli() * 1_000L, ts.get(i));
+                    if (row % 4 == 3) {
+                        assertTrue(close.isNull(i), "close в строке " + row);
+                        assertTrue(label.isNull(i), "label в строке " + row);
+                    } else {
+                        assertEquals(row + 0.25, close.get(i));
+                        assertEquals("bar-" + row + "-ё", new String(label.get(i), java.nio.charset.StandardCharsets.UTF_8));
+                    }
+                    assertEquals(-row * 1_000_000_000L, count.get(i));
+                    assertEquals(row % 2 == 0 ? 1 : 0, flag.get(i));
+                }
+            }
+            assertEquals(rows, row);
+        }
+    }
+
+    @Test
+    void emptyFileHasSchemaAndNoRowGroups() throws IOException {
+        byte[] file = write(4, 0);
+
+        try (BufferAllocator allocator = new RootAllocator();
+             ArrowFileReader reader = new ArrowFileReader(new ByteArrayReadableSeekableByteChannel(file), allocator)) {
+            assertEquals(COLUMNS.size(), reader.getVectorSchemaRoot().getSchema().getFields().size());
+            assertEquals(0, reader.getRecordBlocks().size());
+            assertFalse(reader.loadNextBatch());
+        }
+    }
+
+    private static byte[] write(int rowGroupSize, int rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ArrowFileWriter writer = new ArrowFileWriter(out, COLUMNS)) {
+            ArrowBatch batch = new ArrowBatch(COLUMNS, rowGroupSize);
+            for (int row = 0; row < rows; row++) {
+                batch.setTimestamp(0, START.plusSeconds(60L * row));
+                if (row % 4 != 3) {
+                    batch.setDouble(1, row + 0.25);
+                    batch.setText(4, "bar-" + row + "-ё");
+                }
+                batch.setLong(2, -row * 1_000_000_000L);
+                batch.setBoolean(3, row % 2 == 0);
+                batch.endRow();
+                if (batch.isFull()) {
+                    writer.writeBatch(batch);
+                    batch.reset();
+                }
+            }
+            writer.writeBatch(batch);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,61 @@
+package artskif.trader.kafka;
+
+import artskif.trader.candle.Candle;
+import artskif.trader.candle.CandleTimeframe;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CandleConsumerTest {
+
+    private final List<String> handled = new ArrayList<>();
+    private CandleConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new CandleConsumer();
+        consumer.candle = new Candle(null, null, null, null) {
+            @Override
+            public void handleTick(CandleTimeframe timeframe, String instId, String message) {
+                handled.add(message);
+            }
+        };
+    }
+
+    @Test
+    void unconfirmedFramesAreSkippedByHeaderWhenFormingDisabled() {
+        consumer.formingEnabled = false;
+
+        consumer.consume1m(record("unconfirmed", "0"));
+        consumer.consume1m(record("confirmed", "1"));
+        consumer.consume1m(record("legacy", null));
+
+        assertEquals(List.of("confirmed", "legacy"), handled);
+        assertEquals(1, consumer.getSkippedUnconfirmed());
+    }
+
+    @Test
+    void allFramesAreHandledWhenFormingEnabled() {
+        consumer.formingEnabled = true;
+
+        consumer.consume1W(record("unconfirmed", "0"));
+        consumer.consume1W(record("confirmed", "1"));
+
+        assertEquals(List.of("unconfirmed", "confirmed"), handled);
+        assertEquals(0, consumer.getSkippedUnconfirmed());
+    }
+
+    private static ConsumerRecord<String, String> record(String value, String confirm) {
+        ConsumerRecord<String, String> record = new ConsumerRecord<>("okx-candle-1m", 0, 0L, "BTC-USDT-SWAP", value);
+        if (confirm != null) {
+            record.headers().add(CandleConsumer.CONFIRM_HEADER, confirm.getBytes(StandardCharsets.US_ASCII));
+        }
+        return record;
+    }
+}
@@ -0,0 +1,145 @@
+package artskif.trader.repository;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.dto.CandlestickDto;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Параллельные сохранения свечей через COPY во временную таблицу сессии (TimescaleDB из Dev Services)
+ */
+@QuarkusTest
+class CandleRepositoryConcurrencyTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Inject
+    CandleRepository repository;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    void parallelWritersDoNotLoseOrMixRows() throws Exception {
+        int writers = 8;
+        int rows = 2_000;
+
+        List<Integer> affected = runWriters(writers, writer -> repository.saveFromMap(
+                candles("CONC-" + writer, rows, writer), "writer-" + writer));
+
+        for (int writer = 0; writer < writers; writer++) {
+            assertEquals(rows, affected.get(writer));
+            assertEquals(rows, countRows("CONC-" + writer));
+            assertEquals(0, BigDecimal.valueOf(writer).compareTo(firstClose("CONC-" + writer)));
+        }
+    }
+
+    @Test
+    void parallelWritersOfSameKeysUpsert() throws Exception {
+        int writers = 4;
+        int rows = 1_000;
+
+        List<Integer> affected = runWriters(writers, writer ->
+                repository.saveFromMap(candles("CONC-SHARED", rows, writer), "writer-" + writer));
+
+        // Каждый писатель вставил или обновил все свои строки, в таблице остался один экземпляр каждой
+        for (int writer = 0; writer < writers; writer++) {
+            assertEquals(rows, affected.get(writer));
+        }
+        assertEquals(rows, countRows("CONC-SHARED"));
+    }
+
+    /**
+     * Пропускная способность одного и нескольких писателей; пороги не проверяются — цифры для сравнения между запусками
+     */
+    @Test
+    void multiWriterThroughput() throws Exception {
+        int rows = 5_000;
+        for (int writers : new int[]{1, 4, 8}) {
+            int round = writers;
+            long started = System.nanoTime();
+            runWriters(writers, writer -> repository.saveFromMap(
+                    candles("TPUT-" + round + "-" + writer, rows, writer), "writer-" + writer));
+            long elapsedNs = System.nanoTime() - started;
+            System.out.printf("Свечи через COPY: писателей %d, %d строк за %d мс, %.0f строк/с%n",
+                    writers, writers * rows, elapsedNs / 1_000_000, (double) writers * rows / elapsedNs * 1e9);
+        }
+    }
+
+    private interface Writer {
+        int write(int writer) throws Exception;
+    }
+
+    private static List<Integer> runWriters(int writers, Writer task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int id = writer;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.write(id);
+                }));
+            }
+            start.countDown();
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Map<Instant, CandlestickDto> candles(String instrument, int rows, int writer) {
+        Map<Instant, CandlestickDto> candles = new LinkedHashMap<>();
+        for (int i = 0; i < rows; i++) {
+            Instant ts = START.plusSeconds(60L * i);
+            BigDecimal close = BigDecimal.valueOf(writer + i);
+            CandlestickDto dto = new CandlestickDto();
+            dto.setInstrument(instrument);
+            dto.setPeriod(CandleTimeframe.CANDLE_1M);
+            dto.setTimestamp(ts);
+            dto.setOpen(close);
+            dto.setHigh(close.add(BigDecimal.ONE));
+            dto.setLow(close.subtract(BigDecimal.ONE));
+            dto.setClose(close);
+            dto.setVolume(BigDecimal.TEN);
+            dto.setConfirmed(true);
+            candles.put(ts, dto);
+        }
+        return candles;
+    }
+
+    private long countRows(String symbol) {
+        return QuarkusTransaction.requiringNew().call(() -> ((Number) entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM candles WHERE symbol = :symbol")
+                .setParameter("symbol", symbol)
+                .getSingleResult()).longValue());
+    }
+
+    private BigDecimal firstClose(String symbol) {
+        return QuarkusTransaction.requiringNew().call(() -> (BigDecimal) entityManager
+                .createNativeQuery("SELECT close FROM candles WHERE symbol = :symbol ORDER BY ts LIMIT 1")
+                .setParameter("symbol", symbol)
+                .getSingleResult());
+    }
+}
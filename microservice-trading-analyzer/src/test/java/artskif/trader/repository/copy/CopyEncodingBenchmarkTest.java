@@ -0,0 +1,191 @@
+package artskif.trader.repository.copy;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.dto.CandlestickDto;
+import artskif.trader.repository.CandleRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Сравнение кодирования свечей для COPY: прежний CSV-путь (строка на свечу, общий String и StringReader)
+ * против {@link PgBinaryCopyWriter}. Работает без БД — результат пишется в поток, считающий байты,
+ * поэтому измеряется только стоимость кодирования на стороне приложения.
+ * Пороги скорости не проверяются — цифры выводятся для сравнения между запусками на одной машине.
+ */
+class CopyEncodingBenchmarkTest {
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROWS = 100_000;
+
+    @Test
+    void binaryEncodingAllocatesLessThanCsv() throws IOException {
+        Result result = run(ROWS);
+
+        System.out.printf("COPY csv: %d строк/с, %d байт/строку выделено, %d байт данных; " +
+                        "binary: %d строк/с, %d байт/строку выделено, %d байт данных%n",
+                result.csvRowsPerSecond(), result.csvBytesAllocatedPerRow(), result.csvPayloadBytes(),
+                result.binaryRowsPerSecond(), result.binaryBytesAllocatedPerRow(), result.binaryPayloadBytes());
+        assertTrue(result.binaryPayloadBytes() > 0);
+        assertTrue(result.binaryBytesAllocatedPerRow() <= result.csvBytesAllocatedPerRow());
+    }
+
+    /**
+     * Результат сравнения
+     *
+     * @param rows                 количество свечей в прогоне
+     * @param csvRowsPerSecond     пропускная способность CSV-кодирования
+     * @param binaryRowsPerSecond  пропускная способность бинарного кодирования
+     * @param csvBytesAllocatedPerRow    выделено памяти на строку (CSV)
+     * @param binaryBytesAllocatedPerRow выделено памяти на строку (binary)
+     * @param csvPayloadBytes      размер данных COPY (CSV)
+     * @param binaryPayloadBytes   размер данных COPY (binary)
+     */
+    record Result(int rows,
+                         long csvRowsPerSecond,
+                         long binaryRowsPerSecond,
+                         long csvBytesAllocatedPerRow,
+                         long binaryBytesAllocatedPerRow,
+                         long csvPayloadBytes,
+                         long binaryPayloadBytes) {
+    }
+
+    static Result run(int rows) throws IOException {
+        if (rows <= 0) {
+            throw new IllegalArgumentException("Количество строк должно быть положительным");
+        }
+        List<CandlestickDto> candles = generateCandles(rows);
+
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            encodeCsv(candles);
+            encodeBinary(candles);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long started = System.nanoTime();
+        long csvBytes = encodeCsv(candles);
+        long csvNanos = System.nanoTime() - started;
+        long csvAllocated = allocatedBytes() - allocatedBefore;
+
+        allocatedBefore = allocatedBytes();
+        started = System.nanoTime();
+        long binaryBytes = encodeBinary(candles);
+        long binaryNanos = System.nanoTime() - started;
+        long binaryAllocated = allocatedBytes() - allocatedBefore;
+
+        return new Result(rows,
+                rowsPerSecond(rows, csvNanos),
+                rowsPerSecond(rows, binaryNanos),
+                csvAllocated / rows,
+                binaryAllocated / rows,
+                csvBytes,
+                binaryBytes);
+    }
+
+    /**
+     * Прежний путь: форматирование каждой свечи в строку, склейка в один String и чтение через StringReader
+     */
+    private static long encodeCsv(List<CandlestickDto> candles) throws IOException {
+        String csv = candles.stream()
+                .map(CopyEncodingBenchmarkTest::toCsvLine)
+                .collect(Collectors.joining("\n"));
+        CountingOutputStream out = new CountingOutputStream();
+        try (StringReader reader = new StringReader(csv)) {
+            char[] chunk = new char[65536];
+            int read;
+            while ((read = reader.read(chunk)) != -1) {
+                // CopyManager передаёт символы драйверу, который кодирует их в UTF-8
+                out.write(new String(chunk, 0, read).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.count;
+    }
+
+    private static long encodeBinary(List<CandlestickDto> candles) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(out);
+        for (CandlestickDto candle : candles) {
+            CandleRepository.writeCopyRow(writer, candle);
+        }
+        writer.finish();
+        return out.count;
+    }
+
+    private static String toCsvLine(CandlestickDto dto) {
+        return String.join(",",
+                dto.getInstrument(),
+                dto.getPeriod().name(),
+                TS_FMT.format(LocalDateTime.ofInstant(dto.getTimestamp(), ZoneOffset.UTC)),
+                dto.getOpen().toPlainString(),
+                dto.getHigh().toPlainString(),
+                dto.getLow().toPlainString(),
+                dto.getClose().toPlainString(),
+                dto.getVolume().toPlainString(),
+                String.valueOf(Boolean.TRUE.equals(dto.getConfirmed())));
+    }
+
+    private static List<CandlestickDto> generateCandles(int rows) {
+        List<CandlestickDto> candles = new ArrayList<>(rows);
+        Instant start = Instant.parse("2024-01-01T00:00:00Z");
+        BigDecimal price = new BigDecimal("42000.50000000");
+        for (int i = 0; i < rows; i++) {
+            BigDecimal open = price.add(BigDecimal.valueOf(i % 97, 2));
+            CandlestickDto dto = new CandlestickDto();
+            dto.setInstrument("BTC-USDT-SWAP");
+            dto.setPeriod(CandleTimeframe.CANDLE_1M);
+            dto.setTimestamp(start.plusSeconds(60L * i));
+            dto.setOpen(open);
+            dto.setHigh(open.add(BigDecimal.valueOf(1234, 2)));
+            dto.setLow(open.subtract(BigDecimal.valueOf(987, 2)));
+            dto.setClose(open.add(BigDecimal.valueOf(i % 13 - 6, 1)));
+            dto.setVolume(BigDecimal.valueOf(100_000 + i, 4));
+            dto.setConfirmed(true);
+            candles.add(dto);
+        }
+        return candles;
+    }
+
+    private static long rowsPerSecond(int rows, long nanos) {
+        return nanos > 0 ? rows * 1_000_000_000L / nanos : 0;
+    }
+
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            return bean.getThreadAllocatedBytes(Thread.currentThread().threadId());
+        }
+        return 0;
+    }
+
+    /**
+     * Поток-приёмник, который только считает байты
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
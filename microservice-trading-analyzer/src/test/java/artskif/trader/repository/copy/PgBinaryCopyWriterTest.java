@@ -0,0 +1,80 @@
+package artskif.trader.repository.copy;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PgBinaryCopyWriterTest {
+
+    // Сигнатура (11 байт), флаги и длина расширения заголовка
+    private static final int HEADER_SIZE = 19;
+
+    @Test
+    void nonFiniteNumbersAreWrittenAsNull() throws IOException {
+        ByteBuffer row = singleRow(PgCopyType.NUMERIC, Double.NaN, Double.POSITIVE_INFINITY, Float.NaN);
+
+        assertEquals(3, row.getShort());
+        assertEquals(-1, row.getInt());
+        assertEquals(-1, row.getInt());
+        assertEquals(-1, row.getInt());
+    }
+
+    @Test
+    void numericUsesBase10000Digits() throws IOException {
+        ByteBuffer row = singleRow(PgCopyType.NUMERIC, new BigDecimal("-12345.678"));
+
+        assertEquals(1, row.getShort());
+        assertEquals(8 + 3 * 2, row.getInt());
+        assertEquals(3, row.getShort());      // ndigits: 1 | 2345 | 6780
+        assertEquals(1, row.getShort());      // weight старшей группы
+        assertEquals(0x4000, row.getShort()); // отрицательное
+        assertEquals(3, row.getShort());      // dscale
+        assertEquals(1, row.getShort());
+        assertEquals(2345, row.getShort());
+        assertEquals(6780, row.getShort());
+    }
+
+    @Test
+    void doubleIsWrittenAsNumeric() throws IOException {
+        ByteBuffer row = singleRow(PgCopyType.NUMERIC, 0.5d);
+
+        assertEquals(1, row.getShort());
+        assertEquals(8 + 2, row.getInt());
+        assertEquals(1, row.getShort());
+        assertEquals(-1, row.getShort());
+        assertEquals(0, row.getShort());
+        assertEquals(1, row.getShort());
+        assertEquals(5000, row.getShort());
+    }
+
+    @Test
+    void timestampIsMicrosFromPostgresEpoch() throws IOException {
+        ByteBuffer row = singleRow(PgCopyType.TIMESTAMP, Instant.parse("2000-01-01T00:00:01.000002Z"));
+
+        assertEquals(1, row.getShort());
+        assertEquals(8, row.getInt());
+        assertEquals(1_000_002L, row.getLong());
+    }
+
+    private static ByteBuffer singleRow(PgCopyType type, Object... values) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PgBinaryCopyWriter writer = new PgBinaryCopyWriter(out);
+        writer.startRow(values.length);
+        for (Object value : values) {
+            writer.writeValue(type, value);
+        }
+        assertEquals(1, writer.finish());
+
+        byte[] bytes = out.toByteArray();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        // В конце — маркер завершения -1
+        assertEquals(-1, ByteBuffer.wrap(bytes, bytes.length - 2, 2).getShort());
+        return buffer;
+    }
+}
@@ -0,0 +1,158 @@
+package artskif.trader.storage;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Политики хранения и построчная очистка по классам тегов на TimescaleDB из Dev Services.
+ * Каждый тест работает со своей гипертаблицей той же структуры, что wide_candles, — фоновые задачи
+ * retention не затрагивают таблицы других тестов.
+ */
+@QuarkusTest
+class StoragePolicyServiceTest {
+
+    private static final AtomicInteger TABLES = new AtomicInteger();
+    private static final LocalDateTime DAY0 = LocalDateTime.parse("2024-01-01T00:00:00");
+
+    @Inject
+    StoragePolicyService service;
+
+    @Inject
+    EntityManager entityManager;
+
+    private String table;
+
+    @BeforeEach
+    void createTable() {
+        table = "policy_test_" + TABLES.incrementAndGet();
+        QuarkusTransaction.requiringNew().run(() -> {
+            entityManager.createNativeQuery("CREATE TABLE " + table + " (tf varchar(10) NOT NULL, ts timestamp NOT NULL, " +
+                    "tag varchar(255) NOT NULL, close numeric(18, 8) NOT NULL, PRIMARY KEY (tf, tag, ts))").executeUpdate();
+            entityManager.createNativeQuery("SELECT create_hypertable(CAST(:table AS regclass), 'ts', " +
+                    "chunk_time_interval => INTERVAL '1 day')").setParameter("table", table).getSingleResult();
+        });
+    }
+
+    @Test
+    void initScriptPoliciesAreReconciledWithoutDuplicateJobs() {
+        // 02_policies.sql создаёт задачи для candles, при старте анализатор приводит их к storage.candles.*
+        assertEquals(1, countJobs("candles", "policy_retention"));
+        assertEquals(1, countJobs("candles", "policy_compression"));
+        assertEquals(1, countJobs("candles", "policy_retention", "drop_after", 1825));
+    }
+
+    @Test
+    void applyPolicyIsIdempotentAndFollowsConfiguration() {
+        service.applyPolicy(new HypertablePolicy(table, 1, "tf, tag", "ts DESC", 7, 30));
+        service.applyPolicy(new HypertablePolicy(table, 1, "tf, tag", "ts DESC", 7, 30));
+        assertEquals(1, countJobs(table, "policy_compression", "compress_after", 7));
+        assertEquals(1, countJobs(table, "policy_retention", "drop_after", 30));
+
+        service.applyPolicy(new HypertablePolicy(table, 1, "tf, tag", "ts DESC", 7, 90));
+        assertEquals(1, countJobs(table, "policy_retention"));
+        assertEquals(1, countJobs(table, "policy_retention", "drop_after", 90));
+
+        // Компрессия и retention выключены — задачи сняты
+        service.applyPolicy(new HypertablePolicy(table, 1, null, "ts DESC", 0, 0));
+        assertEquals(0, countJobs(table, "policy_compression"));
+        assertEquals(0, countJobs(table, "policy_retention"));
+    }
+
+    @Test
+    void statsCountChunksAndCompression() {
+        service.applyPolicy(new HypertablePolicy(table, 1, "tf, tag", "ts DESC", 7, 0));
+        insertDays(3, "live");
+
+        HypertableStats stats = service.getStats(table);
+        assertEquals("1 day", stats.chunkInterval());
+        assertEquals(3, stats.chunks());
+        assertEquals(0, stats.compressedChunks());
+        assertTrue(stats.totalBytes() > 0);
+
+        QuarkusTransaction.requiringNew().run(() -> entityManager.createNativeQuery(
+                        "SELECT compress_chunk(c) FROM show_chunks(CAST(:table AS regclass)) c ORDER BY c LIMIT 1")
+                .setParameter("table", table)
+                .getResultList());
+
+        stats = service.getStats(table);
+        assertEquals(1, stats.compressedChunks());
+        assertTrue(stats.beforeCompressionBytes() > 0);
+        assertTrue(stats.compressionRatio() > 0);
+    }
+
+    @Test
+    void tagRetentionDeletesOnlyMatchingRowsBeforeCutoffInBatches() {
+        insertDays(3, "xgb-backtest");
+        insertDays(3, "live");
+        LocalDateTime cutoff = DAY0.plusDays(1).plusHours(12);
+
+        List<LocalDateTime[]> ranges = service.findChunkRangesBefore(table, cutoff);
+        assertEquals(2, ranges.size());
+        assertArrayEquals(new LocalDateTime[]{DAY0, DAY0.plusDays(1)}, ranges.get(0));
+        assertArrayEquals(new LocalDateTime[]{DAY0.plusDays(1), cutoff}, ranges.get(1));
+
+        TagRetention retention = new TagRetention("backtest", "%-backtest", 1);
+        int deleted = 0;
+        for (LocalDateTime[] range : ranges) {
+            int batch;
+            do {
+                batch = service.deleteTagRowsBatch(table, retention, range[0], range[1], 5);
+                assertTrue(batch <= 5);
+                deleted += batch;
+            } while (batch > 0);
+        }
+
+        // 24 часовых бара первого дня и 12 второго до cutoff; строки live не тронуты
+        assertEquals(36, deleted);
+        assertEquals(72 - 36, countRows("xgb-backtest"));
+        assertEquals(72, countRows("live"));
+    }
+
+    private void insertDays(int days, String tag) {
+        QuarkusTransaction.requiringNew().run(() -> entityManager.createNativeQuery(
+                        "INSERT INTO " + table + " (tf, ts, tag, close) " +
+                                "SELECT '1h', ts, :tag, 1 FROM generate_series(CAST(:from AS timestamp), " +
+                                "CAST(:from AS timestamp) + make_interval(days => :days) - INTERVAL '1 hour', INTERVAL '1 hour') ts")
+                .setParameter("tag", tag)
+                .setParameter("from", DAY0)
+                .setParameter("days", days)
+                .executeUpdate());
+    }
+
+    private long countRows(String tag) {
+        return ((Number) entityManager.createNativeQuery("SELECT COUNT(*) FROM " + table + " WHERE tag = :tag")
+                .setParameter("tag", tag)
+                .getSingleResult()).longValue();
+    }
+
+    private long countJobs(String hypertable, String proc) {
+        return ((Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM timescaledb_information.jobs WHERE hypertable_name = :table AND proc_name = :proc")
+                .setParameter("table", hypertable)
+                .setParameter("proc", proc)
+                .getSingleResult()).longValue();
+    }
+
+    private long countJobs(String hypertable, String proc, String key, int days) {
+        return ((Number) entityManager.createNativeQuery(
+                        "SELECT COUNT(*) FROM timescaledb_information.jobs WHERE hypertable_name = :table AND proc_name = :proc " +
+                                "AND CAST(config ->> :key AS interval) = make_interval(days => :days)")
+                .setParameter("table", hypertable)
+                .setParameter("proc", proc)
+                .setParameter("key", key)
+                .setParameter("days", days)
+                .getSingleResult()).longValue();
+    }
+}
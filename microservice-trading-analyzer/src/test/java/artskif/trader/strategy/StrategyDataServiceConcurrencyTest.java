@@ -0,0 +1,145 @@
+package artskif.trader.strategy;
+
+import artskif.trader.strategy.snapshot.DatabaseSnapshot;
+import artskif.trader.strategy.snapshot.impl.DatabaseSnapshotRow;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Параллельные пакетные сохранения строк фич через COPY во временные таблицы сессии (TimescaleDB из Dev Services)
+ */
+@QuarkusTest
+class StrategyDataServiceConcurrencyTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Inject
+    StrategyDataService dataService;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    void parallelBatchesOfDifferentTagsDoNotInterfere() throws Exception {
+        int writers = 8;
+        int rows = 2_000;
+
+        List<Integer> affected = runWriters(writers, writer ->
+                dataService.saveContractSnapshotRowsBatch(rows("conc-" + writer, rows, false), "conc-" + writer));
+
+        for (int writer = 0; writer < writers; writer++) {
+            assertEquals(rows, affected.get(writer));
+            assertEquals(rows, countRows("conc-" + writer));
+        }
+    }
+
+    @Test
+    void growingColumnSetUsesNewStageTable() throws Exception {
+        // Один и тот же поток пишет пакеты с разным набором колонок — на том же соединении появляется вторая таблица
+        List<Integer> affected = runWriters(1, writer ->
+                dataService.saveContractSnapshotRowsBatch(rows("conc-columns", 100, false), "conc-columns")
+                        + dataService.saveContractSnapshotRowsBatch(rows("conc-columns", 100, true), "conc-columns"));
+
+        assertEquals(200, affected.get(0));
+        assertEquals(100, countRows("conc-columns"));
+        assertNotEquals(StrategyDataService.stageTableName("stage_wide_candles", "tf, tag, ts, close"),
+                StrategyDataService.stageTableName("stage_wide_candles", "tf, tag, ts, close, confirmed"));
+    }
+
+    @Test
+    void stageTableNameIsStableDigestWithinIdentifierLimit() {
+        // "Aa" и "BB" дают одинаковый String.hashCode — имя не должно зависеть от него
+        assertNotEquals(StrategyDataService.stageTableName("stage_wide_candles", "tf, Aa"),
+                StrategyDataService.stageTableName("stage_wide_candles", "tf, BB"));
+        assertEquals(StrategyDataService.stageTableName("wc_0123456789abcdef", "tf, tag, ts, close"),
+                StrategyDataService.stageTableName("wc_0123456789abcdef", "tf, tag, ts, close"));
+        assertTrue(StrategyDataService.stageTableName("stage_wide_candles", "tf, tag, ts, close").length() <= 63);
+        assertTrue(StrategyDataService.stageTableName("wc_0123456789abcdef", "tf, tag, ts, close").length() <= 63);
+    }
+
+    /**
+     * Пропускная способность одного и нескольких писателей; пороги не проверяются — цифры для сравнения между запусками
+     */
+    @Test
+    void multiWriterThroughput() throws Exception {
+        int rows = 5_000;
+        for (int writers : new int[]{1, 4, 8}) {
+            int round = writers;
+            long started = System.nanoTime();
+            runWriters(writers, writer -> dataService.saveContractSnapshotRowsBatch(
+                    rows("tput-" + round + "-" + writer, rows, false), "tput-" + round + "-" + writer));
+            long elapsedNs = System.nanoTime() - started;
+            System.out.printf("Фичи через COPY: писателей %d, %d строк за %d мс, %.0f строк/с%n",
+                    writers, writers * rows, elapsedNs / 1_000_000, (double) writers * rows / elapsedNs * 1e9);
+        }
+    }
+
+    private interface Writer {
+        int write(int writer) throws Exception;
+    }
+
+    private static List<Integer> runWriters(int writers, Writer task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int writer = 0; writer < writers; writer++) {
+                int id = writer;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    return task.write(id);
+                }));
+            }
+            start.countDown();
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<DatabaseSnapshot> rows(String tag, int rows, boolean withConfirmed) {
+        List<DatabaseSnapshot> snapshots = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            BigDecimal price = BigDecimal.valueOf(100 + i % 50);
+            DatabaseSnapshotRow row = new DatabaseSnapshotRow(Duration.ofMinutes(1), START.plusSeconds(60L * i), null, tag);
+            row.addColumn("open", price);
+            row.addColumn("high", price.add(BigDecimal.ONE));
+            row.addColumn("low", price.subtract(BigDecimal.ONE));
+            row.addColumn("close", price);
+            row.addColumn("volume", BigDecimal.TEN);
+            if (withConfirmed) {
+                row.addColumn("confirmed", Boolean.TRUE);
+            }
+            snapshots.add(row);
+        }
+        return snapshots;
+    }
+
+    private long countRows(String tag) {
+        return QuarkusTransaction.requiringNew().call(() -> ((Number) entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM wide_candles WHERE tag = :tag")
+                .setParameter("tag", tag)
+                .getSingleResult()).longValue());
+    }
+}
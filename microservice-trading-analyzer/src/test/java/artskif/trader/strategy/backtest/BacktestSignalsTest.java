@@ -0,0 +1,115 @@
+package artskif.trader.strategy.backtest;
+
+import artskif.trader.candle.CandleTimeframe;
+import artskif.trader.strategy.event.TradeEventProcessor;
+import artskif.trader.strategy.event.common.Direction;
+import artskif.trader.strategy.event.common.TradeEventData;
+import artskif.trader.strategy.event.common.TradeEventType;
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.Position;
+import org.ta4j.core.TradingRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class BacktestSignalsTest {
+
+    @Test
+    void exitSeesOpenPositionOfItsDirection() {
+        // Вход на каждом баре, выход через два бара после входа — зависит от открытой позиции в рекорде
+        HoldingProcessor processor = new HoldingProcessor(Direction.SHORT, 2);
+        BacktestBars bars = BacktestSimulatorTest.flatBars(100, 101, 102, 103, 104, 105);
+
+        BacktestSignals signals = BacktestSignals.evaluate(bars, null, processor, index -> false);
+
+        assertArrayEquals(new boolean[]{false, false, true, false, false, true}, signals.shortExit());
+        assertArrayEquals(new boolean[6], signals.longEnter());
+        // Рекорд ведётся по ценам закрытия: входы на барах 0 и 3
+        assertEquals(List.of(100.0, 103.0), processor.entryPricesOnExit);
+    }
+
+    @Test
+    void unstableBarsAreSkipped() {
+        HoldingProcessor processor = new HoldingProcessor(Direction.LONG, 1);
+        BacktestBars bars = new BacktestBars(10,
+                new double[]{1, 2, 3, 4}, new double[]{1, 2, 3, 4},
+                new double[]{1, 2, 3, 4}, new double[]{1, 2, 3, 4});
+
+        BacktestSignals signals = BacktestSignals.evaluate(bars, processor, null, index -> index < 12);
+
+        assertArrayEquals(new boolean[]{false, false, true, true}, signals.longEnter());
+        assertArrayEquals(new boolean[]{false, false, false, true}, signals.longExit());
+        assertEquals(List.of(12, 13), processor.seenIndexes);
+    }
+
+    /**
+     * Процессор, который входит на каждом баре и выходит, когда позиция открыта не меньше holdBars баров
+     */
+    private static final class HoldingProcessor implements TradeEventProcessor {
+        private final Direction direction;
+        private final int holdBars;
+        final List<Integer> seenIndexes = new ArrayList<>();
+        final List<Double> entryPricesOnExit = new ArrayList<>();
+
+        HoldingProcessor(Direction direction, int holdBars) {
+            this.direction = direction;
+            this.holdBars = holdBars;
+        }
+
+        @Override
+        public boolean shouldMarketEnter(int index, TradingRecord tradingRecord, boolean isLiveSeries) {
+            seenIndexes.add(index);
+            return true;
+        }
+
+        @Override
+        public boolean shouldMarketExit(int index, TradingRecord tradingRecord, boolean isLiveSeries) {
+            assertNotNull(tradingRecord);
+            Position position = tradingRecord.getCurrentPosition();
+            boolean exit = position.isOpened() && index - position.getEntry().getIndex() >= holdBars;
+            if (exit) {
+                entryPricesOnExit.add(position.getEntry().getNetPrice().doubleValue());
+            }
+            return exit;
+        }
+
+        @Override
+        public TradeEventData getLifeTradeEventData(int index) {
+            return null;
+        }
+
+        @Override
+        public Direction getTradeDirection() {
+            return direction;
+        }
+
+        @Override
+        public CandleTimeframe getTimeframe() {
+            return CandleTimeframe.CANDLE_1M;
+        }
+
+        @Override
+        public CandleTimeframe getHighTimeframe() {
+            return CandleTimeframe.CANDLE_1H;
+        }
+
+        @Override
+        public TradeEventType getTradeEventType() {
+            return TradeEventType.GOLDEN_FIELD;
+        }
+
+        @Override
+        public Integer getTrendStrength(int index, boolean isLiveSeries) {
+            return 0;
+        }
+
+        @Override
+        public Integer getTrendStability(int index, boolean isLiveSeries) {
+            return 0;
+        }
+    }
+}
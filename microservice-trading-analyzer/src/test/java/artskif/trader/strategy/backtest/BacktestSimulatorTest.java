@@ -0,0 +1,159 @@
+package artskif.trader.strategy.backtest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BacktestSimulatorTest {
+
+    private static final double EPS = 1e-9;
+    private static final BacktestParams NO_COSTS = new BacktestParams(0, 0, 0, 0);
+
+    @Test
+    void longPositionClosedBySignalWithoutCosts() {
+        BacktestBars bars = flatBars(100, 100, 110, 120);
+        BacktestSignals signals = longSignals(new boolean[]{true, false, false, false},
+                new boolean[]{false, false, true, false});
+
+        BacktestResult result = BacktestSimulator.simulate(bars, signals, NO_COSTS);
+
+        BacktestResult.Track track = result.getLong();
+        assertEquals(1, track.getPositions());
+        assertEquals(1, track.getWinningPositions());
+        assertEquals(0.10, track.getSumReturn(), EPS);
+        assertEquals(100, track.entryPrice()[0], EPS);
+        assertEquals(100, track.entryPrice()[1], EPS);
+        assertTrue(Double.isNaN(track.entryPrice()[2]));
+        assertEquals(0, result.getShort().getPositions());
+    }
+
+    @Test
+    void feesAndSlippageAreChargedOnBothSides() {
+        BacktestBars bars = flatBars(100, 110);
+        BacktestSignals signals = longSignals(new boolean[]{true, false}, new boolean[]{false, true});
+
+        BacktestResult result = BacktestSimulator.simulate(bars, signals, new BacktestParams(0, 0, 0.1, 0.5));
+
+        double entry = 100 * 1.005;
+        double exit = 110 * 0.995;
+        assertEquals((exit - entry) / entry - 2 * 0.001, result.getLong().getSumReturn(), EPS);
+    }
+
+    @Test
+    void stopLossGapIsFilledAtOpen() {
+        // Вход в лонг по 100, SL 5% = 95; следующий бар открывается гэпом на 90
+        BacktestBars bars = new BacktestBars(0,
+                new double[]{100, 90},
+                new double[]{100, 92},
+                new double[]{100, 88},
+                new double[]{100, 91});
+        BacktestSignals signals = longSignals(new boolean[]{true, false}, new boolean[]{false, false});
+
+        BacktestResult.Track track = BacktestSimulator.simulate(bars, signals, new BacktestParams(5, 0, 0, 0)).getLong();
+
+        assertEquals(1, track.getStopLossHits());
+        assertEquals(-0.10, track.getSumReturn(), EPS);
+        assertEquals(95, track.stopLoss()[0], EPS);
+    }
+
+    @Test
+    void stopLossWinsWhenBothLevelsHitOnSameBar() {
+        BacktestBars bars = new BacktestBars(0,
+                new double[]{100, 100},
+                new double[]{100, 120},
+                new double[]{100, 80},
+                new double[]{100, 100});
+        BacktestSignals signals = shortSignals(new boolean[]{true, false}, new boolean[]{false, false});
+
+        BacktestResult.Track track = BacktestSimulator.simulate(bars, signals, new BacktestParams(5, 5, 0, 0)).getShort();
+
+        assertEquals(1, track.getStopLossHits());
+        assertEquals(0, track.getTakeProfitHits());
+        assertEquals(-0.05, track.getSumReturn(), EPS);
+    }
+
+    @Test
+    void noReentryOnExitBar() {
+        BacktestBars bars = flatBars(100, 100, 100, 100);
+        BacktestSignals signals = longSignals(new boolean[]{true, true, true, true},
+                new boolean[]{false, true, false, false});
+
+        BacktestResult.Track track = BacktestSimulator.simulate(bars, signals, NO_COSTS).getLong();
+
+        // Выход на баре 1, повторный вход только на баре 2; позиция с бара 2 так и не закрыта
+        assertEquals(1, track.getPositions());
+        assertTrue(Double.isNaN(track.entryPrice()[1]));
+        assertEquals(100, track.entryPrice()[2], EPS);
+    }
+
+    @Test
+    void rejectsSignalsOfDifferentLength() {
+        BacktestBars bars = flatBars(100, 100);
+        BacktestSignals signals = longSignals(new boolean[]{true}, new boolean[]{false});
+
+        assertThrows(IllegalArgumentException.class,
+                () -> BacktestSimulator.simulate(bars, signals, NO_COSTS));
+    }
+
+    /**
+     * Пропускная способность внутреннего цикла на случайном блуждании: миллион баров, оба направления.
+     * Порог не проверяется — время выводится для сравнения между запусками.
+     */
+    @Test
+    void throughputOnMillionBars() {
+        int size = 1_000_000;
+        Random random = new Random(42);
+        double[] open = new double[size];
+        double[] high = new double[size];
+        double[] low = new double[size];
+        double[] close = new double[size];
+        boolean[] enter = new boolean[size];
+        boolean[] exit = new boolean[size];
+        double price = 100;
+        for (int i = 0; i < size; i++) {
+            open[i] = price;
+            price *= 1 + random.nextGaussian() * 0.002;
+            close[i] = price;
+            high[i] = Math.max(open[i], close[i]) * 1.001;
+            low[i] = Math.min(open[i], close[i]) * 0.999;
+            enter[i] = random.nextInt(50) == 0;
+            exit[i] = random.nextInt(50) == 0;
+        }
+        BacktestBars bars = new BacktestBars(0, open, high, low, close);
+        BacktestSignals signals = new BacktestSignals(enter, exit, enter, exit);
+        BacktestParams params = new BacktestParams(1, 2, 0.05, 0.01);
+
+        // Прогрев JIT
+        for (int i = 0; i < 5; i++) {
+            BacktestSimulator.simulate(bars, signals, params);
+        }
+        int runs = 10;
+        long started = System.nanoTime();
+        BacktestResult result = null;
+        for (int i = 0; i < runs; i++) {
+            result = BacktestSimulator.simulate(bars, signals, params);
+        }
+        long elapsedNs = System.nanoTime() - started;
+
+        System.out.printf("Симуляция %d баров: %.2f мс на прогон, %.1f млн баров/с%n", size,
+                elapsedNs / 1e6 / runs, (double) size * runs / elapsedNs * 1e3);
+        assertTrue(result.getLong().getPositions() > 0);
+        assertTrue(result.getShort().getPositions() > 0);
+    }
+
+    static BacktestBars flatBars(double... closes) {
+        return new BacktestBars(0, closes.clone(), closes.clone(), closes.clone(), closes.clone());
+    }
+
+    private static BacktestSignals longSignals(boolean[] enter, boolean[] exit) {
+        return new BacktestSignals(enter, exit, new boolean[enter.length], new boolean[exit.length]);
+    }
+
+    private static BacktestSignals shortSignals(boolean[] enter, boolean[] exit) {
+        return new BacktestSignals(new boolean[enter.length], new boolean[exit.length], enter, exit);
+    }
+}
@@ -0,0 +1,55 @@
+package artskif.trader.strategy.feature;
+
+import artskif.trader.candle.CandleTimeframe;
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.NaN;
+import org.ta4j.core.num.Num;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FeatureVectorTest {
+
+    private static final FeatureLayout LAYOUT = FeatureLayout.of(List.of("rsi_1m", "adx_1m"));
+
+    @Test
+    void numValuesKeepIndicatorPrecision() {
+        // 20 значащих цифр не помещаются в double
+        Num rsi = DecimalNum.valueOf("30.123456789012345678");
+        FeatureVector vector = vector(rsi, NaN.NaN);
+
+        assertSame(rsi, vector.getNum("rsi_1m"));
+        assertEquals(0, rsi.bigDecimalValue().compareTo(vector.getNum("rsi_1m").bigDecimalValue()));
+        assertEquals(30.123456789012345678, vector.get("rsi_1m"));
+    }
+
+    @Test
+    void missingAndUncomputedValuesAreNaN() {
+        FeatureVector vector = vector(DecimalNum.valueOf(1), NaN.NaN);
+
+        assertTrue(Double.isNaN(vector.get("adx_1m")));
+        assertTrue(vector.getNum("adx_1m").isNaN());
+        assertTrue(Double.isNaN(vector.get("unknown")));
+        assertTrue(vector.getNum("unknown").isNaN());
+    }
+
+    @Test
+    void rejectsValuesNotMatchingLayout() {
+        assertThrows(IllegalArgumentException.class, () -> new FeatureVector("BTC-USDT-SWAP", CandleTimeframe.CANDLE_1M,
+                Instant.EPOCH, 0, DecimalNum.valueOf(1), LAYOUT, new Num[]{DecimalNum.valueOf(1)}));
+    }
+
+    private static FeatureVector vector(Num rsi, Num adx) {
+        Num[] values = new Num[LAYOUT.size()];
+        values[LAYOUT.slotOf("rsi_1m")] = rsi;
+        values[LAYOUT.slotOf("adx_1m")] = adx;
+        return new FeatureVector("BTC-USDT-SWAP", CandleTimeframe.CANDLE_1M, Instant.EPOCH, 0,
+                DecimalNum.valueOf(100), LAYOUT, values);
+    }
+}
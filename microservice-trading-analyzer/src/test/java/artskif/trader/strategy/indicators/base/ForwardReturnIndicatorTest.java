@@ -0,0 +1,67 @@
+package artskif.trader.strategy.indicators.base;
+
+import org.junit.jupiter.api.Test;
+import org.ta4j.core.BarSeries;
+import org.ta4j.core.BaseBar;
+import org.ta4j.core.BaseBarSeriesBuilder;
+import org.ta4j.core.indicators.helpers.ClosePriceIndicator;
+import org.ta4j.core.num.DecimalNum;
+import org.ta4j.core.num.DecimalNumFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForwardReturnIndicatorTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Test
+    void returnsPriceChangeAfterHorizon() {
+        BarSeries series = series(100, 110, 121, 99);
+        ForwardReturnIndicator indicator = new ForwardReturnIndicator(new ClosePriceIndicator(series), 2);
+
+        assertEquals(0.21, indicator.getValue(0).doubleValue(), 1e-9);
+        assertEquals(-0.1, indicator.getValue(1).doubleValue(), 1e-9);
+    }
+
+    @Test
+    void valueIsNaNUntilHorizonBarExists() {
+        BarSeries series = series(100, 110, 121);
+        ForwardReturnIndicator indicator = new ForwardReturnIndicator(new ClosePriceIndicator(series), 2);
+
+        assertTrue(indicator.getValue(1).isNaN());
+
+        // Значения не кэшируются: после прихода бара доходность становится известной
+        addBar(series, 3, 132);
+        assertEquals(0.2, indicator.getValue(1).doubleValue(), 1e-9);
+    }
+
+    @Test
+    void horizonMustBePositive() {
+        BarSeries series = series(100);
+        assertThrows(IllegalArgumentException.class, () -> new ForwardReturnIndicator(new ClosePriceIndicator(series), 0));
+    }
+
+    private static BarSeries series(double... closes) {
+        BarSeries series = new BaseBarSeriesBuilder()
+                .withName("test")
+                .withNumFactory(DecimalNumFactory.getInstance(6))
+                .build();
+        for (int i = 0; i < closes.length; i++) {
+            addBar(series, i, closes[i]);
+        }
+        return series;
+    }
+
+    private static void addBar(BarSeries series, int index, double close) {
+        Duration period = Duration.ofMinutes(1);
+        Instant begin = START.plus(period.multipliedBy(index));
+        DecimalNum price = DecimalNum.valueOf(close);
+        series.addBar(new BaseBar(period, begin, begin.plus(period), price, price, price, price,
+                DecimalNum.valueOf(1), DecimalNum.valueOf(0), 0L));
+    }
+}
@@ -6,15 +6,32 @@ import java.time.Duration;
 
 @Getter
 public enum CandleTimeframe {
-    CANDLE_1M(Duration.ofMinutes(1)),
-    CANDLE_5M(Duration.ofMinutes(5)),
-    CANDLE_1H(Duration.ofHours(1)),
-    CANDLE_4H(Duration.ofHours(4)),
-    CANDLE_1W(Duration.ofDays(7));
+    CANDLE_1M(Duration.ofMinutes(1), "1m"),
+    CANDLE_5M(Duration.ofMinutes(5), "5m"),
+    CANDLE_1H(Duration.ofHours(1), "1H"),
+    CANDLE_4H(Duration.ofHours(4), "4H"),
+    CANDLE_1W(Duration.ofDays(7), "1W");
 
     private final Duration duration;
+    // Значение параметра bar в API OKX
+    private final String bar;
 
-    CandleTimeframe(Duration duration) {
+    CandleTimeframe(Duration duration, String bar) {
         this.duration = duration;
+        this.bar = bar;
+    }
+
+    /**
+     * Таймфрейм свечного канала OKX WebSocket ("candle1m", "candle1H", ...)
+     *
+     * @return таймфрейм или null для неизвестного канала
+     */
+    public static CandleTimeframe fromChannel(String channel) {
+        for (CandleTimeframe timeframe : values()) {
+            if (channel.equals("candle" + timeframe.bar)) {
+                return timeframe;
+            }
+        }
+        return null;
     }
 }
@@ -0,0 +1,77 @@
+package artskif.trader.kafka;
+
+import artskif.trader.api.dto.BackfillAck;
+import artskif.trader.api.dto.BackfillCommand;
+import artskif.trader.restapi.candle.BackfillService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.eclipse.microprofile.reactive.messaging.Message;
+import org.jboss.logging.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Читает топик команд дозагрузки от анализатора и отвечает подтверждениями в {@code okx-backfill-acks}.
+ *
+ * Offset команды фиксируется только после её выполнения: команда, не выполненная до остановки харвестера,
+ * после перезапуска придёт снова (повтор с тем же requestId отсеивает {@link BackfillService}).
+ * Команда, завершившаяся ошибкой, подтверждается со статусом FAILED — иначе неподтверждённая запись
+ * задержала бы фиксацию offset всех следующих команд; повторить её может анализатор.
+ */
+@ApplicationScoped
+public class BackfillCommandConsumer {
+
+    private static final Logger LOG = Logger.getLogger(BackfillCommandConsumer.class);
+    private static final String ACK_TOPIC = "okx-backfill-acks";
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Inject
+    BackfillService backfillService;
+
+    @Inject
+    KafkaProducer kafkaProducer;
+
+    @Incoming("backfill-commands")
+    public CompletionStage<Void> consume(Message<String> message) {
+        BackfillCommand command;
+        try {
+            command = mapper.readValue(message.getPayload(), BackfillCommand.class);
+        } catch (JsonProcessingException e) {
+            LOG.warnf("⚠️ Не удалось разобрать команду дозагрузки, пропущена: %s (%s)", message.getPayload(), e.getMessage());
+            return message.ack();
+        }
+
+        backfillService.submit(command).whenComplete((ack, error) -> {
+            if (error != null) {
+                LOG.errorf(error, "❌ Команда дозагрузки %s не выполнена", command.requestId());
+                sendAck(new BackfillAck(command.requestId(), command.symbol(), command.timeframe(),
+                        command.fromEpochMs(), command.toEpochMs(), BackfillAck.Status.FAILED, 0, 0));
+                message.ack();
+                return;
+            }
+            if (ack.status() == BackfillAck.Status.CANCELLED) {
+                LOG.infof("🛑 Команда дозагрузки %s прервана остановкой, будет выполнена после перезапуска", command.requestId());
+                return;
+            }
+            sendAck(ack);
+            message.ack();
+        });
+
+        // Следующие команды читаются сразу — их можно объединить с ещё не запущенными
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void sendAck(BackfillAck ack) {
+        try {
+            kafkaProducer.sendMessage(ACK_TOPIC, mapper.writeValueAsString(ack));
+        } catch (JsonProcessingException e) {
+            LOG.errorf(e, "❌ Не удалось сериализовать подтверждение дозагрузки %s", ack.requestId());
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package artskif.trader.kafka;
+
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.entity.Candle;
+import artskif.trader.repository.CandleRepository;
+import io.smallrye.reactive.messaging.kafka.Record;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Сжатый (cleanup.policy=compact) топик последних подтверждённых свечей для быстрого старта анализатора.
+ *
+ * Ключ записи — {@code symbol|timeframe|bucketEpochMs}, значение — пачка из одной свечи в формате history-топиков
+ * ({"instId":...,"isLast":false,"data":[[...]]}). Вместе с каждой новой свечой отправляются tombstone для всех
+ * свечей, вышедших за {@code okx.snapshot.<канал>.depth} баров с момента предыдущей опубликованной свечи пары
+ * символ/таймфрейм (после пропущенных баров — весь диапазон, а не одна свеча), поэтому после сжатия в топике
+ * остаются последние depth свечей. При старте топик досеивается последними свечами из БД, а depth баров
+ * ниже досеянного окна удаляются tombstone — там могли остаться свечи прошлых запусков.
+ */
+@ApplicationScoped
+public class CandleSnapshotPublisher {
+
+    private static final Logger LOG = Logger.getLogger(CandleSnapshotPublisher.class);
+    private static final String CONFIG_PREFIX = "okx.snapshot.";
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final String INST_ID_PREFIX = "\"instId\":\"";
+    private static final String DATA_PREFIX = "\"data\":";
+
+    @Inject
+    @Channel("producer-candle-snapshot")
+    Emitter<Record<String, String>> emitter;
+
+    @Inject
+    CandleRepository candleRepository;
+
+    @ConfigProperty(name = "okx.snapshot.enabled", defaultValue = "true")
+    boolean enabled;
+
+    @ConfigProperty(name = "okx.snapshot.seedOnStart", defaultValue = "true")
+    boolean seedOnStart;
+
+    @ConfigProperty(name = "okx.snapshot.depth", defaultValue = "10000")
+    int defaultDepth;
+
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    private final Map<CandleTimeframe, Integer> depths = new ConcurrentHashMap<>();
+    // Время последней опубликованной свечи по паре символ/таймфрейм: от неё считается диапазон tombstone
+    private final Map<String, Long> lastPublished = new ConcurrentHashMap<>();
+    private final ExecutorService seeder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("okx-snapshot-seed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Подтверждённый кадр WebSocket: {"arg":{"channel":...,"instId":...},"data":[["ts",...,"1"]]}
+     */
+    public void publishFrame(CandleTimeframe timeframe, String frame) {
+        if (!enabled) {
+            return;
+        }
+        int instFrom = frame.indexOf(INST_ID_PREFIX);
+        int dataFrom = frame.indexOf(DATA_PREFIX);
+        if (instFrom < 0 || dataFrom < 0) {
+            return;
+        }
+        instFrom += INST_ID_PREFIX.length();
+        String instId = frame.substring(instFrom, frame.indexOf('"', instFrom));
+        String data = frame.substring(dataFrom + DATA_PREFIX.length(), frame.lastIndexOf('}'));
+
+        // Время начала бара — первое поле первой строки: [["1697040000000",...
+        int tsFrom = data.indexOf('"') + 1;
+        long ts = Long.parseLong(data, tsFrom, data.indexOf('"', tsFrom), 10);
+
+        send(key(instId, timeframe, ts), payload(instId, data));
+        expire(instId, timeframe, ts);
+    }
+
+    /**
+     * Отправить tombstone для свечей, вышедших за глубину снимка после публикации свечи ts.
+     * Уже удалённые при предыдущей публикации свечи и свечи новее предыдущей публикации не затрагиваются.
+     */
+    private void expire(String instId, CandleTimeframe timeframe, long ts) {
+        long durationMs = timeframe.getDuration().toMillis();
+        long windowMs = depth(timeframe) * durationMs;
+        Long previous = lastPublished.get(instId + "|" + timeframe.name());
+        if (previous == null) {
+            // Первая свеча пары после старта без досева: удаляем одну, как при непрерывном потоке
+            send(key(instId, timeframe, ts - windowMs), null);
+        } else {
+            long upper = Math.min(ts - windowMs, previous);
+            for (long expired = previous - windowMs + durationMs; expired <= upper; expired += durationMs) {
+                send(key(instId, timeframe, expired), null);
+            }
+        }
+        lastPublished.merge(instId + "|" + timeframe.name(), ts, Math::max);
+    }
+
+    /**
+     * Досеять снимок последними подтверждёнными свечами из БД (в фоне)
+     */
+    public void seedAsync(List<String> instruments, List<CandleTimeframe> timeframes) {
+        if (!enabled || !seedOnStart) {
+            return;
+        }
+        seeder.execute(() -> {
+            for (String instId : instruments) {
+                for (CandleTimeframe timeframe : timeframes) {
+                    seed(instId, timeframe);
+                }
+            }
+        });
+    }
+
+    private void seed(String instId, CandleTimeframe timeframe) {
+        try {
+            List<Candle> candles = candleRepository.findLatestConfirmed(instId, timeframe.name(), depth(timeframe));
+            if (candles.isEmpty()) {
+                return;
+            }
+            long oldest = Long.MAX_VALUE;
+            long newest = Long.MIN_VALUE;
+            for (Candle candle : candles) {
+                long ts = candle.id.ts.toEpochMilli();
+                send(key(instId, timeframe, ts), payload(instId, toRow(candle)));
+                oldest = Math.min(oldest, ts);
+                newest = Math.max(newest, ts);
+            }
+            // Ниже окна могли остаться свечи прошлых запусков с большей глубиной или без части tombstone
+            long durationMs = timeframe.getDuration().toMillis();
+            int depth = depth(timeframe);
+            for (int i = 1; i <= depth; i++) {
+                send(key(instId, timeframe, oldest - i * durationMs), null);
+            }
+            lastPublished.merge(instId + "|" + timeframe.name(), newest, Math::max);
+            LOG.infof("🗂️ Снимок %s %s досеян из БД: %d свечей, ниже окна удалено %d", instId, timeframe, candles.size(), depth);
+        } catch (Exception e) {
+            LOG.errorf(e, "❌ Не удалось досеять снимок %s %s", instId, timeframe);
+        }
+    }
+
+    private void send(String key, String value) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            emitter.send(Record.of(key, value)).whenComplete((ok, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    LOG.warnf("⚠️ Kafka не подтвердила запись снимка %s: %s", key, error.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            LOG.warnf("⚠️ Не удалось отправить запись снимка %s: %s", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Глубина снимка по таймфрейму: okx.snapshot.<канал>.depth или okx.snapshot.depth
+     */
+    public int depth(CandleTimeframe timeframe) {
+        return depths.computeIfAbsent(timeframe, tf -> ConfigProvider.getConfig()
+                .getOptionalValue(CONFIG_PREFIX + "candle" + tf.getBar() + ".depth", Integer.class)
+                .orElse(defaultDepth));
+    }
+
+    private static String key(String instId, CandleTimeframe timeframe, long ts) {
+        return instId + "|" + timeframe.name() + "|" + ts;
+    }
+
+    private static String payload(String instId, String data) {
+        return "{\"instId\":\"" + instId + "\",\"isLast\":false,\"data\":" + data + "}";
+    }
+
+    /**
+     * Строка свечи в формате OKX; объёмы в валюте в БД не хранятся и передаются нулями
+     */
+    private static String toRow(Candle candle) {
+        return "[" + row(candle) + "]";
+    }
+
+    /**
+     * Одна строка свечи OKX: ["ts","o","h","l","c","vol","0","0","1"]
+     */
+    public static String row(Candle candle) {
+        return "[\"" + candle.id.ts.toEpochMilli() + "\",\"" + plain(candle.open) + "\",\"" + plain(candle.high)
+                + "\",\"" + plain(candle.low) + "\",\"" + plain(candle.close) + "\",\"" + plain(candle.volume)
+                + "\",\"0\",\"0\",\"1\"]";
+    }
+
+    private static String plain(BigDecimal value) {
+        return value == null ? "0" : value.toPlainString();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        seeder.shutdownNow();
+    }
+}
@@ -0,0 +1,205 @@
+package artskif.trader.kafka;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.apache.kafka.common.header.Headers;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Публикация потоковых сообщений в Kafka через общую очередь с ограничением отправок «в полёте».
+ *
+ * Вызывающий поток (чтение WebSocket) кладёт сообщение в общую ограниченную очередь. Если очередь полна,
+ * он ждёт до {@code kafka.publish.blockTimeoutMs}: давление доходит до сокета, и биржа притормаживает отправку
+ * на уровне TCP. Сообщение отбрасывается только после этого ожидания и попадает в счётчик потерь.
+ * Отдельный поток забирает из очереди порции до {@code kafka.publish.batchSize} сообщений и отправляет их
+ * в эмиттеры по одному — порция лишь экономит пробуждения потока, а в пакеты записи собирает сам Kafka-продюсер
+ * (batch.size / linger.ms канала). Неподтверждённых отправок не больше {@code kafka.publish.maxInFlight}, и это
+ * число не превышает буфер эмиттера ({@code mp.messaging.emitter.default-buffer-size}), иначе эмиттер
+ * отклонил бы отправку при переполнении. Раз в минуту пишется статистика: принято кадров/с, отправлено,
+ * отброшено, ошибок.
+ */
+@ApplicationScoped
+public class KafkaBatchPublisher {
+
+    private static final Logger LOG = Logger.getLogger(KafkaBatchPublisher.class);
+    private static final long STATS_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+    private static final long SHUTDOWN_TIMEOUT_MS = 5_000L;
+
+    @ConfigProperty(name = "kafka.publish.queueCapacity", defaultValue = "10000")
+    int queueCapacity;
+
+    @ConfigProperty(name = "kafka.publish.batchSize", defaultValue = "256")
+    int batchSize;
+
+    @ConfigProperty(name = "kafka.publish.maxInFlight", defaultValue = "128")
+    int maxInFlight;
+
+    @ConfigProperty(name = "mp.messaging.emitter.default-buffer-size", defaultValue = "128")
+    int emitterBufferSize;
+
+    @ConfigProperty(name = "kafka.publish.blockTimeoutMs", defaultValue = "5000")
+    long blockTimeoutMs;
+
+    private record Pending(Emitter<String> emitter, String key, String message, Headers headers) {
+    }
+
+    private BlockingQueue<Pending> queue;
+    private Semaphore inFlight;
+    private Thread drainer;
+    private volatile boolean running;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private long statsFromNanos = System.nanoTime();
+    private long statsFromAccepted;
+
+    @PostConstruct
+    void init() {
+        if (maxInFlight > emitterBufferSize) {
+            LOG.warnf("⚠️ kafka.publish.maxInFlight=%d больше буфера эмиттера (%d), используется %d",
+                    maxInFlight, emitterBufferSize, emitterBufferSize);
+            maxInFlight = emitterBufferSize;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+        running = true;
+        drainer = new Thread(this::drainLoop, "kafka-batch-publisher");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    /**
+     * Поставить сообщение в очередь на отправку. При полной очереди блокирует вызывающий поток
+     * не дольше blockTimeoutMs.
+     *
+     * @return false, если сообщение отброшено
+     */
+    public boolean publish(Emitter<String> emitter, String message) {
+        return publish(emitter, null, message, null);
+    }
+
+    /**
+     * То же, что {@link #publish(Emitter, String)}, но с ключом и заголовками Kafka записи
+     *
+     * @param key     ключ записи или null
+     * @param headers заголовки записи или null
+     */
+    public boolean publish(Emitter<String> emitter, String key, String message, Headers headers) {
+        Pending pending = new Pending(emitter, key, message, headers);
+        try {
+            if (queue.offer(pending) || queue.offer(pending, blockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                accepted.incrementAndGet();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long total = dropped.incrementAndGet();
+        LOG.warnf("⚠️ Очередь Kafka заполнена дольше %d мс, сообщение отброшено (всего отброшено: %d)", blockTimeoutMs, total);
+        return false;
+    }
+
+    private void drainLoop() {
+        Deque<Pending> batch = new ArrayDeque<>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    Pending first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, batchSize - 1);
+                    }
+                }
+                // Сообщение убирается из пачки только после успешной постановки в эмиттер
+                Pending pending;
+                while ((pending = batch.peekFirst()) != null) {
+                    send(pending);
+                    batch.pollFirst();
+                }
+                logStats();
+            } catch (InterruptedException e) {
+                if (!running) {
+                    // При остановке дочищаем очередь и остаток пачки
+                    continue;
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                LOG.error("❌ Ошибка Kafka отправки: " + e.getMessage(), e);
+                batch.pollFirst();
+            }
+        }
+    }
+
+    private void send(Pending pending) throws InterruptedException {
+        inFlight.acquire();
+        // Ошибка постановки в эмиттер приходит тем же future, что и nack
+        KafkaProducer.sendWithAck(pending.emitter(), pending.key(), pending.message(), pending.headers())
+                .whenComplete((ok, error) -> {
+                    inFlight.release();
+                    if (error != null) {
+                        failed.incrementAndGet();
+                        LOG.warnf("⚠️ Kafka не подтвердила отправку: %s", error.getMessage());
+                    } else {
+                        published.incrementAndGet();
+                    }
+                });
+    }
+
+    private void logStats() {
+        long now = System.nanoTime();
+        if (now - statsFromNanos < STATS_LOG_INTERVAL_NS) {
+            return;
+        }
+        long acceptedNow = accepted.get();
+        double seconds = (now - statsFromNanos) / 1e9;
+        LOG.infof("📈 WS→Kafka: %.1f кадров/с, принято: %d, отправлено: %d, отброшено: %d, ошибок: %d, в очереди: %d, в полёте: %d",
+                (acceptedNow - statsFromAccepted) / seconds, acceptedNow, published.get(), dropped.get(), failed.get(),
+                queue.size(), maxInFlight - inFlight.availablePermits());
+        statsFromNanos = now;
+        statsFromAccepted = acceptedNow;
+    }
+
+    public long getAccepted() {
+        return accepted.get();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        drainer.interrupt();
+        try {
+            drainer.join(SHUTDOWN_TIMEOUT_MS);
+            if (!inFlight.tryAcquire(maxInFlight, SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.warnf("⚠️ Kafka не подтвердила %d отправок до остановки", maxInFlight - inFlight.availablePermits());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package artskif.trader.kafka;
 
+import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import io.smallrye.reactive.messaging.kafka.api.OutgoingKafkaRecordMetadata;
+import org.apache.kafka.common.header.Headers;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
 import org.jboss.logging.Logger;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
@@ -49,7 +56,50 @@ public class KafkaProducer {
     @Channel("producer-1w-history")
     Emitter<String> emitter1wHist;
 
+    // подтверждения команд дозагрузки
+    @Inject
+    @Channel("producer-backfill-acks")
+    Emitter<String> emitterBackfillAcks;
+
+    // Эмиттеры по имени топика, собираются один раз после инъекции
+    private final Map<String, Emitter<String>> emitters = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        emitters.put("okx-candle-1m", emitter1m);
+        emitters.put("okx-candle-5m", emitter5m);
+        emitters.put("okx-candle-1h", emitter1h);
+        emitters.put("okx-candle-4h", emitter4h);
+        emitters.put("okx-candle-1w", emitter1w);
+        // history
+        emitters.put("okx-candle-1m-history", emitter1mHist);
+        emitters.put("okx-candle-5m-history", emitter5mHist);
+        emitters.put("okx-candle-1h-history", emitter1hHist);
+        emitters.put("okx-candle-4h-history", emitter4hHist);
+        emitters.put("okx-candle-1w-history", emitter1wHist);
+        // backfill
+        emitters.put("okx-backfill-acks", emitterBackfillAcks);
+    }
+
+    /**
+     * Эмиттер топика — чтобы горячий путь мог разрешить его заранее и не искать на каждое сообщение
+     *
+     * @return эмиттер или null для неизвестного топика
+     */
+    public Emitter<String> emitterFor(String topic) {
+        return emitters.get(topic);
+    }
+
     public void sendMessage(String topic, String message) {
+        sendMessage(topic, null, message);
+    }
+
+    /**
+     * Отправить сообщение с ключом записи (instId для топиков свечей — потребитель отбирает свой инструмент)
+     *
+     * @param key ключ записи или null
+     */
+    public void sendMessage(String topic, String key, String message) {
         if (LOG.isDebugEnabled()) {
             long now = System.nanoTime();
             if (now - lastSendLogNanos >= SEND_LOG_INTERVAL_NS) {
@@ -57,19 +107,65 @@ public class KafkaProducer {
                 LOG.debug("📤 Отправка сообщения в топик: " + topic);
             }
         }
-        switch (topic) {
-            case "okx-candle-1m" -> emitter1m.send(message);
-            case "okx-candle-5m" -> emitter5m.send(message);
-            case "okx-candle-1h" -> emitter1h.send(message);
-            case "okx-candle-4h" -> emitter4h.send(message);
-            case "okx-candle-1w" -> emitter1w.send(message);
-            // history
-            case "okx-candle-1m-history" -> emitter1mHist.send(message);
-            case "okx-candle-5m-history" -> emitter5mHist.send(message);
-            case "okx-candle-1h-history" -> emitter1hHist.send(message);
-            case "okx-candle-4h-history" -> emitter4hHist.send(message);
-            case "okx-candle-1w-history" -> emitter1wHist.send(message);
-            default -> LOG.info("⚠️ Неизвестный топик: " + topic);
+        Emitter<String> emitter = emitterFor(topic);
+        if (emitter == null) {
+            LOG.info("⚠️ Неизвестный топик: " + topic);
+        } else if (key == null) {
+            emitter.send(message);
+        } else {
+            emitter.send(Message.of(message).addMetadata(OutgoingKafkaRecordMetadata.<String>builder().withKey(key).build()));
+        }
+    }
+
+    /**
+     * Отправить сообщение и дождаться подтверждения Kafka через возвращаемый future.
+     * Используется там, где важен порядок и нельзя терять сообщения (воспроизведение записи).
+     *
+     * @param key ключ записи или null
+     * @return future, завершающийся при ack и с ошибкой при nack или неизвестном топике
+     */
+    public CompletableFuture<Void> sendAcked(String topic, String key, String message) {
+        Emitter<String> emitter = emitterFor(topic);
+        if (emitter == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Неизвестный топик: " + topic));
+        }
+        return sendWithAck(emitter, key, message, null);
+    }
+
+    /**
+     * Отправить сообщение в эмиттер с ключом и заголовками записи.
+     * Ключ и заголовки передаются только через метаданные Message, поэтому подтверждение ловим через ack/nack;
+     * ошибка постановки в эмиттер (например, переполнение его буфера) тоже завершает future с ошибкой.
+     *
+     * @param key     ключ записи или null
+     * @param headers заголовки записи или null
+     */
+    public static CompletableFuture<Void> sendWithAck(Emitter<String> emitter, String key, String message, Headers headers) {
+        try {
+            if (key == null && headers == null) {
+                return emitter.send(message).toCompletableFuture();
+            }
+            CompletableFuture<Void> acked = new CompletableFuture<>();
+            OutgoingKafkaRecordMetadata.OutgoingKafkaRecordMetadataBuilder<String> metadata = OutgoingKafkaRecordMetadata.builder();
+            if (key != null) {
+                metadata.withKey(key);
+            }
+            if (headers != null) {
+                metadata.withHeaders(headers);
+            }
+            emitter.send(Message.of(message)
+                    .addMetadata(metadata.build())
+                    .withAck(() -> {
+                        acked.complete(null);
+                        return CompletableFuture.completedFuture(null);
+                    })
+                    .withNack(error -> {
+                        acked.completeExceptionally(error);
+                        return CompletableFuture.completedFuture(null);
+                    }));
+            return acked;
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
         }
     }
 }
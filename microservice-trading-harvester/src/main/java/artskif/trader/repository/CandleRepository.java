@@ -5,18 +5,67 @@ import artskif.trader.entity.CandleId;
 import io.quarkus.hibernate.orm.panache.PanacheRepositoryBase;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.Session;
 import org.jboss.logging.Logger;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @ApplicationScoped
 public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId> {
 
     private static final Logger LOG = Logger.getLogger(CandleRepository.class);
 
+    /**
+     * Границы (min/max ts) хранимых свечей в диапазоне
+     */
+    private static final String BOUNDS_SQL = """
+            SELECT min(ts), max(ts) FROM candles
+            WHERE symbol = ? AND tf = ? AND ts >= ? AND ts <= ?
+            """;
+
+    /**
+     * Внутренние разрывы: соседние по времени свечи, между которыми больше одной длительности свечи.
+     * Считается в БД по индексу (symbol, tf, ts), в приложение возвращаются только гапы.
+     */
+    private static final String GAPS_SQL = """
+            SELECT prev_ts, ts FROM (
+                SELECT ts, lag(ts) OVER (ORDER BY ts) AS prev_ts
+                FROM candles
+                WHERE symbol = ? AND tf = ? AND ts >= ? AND ts <= ?
+            ) s
+            WHERE ts - prev_ts > make_interval(secs => ?)
+            ORDER BY ts DESC
+            """;
+
+    /**
+     * Проверенная сплошная часть истории по ключу symbol|tf: от startEpochMs до этой свечи гапов нет.
+     * Следующий поиск начинается с неё, поэтому объём сканирования не растёт вместе с историей.
+     * Хранится в памяти — после рестарта первый поиск один раз проходит весь диапазон.
+     * Отметка сбрасывается, если сменилась самая ранняя свеча проверенной части (retention или удаление
+     * начала истории), и не живёт дольше okx.history.gapsFullRescanMinutes — так находятся и удаления внутри неё.
+     */
+    private record Verified(Instant startBoundary, Instant earliest, Instant until, long verifiedAtMs) {
+    }
+
+    private final Map<String, Verified> verifiedUntil = new ConcurrentHashMap<>();
+
+    @ConfigProperty(name = "okx.history.gapsFullRescanMinutes", defaultValue = "360")
+    long fullRescanMinutes;
+
     /**
      * Получает последнюю свечу для конкретного символа и таймфрейма.
      * Возвращает Optional.empty(), если записей нет.
@@ -43,6 +92,27 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
         }
     }
 
+    /**
+     * Последние подтверждённые свечи символа и таймфрейма, от новых к старым
+     */
+    @Transactional
+    public List<Candle> findLatestConfirmed(String symbol, String timeframe, int limit) {
+        return find("id.symbol = ?1 AND id.tf = ?2 AND confirmed = true ORDER BY id.ts DESC", symbol, timeframe)
+                .page(0, limit)
+                .list();
+    }
+
+    /**
+     * Последние limit подтверждённых свечей, начавшихся не позже until (от новых к старым)
+     */
+    @Transactional
+    public List<Candle> findLatestConfirmedUntil(String symbol, String timeframe, Instant until, int limit) {
+        return find("id.symbol = ?1 AND id.tf = ?2 AND id.ts <= ?3 AND confirmed = true ORDER BY id.ts DESC",
+                symbol, timeframe, until)
+                .page(0, limit)
+                .list();
+    }
+
     /**
      * Получает timestamp последней свечи или возвращает defaultValue, если свечей нет.
      */
@@ -57,6 +127,7 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
 
     /**
      * Находит все временные разрывы (гапы) в последовательности свечей за указанный период.
+     * Гапы вычисляются в БД оконной функцией; память приложения пропорциональна числу гапов, а не свечей.
      *
      * @param symbol символ инструмента
      * @param timeframe таймфрейм свечей
@@ -69,35 +140,32 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
         try {
             Instant now = Instant.now();
             Instant startBoundary = Instant.ofEpochMilli(startEpochMs);
+            String key = symbol + "|" + timeframe;
 
-            LOG.debugf("🔍 Поиск всех гапов: symbol=%s tf=%s от %s до %s, duration=%s",
-                    symbol, timeframe, now, startBoundary, candleDuration);
+            Instant verified = verifiedFrom(key, symbol, timeframe, startBoundary);
+            Instant scanFrom = verified != null ? verified : startBoundary;
 
-            // Получаем только timestamps свечей, отсортированные по убыванию времени
-            @SuppressWarnings("unchecked")
-            List<Instant> timestamps = getEntityManager()
-                    .createQuery("SELECT c.id.ts FROM Candle c WHERE c.id.symbol = :symbol AND c.id.tf = :tf " +
-                            "AND c.id.ts >= :start AND c.id.ts <= :end ORDER BY c.id.ts DESC")
-                    .setParameter("symbol", symbol)
-                    .setParameter("tf", timeframe)
-                    .setParameter("start", startBoundary)
-                    .setParameter("end", now)
-                    .getResultList();
+            LOG.debugf("🔍 Поиск всех гапов: symbol=%s tf=%s от %s до %s (проверено до %s), duration=%s",
+                    symbol, timeframe, now, startBoundary, scanFrom, candleDuration);
 
-            LOG.debugf("📊 Найдено %d свечей для анализа", timestamps.size());
+            Instant[] bounds = findBounds(symbol, timeframe, scanFrom, now);
+            if (bounds == null && scanFrom != startBoundary) {
+                // Опорная свеча пропала (retention) — сбрасываем проверенную часть и ищем заново
+                verifiedUntil.remove(key);
+                scanFrom = startBoundary;
+                bounds = findBounds(symbol, timeframe, scanFrom, now);
+            }
 
-            List<TimeGap> gaps = new java.util.ArrayList<>();
+            List<TimeGap> gaps = new ArrayList<>();
 
-            if (timestamps.isEmpty()) {
+            if (bounds == null) {
                 LOG.debugf("✅ Свечи не найдены. Берем весь диапазон как гап: от %s до now", startBoundary);
-                TimeGap gap = new TimeGap(startBoundary, null);
-                gaps.add(gap);
+                gaps.add(new TimeGap(startBoundary, null));
                 return gaps;
             }
 
-
             // Проверяем гап между now и первой свечой
-            Instant firstTs = timestamps.getFirst();
+            Instant firstTs = bounds[1];
             Duration gapFromNow = Duration.between(firstTs, now);
             if (gapFromNow.compareTo(candleDuration.multipliedBy(2)) > 0) {
                 TimeGap gap = new TimeGap(firstTs, null);
@@ -106,31 +174,29 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
             }
 
             // Проверяем промежутки между соседними свечами
-            for (int i = 0; i < timestamps.size() - 1; i++) {
-                Instant currentTs = timestamps.get(i);
-                Instant nextTs = timestamps.get(i + 1);
-
-                // Вычисляем разницу между текущей и следующей свечой
-                Duration gapDuration = Duration.between(nextTs, currentTs);
-
-                // Если разница больше чем длительность одной свечи - это гап
-                if (gapDuration.compareTo(candleDuration) > 0) {
-                    // Гап найден: от nextTs + candleDuration до currentTs
-                    TimeGap gap = new TimeGap(nextTs, currentTs);
-                    gaps.add(gap);
-                    LOG.debugf("✅ Найден гап в последовательности: %s", gap);
-                }
-            }
+            List<TimeGap> inner = findInnerGaps(symbol, timeframe, scanFrom, now, candleDuration);
+            gaps.addAll(inner);
+            LOG.debugf("✅ Найдено гапов в последовательности: %d", inner.size());
 
             // Проверяем гап между последней свечой и startBoundary
-            Instant lastTs = timestamps.getLast();
-            Duration gapToStart = Duration.between(startBoundary, lastTs);
-            if (gapToStart.compareTo(candleDuration) > 0) {
-                TimeGap gap = new TimeGap(startBoundary, lastTs);
+            Instant lastTs = bounds[0];
+            Duration gapToStart = Duration.between(scanFrom, lastTs);
+            boolean hasTailGap = gapToStart.compareTo(candleDuration) > 0;
+            if (hasTailGap) {
+                TimeGap gap = new TimeGap(scanFrom, lastTs);
                 gaps.add(gap);
                 LOG.debugf("✅ Найден гап между last и startBoundary: %s", gap);
             }
 
+            // Сплошная часть растёт до начала самого раннего внутреннего гапа (или до последней свечи)
+            if (!hasTailGap) {
+                Instant contiguousUntil = inner.isEmpty() ? firstTs : inner.getLast().getStart();
+                Verified previous = verifiedUntil.get(key);
+                Instant earliest = verified != null && previous != null ? previous.earliest() : lastTs;
+                long verifiedAtMs = verified != null && previous != null ? previous.verifiedAtMs() : now.toEpochMilli();
+                verifiedUntil.put(key, new Verified(startBoundary, earliest, contiguousUntil, verifiedAtMs));
+            }
+
             if (gaps.isEmpty()) {
                 LOG.debugf("✅ Гапов не найдено в последовательности свечей");
             } else {
@@ -144,6 +210,81 @@ public class CandleRepository implements PanacheRepositoryBase<Candle, CandleId>
             return List.of();
         }
     }
+
+    /**
+     * Начало непроверенной части истории или null, если проверять нужно весь диапазон.
+     * Отметка отбрасывается, если сменилась граница поиска, истёк срок полной перепроверки
+     * или самая ранняя свеча проверенной части уже не та (сработал retention или удаление).
+     */
+    private Instant verifiedFrom(String key, String symbol, String timeframe, Instant startBoundary) {
+        Verified verified = verifiedUntil.get(key);
+        if (verified == null) {
+            return null;
+        }
+        String reason = null;
+        if (!verified.startBoundary().equals(startBoundary)) {
+            reason = "сменилась граница поиска";
+        } else if (System.currentTimeMillis() - verified.verifiedAtMs() >= TimeUnit.MINUTES.toMillis(fullRescanMinutes)) {
+            reason = "срок полной перепроверки истёк";
+        } else {
+            Instant[] bounds = findBounds(symbol, timeframe, startBoundary, verified.until());
+            if (bounds == null || !bounds[0].equals(verified.earliest()) || !bounds[1].equals(verified.until())) {
+                reason = "проверенная часть изменилась (retention или удаление)";
+            }
+        }
+        if (reason != null) {
+            verifiedUntil.remove(key);
+            LOG.debugf("♻️ Сброс проверенной части истории %s: %s", key, reason);
+            return null;
+        }
+        return verified.until();
+    }
+
+    /**
+     * @return [min ts, max ts] или null, если свечей в диапазоне нет
+     */
+    private Instant[] findBounds(String symbol, String timeframe, Instant from, Instant to) {
+        Instant[][] result = new Instant[1][];
+        getEntityManager().unwrap(Session.class).doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(BOUNDS_SQL)) {
+                bindRange(ps, symbol, timeframe, from, to);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next() && rs.getObject(1) != null) {
+                        result[0] = new Instant[]{toInstant(rs, 1), toInstant(rs, 2)};
+                    }
+                }
+            }
+        });
+        return result[0];
+    }
+
+    private List<TimeGap> findInnerGaps(String symbol, String timeframe, Instant from, Instant to, Duration candleDuration) {
+        List<TimeGap> gaps = new ArrayList<>();
+        getEntityManager().unwrap(Session.class).doWork(conn -> {
+            try (PreparedStatement ps = conn.prepareStatement(GAPS_SQL)) {
+                bindRange(ps, symbol, timeframe, from, to);
+                ps.setDouble(5, candleDuration.toMillis() / 1000.0);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        // Гап от prev_ts + candleDuration до ts
+                        gaps.add(new TimeGap(toInstant(rs, 1), toInstant(rs, 2)));
+                    }
+                }
+            }
+        });
+        return gaps;
+    }
+
+    private static void bindRange(PreparedStatement ps, String symbol, String timeframe, Instant from, Instant to) throws SQLException {
+        ps.setString(1, symbol);
+        ps.setString(2, timeframe);
+        ps.setTimestamp(3, Timestamp.valueOf(LocalDateTime.ofInstant(from, ZoneOffset.UTC)));
+        ps.setTimestamp(4, Timestamp.valueOf(LocalDateTime.ofInstant(to, ZoneOffset.UTC)));
+    }
+
+    private static Instant toInstant(ResultSet rs, int column) throws SQLException {
+        return rs.getObject(column, LocalDateTime.class).toInstant(ZoneOffset.UTC);
+    }
 }
 
 
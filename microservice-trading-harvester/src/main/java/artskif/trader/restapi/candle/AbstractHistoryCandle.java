@@ -1,15 +1,9 @@
 package artskif.trader.restapi.candle;
 
 import artskif.trader.common.CandleTimeframe;
-import artskif.trader.kafka.KafkaProducer;
 import artskif.trader.repository.CandleRepository;
 import artskif.trader.repository.TimeGap;
 import artskif.trader.restapi.config.OKXCommonConfig;
-import artskif.trader.restapi.core.CandleRequest;
-import artskif.trader.restapi.core.CryptoRestApiClient;
-import artskif.trader.restapi.core.RetryableHttpClient;
-import artskif.trader.restapi.okx.OKXHistoryRestApiClient;
-import com.fasterxml.jackson.databind.JsonNode;
 import io.quarkus.runtime.ShutdownEvent;
 import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.event.Observes;
@@ -18,7 +12,6 @@ import org.jboss.logging.Logger;
 
 import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -31,15 +24,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public abstract class AbstractHistoryCandle {
     private static final Logger LOG = Logger.getLogger(AbstractHistoryCandle.class);
 
-    @Inject
-    protected KafkaProducer kafkaProducer;
-
     @Inject
     protected CandleRepository candleRepository;
 
     @Inject
     protected OKXCommonConfig commonConfig;
 
+    @Inject
+    protected HarvestScheduler harvestScheduler;
+
     /**
      * Флаг для предотвращения одновременного выполнения нескольких синхронизаций
      */
@@ -130,10 +123,11 @@ public abstract class AbstractHistoryCandle {
     }
 
     /**
-     * Основной метод синхронизации данных
+     * Основной метод синхронизации данных.
+     * Страницы гапов загружаются в общем {@link HarvestScheduler} параллельно с другими таймфреймами,
+     * текущий поток ждёт завершения всех гапов.
      */
     protected void runSync() {
-        CryptoRestApiClient<CandleRequest> apiClient = createApiClient();
         HarvestConfig config = createHarvestConfig();
 
         // Ищем все гапы в последовательности свечей
@@ -145,148 +139,23 @@ public abstract class AbstractHistoryCandle {
         }
 
         LOG.infof("📋 Найдено %d гапов для заполнения, таймфрейм: %s", allGaps.size(), getTimeframe());
-        harvest(apiClient, allGaps, config);
-    }
-
-    /**
-     * Основная логика сбора данных для всех гапов
-     */
-    protected void harvest(CryptoRestApiClient<CandleRequest> apiClient, List<TimeGap> timeGaps, HarvestConfig config) {
-        String timeframe = getTimeframe();
-        String topic = buildTopicName(timeframe);
-
-        LOG.debugf("📥 Harvest: timeframe=%s -> topic=%s, гапов для обработки: %d", timeframe, topic, timeGaps.size());
-
-        int totalPagesLoaded = 0;
-        int gapNumber = 0;
-
-        // Обрабатываем каждый гап
-        for (TimeGap gap : timeGaps) {
-            if (shuttingDown || Thread.currentThread().isInterrupted()) {
-                LOG.infof("🛑 Остановка во время обхода гапов для %s", timeframe);
-                break;
-            }
-
-            gapNumber++;
-            Long gapStartMs = gap.getStartEpochMs();
-            Long gapEndMs = gap.getEndEpochMs();
-
-            LOG.debugf("🔧 Обработка гапа #%d/%d: %s", gapNumber, timeGaps.size(), gap);
-
-            // Для каждого гапа запрашиваем данные с постраничным разбиением
-            boolean isLastGap = (gapNumber == timeGaps.size());
-            int gapPagesLoaded = harvestGap(apiClient, config, timeframe, topic, gapStartMs, gapEndMs, gapNumber, timeGaps.size(), isLastGap);
-            totalPagesLoaded += gapPagesLoaded;
 
-            LOG.debugf("✅ Гап #%d обработан, загружено страниц: %d", gapNumber, gapPagesLoaded);
-
-            // Проверяем общий лимит страниц
-            if (config.pagesLimit() > 0 && totalPagesLoaded >= config.pagesLimit()) {
-                LOG.warnf("⚠️ Достигнут общий лимит страниц: %d, остановка харвестера", config.pagesLimit());
-                break;
-            }
+        HarvestJob job = new HarvestJob(getTimeframe(), getTimeframeType(), buildTopicName(getTimeframe()), getPriority(), config);
+        try {
+            harvestScheduler.harvest(job, allGaps);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            shuttingDown = true;
+            LOG.infof("🛑 Остановка во время обхода гапов для %s", getTimeframe());
         }
 
-        LOG.infof("📊 Итого загружено страниц для всех гапов: %d", totalPagesLoaded);
-    }
-
-    /**
-     * Обрабатывает один гап с постраничным разбиением
-     *
-     * @param apiClient  клиент для запросов
-     * @param config     конфигурация харвестера
-     * @param timeframe  таймфрейм свечей
-     * @param topic      топик Kafka для отправки
-     * @param gapStartMs начало гапа в миллисекундах
-     * @param gapEndMs   конец гапа в миллисекундах
-     * @param gapNumber  номер текущего гапа
-     * @param totalGaps  общее количество гапов
-     * @param isLastGap  является ли этот гап последним в списке
-     * @return количество загруженных страниц
-     */
-    private int harvestGap(CryptoRestApiClient<CandleRequest> apiClient, HarvestConfig config,
-                           String timeframe, String topic, Long gapStartMs, Long gapEndMs,
-                           int gapNumber, int totalGaps, boolean isLastGap) {
-
-        // OKX API: before - верхняя граница (более поздние свечи), after - нижняя граница (более ранние свечи)
-        // Запрашиваем от конца гапа (gapEndMs) к началу (gapStartMs)
-        Long before = gapEndMs;  // Начинаем с конца гапа
-        Long after = gapStartMs;  // Не выходим за начало гапа
-
-        int pagesLoaded = 0;
-
-        while (!shuttingDown && !Thread.currentThread().isInterrupted() &&
-                (config.pagesLimit() == 0 || pagesLoaded < config.pagesLimit())) {
-            CandleRequest request = CandleRequest.builder()
-                    .instId(config.instId())
-                    .timeframe(timeframe)
-                    .limit(config.limit())
-                    .before(before)
-                    .after(after)
-                    .build();
-
-            Optional<JsonNode> rootOpt = apiClient.fetchCandles(request);
-            if (rootOpt.isEmpty()) {
-                LOG.warnf("⚠️ Пропуск страницы для timeframe=%s в гапе [%d - %d]",
-                        timeframe, gapStartMs, gapEndMs);
-                break;
-            }
-
-            JsonNode data = rootOpt.get().path("data");
-            if (!data.isArray() || data.isEmpty()) {
-                LOG.debugf("🏁 Данных больше нет в гапе [%d - %d] для timeframe=%s",
-                        gapStartMs, gapEndMs, timeframe);
-                break;
-            }
-
-            long minTs = extractMinTimestamp(data);
-
-            // Проверяем, является ли это последней страницей последнего гапа
-            // isLast = true только если:
-            // 1. Это последний гап (isLastGap == true)
-            // 2. И мы достигли начала гапа (minTs <= gapStartMs) или следующая итерация выйдет за границу
-            boolean isReachedGapStart = minTs <= gapStartMs + getTimeframeType().getDuration().toMillis();
-            boolean willExceedGapStart = (minTs - 1) < gapStartMs + getTimeframeType().getDuration().toMillis();
-            boolean isLast = isLastGap && (isReachedGapStart || willExceedGapStart);
-
-            // Детальное логирование с информацией о гапе и конфигурации
-            logCandleData(timeframe, data, gapNumber, totalGaps, gapStartMs, gapEndMs, minTs, isLast, config);
-
-            String payload = buildPayload(config.instId(), isLast, data);
-            kafkaProducer.sendMessage(topic, payload);
-
-            pagesLoaded++;
-            LOG.debugf("📦 Страница #%d (%d записей) для timeframe=%s в гапе; minTs=%d (%s); isLast=%s",
-                    pagesLoaded, data.size(), timeframe, minTs, Instant.ofEpochMilli(minTs), isLast);
-
-            // Проверяем, достигли ли мы начала гапа
-            if (isReachedGapStart) {
-                LOG.debugf("⛳ Граница гапа достигнута: minTs=%d <= gapStart=%d для timeframe=%s",
-                        minTs, gapStartMs, timeframe);
-                break;
-            }
-
-            // Двигаемся дальше в прошлое
-            before = minTs - 1;
-
-            // Убеждаемся, что не вышли за границу гапа
-            if (willExceedGapStart) {
-                LOG.debugf("⛳ before=%d вышел за начало гапа=%d, останавливаемся", before, gapStartMs);
-                break;
-            }
-
-            sleep(config.requestPauseMs());
+        LOG.infof("📊 Итого для %s загружено страниц: %d, свечей: %d за %.1f с (%.0f свечей/с)",
+                getTimeframe(), job.getPagesLoaded(), job.getCandlesLoaded(),
+                job.getElapsedSeconds(), job.getCandlesPerSecond());
+        if (job.getFailedPages() > 0) {
+            LOG.warnf("⚠️ Для %s не загружено страниц: %d — гапы останутся до следующей синхронизации",
+                    getTimeframe(), job.getFailedPages());
         }
-
-        return pagesLoaded;
-    }
-
-    private CryptoRestApiClient<CandleRequest> createApiClient() {
-        RetryableHttpClient httpClient = new RetryableHttpClient(
-                commonConfig.getMaxRetries(),
-                commonConfig.getRetryBackoffMs()
-        );
-        return new OKXHistoryRestApiClient(commonConfig.getBaseUrl(), httpClient);
     }
 
     private HarvestConfig createHarvestConfig() {
@@ -294,7 +163,6 @@ public abstract class AbstractHistoryCandle {
                 .instId(commonConfig.getInstId())
                 .limit(commonConfig.getLimit())
                 .startEpochMs(getStartEpochMs())
-                .requestPauseMs(commonConfig.getRequestPauseMs())
                 .pagesLimit(commonConfig.getPagesLimit())
                 .build();
     }
@@ -316,60 +184,6 @@ public abstract class AbstractHistoryCandle {
         return "okx-candle-" + normalizeTimeframe(timeframe) + "-history";
     }
 
-    private long extractMinTimestamp(JsonNode data) {
-        long minTs = Long.MAX_VALUE;
-        for (JsonNode arr : data) {
-            long ts = arr.get(0).asLong();
-            if (ts < minTs) minTs = ts;
-        }
-        return minTs;
-    }
-
-    private void logCandleData(String timeframe, JsonNode data, int gapNumber, int totalGaps,
-                               Long gapStartMs, Long gapEndMs, long minTs, boolean isLast, HarvestConfig config) {
-        if (!LOG.isDebugEnabled() || !data.isArray() || data.isEmpty()) return;
-
-        // Получаем первую и последнюю свечу
-        JsonNode firstCandle = data.get(0);
-        JsonNode lastCandle = data.get(data.size() - 1);
-
-        if (firstCandle.isArray() && !firstCandle.isEmpty() &&
-                lastCandle.isArray() && !lastCandle.isEmpty()) {
-
-            Instant firstTs = Instant.ofEpochMilli(firstCandle.get(0).asLong());
-            Instant lastTs = Instant.ofEpochMilli(lastCandle.get(0).asLong());
-
-            // Обработка null значений для gapStartMs и gapEndMs
-            String gapStartStr = gapStartMs != null ? Instant.ofEpochMilli(gapStartMs).toString() : "null";
-            String gapEndStr = gapEndMs != null ? Instant.ofEpochMilli(gapEndMs).toString() : "null";
-            String gapStartMsStr = gapStartMs != null ? gapStartMs.toString() : "null";
-            String gapEndMsStr = gapEndMs != null ? gapEndMs.toString() : "null";
-            Instant minTsTime = Instant.ofEpochMilli(minTs);
-
-            LOG.debugf("""
-                            📊 ══════════════════════════════════════════════════════════════════════════════════
-                            📊 HARVEST DATA | Timeframe: %s | Gap: #%d/%d | isLast: %s
-                            📊 ──────────────────────────────────────────────────────────────────────────────────
-                            📊 Гап:      %s (%s) ➜ %s (%s)
-                            📊 Свечи:    %s ➜ %s (всего: %d)
-                            📊 Мин. время выборки:    %s (%d)
-                            📊 ──────────────────────────────────────────────────────────────────────────────────
-                            📊 Config:   instId=%s | limit=%d | startEpochMs=%s (%d) | pause=%dms | pages=%d
-                            📊 ══════════════════════════════════════════════════════════════════════════════════""",
-                    timeframe, gapNumber, totalGaps, isLast,
-                    gapStartStr, gapStartMsStr, gapEndStr, gapEndMsStr,
-                    lastTs, firstTs, data.size(),
-                    minTsTime, minTs,
-                    config.instId(), config.limit(), Instant.ofEpochMilli(config.startEpochMs()),
-                    config.startEpochMs(), config.requestPauseMs(), config.pagesLimit());
-        }
-    }
-
-    private String buildPayload(String instId, boolean isLast, JsonNode data) {
-        return String.format("{\"instId\":\"%s\",\"isLast\":%s,\"data\":%s}",
-                instId, isLast, data);
-    }
-
     private String normalizeTimeframe(String timeframe) {
         return timeframe.toLowerCase()
                 .replace("h", "h")
@@ -377,15 +191,6 @@ public abstract class AbstractHistoryCandle {
                 .replace("m", "m");
     }
 
-    private void sleep(long ms) {
-        try {
-            Thread.sleep(ms);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt(); // восстанавливаем флаг — цикл завершится на следующей итерации
-            shuttingDown = true; // прерываем все циклы при остановке потока
-        }
-    }
-
     /**
      * Получить таймфрейм для API запроса (например "1m", "4H", "1W")
      */
@@ -410,5 +215,10 @@ public abstract class AbstractHistoryCandle {
      * Получить начальную дату для загрузки (epoch ms)
      */
     protected abstract long getStartEpochMs();
+
+    /**
+     * Получить приоритет таймфрейма в общей очереди загрузки (меньше — раньше)
+     */
+    protected abstract int getPriority();
 }
 
@@ -0,0 +1,254 @@
+package artskif.trader.restapi.candle;
+
+import artskif.trader.api.dto.BackfillAck;
+import artskif.trader.api.dto.BackfillCommand;
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.repository.TimeGap;
+import artskif.trader.restapi.config.OKXCommonConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Дозагрузка истории по командам анализатора.
+ *
+ * Команды одного инструмента и таймфрейма копятся {@code okx.backfill.mergeWindowMs}, затем пересекающиеся
+ * и соседние диапазоны объединяются. Объединённый диапазон загружается целиком — анализатор просит то,
+ * чего нет в его буферах, даже если в БД эти свечи уже есть, — через общий {@link HarvestScheduler}
+ * с приоритетом выше любой плановой синхронизации.
+ * Повторная команда с тем же requestId не запускает загрузку: она получает результат уже идущей
+ * или недавно завершённой.
+ */
+@ApplicationScoped
+public class BackfillService {
+
+    private static final Logger LOG = Logger.getLogger(BackfillService.class);
+
+    // Плановые синхронизации имеют приоритеты от 0 и выше — команды дозагрузки всегда идут раньше них
+    private static final int BACKFILL_PRIORITY_BASE = -1_000;
+    private static final int COMPLETED_CACHE_SIZE = 1_000;
+
+    @Inject
+    OKXCommonConfig commonConfig;
+
+    @Inject
+    HarvestScheduler harvestScheduler;
+
+    @ConfigProperty(name = "okx.backfill.mergeWindowMs", defaultValue = "200")
+    long mergeWindowMs;
+
+    private record Request(BackfillCommand command, CandleTimeframe timeframe, CompletableFuture<BackfillAck> result) {
+    }
+
+    /**
+     * Объединённый диапазон нескольких команд
+     */
+    private static final class Range {
+        private final long fromMs;
+        private long toMs;
+        private int priority;
+        private final List<Request> requests = new ArrayList<>();
+
+        Range(Request request) {
+            this.fromMs = request.command().fromEpochMs();
+            this.toMs = request.command().toEpochMs();
+            this.priority = request.command().priority();
+            this.requests.add(request);
+        }
+
+        void absorb(Request request) {
+            toMs = Math.max(toMs, request.command().toEpochMs());
+            priority = Math.min(priority, request.command().priority());
+            requests.add(request);
+        }
+    }
+
+    // Все поля ниже меняются под монитором this
+    private final Map<String, CompletableFuture<BackfillAck>> inProgress = new HashMap<>();
+    private final Map<String, BackfillAck> completed = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BackfillAck> eldest) {
+            return size() > COMPLETED_CACHE_SIZE;
+        }
+    };
+    private final Map<String, List<Request>> waiting = new HashMap<>();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("okx-backfill");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Принять команду дозагрузки
+     *
+     * @return результат выполнения; для некорректной команды — сразу REJECTED
+     */
+    public synchronized CompletableFuture<BackfillAck> submit(BackfillCommand command) {
+        String requestId = command.requestId();
+        if (requestId != null) {
+            BackfillAck done = completed.get(requestId);
+            if (done != null) {
+                LOG.debugf("♻️ Команда дозагрузки %s уже выполнена, повтор пропущен", requestId);
+                return CompletableFuture.completedFuture(done);
+            }
+            CompletableFuture<BackfillAck> running = inProgress.get(requestId);
+            if (running != null) {
+                LOG.debugf("♻️ Команда дозагрузки %s уже выполняется, повтор пропущен", requestId);
+                return running;
+            }
+        }
+
+        CandleTimeframe timeframe = parseTimeframe(command.timeframe());
+        if (requestId == null || timeframe == null || command.symbol() == null || command.symbol().isBlank()
+                || command.fromEpochMs() >= command.toEpochMs()) {
+            LOG.warnf("⚠️ Некорректная команда дозагрузки отклонена: %s", command);
+            return CompletableFuture.completedFuture(ack(command, BackfillAck.Status.REJECTED, 0, 0));
+        }
+
+        CompletableFuture<BackfillAck> result = new CompletableFuture<>();
+        inProgress.put(requestId, result);
+
+        String key = command.symbol() + "|" + timeframe.name();
+        List<Request> batch = waiting.get(key);
+        if (batch == null) {
+            batch = new ArrayList<>();
+            waiting.put(key, batch);
+            executor.schedule(() -> launch(key), mergeWindowMs, TimeUnit.MILLISECONDS);
+        }
+        batch.add(new Request(command, timeframe, result));
+        LOG.infof("📬 Команда дозагрузки %s: %s %s %s - %s (приоритет %d)", requestId, command.symbol(), timeframe,
+                Instant.ofEpochMilli(command.fromEpochMs()), Instant.ofEpochMilli(command.toEpochMs()), command.priority());
+        return result;
+    }
+
+    private void launch(String key) {
+        List<Request> batch;
+        synchronized (this) {
+            batch = waiting.remove(key);
+        }
+        if (batch == null || batch.isEmpty()) {
+            return;
+        }
+
+        CandleTimeframe timeframe = batch.getFirst().timeframe();
+        String symbol = batch.getFirst().command().symbol();
+        for (Range range : merge(batch, timeframe.getDuration().toMillis())) {
+            try {
+                List<TimeGap> gaps = List.of(new TimeGap(Instant.ofEpochMilli(range.fromMs), Instant.ofEpochMilli(range.toMs)));
+                HarvestJob job = new HarvestJob(timeframe.getBar(), timeframe, buildTopicName(timeframe),
+                        BACKFILL_PRIORITY_BASE + range.priority, createHarvestConfig(symbol, range));
+                LOG.infof("🚚 Дозагрузка %s %s: %s - %s, команд: %d", symbol, timeframe,
+                        Instant.ofEpochMilli(range.fromMs), Instant.ofEpochMilli(range.toMs), range.requests.size());
+
+                job.whenDone().thenAccept(done -> finish(range, done));
+                harvestScheduler.submit(job, gaps);
+            } catch (Exception e) {
+                LOG.errorf(e, "❌ Не удалось запустить дозагрузку %s %s", symbol, timeframe);
+                // Команды остаются неподтверждёнными и придут снова после перезапуска
+                synchronized (this) {
+                    range.requests.forEach(request -> inProgress.remove(request.command().requestId()));
+                }
+                range.requests.forEach(request -> request.result().completeExceptionally(e));
+            }
+        }
+    }
+
+    /**
+     * Объединить пересекающиеся и соседние (в пределах одной свечи) диапазоны
+     */
+    private static List<Range> merge(List<Request> batch, long candleMs) {
+        List<Request> sorted = new ArrayList<>(batch);
+        sorted.sort(Comparator.comparingLong(request -> request.command().fromEpochMs()));
+
+        List<Range> ranges = new ArrayList<>();
+        Range current = null;
+        for (Request request : sorted) {
+            if (current != null && request.command().fromEpochMs() <= current.toMs + candleMs) {
+                current.absorb(request);
+            } else {
+                current = new Range(request);
+                ranges.add(current);
+            }
+        }
+        return ranges;
+    }
+
+    private void finish(Range range, HarvestJob job) {
+        BackfillAck.Status status = job.isCancelled() ? BackfillAck.Status.CANCELLED
+                // Страница, не загруженная после всех повторов, оставляет в диапазоне дыру — команду нужно повторить
+                : job.getFailedPages() > 0 ? BackfillAck.Status.FAILED
+                : BackfillAck.Status.DONE;
+        LOG.infof("🏁 Дозагрузка %s %s завершена (%s): страниц %d, не загружено %d, свечей %d за %.1f с",
+                job.getConfig().instId(), job.getTimeframeType(), status, job.getPagesLoaded(),
+                job.getFailedPages(), job.getCandlesLoaded(), job.getElapsedSeconds());
+
+        for (Request request : range.requests) {
+            BackfillAck ack = ack(request.command(), status, job.getPagesLoaded(), job.getCandlesLoaded());
+            synchronized (this) {
+                inProgress.remove(request.command().requestId());
+                // Прерванные и неудачные команды не запоминаем — повтор с тем же requestId выполняется заново
+                if (status == BackfillAck.Status.DONE) {
+                    completed.put(request.command().requestId(), ack);
+                }
+            }
+            request.result().complete(ack);
+        }
+    }
+
+    private HarvestConfig createHarvestConfig(String symbol, Range range) {
+        return HarvestConfig.builder()
+                .instId(symbol)
+                .limit(commonConfig.getLimit())
+                .startEpochMs(range.fromMs)
+                // Диапазон команды уже ограничен — лимит страниц не нужен
+                .pagesLimit(0)
+                .build();
+    }
+
+    private static BackfillAck ack(BackfillCommand command, BackfillAck.Status status, int pages, long candles) {
+        return new BackfillAck(command.requestId(), command.symbol(), command.timeframe(),
+                command.fromEpochMs(), command.toEpochMs(), status, pages, candles);
+    }
+
+    private static CandleTimeframe parseTimeframe(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CandleTimeframe.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String buildTopicName(CandleTimeframe timeframe) {
+        return "okx-candle-" + timeframe.getBar().toLowerCase() + "-history";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -6,6 +6,6 @@ import lombok.Builder;
  * Конфигурация для сбора исторических данных
  */
 @Builder
-public record HarvestConfig(String instId, int limit, long startEpochMs, long requestPauseMs, int pagesLimit) {
+public record HarvestConfig(String instId, int limit, long startEpochMs, int pagesLimit) {
 }
 
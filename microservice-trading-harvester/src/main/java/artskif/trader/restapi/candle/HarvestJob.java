@@ -0,0 +1,146 @@
+package artskif.trader.restapi.candle;
+
+import artskif.trader.common.CandleTimeframe;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Один запуск синхронизации таймфрейма в {@link HarvestScheduler}.
+ * Считает открытые сегменты гапов, загруженные и не загруженные после всех повторов страницы/свечи;
+ * завершается, когда закрыт последний сегмент.
+ */
+class HarvestJob {
+
+    private final String timeframe;
+    private final CandleTimeframe timeframeType;
+    private final String topic;
+    private final int priority;
+    private final HarvestConfig config;
+
+    private final AtomicInteger openSegments = new AtomicInteger();
+    private final AtomicInteger pagesReserved = new AtomicInteger();
+    private final AtomicInteger pagesLoaded = new AtomicInteger();
+    private final AtomicInteger failedPages = new AtomicInteger();
+    private final AtomicLong candlesLoaded = new AtomicLong();
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final CompletableFuture<HarvestJob> completion = new CompletableFuture<>();
+    private final long startedNanos = System.nanoTime();
+    private volatile long finishedNanos;
+    private volatile boolean cancelled;
+
+    HarvestJob(String timeframe, CandleTimeframe timeframeType, String topic, int priority, HarvestConfig config) {
+        this.timeframe = timeframe;
+        this.timeframeType = timeframeType;
+        this.topic = topic;
+        this.priority = priority;
+        this.config = config;
+    }
+
+    String getTimeframe() {
+        return timeframe;
+    }
+
+    CandleTimeframe getTimeframeType() {
+        return timeframeType;
+    }
+
+    String getTopic() {
+        return topic;
+    }
+
+    int getPriority() {
+        return priority;
+    }
+
+    HarvestConfig getConfig() {
+        return config;
+    }
+
+    void openSegments(int count) {
+        openSegments.addAndGet(count);
+    }
+
+    /**
+     * Закрыть сегмент
+     *
+     * @return сколько сегментов ещё открыто; 0 — это был последний
+     */
+    int closeSegment() {
+        return openSegments.decrementAndGet();
+    }
+
+    /**
+     * Зарезервировать страницу в пределах общего лимита pagesLimit
+     */
+    boolean tryReservePage() {
+        return config.pagesLimit() == 0 || pagesReserved.incrementAndGet() <= config.pagesLimit();
+    }
+
+    void pageLoaded(int candles) {
+        pagesLoaded.incrementAndGet();
+        candlesLoaded.addAndGet(candles);
+    }
+
+    /**
+     * Страница не загружена после всех повторов; остаток её сегмента пропущен
+     */
+    void pageFailed() {
+        failedPages.incrementAndGet();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+        complete();
+    }
+
+    void complete() {
+        if (done.getCount() > 0) {
+            finishedNanos = System.nanoTime();
+            done.countDown();
+            completion.complete(this);
+        }
+    }
+
+    /**
+     * Завершение запуска — для вызывающих, которые не ждут его в своём потоке
+     */
+    CompletableFuture<HarvestJob> whenDone() {
+        return completion;
+    }
+
+    void await() throws InterruptedException {
+        done.await();
+    }
+
+    int getPagesLoaded() {
+        return pagesLoaded.get();
+    }
+
+    int getFailedPages() {
+        return failedPages.get();
+    }
+
+    long getCandlesLoaded() {
+        return candlesLoaded.get();
+    }
+
+    double getElapsedSeconds() {
+        long end = done.getCount() == 0 ? finishedNanos : System.nanoTime();
+        return (end - startedNanos) / 1e9;
+    }
+
+    /**
+     * Средняя скорость загрузки, свечей в секунду
+     */
+    double getCandlesPerSecond() {
+        double seconds = getElapsedSeconds();
+        return seconds > 0 ? getCandlesLoaded() / seconds : 0;
+    }
+}
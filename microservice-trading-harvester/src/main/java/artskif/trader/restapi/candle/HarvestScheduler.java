@@ -0,0 +1,373 @@
+package artskif.trader.restapi.candle;
+
+import artskif.trader.kafka.KafkaProducer;
+import artskif.trader.repository.TimeGap;
+import artskif.trader.restapi.config.OKXCommonConfig;
+import artskif.trader.restapi.core.CandlePage;
+import artskif.trader.restapi.core.CandleRequest;
+import artskif.trader.restapi.core.CryptoRestApiClient;
+import artskif.trader.restapi.core.RetryableHttpClient;
+import artskif.trader.restapi.core.TokenBucketRateLimiter;
+import artskif.trader.restapi.okx.OKXHistoryRestApiClient;
+import io.quarkus.runtime.ShutdownEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Общий планировщик загрузки исторических свечей для всех таймфреймов.
+ *
+ * Гапы режутся на сегменты по {@code okx.history.segmentPages} страниц и ставятся в общую очередь
+ * с приоритетом: сначала таймфрейм с меньшим {@code okx.history.<tf>.priority}, внутри него — более свежие
+ * данные. Одновременно качается не больше {@code okx.history.parallelism} сегментов. Внутри сегмента страницы
+ * запрашиваются асинхронно цепочкой: следующий запрос уходит из обработчика ответа, как только известен
+ * курсор, без возврата в очередь и без занятого на ожидание потока. Все запросы, включая повторы, проходят
+ * через один token bucket, настроенный под лимит OKX на history-candles (20 запросов за 2 секунды с IP),
+ * поэтому параллелизм скрывает задержку сети, но не превышает бюджет биржи.
+ * Команды дозагрузки ({@link BackfillService}) ставятся в ту же очередь с отрицательным приоритетом
+ * и обгоняют плановые сегменты, как только освобождается слот.
+ */
+@ApplicationScoped
+public class HarvestScheduler {
+    private static final Logger LOG = Logger.getLogger(HarvestScheduler.class);
+
+    @Inject
+    KafkaProducer kafkaProducer;
+
+    @Inject
+    OKXCommonConfig commonConfig;
+
+    CryptoRestApiClient<CandleRequest> apiClient;
+    int parallelism;
+
+    // Сегменты, ожидающие слота; слоты и очередь меняются под монитором queue
+    private final PriorityQueue<Segment> queue = new PriorityQueue<>();
+    private int activeSegments;
+
+    private final Set<HarvestJob> activeJobs = ConcurrentHashMap.newKeySet();
+    private final AtomicLong segmentSequence = new AtomicLong();
+    private final AtomicLong totalPages = new AtomicLong();
+    private final AtomicLong totalCandles = new AtomicLong();
+    private volatile boolean shuttingDown = false;
+
+    @PostConstruct
+    void init() {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(
+                commonConfig.getRateLimitRequestsPerSecond(), commonConfig.getRateLimitBurst());
+        RetryableHttpClient httpClient = new RetryableHttpClient(
+                commonConfig.getMaxRetries(), commonConfig.getRetryBackoffMs(), rateLimiter);
+        apiClient = new OKXHistoryRestApiClient(commonConfig.getBaseUrl(), httpClient);
+
+        parallelism = Math.max(1, commonConfig.getParallelism());
+
+        LOG.infof("⚙️ Планировщик харвестеров: сегментов одновременно=%d, лимит=%.1f запросов/с (burst %d), сегмент=%d страниц",
+                parallelism, commonConfig.getRateLimitRequestsPerSecond(), commonConfig.getRateLimitBurst(),
+                commonConfig.getSegmentPages());
+    }
+
+    void onStop(@Observes ShutdownEvent ev) {
+        shuttingDown = true;
+        synchronized (queue) {
+            queue.clear();
+        }
+        for (HarvestJob job : activeJobs) {
+            job.cancel();
+        }
+    }
+
+    /**
+     * Загрузить все гапы таймфрейма. Блокирует вызывающий поток, пока не будут закрыты все сегменты.
+     */
+    void harvest(HarvestJob job, List<TimeGap> gaps) throws InterruptedException {
+        submit(job, gaps);
+        try {
+            job.await();
+        } catch (InterruptedException e) {
+            job.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Поставить гапы в очередь и вернуться сразу; о завершении сообщает {@link HarvestJob#whenDone()}.
+     * Запуск без сегментов завершается немедленно.
+     */
+    void submit(HarvestJob job, List<TimeGap> gaps) {
+        List<Segment> segments = split(job, gaps);
+        if (segments.isEmpty() || shuttingDown) {
+            job.complete();
+            return;
+        }
+
+        LOG.debugf("📥 Harvest: timeframe=%s -> topic=%s, гапов: %d, сегментов: %d, в очереди: %d",
+                job.getTimeframe(), job.getTopic(), gaps.size(), segments.size(), getQueuedSegments());
+
+        activeJobs.add(job);
+        job.whenDone().whenComplete((done, error) -> activeJobs.remove(job));
+        job.openSegments(segments.size());
+        synchronized (queue) {
+            queue.addAll(segments);
+        }
+        dispatch();
+    }
+
+    /**
+     * Запустить сегменты из очереди на свободные слоты.
+     * Сегменты отменённых запусков и запусков, исчерпавших pagesLimit, закрываются здесь же, не занимая слот.
+     */
+    private void dispatch() {
+        List<Segment> started = new ArrayList<>();
+        synchronized (queue) {
+            while (!shuttingDown && activeSegments < parallelism && !queue.isEmpty()) {
+                Segment segment = queue.poll();
+                if (segment.canFetch()) {
+                    activeSegments++;
+                    started.add(segment);
+                } else {
+                    segment.close();
+                }
+            }
+        }
+        for (Segment segment : started) {
+            segment.fetch();
+        }
+    }
+
+    private void releaseSlot() {
+        synchronized (queue) {
+            activeSegments--;
+        }
+        dispatch();
+    }
+
+    private int getQueuedSegments() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Разрезать гапы на сегменты от конца к началу. Верхняя граница сегмента не включается,
+     * поэтому нижняя граница одного сегмента входит в соседний, более ранний сегмент.
+     */
+    private List<Segment> split(HarvestJob job, List<TimeGap> gaps) {
+        long durationMs = job.getTimeframeType().getDuration().toMillis();
+        long span = durationMs * job.getConfig().limit() * Math.max(1, commonConfig.getSegmentPages());
+        long now = System.currentTimeMillis();
+
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < gaps.size(); i++) {
+            TimeGap gap = gaps.get(i);
+            long start = gap.getStartEpochMs() != null ? gap.getStartEpochMs() : job.getConfig().startEpochMs();
+            long end = gap.getEndEpochMs() != null ? gap.getEndEpochMs() : now;
+
+            long upper = end;
+            while (upper > start) {
+                long lower = Math.max(start, upper - span);
+                segments.add(new Segment(job, i + 1, gaps.size(), lower, upper));
+                if (lower == start) {
+                    break;
+                }
+                upper = lower + 1;
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Всего загружено страниц с момента старта
+     */
+    public long getTotalPages() {
+        return totalPages.get();
+    }
+
+    /**
+     * Всего загружено свечей с момента старта
+     */
+    public long getTotalCandles() {
+        return totalCandles.get();
+    }
+
+    /**
+     * Участок гапа, который качается страницами от верхней границы к нижней.
+     * Занимает слот с момента запуска до закрытия; страницы запрашиваются цепочкой асинхронных вызовов.
+     */
+    private final class Segment implements Comparable<Segment> {
+        private final HarvestJob job;
+        private final int gapNumber;
+        private final int totalGaps;
+        private final long lowerMs;
+        private final long upperMs;
+        private final long sequence = segmentSequence.incrementAndGet();
+        // OKX API: before - верхняя граница (более поздние свечи), сдвигается в прошлое после каждой страницы
+        private volatile long before;
+
+        Segment(HarvestJob job, int gapNumber, int totalGaps, long lowerMs, long upperMs) {
+            this.job = job;
+            this.gapNumber = gapNumber;
+            this.totalGaps = totalGaps;
+            this.lowerMs = lowerMs;
+            this.upperMs = upperMs;
+            this.before = upperMs;
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            int byPriority = Integer.compare(job.getPriority(), other.job.getPriority());
+            if (byPriority != 0) {
+                return byPriority;
+            }
+            int byRecency = Long.compare(other.upperMs, upperMs);
+            return byRecency != 0 ? byRecency : Long.compare(sequence, other.sequence);
+        }
+
+        /**
+         * Можно ли запросить ещё страницу; при успехе страница резервируется в лимите запуска
+         */
+        boolean canFetch() {
+            if (shuttingDown || job.isCancelled()) {
+                return false;
+            }
+            if (!job.tryReservePage()) {
+                LOG.debugf("⚠️ Достигнут общий лимит страниц %d для %s, сегмент [%d - %d] пропущен",
+                        job.getConfig().pagesLimit(), job.getTimeframe(), lowerMs, upperMs);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Запросить страницу от текущего курсора; обработка ответа идёт в потоке HTTP клиента
+         */
+        void fetch() {
+            HarvestConfig config = job.getConfig();
+            CandleRequest request = CandleRequest.builder()
+                    .instId(config.instId())
+                    .timeframe(job.getTimeframe())
+                    .limit(config.limit())
+                    .before(before)
+                    .after(lowerMs)
+                    .build();
+
+            try {
+                apiClient.fetchCandles(request).whenComplete((pageOpt, error) -> {
+                    try {
+                        onPage(pageOpt, error);
+                    } catch (Exception e) {
+                        LOG.errorf(e, "❌ Ошибка загрузки сегмента [%d - %d] для timeframe=%s", lowerMs, upperMs, job.getTimeframe());
+                        job.pageFailed();
+                        finish();
+                    }
+                });
+            } catch (Exception e) {
+                LOG.errorf(e, "❌ Не удалось отправить запрос сегмента [%d - %d] для timeframe=%s", lowerMs, upperMs, job.getTimeframe());
+                job.pageFailed();
+                finish();
+            }
+        }
+
+        private void onPage(Optional<CandlePage> pageOpt, Throwable error) {
+            if (error != null || pageOpt.isEmpty()) {
+                LOG.warnf("⚠️ Пропуск страницы для timeframe=%s в сегменте [%d - %d]",
+                        job.getTimeframe(), lowerMs, upperMs);
+                // Остаток сегмента не загружен: запуск завершится, но не считается успешным
+                job.pageFailed();
+                finish();
+                return;
+            }
+
+            CandlePage page = pageOpt.get();
+            if (page.isEmpty()) {
+                LOG.debugf("🏁 Данных больше нет в сегменте [%d - %d] для timeframe=%s",
+                        lowerMs, upperMs, job.getTimeframe());
+                finish();
+                return;
+            }
+
+            long minTs = page.minTs();
+            boolean isReachedStart = minTs <= lowerMs + job.getTimeframeType().getDuration().toMillis();
+
+            // isLast = true только у последней страницы всего запуска: сегмент закрывается до отправки,
+            // и флаг получает тот, кто закрыл последний открытый сегмент
+            int remaining = isReachedStart ? job.closeSegment() : -1;
+            boolean isLast = remaining == 0;
+
+            logCandleData(page, isLast);
+            kafkaProducer.sendMessage(job.getTopic(), job.getConfig().instId(), buildPayload(job.getConfig().instId(), isLast, page.data()));
+
+            job.pageLoaded(page.size());
+            totalPages.incrementAndGet();
+            totalCandles.addAndGet(page.size());
+
+            if (isReachedStart) {
+                LOG.debugf("⛳ Граница сегмента достигнута: minTs=%d <= start=%d для timeframe=%s",
+                        minTs, lowerMs, job.getTimeframe());
+                if (isLast) {
+                    job.complete();
+                }
+                releaseSlot();
+                return;
+            }
+
+            // Двигаемся дальше в прошлое: следующий запрос уходит сразу, слот остаётся за сегментом
+            before = minTs - 1;
+            if (canFetch()) {
+                fetch();
+            } else {
+                finish();
+            }
+        }
+
+        /**
+         * Закрыть сегмент и освободить его слот
+         */
+        private void finish() {
+            close();
+            releaseSlot();
+        }
+
+        void close() {
+            if (job.closeSegment() == 0) {
+                job.complete();
+            }
+        }
+
+        private void logCandleData(CandlePage page, boolean isLast) {
+            if (!LOG.isDebugEnabled()) return;
+
+            HarvestConfig config = job.getConfig();
+            LOG.debugf("""
+                            📊 ══════════════════════════════════════════════════════════════════════════════════
+                            📊 HARVEST DATA | Timeframe: %s | Gap: #%d/%d | isLast: %s | Поток: %s
+                            📊 ──────────────────────────────────────────────────────────────────────────────────
+                            📊 Сегмент:  %s (%d) ➜ %s (%d)
+                            📊 Свечи:    %s ➜ %s (всего: %d)
+                            📊 Мин. время выборки:    %s (%d)
+                            📊 ──────────────────────────────────────────────────────────────────────────────────
+                            📊 Config:   instId=%s | limit=%d | startEpochMs=%s (%d) | pages=%d
+                            📊 ══════════════════════════════════════════════════════════════════════════════════""",
+                    job.getTimeframe(), gapNumber, totalGaps, isLast, Thread.currentThread().getName(),
+                    Instant.ofEpochMilli(lowerMs), lowerMs, Instant.ofEpochMilli(upperMs), upperMs,
+                    Instant.ofEpochMilli(page.lastTs()), Instant.ofEpochMilli(page.firstTs()), page.size(),
+                    Instant.ofEpochMilli(page.minTs()), page.minTs(),
+                    config.instId(), config.limit(), Instant.ofEpochMilli(config.startEpochMs()),
+                    config.startEpochMs(), config.pagesLimit());
+        }
+    }
+
+    private static String buildPayload(String instId, boolean isLast, String data) {
+        return String.format("{\"instId\":\"%s\",\"isLast\":%s,\"data\":%s}",
+                instId, isLast, data);
+    }
+}
@@ -25,6 +25,9 @@ public class HistoryCandle1h extends AbstractHistoryCandle {
     @ConfigProperty(name = "okx.history.1h.dbTimeframeKey", defaultValue = "CANDLE_1H")
     String dbTimeframeKey;
 
+    @ConfigProperty(name = "okx.history.1h.priority", defaultValue = "2")
+    int priority;
+
     /**
      * Метод запускается по расписанию в 30-ю секунду каждого часа.
      * Вызывает асинхронную синхронизацию данных.
@@ -58,4 +61,9 @@ public class HistoryCandle1h extends AbstractHistoryCandle {
     protected long getStartEpochMs() {
         return startEpochMs;
     }
+
+    @Override
+    protected int getPriority() {
+        return priority;
+    }
 }
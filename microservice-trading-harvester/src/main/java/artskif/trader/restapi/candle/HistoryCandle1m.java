@@ -25,6 +25,9 @@ public class HistoryCandle1m extends AbstractHistoryCandle {
     @ConfigProperty(name = "okx.history.1m.dbTimeframeKey", defaultValue = "CANDLE_1M")
     String dbTimeframeKey;
 
+    @ConfigProperty(name = "okx.history.1m.priority", defaultValue = "4")
+    int priority;
+
     /**
      * Метод запускается по расписанию в 30-ю секунду каждой минуты.
      * Вызывает асинхронную синхронизацию данных.
@@ -58,5 +61,9 @@ public class HistoryCandle1m extends AbstractHistoryCandle {
     protected long getStartEpochMs() {
         return startEpochMs;
     }
-}
 
+    @Override
+    protected int getPriority() {
+        return priority;
+    }
+}
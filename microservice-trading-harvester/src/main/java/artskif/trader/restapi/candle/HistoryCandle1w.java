@@ -25,6 +25,9 @@ public class HistoryCandle1w extends AbstractHistoryCandle {
     @ConfigProperty(name = "okx.history.1w.dbTimeframeKey", defaultValue = "CANDLE_1W")
     String dbTimeframeKey;
 
+    @ConfigProperty(name = "okx.history.1w.priority", defaultValue = "0")
+    int priority;
+
     /**
      * Метод запускается по расписанию в 30-ю секунду каждую неделю (понедельник 00:00:30).
      * Вызывает асинхронную синхронизацию данных.
@@ -58,5 +61,9 @@ public class HistoryCandle1w extends AbstractHistoryCandle {
     protected long getStartEpochMs() {
         return startEpochMs;
     }
-}
 
+    @Override
+    protected int getPriority() {
+        return priority;
+    }
+}
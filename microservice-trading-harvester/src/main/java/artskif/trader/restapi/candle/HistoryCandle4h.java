@@ -25,6 +25,9 @@ public class HistoryCandle4h extends AbstractHistoryCandle {
     @ConfigProperty(name = "okx.history.4h.dbTimeframeKey", defaultValue = "CANDLE_4H")
     String dbTimeframeKey;
 
+    @ConfigProperty(name = "okx.history.4h.priority", defaultValue = "1")
+    int priority;
+
     /**
      * Метод запускается по расписанию в 30-ю секунду каждые 4 часа.
      * Вызывает асинхронную синхронизацию данных.
@@ -58,5 +61,9 @@ public class HistoryCandle4h extends AbstractHistoryCandle {
     protected long getStartEpochMs() {
         return startEpochMs;
     }
-}
 
+    @Override
+    protected int getPriority() {
+        return priority;
+    }
+}
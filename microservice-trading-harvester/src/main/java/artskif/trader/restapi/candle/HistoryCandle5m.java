@@ -25,6 +25,9 @@ public class HistoryCandle5m extends AbstractHistoryCandle {
     @ConfigProperty(name = "okx.history.5m.dbTimeframeKey", defaultValue = "CANDLE_5M")
     String dbTimeframeKey;
 
+    @ConfigProperty(name = "okx.history.5m.priority", defaultValue = "3")
+    int priority;
+
     /**
      * Метод запускается по расписанию в 30-ю секунду каждые 5 минут.
      * Вызывает асинхронную синхронизацию данных.
@@ -58,5 +61,9 @@ public class HistoryCandle5m extends AbstractHistoryCandle {
     protected long getStartEpochMs() {
         return startEpochMs;
     }
-}
 
+    @Override
+    protected int getPriority() {
+        return priority;
+    }
+}
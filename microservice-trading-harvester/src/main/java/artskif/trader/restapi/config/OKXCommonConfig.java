@@ -21,8 +21,29 @@ public class OKXCommonConfig {
     @ConfigProperty(name = "okx.history.limit", defaultValue = "300")
     int limit;
 
-    @ConfigProperty(name = "okx.history.requestPauseMs", defaultValue = "250")
-    long requestPauseMs;
+    /**
+     * Общий для всех таймфреймов бюджет запросов к history-candles: устойчивая скорость в секунду
+     */
+    @ConfigProperty(name = "okx.history.rateLimit.requestsPerSecond", defaultValue = "8")
+    double rateLimitRequestsPerSecond;
+
+    /**
+     * Сколько запросов можно выполнить разом сверх устойчивой скорости
+     */
+    @ConfigProperty(name = "okx.history.rateLimit.burst", defaultValue = "4")
+    int rateLimitBurst;
+
+    /**
+     * Количество одновременных запросов страниц по всем гапам и таймфреймам
+     */
+    @ConfigProperty(name = "okx.history.parallelism", defaultValue = "4")
+    int parallelism;
+
+    /**
+     * Размер сегмента гапа в страницах: длинные гапы режутся на сегменты, которые качаются параллельно
+     */
+    @ConfigProperty(name = "okx.history.segmentPages", defaultValue = "20")
+    int segmentPages;
 
     @ConfigProperty(name = "okx.history.maxRetries", defaultValue = "5")
     int maxRetries;
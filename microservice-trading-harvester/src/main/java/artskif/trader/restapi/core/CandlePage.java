@@ -0,0 +1,17 @@
+package artskif.trader.restapi.core;
+
+/**
+ * Страница свечей из ответа биржи.
+ *
+ * @param data    JSON-массив свечей как есть из тела ответа — пересылается в Kafka без повторной сериализации
+ * @param size    количество свечей
+ * @param firstTs время первой свечи в массиве (epoch ms)
+ * @param lastTs  время последней свечи в массиве (epoch ms)
+ * @param minTs   самое раннее время свечи — курсор следующей страницы
+ */
+public record CandlePage(String data, int size, long firstTs, long lastTs, long minTs) {
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
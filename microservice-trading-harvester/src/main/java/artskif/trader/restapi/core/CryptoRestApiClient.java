@@ -1,22 +1,21 @@
 package artskif.trader.restapi.core;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Базовый интерфейс для REST API клиентов криптовалютных бирж
  */
 public interface CryptoRestApiClient<C> {
     /**
-     * Получить свечные данные
+     * Получить свечные данные асинхронно
      * @param request запрос на получение свечей
-     * @return JSON ответ или empty если произошла ошибка
+     * @return страница свечей или empty если произошла ошибка
      */
-    Optional<JsonNode> fetchCandles(C request);
+    CompletableFuture<Optional<CandlePage>> fetchCandles(C request);
 
     /**
      * Получить имя провайдера (OKX, Binance, etc.)
      */
     String getProviderName();
 }
-
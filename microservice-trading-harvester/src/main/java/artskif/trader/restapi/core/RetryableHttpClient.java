@@ -1,83 +1,121 @@
 package artskif.trader.restapi.core;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.jboss.logging.Logger;
 
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 /**
- * HTTP клиент с логикой повторных попыток
+ * Асинхронный HTTP клиент с логикой повторных попыток.
+ *
+ * Один экземпляр держит долгоживущий JDK HttpClient: соединения переиспользуются между запросами,
+ * при поддержке сервером используется HTTP/2. Ожидание разрешения лимитера и паузы между повторами
+ * планируются таймером и не занимают поток.
  */
 public class RetryableHttpClient {
     private static final Logger LOG = Logger.getLogger(RetryableHttpClient.class);
 
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long MAX_BACKOFF_MS = 30_000;
+
     private final HttpClient httpClient;
-    private final ObjectMapper objectMapper;
     private final int maxRetries;
     private final long retryBackoffMs;
+    private final TokenBucketRateLimiter rateLimiter;
 
     public RetryableHttpClient(int maxRetries, long retryBackoffMs) {
-        this.httpClient = HttpClient.newHttpClient();
-        this.objectMapper = new ObjectMapper();
+        this(maxRetries, retryBackoffMs, null);
+    }
+
+    /**
+     * @param rateLimiter общий бюджет запросов; каждая попытка, включая повторы, тратит одно разрешение
+     */
+    public RetryableHttpClient(int maxRetries, long retryBackoffMs, TokenBucketRateLimiter rateLimiter) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
         this.maxRetries = maxRetries;
         this.retryBackoffMs = retryBackoffMs;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
      * Выполнить HTTP запрос с повторными попытками
      * @param url URL для запроса
-     * @return JSON ответ или empty если все попытки исчерпаны
+     * @return тело ответа или empty если все попытки исчерпаны
      */
-    public Optional<JsonNode> executeWithRetry(String url) {
+    public CompletableFuture<Optional<byte[]>> executeWithRetry(String url) {
         HttpRequest request = HttpRequest.newBuilder(URI.create(url))
                 .header("Accept", "application/json")
+                .timeout(REQUEST_TIMEOUT)
                 .GET()
                 .build();
+        return attempt(request, 1);
+    }
 
-        for (int attempt = 1; attempt <= maxRetries; attempt++) {
-            try {
-                HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-                int code = response.statusCode();
-
-                if (code == 200) {
-                    return Optional.of(objectMapper.readTree(response.body()));
-                }
-
-                if (shouldRetry(code)) {
-                    LOG.warnf("⏳ HTTP %d (попытка %d/%d)", code, attempt, maxRetries);
-                } else {
-                    LOG.errorf("❌ HTTP %d, body=%s", code, response.body());
-                    return Optional.empty();
-                }
-            } catch (Exception e) {
-                LOG.warnf("🌐 Ошибка '%s' (попытка %d/%d)", e.getMessage(), attempt, maxRetries);
-            }
-
-            if (attempt < maxRetries) {
-                sleep(retryBackoffMs * attempt);
-            }
-        }
+    private CompletableFuture<Optional<byte[]>> attempt(HttpRequest request, int attempt) {
+        long permitDelayNanos = rateLimiter != null ? rateLimiter.reserve() : 0;
+        return delay(permitDelayNanos)
+                .thenCompose(v -> httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()))
+                .handle((response, error) -> {
+                    if (error != null) {
+                        LOG.warnf("🌐 Ошибка '%s' (попытка %d/%d)", error.getMessage(), attempt, maxRetries);
+                        return retry(request, attempt);
+                    }
+
+                    int code = response.statusCode();
+                    if (code == 200) {
+                        return CompletableFuture.completedFuture(Optional.of(response.body()));
+                    }
 
-        LOG.error("❌ Все попытки исчерпаны — возвращаем empty()");
-        return Optional.empty();
+                    if (shouldRetry(code)) {
+                        LOG.warnf("⏳ HTTP %d (попытка %d/%d)", code, attempt, maxRetries);
+                        return retry(request, attempt);
+                    }
+
+                    LOG.errorf("❌ HTTP %d, body=%s", code, new String(response.body(), StandardCharsets.UTF_8));
+                    return CompletableFuture.completedFuture(Optional.<byte[]>empty());
+                })
+                .thenCompose(next -> next);
     }
 
-    private boolean shouldRetry(int code) {
-        return code == 429 || code == 418 || (code >= 500 && code < 600);
+    private CompletableFuture<Optional<byte[]>> retry(HttpRequest request, int attempt) {
+        if (attempt >= maxRetries) {
+            LOG.error("❌ Все попытки исчерпаны — возвращаем empty()");
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return delay(TimeUnit.MILLISECONDS.toNanos(backoffMs(attempt)))
+                .thenCompose(v -> attempt(request, attempt + 1));
+    }
+
+    /**
+     * Экспоненциальная пауза со случайной половиной (equal jitter): параллельные запросы,
+     * получившие 429 одновременно, не повторяются синхронно
+     */
+    long backoffMs(int attempt) {
+        long base = Math.min(MAX_BACKOFF_MS, retryBackoffMs << Math.min(attempt - 1, 16));
+        long half = base / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
     }
 
-    private void sleep(long ms) {
-        try {
-            TimeUnit.MILLISECONDS.sleep(ms);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
+    private static CompletableFuture<Void> delay(long nanos) {
+        if (nanos <= 0) {
+            return CompletableFuture.completedFuture(null);
         }
+        return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS));
     }
-}
 
+    private boolean shouldRetry(int code) {
+        return code == 429 || code == 418 || (code >= 500 && code < 600);
+    }
+}
@@ -0,0 +1,53 @@
+package artskif.trader.restapi.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничитель частоты запросов по алгоритму token bucket.
+ *
+ * Разрешения пополняются равномерно со скоростью permitsPerSecond, в запасе копится не больше burst.
+ * Потоки резервируют разрешения в порядке вызова: счётчик может уйти в минус, и каждый следующий
+ * поток ждёт вне монитора ровно столько, сколько нужно на пополнение его разрешения.
+ * За любое окно T суммарно выдаётся не больше burst + permitsPerSecond * T разрешений.
+ */
+public class TokenBucketRateLimiter {
+
+    private final double permitsPerNano;
+    private final double burst;
+
+    private double permits;
+    private long lastRefillNanos;
+
+    public TokenBucketRateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond должен быть > 0, burst >= 1");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.permits = burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Получить одно разрешение, при необходимости дождавшись пополнения
+     */
+    public void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Зарезервировать одно разрешение без ожидания
+     *
+     * @return через сколько наносекунд разрешение можно использовать (0 — сразу)
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        permits = Math.min(burst, permits + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+        permits -= 1;
+        return permits >= 0 ? 0 : (long) Math.ceil(-permits / permitsPerNano);
+    }
+}
@@ -1,18 +1,25 @@
 package artskif.trader.restapi.okx;
 
+import artskif.trader.restapi.core.CandlePage;
 import artskif.trader.restapi.core.CandleRequest;
 import artskif.trader.restapi.core.CryptoRestApiClient;
 import artskif.trader.restapi.core.RetryableHttpClient;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import org.jboss.logging.Logger;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST API клиент для биржи OKX
  */
 public class OKXHistoryRestApiClient implements CryptoRestApiClient<CandleRequest> {
     private static final Logger LOG = Logger.getLogger(OKXHistoryRestApiClient.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
     private final String baseUrl;
     private final RetryableHttpClient httpClient;
@@ -23,12 +30,12 @@ public class OKXHistoryRestApiClient implements CryptoRestApiClient<CandleReques
     }
 
     @Override
-    public Optional<JsonNode> fetchCandles(CandleRequest request) {
+    public CompletableFuture<Optional<CandlePage>> fetchCandles(CandleRequest request) {
         String url = buildUrl(request);
         LOG.debugf("🌐 OKX API: %s", url);
 
-        Optional<JsonNode> response = httpClient.executeWithRetry(url);
-        return response.filter(this::isValidResponse);
+        return httpClient.executeWithRetry(url)
+                .thenApply(body -> body.flatMap(this::parsePage));
     }
 
     @Override
@@ -54,13 +61,65 @@ public class OKXHistoryRestApiClient implements CryptoRestApiClient<CandleReques
         return uri.toString();
     }
 
-    private boolean isValidResponse(JsonNode root) {
-        int code = root.path("code").asInt();
-        if (code != 0) {
-            LOG.warnf("⚠️ OKX API error: code=%d msg=%s", code, root.path("msg").asText());
-            return false;
+    /**
+     * Потоковый разбор ответа {"code":"0","msg":"","data":[["ts","o","h","l","c",...],...]}.
+     * Из свечей читается только время, сам массив data вырезается из тела ответа строкой без построения дерева.
+     */
+    private Optional<CandlePage> parsePage(byte[] body) {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                LOG.warn("⚠️ OKX API: ответ не является JSON-объектом");
+                return Optional.empty();
+            }
+
+            int code = -1;
+            String msg = null;
+            CandlePage page = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "code" -> code = parser.getValueAsInt(-1);
+                    case "msg" -> msg = parser.getValueAsString();
+                    case "data" -> page = value == JsonToken.START_ARRAY ? parseData(parser, body) : null;
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (code != 0) {
+                LOG.warnf("⚠️ OKX API error: code=%d msg=%s", code, msg);
+                return Optional.empty();
+            }
+            return Optional.of(page != null ? page : new CandlePage("[]", 0, 0, 0, 0));
+        } catch (IOException e) {
+            LOG.warnf("⚠️ OKX API: не удалось разобрать ответ: %s", e.getMessage());
+            return Optional.empty();
         }
-        return true;
+    }
+
+    private CandlePage parseData(JsonParser parser, byte[] body) throws IOException {
+        int start = (int) parser.currentTokenLocation().getByteOffset();
+        int size = 0;
+        long firstTs = 0;
+        long lastTs = 0;
+        long minTs = Long.MAX_VALUE;
+
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+            long ts = parser.getValueAsLong();
+            // Остальные поля свечи пропускаем до конца строки
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                parser.skipChildren();
+            }
+            if (size == 0) firstTs = ts;
+            lastTs = ts;
+            if (ts < minTs) minTs = ts;
+            size++;
+        }
+
+        int end = (int) parser.currentLocation().getByteOffset();
+        String data = new String(body, start, end - start, StandardCharsets.UTF_8);
+        return new CandlePage(data, size, firstTs, lastTs, size == 0 ? 0 : minTs);
     }
 
     private String urlEncode(String s) {
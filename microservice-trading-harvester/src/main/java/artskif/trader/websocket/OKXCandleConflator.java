@@ -0,0 +1,255 @@
+package artskif.trader.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Конфляция неподтверждённых обновлений свечей на входе harvester.
+ *
+ * OKX присылает обновление текущей свечи много раз в секунду, а анализатору для расчётов нужны прежде всего
+ * закрытые бары. Подтверждённые свечи (confirm = "1") пересылаются сразу. Неподтверждённые обрабатываются
+ * по режиму канала ({@code okx.websocket.conflation.mode}, для отдельного канала —
+ * {@code okx.websocket.conflation.<канал>.mode}):
+ * <ul>
+ *     <li>INTERVAL — не чаще одного кадра за {@code intervalMs} на пару канал/инструмент; промежуточные кадры
+ *     заменяются последним, и в конце интервала уходит самое свежее состояние;</li>
+ *     <li>DROP — неподтверждённые кадры не пересылаются совсем;</li>
+ *     <li>NONE — без потерь: пересылаются все кадры.</li>
+ * </ul>
+ * Каждый кадр помечается признаком подтверждения (заголовок Kafka {@code okx-confirm}), чтобы потребители
+ * могли отфильтровать неподтверждённые обновления, не разбирая JSON.
+ */
+@ApplicationScoped
+public class OKXCandleConflator {
+
+    private static final Logger LOG = Logger.getLogger(OKXCandleConflator.class);
+    private static final String CONFIG_PREFIX = "okx.websocket.conflation.";
+    private static final long FLUSH_TICK_MS = 100L;
+    private static final long STATS_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+
+    // confirm — последнее поле строки свечи: [..., "volCcyQuote", "1"]
+    private static final String CONFIRMED_MARKER = "\",\"1\"]";
+
+    public enum Mode {
+        NONE, INTERVAL, DROP
+    }
+
+    /**
+     * Получатель кадров после конфляции
+     */
+    @FunctionalInterface
+    public interface Sink {
+        void accept(String instId, String frame, boolean confirmed);
+    }
+
+    @ConfigProperty(name = "okx.websocket.conflation.mode", defaultValue = "INTERVAL")
+    Mode defaultMode;
+
+    @ConfigProperty(name = "okx.websocket.conflation.intervalMs", defaultValue = "1000")
+    long defaultIntervalMs;
+
+    private record Policy(Mode mode, long intervalNanos) {
+    }
+
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    // Слоты пар канал/инструмент: канал -> instId -> слот; снимаются вместе с подпиской ({@link #remove})
+    private final Map<String, Map<String, Slot>> slots = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private long statsFromNanos = System.nanoTime();
+
+    @PostConstruct
+    void init() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("okx-ws-conflation");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleAtFixedRate(() -> flush(System.nanoTime()), FLUSH_TICK_MS, FLUSH_TICK_MS, TimeUnit.MILLISECONDS);
+        LOG.infof("🗜️ Конфляция WS: режим по умолчанию %s, интервал %d мс", defaultMode, defaultIntervalMs);
+    }
+
+    /**
+     * Принять кадр канала. Вызывается в потоке чтения сокета; кадры одной пары канал/инструмент
+     * уходят в sink в порядке поступления.
+     *
+     * @param instId инструмент кадра, уже извлечённый маршрутом (null — кадр без instId)
+     */
+    public void offer(String channel, String instId, String frame, Sink sink) {
+        offer(channel, instId, frame, sink, System.nanoTime());
+    }
+
+    void offer(String channel, String instId, String frame, Sink sink, long now) {
+        received.incrementAndGet();
+        boolean confirmed = isConfirmed(frame);
+        Policy policy = policies.computeIfAbsent(channel, this::resolve);
+        if (policy.mode() == Mode.NONE) {
+            forward(sink, instId, frame, confirmed);
+            return;
+        }
+        if (!confirmed && policy.mode() == Mode.DROP) {
+            suppressed.incrementAndGet();
+            return;
+        }
+        slot(channel, instId, policy, now).offer(instId, frame, confirmed, sink, now);
+    }
+
+    /**
+     * Снять слот пары канал/инструмент вместе с отложенным кадром — вызывается при снятии подписки
+     */
+    public void remove(String channel, String instId) {
+        Map<String, Slot> channelSlots = slots.get(channel);
+        Slot slot = channelSlots != null ? channelSlots.remove(instId != null ? instId : "") : null;
+        if (slot != null) {
+            slot.discard();
+        }
+    }
+
+    int slotCount() {
+        return slots.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private Slot slot(String channel, String instId, Policy policy, long now) {
+        String key = instId != null ? instId : "";
+        Map<String, Slot> channelSlots = slots.computeIfAbsent(channel, c -> new ConcurrentHashMap<>());
+        Slot slot = channelSlots.get(key);
+        return slot != null ? slot : channelSlots.computeIfAbsent(key, k -> new Slot(policy.intervalNanos(), now));
+    }
+
+    /**
+     * Признак закрытой свечи в кадре, без разбора JSON
+     */
+    static boolean isConfirmed(String frame) {
+        return frame.contains(CONFIRMED_MARKER);
+    }
+
+    private Policy resolve(String channel) {
+        var config = ConfigProvider.getConfig();
+        Mode mode = config.getOptionalValue(CONFIG_PREFIX + channel + ".mode", Mode.class).orElse(defaultMode);
+        long intervalMs = config.getOptionalValue(CONFIG_PREFIX + channel + ".intervalMs", Long.class).orElse(defaultIntervalMs);
+        LOG.infof("🗜️ Конфляция канала %s: %s, интервал %d мс", channel, mode, intervalMs);
+        return new Policy(mode, TimeUnit.MILLISECONDS.toNanos(intervalMs));
+    }
+
+    private void forward(Sink sink, String instId, String frame, boolean confirmed) {
+        forwarded.incrementAndGet();
+        sink.accept(instId, frame, confirmed);
+    }
+
+    /**
+     * Состояние пары канал/инструмент. Пересылка идёт под монитором слота, чтобы отложенный кадр
+     * из потока конфляции не обогнал подтверждённую свечу из потока сокета.
+     */
+    private final class Slot {
+        private final long intervalNanos;
+        private String pending;
+        private String pendingInstId;
+        private Sink pendingSink;
+        private long lastSentNanos;
+
+        Slot(long intervalNanos, long now) {
+            this.intervalNanos = intervalNanos;
+            this.lastSentNanos = now - intervalNanos;
+        }
+
+        synchronized void offer(String instId, String frame, boolean confirmed, Sink sink, long now) {
+            if (confirmed) {
+                // Закрытая свеча заменяет отложенное промежуточное состояние
+                dropPending();
+                forward(sink, instId, frame, true);
+                return;
+            }
+            if (now - lastSentNanos >= intervalNanos) {
+                dropPending();
+                lastSentNanos = now;
+                forward(sink, instId, frame, false);
+                return;
+            }
+            dropPending();
+            pending = frame;
+            pendingInstId = instId;
+            pendingSink = sink;
+        }
+
+        synchronized void flush(long now) {
+            if (pending == null || now - lastSentNanos < intervalNanos) {
+                return;
+            }
+            String frame = pending;
+            String instId = pendingInstId;
+            Sink sink = pendingSink;
+            clearPending();
+            lastSentNanos = now;
+            forward(sink, instId, frame, false);
+        }
+
+        synchronized void discard() {
+            dropPending();
+        }
+
+        private void dropPending() {
+            if (pending != null) {
+                suppressed.incrementAndGet();
+                clearPending();
+            }
+        }
+
+        private void clearPending() {
+            pending = null;
+            pendingInstId = null;
+            pendingSink = null;
+        }
+    }
+
+    void flush(long now) {
+        try {
+            slots.values().forEach(channelSlots -> channelSlots.values().forEach(slot -> slot.flush(now)));
+            logStats(now);
+        } catch (Throwable t) {
+            LOG.error("⚠️ Ошибка конфляции: " + t.getMessage(), t);
+        }
+    }
+
+    private void logStats(long now) {
+        if (now - statsFromNanos < STATS_LOG_INTERVAL_NS) {
+            return;
+        }
+        statsFromNanos = now;
+        long in = received.get();
+        long dropped = suppressed.get();
+        LOG.infof("🗜️ Конфляция WS: получено %d, переслано %d, подавлено %d (%.0f%%)",
+                in, forwarded.get(), dropped, in == 0 ? 0.0 : dropped * 100.0 / in);
+    }
+
+    public long getReceived() {
+        return received.get();
+    }
+
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    public long getSuppressed() {
+        return suppressed.get();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flusher.shutdownNow();
+    }
+}
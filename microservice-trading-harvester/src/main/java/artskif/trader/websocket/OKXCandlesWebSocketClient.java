@@ -1,272 +1,392 @@
 package artskif.trader.websocket;
 
 
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.kafka.CandleSnapshotPublisher;
+import artskif.trader.kafka.KafkaBatchPublisher;
 import artskif.trader.kafka.KafkaProducer;
 import io.quarkus.runtime.Startup;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-
-import java.net.InetSocketAddress;
-import java.net.Socket;
-
-import jakarta.websocket.*;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
 import org.jboss.logging.Logger;
 
-import javax.net.ssl.SSLSocketFactory;
 import java.net.URI;
-import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-
-@ClientEndpoint
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Менеджер WebSocket подписок на свечи OKX.
+ *
+ * Набор подписок — произведение {@code okx.websocket.instruments} на {@code okx.websocket.channels}.
+ * Подписки раскладываются по шардам — отдельным соединениям, не больше {@code okx.websocket.channelsPerConnection}
+ * каналов на соединение. Подписки можно добавлять и снимать на ходу через {@link #subscribe}/{@link #unsubscribe}:
+ * затрагивается только один шард, остальные потоки не прерываются. Когда шард переподключается, он забирает
+ * подписки у перегруженных шардов, и нагрузка выравнивается. У каждого шарда свой watchdog.
+ * Кадры проходят через {@link OKXCandleConflator} и уходят в Kafka с заголовком {@code okx-confirm}. Топик у канала
+ * общий для всех инструментов, ключ записи — instId: кадры инструмента попадают в одну партицию по порядку,
+ * а потребитель отбирает свой инструмент по ключу, не разбирая JSON;
+ * подтверждённые свечи дополнительно пишутся в сжатый топик снимка ({@link CandleSnapshotPublisher}).
+ * Сырые кадры до конфляции можно записывать в файлы ({@link OKXFrameRecorder}) и воспроизводить
+ * через {@link #replayFrame} — по тем же маршрутам, но без конфляции и с ожиданием подтверждения Kafka.
+ */
 @Startup
 @ApplicationScoped
-public class OKXCandlesWebSocketClient {
-
-    // === Настройки ===
-    private static final String WS_ENDPOINT = "wss://ws.okx.com:8443/ws/v5/business"; // при необходимости замените на /public
-    private static final String WS_HOST = "ws.okx.com";
-    private static final int WS_PORT = 8443;
-
-    private static final long RECONNECT_DELAY_MS = 5_000L;       // задержка между попытками переподключения
-    private static final long WATCHDOG_PERIOD_MS = 5_000L;       // период проверки соединения
-    private static final long INACTIVITY_RECONNECT_MS = 30_000L; // если нет сообщений дольше этого — переоткрываем
+public class OKXCandlesWebSocketClient implements OKXCandlesWebSocketShard.Listener {
 
     private static final Logger LOG = Logger.getLogger(OKXCandlesWebSocketClient.class);
 
+    // Кадр данных OKX всегда начинается с arg.channel: {"arg":{"channel":"candle1m","instId":...},"data":[...]}
+    private static final String CHANNEL_PREFIX = "{\"arg\":{\"channel\":\"";
+    // instId идёт сразу за закрывающей кавычкой канала
+    private static final String INST_ID_PREFIX = "\",\"instId\":\"";
+    private static final String INST_ID_FIELD = "\"instId\":\"";
+
+    // Заголовок с признаком закрытой свечи: потребитель может отбирать кадры, не разбирая JSON
+    private static final String CONFIRM_HEADER = "okx-confirm";
+    private static final byte[] CONFIRMED = "1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] UNCONFIRMED = "0".getBytes(StandardCharsets.US_ASCII);
+
+    // Каналы OKX и топики Kafka, в которые они публикуются
+    private static final Map<String, String> CHANNEL_TOPICS = Map.of(
+            "candle1m", "okx-candle-1m",
+            "candle5m", "okx-candle-5m",
+            "candle1H", "okx-candle-1h",
+            "candle4H", "okx-candle-4h",
+            "candle1W", "okx-candle-1w"
+    );
+
     @ConfigProperty(name = "okx.websocket.enabled", defaultValue = "true")
     boolean websocketEnabled;
 
+    @ConfigProperty(name = "okx.websocket.endpoint", defaultValue = "wss://ws.okx.com:8443/ws/v5/business")
+    String endpoint;
+
+    @ConfigProperty(name = "okx.websocket.instruments", defaultValue = "BTC-USDT-SWAP")
+    List<String> instruments;
+
+    @ConfigProperty(name = "okx.websocket.channels", defaultValue = "candle1m,candle5m,candle1H,candle4H,candle1W")
+    List<String> channels;
+
+    @ConfigProperty(name = "okx.websocket.channelsPerConnection", defaultValue = "30")
+    int channelsPerConnection;
+
     @Inject
     KafkaProducer producer;
 
-    private volatile Session session;
-    private final Map<String, BlockingQueue<String>> queues = new ConcurrentHashMap<>();
-    private ExecutorService kafkaExecutor;
+    @Inject
+    KafkaBatchPublisher publisher;
 
-    // один общий планировщик — и для реконнекта, и для watchdog
-    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
-    private volatile long lastActivityNanos = System.nanoTime();
-    private volatile long lastMessageLogNanos = 0L;
-    private static final long MESSAGE_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+    @Inject
+    OKXCandleConflator conflator;
+
+    @Inject
+    CandleSnapshotPublisher snapshotPublisher;
+
+    @Inject
+    OKXFrameRecorder recorder;
+
+    /**
+     * Маршрут канала: имя канала OKX, заранее разрешённый эмиттер топика и позиция instId в кадре
+     */
+    record Route(String channel, String topic, Emitter<String> emitter, CandleTimeframe timeframe,
+                         int instIdFrom, OKXCandleConflator.Sink sink) {
+    }
+
+    private Route[] routes = new Route[0];
+
+    // Шарды меняются только под монитором this
+    private final List<OKXCandlesWebSocketShard> shards = new ArrayList<>();
+    private int nextShardId = 0;
+    private boolean started = false;
 
     @PostConstruct
     void init() {
+        // Маршруты нужны и без сокета: по ним публикуются воспроизводимые кадры
+        List<Route> resolved = new ArrayList<>();
+        CHANNEL_TOPICS.forEach((channel, topic) -> resolved.add(route(channel, topic)));
+        routes = resolved.toArray(new Route[0]);
+
         if (!websocketEnabled) {
             LOG.warn("⚙️ OKX WebSocket клиент отключен (okx.websocket.enabled=false)");
             return;
         }
 
-        queues.put("okx-candle-1m", new LinkedBlockingQueue<>(10_000));
-        queues.put("okx-candle-5m", new LinkedBlockingQueue<>(10_000));
-        queues.put("okx-candle-1h", new LinkedBlockingQueue<>(10_000));
-        queues.put("okx-candle-4h", new LinkedBlockingQueue<>(10_000));
-        queues.put("okx-candle-1w", new LinkedBlockingQueue<>(10_000));
-
-        kafkaExecutor = Executors.newFixedThreadPool(queues.size());
-        queues.forEach((topic, queue) ->
-                kafkaExecutor.submit(() -> {
-                    while (!Thread.currentThread().isInterrupted()) {
-                        try {
-                            String message = queue.take();
-                            producer.sendMessage(topic, message);
-                        } catch (InterruptedException ie) {
-                            Thread.currentThread().interrupt();
-                        } catch (Exception ex) {
-                            LOG.error("❌ Ошибка Kafka отправки: " + ex.getMessage(), ex);
-                        }
+        synchronized (this) {
+            for (String instId : instruments) {
+                for (String channel : channels) {
+                    OKXSubscription subscription = new OKXSubscription(channel, instId);
+                    if (validate(subscription)) {
+                        place().assign(List.of(subscription));
                     }
-                })
-        );
+                }
+            }
+            shards.forEach(OKXCandlesWebSocketShard::start);
+            started = true;
+            LOG.infof("🔗 Подписки OKX WebSocket: %d каналов в %d соединениях %s",
+                    countSubscriptions(), shards.size(), shards);
+        }
+
+        List<CandleTimeframe> timeframes = channels.stream()
+                .map(CandleTimeframe::fromChannel)
+                .filter(Objects::nonNull)
+                .toList();
+        snapshotPublisher.seedAsync(instruments, timeframes);
+    }
 
-        // запускаем watchdog
-        scheduler.scheduleAtFixedRate(this::watchdog, WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+    // === Управление подписками ===
 
-        connect();
+    /**
+     * Добавить подписку на ходу. Она попадает в наименее загруженный шард или в новое соединение.
+     *
+     * @return false, если такая подписка уже есть или канал не поддерживается
+     */
+    public synchronized boolean subscribe(String instId, String channel) {
+        OKXSubscription subscription = new OKXSubscription(channel, instId);
+        if (!websocketEnabled || !validate(subscription) || findShard(subscription) != null) {
+            return false;
+        }
+        OKXCandlesWebSocketShard shard = place();
+        shard.add(List.of(subscription));
+        LOG.infof("➕ Подписка %s добавлена в shard %d", subscription, shard.getId());
+        return true;
     }
 
-    /** Периодическая проверка «живости» соединения и трафика. */
-    private void watchdog() {
-        try {
-            final Session s = this.session;
-            if (s == null || !s.isOpen()) {
-                triggerReconnect("session is null/closed");
-                return;
-            }
-            long silenceMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivityNanos);
-            if (silenceMs >= INACTIVITY_RECONNECT_MS) {
-                LOG.info("⏳ Нет данных " + silenceMs + " ms — переоткрываем соединение");
-                safeCloseAndReconnect();
-            }
-        } catch (Throwable t) {
-            LOG.error("⚠️ Ошибка watchdog: " + t.getMessage(), t);
+    /**
+     * Снять подписку на ходу. Опустевший шард закрывается, если он не последний.
+     *
+     * @return false, если такой подписки нет
+     */
+    public synchronized boolean unsubscribe(String instId, String channel) {
+        OKXSubscription subscription = new OKXSubscription(channel, instId);
+        OKXCandlesWebSocketShard shard = findShard(subscription);
+        if (shard == null) {
+            return false;
         }
+        shard.remove(List.of(subscription));
+        conflator.remove(channel, instId);
+        LOG.infof("➖ Подписка %s снята с shard %d", subscription, shard.getId());
+        if (shard.size() == 0 && shards.size() > 1) {
+            shards.remove(shard);
+            shard.stop();
+            LOG.infof("🔌 Shard %d пуст и закрыт", shard.getId());
+        }
+        return true;
     }
 
-    /** Безопасно закрыть текущую сессию и запланировать переподключение. */
-    private void safeCloseAndReconnect() {
-        closeSessionQuietly();
-        triggerReconnect("forced reopen");
+    /**
+     * Текущий набор подписок по всем шардам
+     */
+    public synchronized Set<OKXSubscription> getSubscriptions() {
+        Set<OKXSubscription> all = new HashSet<>();
+        shards.forEach(shard -> all.addAll(shard.getSubscriptions()));
+        return all;
     }
 
-    /** Коалесцированный (без дубликатов) запуск переподключения. */
-    private void triggerReconnect(String reason) {
-        if (reconnecting.compareAndSet(false, true)) {
-            LOG.info("🔁 Переподключение через 5s (" + reason + ")");
-            scheduler.schedule(() -> {
-                try {
-                    connect();
-                } finally {
-                    reconnecting.set(false);
-                }
-            }, RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+    /**
+     * Шард с наименьшим числом каналов, в котором есть место; если мест нет — новый шард
+     */
+    private OKXCandlesWebSocketShard place() {
+        return shards.stream()
+                .filter(shard -> shard.size() < channelsPerConnection)
+                .min(Comparator.comparingInt(OKXCandlesWebSocketShard::size))
+                .orElseGet(this::openShard);
+    }
+
+    private OKXCandlesWebSocketShard openShard() {
+        OKXCandlesWebSocketShard shard = newShard(nextShardId++);
+        shards.add(shard);
+        // При начальной раскладке шарды стартуют все вместе, уже с полным набором подписок
+        if (started) {
+            shard.start();
         }
+        return shard;
     }
 
-    public synchronized void connect() {
-        closeSessionQuietly();
+    OKXCandlesWebSocketShard newShard(int id) {
+        return new OKXCandlesWebSocketShard(id, URI.create(endpoint), this);
+    }
 
-        // (не блокируем на этом решении) — просто для логов, чтобы понимать, есть ли вообще выход в сеть
-        if (!isEndpointReachable(WS_HOST, WS_PORT, 1500)) {
-            LOG.info("🌐 Хост недоступен (TCP connect не удался) — пробуем подключиться всё равно");
+    private OKXCandlesWebSocketShard findShard(OKXSubscription subscription) {
+        for (OKXCandlesWebSocketShard shard : shards) {
+            if (shard.getSubscriptions().contains(subscription)) {
+                return shard;
+            }
         }
+        return null;
+    }
 
-        try {
-            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
-            container.connectToServer(this, new URI(WS_ENDPOINT));
-            LOG.info("✅ WebSocket соединение установлено: " + WS_ENDPOINT);
-            lastActivityNanos = System.nanoTime();
-        } catch (Exception e) {
-            LOG.error("❌ Не удалось подключиться: " + e.getMessage(), e);
-            triggerReconnect("connect() failed");
+    private boolean validate(OKXSubscription subscription) {
+        if (!CHANNEL_TOPICS.containsKey(subscription.channel())) {
+            LOG.warnf("⚠️ Канал %s не поддерживается, подписка %s пропущена", subscription.channel(), subscription);
+            return false;
         }
+        return true;
     }
 
-    @OnOpen
-    public void onOpen(Session session) {
-        this.session = session;
-        lastActivityNanos = System.nanoTime();
-
-        String subscribeMsg = """
-        {
-          "op": "subscribe",
-          "args": [
-            {"channel":"candle1m","instId":"BTC-USDT-SWAP"},
-            {"channel":"candle5m","instId":"BTC-USDT-SWAP"},
-            {"channel":"candle1H","instId":"BTC-USDT-SWAP"},
-            {"channel":"candle4H","instId":"BTC-USDT-SWAP"},
-            {"channel":"candle1W","instId":"BTC-USDT-SWAP"}
-          ]
-        }""";
-        session.getAsyncRemote().sendText(subscribeMsg);
-        LOG.debug("🔗 Подключение установлено и отправлены подписки");
+    private int countSubscriptions() {
+        return shards.stream().mapToInt(OKXCandlesWebSocketShard::size).sum();
     }
 
-    @OnMessage
-    public void onMessage(String message) {
-        lastActivityNanos = System.nanoTime(); // фиксируем «живой» трафик
-        if (LOG.isDebugEnabled()) {
-            long now = System.nanoTime();
-            if (now - lastMessageLogNanos >= MESSAGE_LOG_INTERVAL_NS) {
-                lastMessageLogNanos = now;
-                LOG.debugf("📩 Получено сообщение: %s%n", message);
+    // === События шардов ===
+
+    /**
+     * Ребалансировка при (пере)подключении: открывшийся шард забирает подписки у шардов выше средней загрузки.
+     * Перенос идёт по схеме «сначала подписать, потом отписать»: донор отправляет unsubscribe только после того,
+     * как новый шард отправил subscribe, поэтому перенесённые каналы не остаются без потока (короткое время кадры
+     * приходят по обоим соединениям — запись в Kafka идемпотентна по времени свечи). Если subscribe не ушёл,
+     * подписки возвращаются донору. Другие потоки донора не прерываются.
+     */
+    @Override
+    public synchronized void onShardOpened(OKXCandlesWebSocketShard shard) {
+        if (!shards.contains(shard)) {
+            return;
+        }
+        int target = (countSubscriptions() + shards.size() - 1) / shards.size();
+        Map<OKXCandlesWebSocketShard, List<OKXSubscription>> moved = new LinkedHashMap<>();
+        while (shard.size() < target) {
+            OKXCandlesWebSocketShard donor = shards.stream()
+                    .filter(other -> other != shard && other.size() > target)
+                    .max(Comparator.comparingInt(OKXCandlesWebSocketShard::size))
+                    .orElse(null);
+            if (donor == null) {
+                break;
             }
+            List<OKXSubscription> released = donor.release(List.of(donor.getSubscriptions().iterator().next()));
+            shard.assign(released);
+            moved.computeIfAbsent(donor, d -> new ArrayList<>()).addAll(released);
         }
 
-        String topic = determineTopic(message);
-        if (topic != null) {
-            BlockingQueue<String> q = queues.get(topic);
-            if (q != null && !q.offer(message)) {
-                LOG.warn("⚠️ Очередь заполнена, сообщение отброшено: " + topic);
+        if (!shard.subscribeAll()) {
+            moved.forEach((donor, released) -> {
+                shard.release(released);
+                donor.assign(released);
+            });
+            if (!moved.isEmpty()) {
+                LOG.warnf("⚠️ Ребалансировка отменена: shard %d не отправил subscribe, подписки остались у доноров", shard.getId());
             }
+            return;
+        }
+        moved.forEach(OKXCandlesWebSocketShard::unsubscribe);
+        if (!moved.isEmpty()) {
+            int count = moved.values().stream().mapToInt(List::size).sum();
+            LOG.infof("⚖️ Ребалансировка: в shard %d перенесено подписок: %d, шарды: %s", shard.getId(), count, shards);
         }
     }
 
-    // (опционально) если сервер/прокси присылает PONG — тоже считаем это активностью
-    @OnMessage
-    public void onPong(PongMessage pong) {
-        ByteBuffer data = pong.getApplicationData();
-        lastActivityNanos = System.nanoTime();
+    @Override
+    public void onFrame(String message) {
+        recorder.record(message);
+        Route route = determineRoute(message);
+        if (route != null) {
+            conflator.offer(route.channel(), instId(message, route.instIdFrom()), message, route.sink());
+        }
     }
 
-    private String determineTopic(String message) {
-        if (message.contains("\"channel\":\"candle1m\"")) return "okx-candle-1m";
-        if (message.contains("\"channel\":\"candle5m\"")) return "okx-candle-5m";
-        if (message.contains("\"channel\":\"candle1H\"")) return "okx-candle-1h";
-        if (message.contains("\"channel\":\"candle4H\"")) return "okx-candle-4h";
-        if (message.contains("\"channel\":\"candle1W\"")) return "okx-candle-1w";
-        return null;
+    /**
+     * Опубликовать записанный кадр по маршруту его канала. Конфляция и очередь публикации не применяются:
+     * кадр сразу уходит в эмиттер и не может быть отброшен, а вызывающий получает подтверждение Kafka —
+     * поэтому воспроизведение не зависит от темпа и скорости брокера.
+     *
+     * @return подтверждение отправки или null, если кадр служебный или канал не поддерживается
+     */
+    public CompletableFuture<Void> replayFrame(String frame) {
+        Route route = determineRoute(frame);
+        if (route == null) {
+            return null;
+        }
+        boolean confirmed = OKXCandleConflator.isConfirmed(frame);
+        CompletableFuture<Void> acked = KafkaProducer.sendWithAck(route.emitter(), instId(frame, route.instIdFrom()),
+                frame, confirmHeaders(confirmed));
+        if (confirmed) {
+            snapshotPublisher.publishFrame(route.timeframe(), frame);
+        }
+        return acked;
     }
 
-    @OnClose
-    public void onClose(Session session, CloseReason reason) {
-        LOG.info("🔌 Соединение закрыто: " + reason);
-        LOG.infof("🔌 Код закрытия: %s, причина: %s%n", reason.getCloseCode(), reason.getReasonPhrase());
-        triggerReconnect("onClose");
+    private Route route(String channel, String topic) {
+        Emitter<String> emitter = producer.emitterFor(topic);
+        if (emitter == null) {
+            throw new IllegalStateException("Нет эмиттера для топика " + topic);
+        }
+        // При заполненной очереди блокирует поток чтения сокета — давление уходит к бирже
+        CandleTimeframe timeframe = CandleTimeframe.fromChannel(channel);
+        int instIdFrom = CHANNEL_PREFIX.length() + channel.length();
+        OKXCandleConflator.Sink sink = (instId, frame, confirmed) -> {
+            publisher.publish(emitter, instId, frame, confirmHeaders(confirmed));
+            if (confirmed) {
+                snapshotPublisher.publishFrame(timeframe, frame);
+            }
+        };
+        return new Route(channel, topic, emitter, timeframe, instIdFrom, sink);
     }
 
-    @OnError
-    public void onError(Session session, Throwable t) {
-        LOG.error("❌ Ошибка WebSocket: " + t.getMessage());
-        triggerReconnect("onError");
+    private static Headers confirmHeaders(boolean confirmed) {
+        return new RecordHeaders().add(CONFIRM_HEADER, confirmed ? CONFIRMED : UNCONFIRMED);
     }
 
-    @PreDestroy
-    public void cleanup() {
-        if (!websocketEnabled) return;
-
-        LOG.info("🧹 Завершение работы приложения...");
-        if (kafkaExecutor != null) {
-            kafkaExecutor.shutdown();
-            try {
-                if (!kafkaExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
-                    LOG.info("⚠️ Потоки не завершились вовремя, форсируем остановку...");
-                    kafkaExecutor.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                LOG.error("❌ Ожидание завершения потоков прервано");
-                kafkaExecutor.shutdownNow();
-                Thread.currentThread().interrupt();
+    /**
+     * Канал читается с фиксированной позиции сразу после префикса кадра — без поиска по всему сообщению.
+     * Служебные кадры (event: subscribe/error) под префикс не подходят и пропускаются.
+     */
+    Route determineRoute(String message) {
+        if (!message.startsWith(CHANNEL_PREFIX)) {
+            return null;
+        }
+        int from = CHANNEL_PREFIX.length();
+        for (Route route : routes) {
+            String channel = route.channel();
+            int end = from + channel.length();
+            if (message.length() > end && message.charAt(end) == '"'
+                    && message.regionMatches(from, channel, 0, channel.length())) {
+                return route;
             }
         }
-        closeSessionQuietly();
-        scheduler.shutdownNow();
+        return null;
     }
 
-    private void closeSessionQuietly() {
-        final Session s = this.session;
-        if (s == null) {
-            LOG.debug("🔒 closeSessionQuietly: сессия уже null, закрытие не требуется");
-            return;
-        }
-        if (!s.isOpen()) {
-            LOG.debug("🔒 closeSessionQuietly: сессия уже закрыта (id=" + s.getId() + ")");
-            this.session = null;
-            return;
-        }
-        LOG.info("🔒 closeSessionQuietly: закрываем сессию (id=" + s.getId() + ")");
-        try {
-            s.close();
-            LOG.info("✅ closeSessionQuietly: сессия успешно закрыта (id=" + s.getId() + ")");
-        } catch (Exception e) {
-            LOG.warn("⚠️ closeSessionQuietly: ошибка при закрытии сессии (id=" + s.getId() + "): " + e.getMessage(), e);
-        } finally {
-            this.session = null;
+    /**
+     * instId из arg кадра: обычно читается с фиксированной позиции сразу за каналом, иначе ищется по полю
+     *
+     * @param from позиция закрывающей кавычки канала
+     * @return instId или null, если в кадре его нет
+     */
+    private static String instId(String frame, int from) {
+        int start;
+        if (frame.startsWith(INST_ID_PREFIX, from)) {
+            start = from + INST_ID_PREFIX.length();
+        } else {
+            int field = frame.indexOf(INST_ID_FIELD);
+            if (field < 0) {
+                return null;
+            }
+            start = field + INST_ID_FIELD.length();
         }
+        int end = frame.indexOf('"', start);
+        return end > start ? frame.substring(start, end) : null;
     }
 
-    /** Лёгкая проверка доступности TCP-порта (для логов/диагностики). */
-    private boolean isEndpointReachable(String host, int port, int timeoutMs) {
-        try (Socket sock = SSLSocketFactory.getDefault().createSocket()) {
-            sock.connect(new InetSocketAddress(host, port), timeoutMs);
-            return true;
-        } catch (Exception e) {
-            return false;
+    @PreDestroy
+    public void cleanup() {
+        if (!websocketEnabled) return;
+
+        LOG.info("🧹 Завершение работы приложения...");
+        synchronized (this) {
+            shards.forEach(OKXCandlesWebSocketShard::stop);
+            shards.clear();
         }
     }
 }
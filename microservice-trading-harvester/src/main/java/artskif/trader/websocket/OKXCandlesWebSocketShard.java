@@ -0,0 +1,307 @@
+package artskif.trader.websocket;
+
+import jakarta.websocket.ClientEndpointConfig;
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.ContainerProvider;
+import jakarta.websocket.Endpoint;
+import jakarta.websocket.EndpointConfig;
+import jakarta.websocket.PongMessage;
+import jakarta.websocket.Session;
+import jakarta.websocket.WebSocketContainer;
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Одно WebSocket соединение с OKX и закреплённые за ним подписки.
+ *
+ * У каждого шарда свой поток-планировщик: watchdog, переподключение и connect() одного шарда
+ * не задерживают и не переоткрывают остальные. После каждого открытия сессии шард сообщает менеджеру,
+ * тот может перераспределить подписки, и шард подписывается на весь свой набор заново.
+ */
+class OKXCandlesWebSocketShard extends Endpoint {
+
+    private static final Logger LOG = Logger.getLogger(OKXCandlesWebSocketShard.class);
+
+    private static final long RECONNECT_DELAY_MS = 5_000L;       // задержка между попытками переподключения
+    private static final long WATCHDOG_PERIOD_MS = 5_000L;       // период проверки соединения
+    private static final long INACTIVITY_RECONNECT_MS = 30_000L; // если нет сообщений дольше этого — переоткрываем
+    private static final long MESSAGE_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Обратные вызовы менеджера подписок
+     */
+    interface Listener {
+        /**
+         * Сессия шарда открыта; менеджер может перераспределить подписки до отправки subscribe
+         */
+        void onShardOpened(OKXCandlesWebSocketShard shard);
+
+        /**
+         * Кадр данных из сессии шарда (вызывается в потоке чтения сокета)
+         */
+        void onFrame(String message);
+    }
+
+    private final int id;
+    private final URI endpoint;
+    private final Listener listener;
+    private final Set<OKXSubscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    // свой планировщик у каждого шарда — и для реконнекта, и для watchdog
+    private final ScheduledExecutorService scheduler;
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
+    // Отдельный монитор для отправки: onOpen может прийти в потоке контейнера, пока connect() ещё не вернулся
+    private final Object sendLock = new Object();
+    private volatile Session session;
+    private volatile boolean stopped = false;
+    private volatile long lastActivityNanos = System.nanoTime();
+    private volatile long lastMessageLogNanos = 0L;
+
+    OKXCandlesWebSocketShard(int id, URI endpoint, Listener listener) {
+        this.id = id;
+        this.endpoint = endpoint;
+        this.listener = listener;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("okx-ws-shard-" + id);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    int getId() {
+        return id;
+    }
+
+    /**
+     * Запустить watchdog и подключиться
+     */
+    void start() {
+        scheduler.scheduleAtFixedRate(this::watchdog, WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS, TimeUnit.MILLISECONDS);
+        scheduler.execute(this::connect);
+    }
+
+    void stop() {
+        stopped = true;
+        closeSessionQuietly();
+        scheduler.shutdownNow();
+    }
+
+    // === Подписки ===
+
+    Set<OKXSubscription> getSubscriptions() {
+        return Set.copyOf(subscriptions);
+    }
+
+    int size() {
+        return subscriptions.size();
+    }
+
+    boolean isOpen() {
+        Session s = this.session;
+        return s != null && s.isOpen();
+    }
+
+    /**
+     * Закрепить подписки за шардом без отправки subscribe — они уйдут в {@link #subscribeAll()}
+     */
+    void assign(Collection<OKXSubscription> assigned) {
+        subscriptions.addAll(assigned);
+    }
+
+    /**
+     * Закрепить подписки за шардом; при открытой сессии сразу отправляется subscribe
+     */
+    void add(Collection<OKXSubscription> added) {
+        List<OKXSubscription> fresh = added.stream().filter(subscriptions::add).toList();
+        if (!fresh.isEmpty() && isOpen()) {
+            send("subscribe", fresh);
+        }
+    }
+
+    /**
+     * Снять подписки с шарда; остальные каналы сессии не затрагиваются
+     */
+    void remove(Collection<OKXSubscription> removed) {
+        unsubscribe(release(removed));
+    }
+
+    /**
+     * Открепить подписки без отправки unsubscribe: поток по ним идёт, пока не вызван {@link #unsubscribe}
+     *
+     * @return подписки, которые действительно были закреплены за шардом
+     */
+    List<OKXSubscription> release(Collection<OKXSubscription> released) {
+        return released.stream().filter(subscriptions::remove).toList();
+    }
+
+    /**
+     * Отправить unsubscribe по уже откреплённым подпискам
+     */
+    void unsubscribe(List<OKXSubscription> released) {
+        if (!released.isEmpty() && isOpen()) {
+            send("unsubscribe", released);
+        }
+    }
+
+    /**
+     * Подписаться на весь закреплённый набор (после открытия сессии)
+     *
+     * @return false, если сессия закрыта или отправка не удалась
+     */
+    boolean subscribeAll() {
+        List<OKXSubscription> all = List.copyOf(subscriptions);
+        return all.isEmpty() || send("subscribe", all);
+    }
+
+    private boolean send(String op, List<OKXSubscription> args) {
+        Session s = this.session;
+        if (s == null || !s.isOpen()) {
+            return false;
+        }
+        String message = "{\"op\":\"" + op + "\",\"args\":["
+                + args.stream().map(OKXSubscription::toArg).collect(Collectors.joining(",")) + "]}";
+        try {
+            synchronized (sendLock) {
+                s.getBasicRemote().sendText(message);
+            }
+            LOG.debugf("🔗 [shard %d] %s: %s", id, op, args);
+            return true;
+        } catch (Exception e) {
+            LOG.warnf("⚠️ [shard %d] Не удалось отправить %s: %s", id, op, e.getMessage());
+            triggerReconnect(op + " failed");
+            return false;
+        }
+    }
+
+    // === Соединение ===
+
+    /** Периодическая проверка «живости» соединения и трафика. */
+    private void watchdog() {
+        try {
+            final Session s = this.session;
+            if (s == null || !s.isOpen()) {
+                triggerReconnect("session is null/closed");
+                return;
+            }
+            long silenceMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivityNanos);
+            if (silenceMs >= INACTIVITY_RECONNECT_MS) {
+                LOG.infof("⏳ [shard %d] Нет данных %d ms — переоткрываем соединение", id, silenceMs);
+                closeSessionQuietly();
+                triggerReconnect("forced reopen");
+            }
+        } catch (Throwable t) {
+            LOG.error("⚠️ Ошибка watchdog: " + t.getMessage(), t);
+        }
+    }
+
+    /** Коалесцированный (без дубликатов) запуск переподключения. */
+    private void triggerReconnect(String reason) {
+        if (stopped) {
+            return;
+        }
+        if (reconnecting.compareAndSet(false, true)) {
+            LOG.infof("🔁 [shard %d] Переподключение через 5s (%s)", id, reason);
+            scheduler.schedule(() -> {
+                try {
+                    connect();
+                } finally {
+                    reconnecting.set(false);
+                }
+            }, RECONNECT_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Выполняется только в потоке планировщика шарда
+    private void connect() {
+        if (stopped) {
+            return;
+        }
+        closeSessionQuietly();
+        try {
+            WebSocketContainer container = ContainerProvider.getWebSocketContainer();
+            container.connectToServer(this, ClientEndpointConfig.Builder.create().build(), endpoint);
+            LOG.infof("✅ [shard %d] WebSocket соединение установлено: %s", id, endpoint);
+            lastActivityNanos = System.nanoTime();
+        } catch (Exception e) {
+            LOG.errorf(e, "❌ [shard %d] Не удалось подключиться: %s", id, e.getMessage());
+            triggerReconnect("connect() failed");
+        }
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        this.session = session;
+        lastActivityNanos = System.nanoTime();
+        session.addMessageHandler(String.class, this::onMessage);
+        // (опционально) если сервер/прокси присылает PONG — тоже считаем это активностью
+        session.addMessageHandler(PongMessage.class, pong -> lastActivityNanos = System.nanoTime());
+
+        // Менеджер перераспределяет подписки и вызывает subscribeAll()
+        listener.onShardOpened(this);
+        LOG.debugf("🔗 [shard %d] Подключение установлено и отправлены подписки: %d", id, subscriptions.size());
+    }
+
+    private void onMessage(String message) {
+        lastActivityNanos = System.nanoTime(); // фиксируем «живой» трафик
+        if (LOG.isDebugEnabled()) {
+            long now = System.nanoTime();
+            if (now - lastMessageLogNanos >= MESSAGE_LOG_INTERVAL_NS) {
+                lastMessageLogNanos = now;
+                LOG.debugf("📩 [shard %d] Получено сообщение: %s", id, message);
+            }
+        }
+        listener.onFrame(message);
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason reason) {
+        LOG.infof("🔌 [shard %d] Соединение закрыто. Код закрытия: %s, причина: %s",
+                id, reason.getCloseCode(), reason.getReasonPhrase());
+        // Сессии, закрытые самим шардом, уже сняты с this.session — переподключение запланировано там же
+        if (session == this.session) {
+            triggerReconnect("onClose");
+        }
+    }
+
+    @Override
+    public void onError(Session session, Throwable t) {
+        LOG.errorf("❌ [shard %d] Ошибка WebSocket: %s", id, t.getMessage());
+        if (session == this.session) {
+            triggerReconnect("onError");
+        }
+    }
+
+    private void closeSessionQuietly() {
+        final Session s = this.session;
+        if (s == null) {
+            return;
+        }
+        this.session = null;
+        if (!s.isOpen()) {
+            LOG.debugf("🔒 [shard %d] сессия уже закрыта (id=%s)", id, s.getId());
+            return;
+        }
+        try {
+            s.close();
+            LOG.infof("✅ [shard %d] сессия закрыта (id=%s)", id, s.getId());
+        } catch (Exception e) {
+            LOG.warnf("⚠️ [shard %d] ошибка при закрытии сессии (id=%s): %s", id, s.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "shard-" + id + "(" + subscriptions.size() + ")";
+    }
+}
@@ -0,0 +1,279 @@
+package artskif.trader.websocket;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Запись сырых кадров OKX WebSocket в локальные файлы для последующего воспроизведения ({@link OKXSessionReplayer}).
+ *
+ * Каждый кадр — строка {@code <время приёма, мс>\t<кадр>} в gzip-файле {@code okx-ws-yyyyMMdd-HHmmss-SSS.rec.gz}
+ * (время первого кадра, UTC), поэтому сортировка по имени даёт порядок записи. Файл пишется с суффиксом
+ * {@code .part} и переименовывается при закрытии; новый файл начинается раз в {@code okx.recording.rotateMinutes}
+ * минут или после {@code okx.recording.rotateMb} МБ несжатых кадров, старше {@code okx.recording.maxFiles}
+ * файлов удаляются. Поток сокета только кладёт кадр в ограниченную очередь — при переполнении кадр теряется
+ * и попадает в счётчик, но чтение сокета не тормозит. Gzip сбрасывается раз в несколько секунд, поэтому
+ * после аварийной остановки .part-файл читается до последнего сброса и при старте переименовывается в запись.
+ */
+@ApplicationScoped
+public class OKXFrameRecorder {
+
+    private static final Logger LOG = Logger.getLogger(OKXFrameRecorder.class);
+    static final String FILE_PREFIX = "okx-ws-";
+    static final String FILE_SUFFIX = ".rec.gz";
+    private static final String PART_SUFFIX = ".part";
+    private static final DateTimeFormatter FILE_TIME =
+            DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS").withZone(ZoneOffset.UTC);
+    private static final long FLUSH_INTERVAL_MS = 5_000L;
+    private static final long STATS_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+    private static final int DRAIN_BATCH = 4096;
+    private static final int IO_BUFFER = 64 * 1024;
+
+    @ConfigProperty(name = "okx.recording.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "okx.recording.dir", defaultValue = "./recordings")
+    String dir;
+
+    @ConfigProperty(name = "okx.recording.rotateMinutes", defaultValue = "60")
+    long rotateMinutes;
+
+    @ConfigProperty(name = "okx.recording.rotateMb", defaultValue = "256")
+    long rotateMb;
+
+    @ConfigProperty(name = "okx.recording.maxFiles", defaultValue = "168")
+    int maxFiles;
+
+    @ConfigProperty(name = "okx.recording.queueCapacity", defaultValue = "100000")
+    int queueCapacity;
+
+    private record Entry(long receivedMs, String frame) {
+    }
+
+    private BlockingQueue<Entry> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // Состояние текущего файла — только в потоке записи
+    private Path directory;
+    private Path partFile;
+    private Writer writer;
+    private long fileOpenedMs;
+    private long fileBytes;
+    private long lastFlushMs;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long statsFromNanos = System.nanoTime();
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        directory = Path.of(dir);
+        try {
+            Files.createDirectories(directory);
+            recoverParts();
+        } catch (IOException e) {
+            LOG.errorf(e, "❌ Каталог записи %s недоступен, запись кадров отключена", directory);
+            enabled = false;
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "okx-ws-recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        LOG.infof("🎙️ Запись кадров WebSocket в %s: новый файл раз в %d мин или после %d МБ, хранится файлов: %d",
+                directory.toAbsolutePath(), rotateMinutes, rotateMb, maxFiles);
+    }
+
+    /**
+     * Записать кадр с текущим временем приёма. Не блокирует: при полной очереди кадр теряется.
+     */
+    public void record(String frame) {
+        if (!enabled) {
+            return;
+        }
+        if (!queue.offer(new Entry(System.currentTimeMillis(), frame))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH);
+        while (running || !queue.isEmpty()) {
+            try {
+                Entry first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, DRAIN_BATCH - 1);
+                    for (Entry entry : batch) {
+                        write(entry);
+                    }
+                    recorded.addAndGet(batch.size());
+                    batch.clear();
+                }
+                long now = System.currentTimeMillis();
+                if (writer != null && now - lastFlushMs >= FLUSH_INTERVAL_MS) {
+                    writer.flush();
+                    lastFlushMs = now;
+                }
+                logStats();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (IOException e) {
+                LOG.errorf(e, "❌ Ошибка записи кадров в %s, файл закрывается", partFile);
+                batch.clear();
+                closeFile();
+            }
+        }
+        closeFile();
+    }
+
+    private void write(Entry entry) throws IOException {
+        if (writer != null && (entry.receivedMs() - fileOpenedMs >= TimeUnit.MINUTES.toMillis(rotateMinutes)
+                || fileBytes >= rotateMb * 1024 * 1024)) {
+            closeFile();
+        }
+        if (writer == null) {
+            openFile(entry.receivedMs());
+        }
+        String line = entry.receivedMs() + "\t" + entry.frame() + "\n";
+        writer.write(line);
+        fileBytes += line.length();
+    }
+
+    private void openFile(long receivedMs) throws IOException {
+        long nameMs = receivedMs;
+        Path target;
+        do {
+            target = directory.resolve(FILE_PREFIX + FILE_TIME.format(Instant.ofEpochMilli(nameMs++)) + FILE_SUFFIX);
+        } while (Files.exists(target) || Files.exists(part(target)));
+
+        partFile = part(target);
+        // syncFlush: каждый flush дописывает полный gzip-блок, и файл читается до последнего сброса
+        writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(partFile), IO_BUFFER, true), StandardCharsets.UTF_8), IO_BUFFER);
+        fileOpenedMs = receivedMs;
+        fileBytes = 0;
+        lastFlushMs = System.currentTimeMillis();
+        LOG.debugf("🎙️ Новый файл записи %s", target.getFileName());
+    }
+
+    private void closeFile() {
+        if (writer == null) {
+            return;
+        }
+        Path target = directory.resolve(partFile.getFileName().toString().replace(PART_SUFFIX, ""));
+        try {
+            writer.close();
+            Files.move(partFile, target, StandardCopyOption.ATOMIC_MOVE);
+            LOG.infof("💾 Файл записи %s закрыт: %d МБ кадров", target.getFileName(), fileBytes / (1024 * 1024));
+        } catch (IOException e) {
+            LOG.errorf(e, "❌ Не удалось закрыть файл записи %s", partFile);
+        } finally {
+            writer = null;
+            partFile = null;
+        }
+        deleteExpired();
+    }
+
+    private void deleteExpired() {
+        List<Path> files = listRecordings(directory);
+        for (int i = 0; i < files.size() - maxFiles; i++) {
+            try {
+                Files.deleteIfExists(files.get(i));
+                LOG.infof("🗑️ Удалён старый файл записи %s", files.get(i).getFileName());
+            } catch (IOException e) {
+                LOG.warnf("⚠️ Не удалось удалить файл записи %s: %s", files.get(i), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Файлы, оставшиеся недописанными после аварийной остановки, читаются до последнего сброса
+     */
+    private void recoverParts() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : paths.filter(p -> p.getFileName().toString().endsWith(FILE_SUFFIX + PART_SUFFIX)).toList()) {
+                Path target = directory.resolve(path.getFileName().toString().replace(PART_SUFFIX, ""));
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+                LOG.warnf("⚠️ Недописанный файл записи восстановлен: %s", target.getFileName());
+            }
+        }
+    }
+
+    /**
+     * Закрытые файлы записи каталога в порядке записи
+     */
+    static List<Path> listRecordings(Path directory) {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            LOG.warnf("⚠️ Не удалось прочитать каталог записи %s: %s", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private static Path part(Path target) {
+        return target.resolveSibling(target.getFileName() + PART_SUFFIX);
+    }
+
+    private void logStats() {
+        long now = System.nanoTime();
+        if (now - statsFromNanos < STATS_LOG_INTERVAL_NS) {
+            return;
+        }
+        statsFromNanos = now;
+        long lost = dropped.getAndSet(0);
+        if (lost > 0) {
+            LOG.warnf("⚠️ Запись кадров: очередь переполнена, потеряно кадров: %d (записано всего: %d)", lost, recorded.get());
+        } else {
+            LOG.debugf("🎙️ Запись кадров: записано всего %d, в очереди %d", recorded.get(), queue.size());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(FLUSH_INTERVAL_MS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
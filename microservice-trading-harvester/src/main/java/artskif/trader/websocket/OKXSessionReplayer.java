@@ -0,0 +1,359 @@
+package artskif.trader.websocket;
+
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.entity.Candle;
+import artskif.trader.kafka.CandleSnapshotPublisher;
+import artskif.trader.kafka.KafkaProducer;
+import artskif.trader.repository.CandleRepository;
+import io.quarkus.runtime.Startup;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Воспроизведение записанной сессии OKX WebSocket ({@link OKXFrameRecorder}) в Kafka-топики свечей.
+ *
+ * Кадры читаются из {@code okx.replay.path} (файл или каталог записи) в порядке имён файлов и строк и публикуются
+ * одним потоком через {@link OKXCandlesWebSocketClient#replayFrame} — те же топики, заголовок okx-confirm и снимок,
+ * но без конфляции и без очереди с отбрасыванием, поэтому последовательность сообщений не зависит от темпа и брокера.
+ * Неподтверждённых кадров не больше {@code okx.replay.maxInFlight}; опубликованным считается только кадр,
+ * подтверждённый Kafka, а ошибка отправки останавливает воспроизведение. Темп задаёт {@code okx.replay.speed}:
+ * 1 — как при записи, N — в N раз быстрее, 0 — без пауз.
+ *
+ * Перед сессией history-топики прогреваются подтверждёнными свечами из БД, закончившимися до начала записи, —
+ * анализатор в режиме воспроизведения (analysis.replay.enabled) собирает из них live-буферы. Кадры сессии
+ * отправляются только после подтверждения всего прогрева; последняя страница каждой пары инструмент/таймфрейм
+ * помечена isLast (даже пустая), и до неё анализатор придерживает живые свечи этого таймфрейма.
+ * Воспроизведение запускается только при выключенном WebSocket: смешивать запись с живым потоком нельзя.
+ */
+@Startup
+@ApplicationScoped
+public class OKXSessionReplayer {
+
+    private static final Logger LOG = Logger.getLogger(OKXSessionReplayer.class);
+    private static final long PROGRESS_LOG_INTERVAL_NS = TimeUnit.MINUTES.toNanos(1);
+
+    @ConfigProperty(name = "okx.replay.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "okx.replay.path", defaultValue = "./recordings")
+    String path;
+
+    @ConfigProperty(name = "okx.replay.speed", defaultValue = "1")
+    double speed;
+
+    @ConfigProperty(name = "okx.replay.fromEpochMs", defaultValue = "0")
+    long fromEpochMs;
+
+    @ConfigProperty(name = "okx.replay.toEpochMs", defaultValue = "0")
+    long toEpochMs;
+
+    @ConfigProperty(name = "okx.replay.warmup", defaultValue = "true")
+    boolean warmup;
+
+    @ConfigProperty(name = "okx.replay.maxInFlight", defaultValue = "64")
+    int maxInFlight;
+
+    @ConfigProperty(name = "okx.websocket.enabled", defaultValue = "true")
+    boolean websocketEnabled;
+
+    @ConfigProperty(name = "okx.websocket.instruments", defaultValue = "BTC-USDT-SWAP")
+    List<String> instruments;
+
+    @ConfigProperty(name = "okx.websocket.channels", defaultValue = "candle1m,candle5m,candle1H,candle4H,candle1W")
+    List<String> channels;
+
+    @ConfigProperty(name = "okx.history.limit", defaultValue = "300")
+    int pageSize;
+
+    @Inject
+    OKXCandlesWebSocketClient client;
+
+    @Inject
+    KafkaProducer producer;
+
+    @Inject
+    CandleSnapshotPublisher snapshotPublisher;
+
+    @Inject
+    CandleRepository candleRepository;
+
+    private Thread replayThread;
+
+    // Отправленные и ещё не подтверждённые кадры, в порядке отправки — только в потоке воспроизведения
+    private final Deque<CompletableFuture<Void>> inFlight = new ArrayDeque<>();
+
+    // Счётчики пишутся только в потоке воспроизведения
+    private volatile long published;
+    private volatile long skipped;
+    private long firstTs = -1;
+    private long lastTs = -1;
+    private long startNanos;
+    private long progressFromNanos;
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        if (websocketEnabled) {
+            LOG.error("❌ Воспроизведение записи отключено: сначала выключите живой поток (okx.websocket.enabled=false)");
+            return;
+        }
+        replayThread = new Thread(this::run, "okx-replay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    void run() {
+        List<Path> files = files();
+        if (files.isEmpty()) {
+            LOG.warnf("⚠️ Файлы записи не найдены: %s", path);
+            return;
+        }
+        LOG.infof("▶️ Воспроизведение записи: файлов %d, скорость %s", files.size(),
+                speed > 0 ? speed + "x" : "максимальная");
+
+        try {
+            if (warmup) {
+                warmUp(fromEpochMs > 0 ? fromEpochMs : firstTimestamp(files.get(0)));
+            }
+
+            startNanos = System.nanoTime();
+            progressFromNanos = startNanos;
+            for (Path file : files) {
+                if (!replay(file)) {
+                    break;
+                }
+            }
+            while (!inFlight.isEmpty()) {
+                awaitOldest();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("⏹️ Воспроизведение прервано");
+        } catch (ExecutionException e) {
+            LOG.errorf(e.getCause(), "❌ Kafka не подтвердила отправку, воспроизведение остановлено");
+        } catch (IOException e) {
+            LOG.errorf(e, "❌ Ошибка чтения записи");
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long sessionMs = firstTs < 0 ? 0 : lastTs - firstTs;
+        LOG.infof("⏹️ Воспроизведение завершено: опубликовано кадров %d, пропущено %d, сессия %s - %s (%d с) за %d мс (x%.1f)",
+                published, skipped, firstTs < 0 ? "N/A" : Instant.ofEpochMilli(firstTs),
+                lastTs < 0 ? "N/A" : Instant.ofEpochMilli(lastTs), sessionMs / 1000, elapsedMs,
+                elapsedMs > 0 ? (double) sessionMs / elapsedMs : 0.0);
+    }
+
+    /**
+     * @return false, если достигнута граница toEpochMs и дальше читать не нужно
+     */
+    private boolean replay(Path file) throws IOException, InterruptedException, ExecutionException {
+        LOG.infof("📼 Воспроизводится %s", file.getFileName());
+        TruncatedGzipGuard guard = new TruncatedGzipGuard(file);
+        try (BufferedReader reader = reader(guard)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                // Кадр — JSON-объект; строка без '}' в конце — обрывок из недописанного файла
+                if (tab <= 0 || !line.endsWith("}")) {
+                    skipped++;
+                    continue;
+                }
+                long ts = Long.parseLong(line, 0, tab, 10);
+                if (ts < fromEpochMs) {
+                    continue;
+                }
+                if (toEpochMs > 0 && ts > toEpochMs) {
+                    return false;
+                }
+                if (firstTs < 0) {
+                    firstTs = ts;
+                }
+                lastTs = ts;
+
+                pace(ts);
+                CompletableFuture<Void> acked = client.replayFrame(line.substring(tab + 1));
+                if (acked == null) {
+                    skipped++;
+                } else {
+                    inFlight.addLast(acked);
+                    if (inFlight.size() >= maxInFlight) {
+                        awaitOldest();
+                    }
+                }
+                logProgress(ts);
+            }
+        }
+        if (guard.truncated) {
+            LOG.warnf("⚠️ Файл %s оборван, воспроизведено до последнего сброса записи", file.getFileName());
+        }
+        return true;
+    }
+
+    /**
+     * Дождаться подтверждения самого раннего отправленного кадра
+     *
+     * @throws ExecutionException если Kafka отклонила кадр
+     */
+    private void awaitOldest() throws InterruptedException, ExecutionException {
+        inFlight.pollFirst().get();
+        published++;
+    }
+
+    /**
+     * Ждать момента кадра по часам записи, сжатым в speed раз
+     */
+    private void pace(long ts) throws InterruptedException {
+        if (speed <= 0) {
+            return;
+        }
+        long dueNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(ts - firstTs) / speed);
+        long waitNanos;
+        while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(waitNanos);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    /**
+     * Прогрев history-топиков: по каждой подписке — свечи, закончившиеся до начала сессии,
+     * в глубину снимка (не меньше live-буфера анализатора). Возвращается после подтверждения всех страниц.
+     * Последняя страница пары помечена isLast; если свечей нет, уходит одна пустая страница с isLast.
+     */
+    private void warmUp(long sessionStartMs) throws InterruptedException, ExecutionException {
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        for (String instId : instruments) {
+            for (String channel : channels) {
+                CandleTimeframe timeframe = CandleTimeframe.fromChannel(channel);
+                if (timeframe == null) {
+                    continue;
+                }
+                Instant until = Instant.ofEpochMilli(sessionStartMs).minus(timeframe.getDuration());
+                List<Candle> candles = candleRepository.findLatestConfirmedUntil(
+                        instId, timeframe.name(), until, snapshotPublisher.depth(timeframe));
+                String topic = "okx-candle-" + timeframe.getBar().toLowerCase() + "-history";
+                int from = 0;
+                do {
+                    List<Candle> page = candles.subList(from, Math.min(candles.size(), from + pageSize));
+                    boolean isLast = from + pageSize >= candles.size();
+                    sent.add(producer.sendAcked(topic, instId, payload(instId, isLast, page)));
+                    from += pageSize;
+                } while (from < candles.size());
+                LOG.infof("🔥 Прогрев %s %s: %d свечей до %s", instId, timeframe, candles.size(), until);
+            }
+        }
+        for (CompletableFuture<Void> page : sent) {
+            page.get();
+        }
+        LOG.infof("🔥 Прогрев подтверждён Kafka: страниц %d", sent.size());
+    }
+
+    private static String payload(String instId, boolean isLast, List<Candle> page) {
+        List<String> rows = new ArrayList<>(page.size());
+        page.forEach(candle -> rows.add(CandleSnapshotPublisher.row(candle)));
+        return "{\"instId\":\"" + instId + "\",\"isLast\":" + isLast + ",\"data\":[" + String.join(",", rows) + "]}";
+    }
+
+    private List<Path> files() {
+        Path source = Path.of(path);
+        return Files.isDirectory(source) ? OKXFrameRecorder.listRecordings(source) : List.of(source);
+    }
+
+    private static long firstTimestamp(Path file) throws IOException {
+        try (BufferedReader reader = reader(new TruncatedGzipGuard(file))) {
+            String line = reader.readLine();
+            int tab = line == null ? -1 : line.indexOf('\t');
+            if (tab <= 0) {
+                throw new IOException("Пустой или повреждённый файл записи " + file);
+            }
+            return Long.parseLong(line, 0, tab, 10);
+        }
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * Gzip без завершающего блока (файл после аварийной остановки записи) читается до конца как обычный:
+     * обрыв превращается в конец потока, и уже распакованные строки не теряются в буфере читателя
+     */
+    private static final class TruncatedGzipGuard extends FilterInputStream {
+        boolean truncated;
+
+        TruncatedGzipGuard(Path file) throws IOException {
+            super(new GZIPInputStream(Files.newInputStream(file), 64 * 1024));
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (EOFException e) {
+                truncated = true;
+                return -1;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (EOFException e) {
+                truncated = true;
+                return -1;
+            }
+        }
+    }
+
+    long getPublished() {
+        return published;
+    }
+
+    long getSkipped() {
+        return skipped;
+    }
+
+    private void logProgress(long ts) {
+        long now = System.nanoTime();
+        if (now - progressFromNanos < PROGRESS_LOG_INTERVAL_NS) {
+            return;
+        }
+        progressFromNanos = now;
+        LOG.infof("⏩ Воспроизведение: опубликовано кадров %d, позиция сессии %s", published, Instant.ofEpochMilli(ts));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (replayThread != null) {
+            replayThread.interrupt();
+        }
+    }
+}
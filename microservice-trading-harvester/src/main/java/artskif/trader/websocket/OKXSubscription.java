@@ -0,0 +1,22 @@
+package artskif.trader.websocket;
+
+/**
+ * Подписка на свечной канал OKX для одного инструмента
+ *
+ * @param channel канал OKX (например "candle1m", "candle4H")
+ * @param instId  инструмент (например "BTC-USDT-SWAP")
+ */
+public record OKXSubscription(String channel, String instId) {
+
+    /**
+     * Элемент массива args в запросе subscribe/unsubscribe
+     */
+    String toArg() {
+        return "{\"channel\":\"" + channel + "\",\"instId\":\"" + instId + "\"}";
+    }
+
+    @Override
+    public String toString() {
+        return channel + ":" + instId;
+    }
+}
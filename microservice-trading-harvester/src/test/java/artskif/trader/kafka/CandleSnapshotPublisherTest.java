@@ -0,0 +1,128 @@
+package artskif.trader.kafka;
+
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.entity.Candle;
+import artskif.trader.entity.CandleId;
+import artskif.trader.repository.CandleRepository;
+import io.smallrye.reactive.messaging.kafka.Record;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CandleSnapshotPublisherTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long START = 1_700_000_000_000L - 1_700_000_000_000L % MINUTE;
+
+    private final InMemoryEmitter<Record<String, String>> emitter = new InMemoryEmitter<>();
+    private final List<Candle> latest = new ArrayList<>();
+    private CandleSnapshotPublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        publisher = new CandleSnapshotPublisher();
+        publisher.emitter = emitter;
+        publisher.enabled = true;
+        publisher.seedOnStart = true;
+        publisher.defaultDepth = 5;
+        publisher.candleRepository = new CandleRepository() {
+            @Override
+            public List<Candle> findLatestConfirmed(String symbol, String timeframe, int limit) {
+                return latest;
+            }
+        };
+    }
+
+    @Test
+    void consecutiveFramesTombstoneOneExpiredCandleEach() {
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START));
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START + MINUTE));
+
+        assertEquals(List.of(START - 5 * MINUTE, START - 4 * MINUTE), tombstones());
+        assertEquals(List.of(START, START + MINUTE), candles());
+    }
+
+    @Test
+    void skippedBarsTombstoneWholeExpiredRange() {
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START));
+        emitter.sent.clear();
+
+        // Пропущено 3 бара: за глубину вышли свечи START-4 .. START-2, а не только START-2
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START + 3 * MINUTE));
+        assertEquals(List.of(START - 4 * MINUTE, START - 3 * MINUTE, START - 2 * MINUTE), tombstones());
+
+        // После долгого разрыва удаляется всё прошлое окно, но не больше depth свечей
+        emitter.sent.clear();
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START + 100 * MINUTE));
+        assertEquals(List.of(START - MINUTE, START, START + MINUTE, START + 2 * MINUTE, START + 3 * MINUTE), tombstones());
+    }
+
+    @Test
+    void repeatedFrameDoesNotTombstoneAgain() {
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START));
+        emitter.sent.clear();
+
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START));
+        assertEquals(List.of(), tombstones());
+        assertEquals(List.of(START), candles());
+    }
+
+    @Test
+    void seedTombstonesBelowWindowAndContinuesFromNewest() throws Exception {
+        for (int i = 4; i >= 0; i--) {
+            latest.add(candle(START + i * MINUTE));
+        }
+        publisher.seedAsync(List.of("BTC-USDT"), List.of(CandleTimeframe.CANDLE_1M));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.sent.size() < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        publisher.shutdown();
+
+        assertEquals(5, candles().size());
+        List<Long> below = tombstones();
+        assertEquals(5, below.size());
+        assertTrue(below.stream().allMatch(ts -> ts < START && ts >= START - 5 * MINUTE));
+
+        emitter.sent.clear();
+        publisher.publishFrame(CandleTimeframe.CANDLE_1M, frame(START + 5 * MINUTE));
+        assertEquals(List.of(START), tombstones());
+    }
+
+    private List<Long> tombstones() {
+        return emitter.sent.stream().filter(r -> r.value() == null).map(CandleSnapshotPublisherTest::ts).toList();
+    }
+
+    private List<Long> candles() {
+        return emitter.sent.stream().filter(r -> r.value() != null).map(CandleSnapshotPublisherTest::ts).toList();
+    }
+
+    private static long ts(Record<String, String> record) {
+        String key = record.key();
+        return Long.parseLong(key.substring(key.lastIndexOf('|') + 1));
+    }
+
+    private static String frame(long ts) {
+        return "{\"arg\":{\"channel\":\"candle1m\",\"instId\":\"BTC-USDT\"},\"data\":[[\"" + ts
+                + "\",\"1\",\"2\",\"0.5\",\"1.5\",\"10\",\"0\",\"0\",\"1\"]]}";
+    }
+
+    private static Candle candle(long ts) {
+        Candle candle = new Candle();
+        candle.id = new CandleId("BTC-USDT", "CANDLE_1M", Instant.ofEpochMilli(ts));
+        candle.open = BigDecimal.ONE;
+        candle.high = BigDecimal.TWO;
+        candle.low = BigDecimal.ONE;
+        candle.close = BigDecimal.ONE;
+        candle.volume = BigDecimal.TEN;
+        return candle;
+    }
+}
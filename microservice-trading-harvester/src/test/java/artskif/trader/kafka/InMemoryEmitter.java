@@ -0,0 +1,85 @@
+package artskif.trader.kafka;
+
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Message;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Emitter без брокера. Подтверждает отправку сразу или в потоке «брокера», если он задан;
+ * значения запоминаются, только если это нужно тесту (в нагрузочных тестах их миллионы).
+ */
+public class InMemoryEmitter<T> implements Emitter<T> {
+
+    public final List<T> sent = new CopyOnWriteArrayList<>();
+    private final AtomicLong count = new AtomicLong();
+    private final Executor broker;
+    private final boolean keep;
+
+    public InMemoryEmitter() {
+        this(null, true);
+    }
+
+    /**
+     * @param broker поток подтверждений или null — подтверждать сразу в вызывающем потоке
+     * @param keep   запоминать ли отправленные значения
+     */
+    public InMemoryEmitter(Executor broker, boolean keep) {
+        this.broker = broker;
+        this.keep = keep;
+    }
+
+    @Override
+    public CompletionStage<Void> send(T payload) {
+        accept(payload);
+        if (broker == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(() -> {
+        }, broker);
+    }
+
+    @Override
+    public <M extends Message<? extends T>> void send(M message) {
+        accept(message.getPayload());
+        if (broker == null) {
+            message.ack();
+        } else {
+            broker.execute(message::ack);
+        }
+    }
+
+    private void accept(T payload) {
+        count.incrementAndGet();
+        if (keep) {
+            sent.add(payload);
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public void complete() {
+    }
+
+    @Override
+    public void error(Exception e) {
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return false;
+    }
+
+    @Override
+    public boolean hasRequests() {
+        return true;
+    }
+}
@@ -0,0 +1,34 @@
+package artskif.trader.kafka;
+
+/**
+ * Компоненты пакета kafka с настройками без Quarkus — для тестов из других пакетов
+ */
+public final class KafkaFixtures {
+
+    private KafkaFixtures() {
+    }
+
+    /**
+     * Запущенный публикатор; остановить — {@link #shutdown(KafkaBatchPublisher)}
+     */
+    public static KafkaBatchPublisher batchPublisher(int queueCapacity, int maxInFlight, long blockTimeoutMs) {
+        KafkaBatchPublisher publisher = new KafkaBatchPublisher();
+        publisher.queueCapacity = queueCapacity;
+        publisher.batchSize = 256;
+        publisher.maxInFlight = maxInFlight;
+        publisher.emitterBufferSize = maxInFlight;
+        publisher.blockTimeoutMs = blockTimeoutMs;
+        publisher.init();
+        return publisher;
+    }
+
+    public static void shutdown(KafkaBatchPublisher publisher) {
+        publisher.shutdown();
+    }
+
+    public static CandleSnapshotPublisher disabledSnapshotPublisher() {
+        CandleSnapshotPublisher publisher = new CandleSnapshotPublisher();
+        publisher.enabled = false;
+        return publisher;
+    }
+}
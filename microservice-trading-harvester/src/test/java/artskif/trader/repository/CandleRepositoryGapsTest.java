@@ -0,0 +1,143 @@
+package artskif.trader.repository;
+
+import io.quarkus.arc.ClientProxy;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Поиск гапов в БД (TimescaleDB из Dev Services) и сброс проверенной части истории.
+ * У каждого теста свой символ: проверенная часть хранится в репозитории по ключу symbol|tf.
+ */
+@QuarkusTest
+class CandleRepositoryGapsTest {
+
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+    private static final String TF = "1m";
+
+    @Inject
+    CandleRepository repository;
+
+    @Inject
+    EntityManager entityManager;
+
+    @Test
+    void noCandlesGivesSingleOpenGap() {
+        assertGaps(List.of(new TimeGap(START, null)), findGaps("GAPS-EMPTY", START));
+    }
+
+    @Test
+    void headInnerAndTailGapsNewestFirst() {
+        String symbol = "GAPS-ALL";
+        insert(symbol, 5, 9);
+        insert(symbol, 15, 19);
+        insert(symbol, 30, 34);
+
+        assertGaps(List.of(
+                new TimeGap(at(34), null),
+                new TimeGap(at(19), at(30)),
+                new TimeGap(at(9), at(15)),
+                new TimeGap(START, at(5))
+        ), findGaps(symbol, START));
+    }
+
+    @Test
+    void verifiedPartIsSkippedUntilFullRescan() {
+        String symbol = "GAPS-RESCAN";
+        insert(symbol, 0, 9);
+        insert(symbol, 15, 19);
+        List<TimeGap> expected = List.of(new TimeGap(at(19), null), new TimeGap(at(9), at(15)));
+        assertGaps(expected, findGaps(symbol, START));
+
+        // Удаление внутри проверенной части не меняет её границ: повторный поиск начинается с неё и разрыв не видит
+        delete(symbol, 3);
+        assertGaps(expected, findGaps(symbol, START));
+
+        CandleRepository target = ClientProxy.unwrap(repository);
+        long fullRescanMinutes = target.fullRescanMinutes;
+        target.fullRescanMinutes = 0;
+        try {
+            assertGaps(List.of(
+                    new TimeGap(at(19), null),
+                    new TimeGap(at(9), at(15)),
+                    new TimeGap(at(2), at(4))
+            ), findGaps(symbol, START));
+        } finally {
+            target.fullRescanMinutes = fullRescanMinutes;
+        }
+    }
+
+    @Test
+    void droppedEarliestCandleResetsVerifiedPart() {
+        String symbol = "GAPS-RETENTION";
+        insert(symbol, 0, 9);
+        assertGaps(List.of(new TimeGap(at(9), null)), findGaps(symbol, START));
+
+        // Retention срезал начало истории: проверенная часть сбрасывается, появляется гап до startBoundary
+        delete(symbol, 0);
+        delete(symbol, 1);
+        delete(symbol, 2);
+        assertGaps(List.of(new TimeGap(at(9), null), new TimeGap(START, at(3))), findGaps(symbol, START));
+    }
+
+    @Test
+    void changedStartBoundaryResetsVerifiedPart() {
+        String symbol = "GAPS-BOUNDARY";
+        insert(symbol, 5, 9);
+        assertGaps(List.of(new TimeGap(at(9), null)), findGaps(symbol, at(5)));
+
+        delete(symbol, 7);
+        assertGaps(List.of(new TimeGap(at(9), null)), findGaps(symbol, at(5)));
+        assertGaps(List.of(new TimeGap(at(9), null), new TimeGap(at(6), at(8))), findGaps(symbol, at(4)));
+    }
+
+    private List<TimeGap> findGaps(String symbol, Instant startBoundary) {
+        return repository.findAllGaps(symbol, TF, MINUTE, startBoundary.toEpochMilli());
+    }
+
+    private static Instant at(int minute) {
+        return START.plus(MINUTE.multipliedBy(minute));
+    }
+
+    private static void assertGaps(List<TimeGap> expected, List<TimeGap> actual) {
+        assertEquals(expected.stream().map(TimeGap::toString).toList(), actual.stream().map(TimeGap::toString).toList());
+    }
+
+    /**
+     * Сплошной ряд минутных свечей с fromMinute по toMinute включительно
+     */
+    private void insert(String symbol, int fromMinute, int toMinute) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int minute = fromMinute; minute <= toMinute; minute++) {
+                entityManager.createNativeQuery("""
+                                INSERT INTO candles (symbol, tf, ts, open, high, low, close, volume, confirmed)
+                                VALUES (:symbol, :tf, :ts, 1, 1, 1, 1, 1, true)
+                                """)
+                        .setParameter("symbol", symbol)
+                        .setParameter("tf", TF)
+                        .setParameter("ts", LocalDateTime.ofInstant(at(minute), ZoneOffset.UTC))
+                        .executeUpdate();
+            }
+        });
+    }
+
+    private void delete(String symbol, int minute) {
+        QuarkusTransaction.requiringNew().run(() -> entityManager
+                .createNativeQuery("DELETE FROM candles WHERE symbol = :symbol AND tf = :tf AND ts = :ts")
+                .setParameter("symbol", symbol)
+                .setParameter("tf", TF)
+                .setParameter("ts", LocalDateTime.ofInstant(at(minute), ZoneOffset.UTC))
+                .executeUpdate());
+    }
+}
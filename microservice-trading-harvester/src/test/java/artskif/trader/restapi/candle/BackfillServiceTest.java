@@ -0,0 +1,177 @@
+package artskif.trader.restapi.candle;
+
+import artskif.trader.api.dto.BackfillAck;
+import artskif.trader.api.dto.BackfillCommand;
+import artskif.trader.repository.TimeGap;
+import artskif.trader.restapi.config.OKXCommonConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BackfillServiceTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private record Submission(HarvestJob job, List<TimeGap> gaps) {
+    }
+
+    private final BlockingQueue<Submission> submissions = new LinkedBlockingQueue<>();
+    private BackfillService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BackfillService();
+        service.commonConfig = new OKXCommonConfig() {
+            @Override
+            public int getLimit() {
+                return 100;
+            }
+        };
+        service.harvestScheduler = new HarvestScheduler() {
+            @Override
+            void submit(HarvestJob job, List<TimeGap> gaps) {
+                submissions.add(new Submission(job, gaps));
+            }
+        };
+        service.mergeWindowMs = 50;
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void overlappingCommandsAreMergedIntoOneJob() throws Exception {
+        service.submit(command("a", "BTC-USDT", 0, 10 * HOUR, 5));
+        service.submit(command("b", "BTC-USDT", 5 * HOUR, 20 * HOUR, 5));
+        // Вложенный диапазон не расширяет объединённый
+        service.submit(command("c", "BTC-USDT", 2 * HOUR, 3 * HOUR, 5));
+
+        List<Submission> launched = awaitSubmissions(1);
+        assertEquals(1, launched.get(0).gaps().size());
+        assertEquals(0L, launched.get(0).gaps().get(0).getStartEpochMs());
+        assertEquals(20 * HOUR, launched.get(0).gaps().get(0).getEndEpochMs());
+        assertEquals("BTC-USDT", launched.get(0).job().getConfig().instId());
+        assertEquals(0L, launched.get(0).job().getConfig().startEpochMs());
+    }
+
+    @Test
+    void adjacentWithinOneCandleAreMergedFartherAreNot() throws Exception {
+        service.submit(command("a", "BTC-USDT", 0, 10 * HOUR, 5));
+        service.submit(command("b", "BTC-USDT", 11 * HOUR, 20 * HOUR, 5));
+        service.submit(command("c", "BTC-USDT", 22 * HOUR, 30 * HOUR, 5));
+
+        List<Submission> launched = awaitSubmissions(2);
+        launched.sort(Comparator.comparingLong(s -> s.gaps().get(0).getStartEpochMs()));
+        assertEquals(0L, launched.get(0).gaps().get(0).getStartEpochMs());
+        assertEquals(20 * HOUR, launched.get(0).gaps().get(0).getEndEpochMs());
+        assertEquals(22 * HOUR, launched.get(1).gaps().get(0).getStartEpochMs());
+        assertEquals(30 * HOUR, launched.get(1).gaps().get(0).getEndEpochMs());
+    }
+
+    @Test
+    void mergedRangeTakesHighestPriorityAndOutranksScheduledHarvest() throws Exception {
+        service.submit(command("a", "BTC-USDT", 0, 10 * HOUR, 7));
+        service.submit(command("b", "BTC-USDT", 5 * HOUR, 20 * HOUR, 2));
+        service.submit(command("c", "BTC-USDT", 40 * HOUR, 50 * HOUR, 9));
+
+        List<Submission> launched = awaitSubmissions(2);
+        launched.sort(Comparator.comparingLong(s -> s.gaps().get(0).getStartEpochMs()));
+        int merged = launched.get(0).job().getPriority();
+        int single = launched.get(1).job().getPriority();
+        assertEquals(7, single - merged);
+        assertTrue(single < 0, "команды дозагрузки идут раньше плановых синхронизаций с приоритетом от 0");
+    }
+
+    @Test
+    void differentInstrumentsAreNotMerged() throws Exception {
+        service.submit(command("a", "BTC-USDT", 0, 10 * HOUR, 5));
+        service.submit(command("b", "ETH-USDT", 0, 10 * HOUR, 5));
+
+        List<Submission> launched = awaitSubmissions(2);
+        assertEquals(2, launched.stream().map(s -> s.job().getConfig().instId()).distinct().count());
+    }
+
+    @Test
+    void repeatedRequestIdJoinsRunningAndReturnsCompletedAck() throws Exception {
+        BackfillCommand command = command("a", "BTC-USDT", 0, 10 * HOUR, 5);
+        CompletableFuture<BackfillAck> first = service.submit(command);
+        assertSame(first, service.submit(command));
+
+        Submission launched = awaitSubmissions(1).get(0);
+        launched.job().pageLoaded(10);
+        launched.job().complete();
+        BackfillAck ack = first.get(1, TimeUnit.SECONDS);
+        assertEquals(BackfillAck.Status.DONE, ack.status());
+        assertEquals(1, ack.pages());
+        assertEquals(10, ack.candles());
+
+        CompletableFuture<BackfillAck> repeated = service.submit(command);
+        assertTrue(repeated.isDone());
+        assertEquals(ack, repeated.get());
+        assertNull(submissions.poll(200, TimeUnit.MILLISECONDS), "повтор выполненной команды не запускает загрузку");
+    }
+
+    @Test
+    void failedPagesAckFailedAndRequestCanBeRetried() throws Exception {
+        BackfillCommand command = command("a", "BTC-USDT", 0, 10 * HOUR, 5);
+        CompletableFuture<BackfillAck> result = service.submit(command);
+
+        Submission launched = awaitSubmissions(1).get(0);
+        launched.job().pageLoaded(10);
+        launched.job().pageFailed();
+        launched.job().complete();
+        assertEquals(BackfillAck.Status.FAILED, result.get(1, TimeUnit.SECONDS).status());
+
+        CompletableFuture<BackfillAck> retry = service.submit(command);
+        assertFalse(retry.isDone());
+        assertNotNull(submissions.poll(1, TimeUnit.SECONDS), "неудачная команда выполняется заново");
+    }
+
+    @Test
+    void cancelledJobAcksCancelled() throws Exception {
+        CompletableFuture<BackfillAck> result = service.submit(command("a", "BTC-USDT", 0, 10 * HOUR, 5));
+        awaitSubmissions(1).get(0).job().cancel();
+        assertEquals(BackfillAck.Status.CANCELLED, result.get(1, TimeUnit.SECONDS).status());
+    }
+
+    @Test
+    void invalidCommandIsRejected() throws Exception {
+        assertEquals(BackfillAck.Status.REJECTED, service.submit(command("a", "BTC-USDT", 10 * HOUR, 10 * HOUR, 5)).get().status());
+        assertEquals(BackfillAck.Status.REJECTED, service.submit(
+                new BackfillCommand("b", "BTC-USDT", "CANDLE_2H", 0, HOUR, 5)).get().status());
+        assertNull(submissions.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private List<Submission> awaitSubmissions(int count) throws InterruptedException {
+        List<Submission> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Submission submission = submissions.poll(2, TimeUnit.SECONDS);
+            assertNotNull(submission, "загрузка не запущена");
+            result.add(submission);
+        }
+        assertNull(submissions.poll(200, TimeUnit.MILLISECONDS), "запущено больше загрузок, чем ожидалось");
+        return result;
+    }
+
+    private static BackfillCommand command(String requestId, String symbol, long fromMs, long toMs, int priority) {
+        return new BackfillCommand(requestId, symbol, "CANDLE_1H", fromMs, toMs, priority);
+    }
+}
@@ -0,0 +1,206 @@
+package artskif.trader.restapi.candle;
+
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.kafka.KafkaProducer;
+import artskif.trader.repository.TimeGap;
+import artskif.trader.restapi.config.OKXCommonConfig;
+import artskif.trader.restapi.core.CandlePage;
+import artskif.trader.restapi.core.CandleRequest;
+import artskif.trader.restapi.core.CryptoRestApiClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Планировщик со стабом REST клиента: ответы на запросы отдаёт тест, обработка идёт в его потоке
+ */
+class HarvestSchedulerTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long T0 = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    // limit 100 свечей 1m и сегмент в одну страницу: сегмент — 100 минут
+    private static final int LIMIT = 100;
+
+    private record Call(CandleRequest request, CompletableFuture<Optional<CandlePage>> response) {
+    }
+
+    private final List<Call> calls = new ArrayList<>();
+    private final List<String> sent = new ArrayList<>();
+    private HarvestScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new HarvestScheduler();
+        scheduler.parallelism = 2;
+        scheduler.commonConfig = new OKXCommonConfig() {
+            @Override
+            public int getSegmentPages() {
+                return 1;
+            }
+        };
+        scheduler.kafkaProducer = new KafkaProducer() {
+            @Override
+            public void sendMessage(String topic, String key, String message) {
+                sent.add(message);
+            }
+        };
+        scheduler.apiClient = new CryptoRestApiClient<>() {
+            @Override
+            public CompletableFuture<Optional<CandlePage>> fetchCandles(CandleRequest request) {
+                Call call = new Call(request, new CompletableFuture<>());
+                calls.add(call);
+                return call.response();
+            }
+
+            @Override
+            public String getProviderName() {
+                return "stub";
+            }
+        };
+    }
+
+    @Test
+    void onlyParallelismSegmentsRunAndFreedSlotStartsNext() {
+        HarvestJob job = job(0);
+        scheduler.submit(job, List.of(gap(0, 450)));
+
+        // Пять сегментов по 100 минут (верхняя граница следующего — нижняя предыдущего + 1 мс),
+        // слотов два: запрошены два самых свежих
+        assertEquals(2, calls.size());
+        assertEquals(T0 + 450 * MINUTE, calls.get(0).request().getBefore());
+        assertEquals(T0 + 350 * MINUTE + 1, calls.get(1).request().getBefore());
+
+        complete(0);
+        assertEquals(3, calls.size());
+        assertEquals(T0 + 250 * MINUTE + 2, calls.get(2).request().getBefore());
+
+        complete(1);
+        complete(2);
+        complete(3);
+        complete(4);
+        assertEquals(5, calls.size());
+        assertEquals(5, job.getPagesLoaded());
+        assertTrue(job.whenDone().isDone());
+        assertEquals(0, job.getFailedPages());
+        // isLast — только у последней страницы запуска
+        assertEquals(1, sent.stream().filter(message -> message.contains("\"isLast\":true")).count());
+        assertTrue(sent.get(sent.size() - 1).contains("\"isLast\":true"));
+    }
+
+    @Test
+    void higherPriorityJobTakesNextFreeSlot() {
+        HarvestJob planned = job(5);
+        scheduler.submit(planned, List.of(gap(0, 450)));
+        HarvestJob backfill = job(-1);
+        scheduler.submit(backfill, List.of(gap(1000, 1100)));
+        assertEquals(2, calls.size());
+
+        complete(0);
+
+        assertEquals(3, calls.size());
+        assertEquals(T0 + 1100 * MINUTE, calls.get(2).request().getBefore());
+        complete(2);
+        assertTrue(backfill.whenDone().isDone());
+        assertFalse(planned.whenDone().isDone());
+
+        // Дальше снова плановые сегменты, от свежих к старым
+        assertEquals(T0 + 250 * MINUTE + 2, calls.get(3).request().getBefore());
+    }
+
+    @Test
+    void pageContinuesFromCursorInsideSegment() {
+        HarvestJob job = job(0);
+        scheduler.submit(job, List.of(gap(0, 100)));
+
+        // Страница не дошла до нижней границы — следующий запрос сразу с курсора, без возврата в очередь
+        respond(0, T0 + 60 * MINUTE);
+        assertEquals(2, calls.size());
+        assertEquals(T0 + 60 * MINUTE - 1, calls.get(1).request().getBefore());
+        assertEquals(T0, calls.get(1).request().getAfter());
+
+        complete(1);
+        assertTrue(job.whenDone().isDone());
+        assertEquals(2, job.getPagesLoaded());
+    }
+
+    @Test
+    void failedPagesAreCountedAndReleaseTheirSlot() {
+        HarvestJob job = job(0);
+        scheduler.submit(job, List.of(gap(0, 250)));
+        assertEquals(2, calls.size());
+
+        // Ответ без страницы (повторы исчерпаны) и ошибка клиента — обе страницы не загружены
+        calls.get(0).response().complete(Optional.empty());
+        calls.get(1).response().completeExceptionally(new RuntimeException("boom"));
+
+        assertEquals(3, calls.size());
+        complete(2);
+        assertTrue(job.whenDone().isDone());
+        assertEquals(2, job.getFailedPages());
+        assertEquals(1, job.getPagesLoaded());
+    }
+
+    @Test
+    void requestThatCannotBeSentIsCountedAsFailed() {
+        scheduler.apiClient = new CryptoRestApiClient<>() {
+            @Override
+            public CompletableFuture<Optional<CandlePage>> fetchCandles(CandleRequest request) {
+                throw new IllegalStateException("client closed");
+            }
+
+            @Override
+            public String getProviderName() {
+                return "stub";
+            }
+        };
+        HarvestJob job = job(0);
+
+        scheduler.submit(job, List.of(gap(0, 250)));
+
+        assertTrue(job.whenDone().isDone());
+        assertEquals(3, job.getFailedPages());
+    }
+
+    @Test
+    void pagesLimitClosesRemainingSegmentsWithoutRequests() {
+        HarvestJob job = new HarvestJob("1m", CandleTimeframe.CANDLE_1M, "okx-candle-1m-history", 0,
+                new HarvestConfig("BTC-USDT-SWAP", LIMIT, T0, 2));
+        scheduler.submit(job, List.of(gap(0, 450)));
+
+        complete(0);
+        complete(1);
+
+        assertEquals(2, calls.size());
+        assertTrue(job.whenDone().isDone());
+    }
+
+    private HarvestJob job(int priority) {
+        return new HarvestJob("1m", CandleTimeframe.CANDLE_1M, "okx-candle-1m-history", priority,
+                new HarvestConfig("BTC-USDT-SWAP", LIMIT, T0, 0));
+    }
+
+    private static TimeGap gap(long fromMinutes, long toMinutes) {
+        return new TimeGap(Instant.ofEpochMilli(T0 + fromMinutes * MINUTE), Instant.ofEpochMilli(T0 + toMinutes * MINUTE));
+    }
+
+    /**
+     * Ответить страницей, которая доходит до нижней границы сегмента
+     */
+    private void complete(int call) {
+        respond(call, calls.get(call).request().getAfter());
+    }
+
+    private void respond(int call, long minTs) {
+        long before = calls.get(call).request().getBefore();
+        calls.get(call).response().complete(Optional.of(new CandlePage("[]", 1, before, minTs, minTs)));
+    }
+}
@@ -0,0 +1,135 @@
+package artskif.trader.restapi.core;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Повторы против локального HTTP сервера, который отвечает кодами из очереди (по умолчанию 200)
+ */
+class RetryableHttpClientTest {
+
+    private final Queue<Integer> codes = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger hits = new AtomicInteger();
+    private HttpServer server;
+    private String url;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            Integer queued = codes.poll();
+            int code = queued != null ? queued : 200;
+            byte[] body = ("{\"status\":" + code + "}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/api";
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void backoffGrowsExponentiallyWithEqualJitterAndIsCapped() {
+        RetryableHttpClient client = new RetryableHttpClient(5, 1_000);
+
+        for (int i = 0; i < 200; i++) {
+            assertBetween(client.backoffMs(1), 500, 1_000);
+            assertBetween(client.backoffMs(3), 2_000, 4_000);
+            // 1000 << 5 = 32 с — выше потолка 30 с; сдвиг ограничен, переполнения нет
+            assertBetween(client.backoffMs(6), 15_000, 30_000);
+            assertBetween(client.backoffMs(100), 15_000, 30_000);
+        }
+
+        Set<Long> samples = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(client.backoffMs(4));
+        }
+        assertTrue(samples.size() > 1, "паузы параллельных повторов должны расходиться");
+    }
+
+    @Test
+    void retriesThrottlingAndServerErrorsUntilSuccess() throws Exception {
+        codes.add(429);
+        codes.add(503);
+        codes.add(418);
+
+        Optional<byte[]> body = new RetryableHttpClient(5, 1).executeWithRetry(url).get(10, TimeUnit.SECONDS);
+
+        assertEquals("{\"status\":200}", new String(body.orElseThrow(), StandardCharsets.UTF_8));
+        assertEquals(4, hits.get());
+    }
+
+    @Test
+    void clientErrorIsNotRetried() throws Exception {
+        codes.add(400);
+
+        Optional<byte[]> body = new RetryableHttpClient(5, 1).executeWithRetry(url).get(10, TimeUnit.SECONDS);
+
+        assertTrue(body.isEmpty());
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            codes.add(500);
+        }
+
+        Optional<byte[]> body = new RetryableHttpClient(3, 1).executeWithRetry(url).get(10, TimeUnit.SECONDS);
+
+        assertTrue(body.isEmpty());
+        assertEquals(3, hits.get());
+    }
+
+    @Test
+    void everyAttemptReservesPermitAndWaitsForIt() throws Exception {
+        codes.add(429);
+        codes.add(429);
+        AtomicInteger reserved = new AtomicInteger();
+        // 10 запросов/с без запаса сверх одного: три попытки не быстрее чем за 200 мс
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 1) {
+            @Override
+            public synchronized long reserve() {
+                reserved.incrementAndGet();
+                return super.reserve();
+            }
+        };
+
+        long started = System.nanoTime();
+        Optional<byte[]> body = new RetryableHttpClient(5, 1, limiter).executeWithRetry(url).get(10, TimeUnit.SECONDS);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(body.isPresent());
+        assertEquals(3, reserved.get());
+        assertEquals(3, hits.get());
+        assertTrue(elapsedMs >= 190, "повторы обогнали лимитер: " + elapsedMs + " мс");
+    }
+
+    private static void assertBetween(long value, long min, long max) {
+        assertTrue(value >= min && value <= max, value + " вне [" + min + ", " + max + "]");
+    }
+}
@@ -0,0 +1,71 @@
+package artskif.trader.restapi.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void burstIsAvailableImmediately() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.reserve());
+        }
+        long wait = limiter.reserve();
+        assertTrue(wait > 90 * MS && wait <= 100 * MS, "четвёртое разрешение — через 1/rate: " + wait);
+    }
+
+    @Test
+    void reservationsQueueUpAtConfiguredRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 1);
+
+        assertEquals(0, limiter.reserve());
+        long previousDue = System.nanoTime();
+        for (int k = 1; k <= 20; k++) {
+            long due = System.nanoTime() + limiter.reserve();
+            // Разрешения сверх запаса выдаются друг за другом с шагом 1/rate, сколько бы ни прошло между вызовами
+            assertTrue(Math.abs(due - previousDue - 10 * MS) < MS, "разрешение " + k);
+            previousDue = due;
+        }
+    }
+
+    @Test
+    void acquireHoldsRateOverWindow() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(100, 5);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 55; i++) {
+            limiter.acquire();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        // burst + rate * T >= 55  =>  T >= 0.5 c
+        assertTrue(elapsed >= 490 * MS, "слишком быстро: " + elapsed / MS + " мс");
+        assertTrue(elapsed < 2_000 * MS, "слишком медленно: " + elapsed / MS + " мс");
+    }
+
+    @Test
+    void unusedPermitsAccumulateOnlyUpToBurst() throws InterruptedException {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(1_000, 2);
+
+        Thread.sleep(50);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertTrue(limiter.reserve() > 0);
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucketRateLimiter(1, 0));
+    }
+}
@@ -0,0 +1,123 @@
+package artskif.trader.restapi.okx;
+
+import artskif.trader.restapi.core.CandlePage;
+import artskif.trader.restapi.core.CandleRequest;
+import artskif.trader.restapi.core.RetryableHttpClient;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Разбор страницы history-candles: ответ отдаёт локальный HTTP сервер
+ */
+class OKXHistoryRestApiClientTest {
+
+    private static final String DATA = "[[\"1700000120000\",\"42000.1\",\"42100\",\"41900\",\"42050\",\"12\",\"0.12\",\"5046\",\"1\"],"
+            + "[\"1700000060000\",\"42010\",\"42110\",\"41910\",\"42000.1\",\"7\",\"0.07\",\"2940\",\"1\"],"
+            + "[\"1700000000000\",\"42020\",\"42120\",\"41920\",\"42010\",\"3\",\"0.03\",\"1260\",\"1\"]]";
+
+    private volatile String responseBody;
+    private volatile String lastQuery;
+    private HttpServer server;
+    private OKXHistoryRestApiClient client;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            lastQuery = exchange.getRequestURI().getRawQuery();
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        client = new OKXHistoryRestApiClient("http://127.0.0.1:" + server.getAddress().getPort(),
+                new RetryableHttpClient(1, 1));
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void dataArrayIsSlicedFromBodyAsIs() throws Exception {
+        // Поля после data и вложенные объекты не мешают вырезать массив
+        responseBody = "{\"code\":\"0\",\"msg\":\"\",\"data\":" + DATA + ",\"extra\":{\"a\":[1,2]}}";
+
+        CandlePage page = fetch().orElseThrow();
+
+        assertEquals(DATA, page.data());
+        assertEquals(3, page.size());
+        assertEquals(1_700_000_120_000L, page.firstTs());
+        assertEquals(1_700_000_000_000L, page.lastTs());
+        assertEquals(1_700_000_000_000L, page.minTs());
+    }
+
+    @Test
+    void dataBeforeCodeIsParsedToo() throws Exception {
+        responseBody = "{\"data\":" + DATA + ",\"msg\":\"\",\"code\":\"0\"}";
+
+        CandlePage page = fetch().orElseThrow();
+
+        assertEquals(DATA, page.data());
+        assertEquals(3, page.size());
+    }
+
+    @Test
+    void emptyDataIsEmptyPage() throws Exception {
+        responseBody = "{\"code\":\"0\",\"msg\":\"\",\"data\":[]}";
+
+        CandlePage page = fetch().orElseThrow();
+
+        assertTrue(page.isEmpty());
+        assertEquals("[]", page.data());
+        assertEquals(0, page.minTs());
+    }
+
+    @Test
+    void businessErrorAndMalformedBodyYieldNoPage() throws Exception {
+        responseBody = "{\"code\":\"50011\",\"msg\":\"Too Many Requests\",\"data\":[]}";
+        assertTrue(fetch().isEmpty());
+
+        responseBody = "[1,2,3]";
+        assertTrue(fetch().isEmpty());
+
+        responseBody = "{\"code\":\"0\",\"data\":[[\"1700000000000\",";
+        assertTrue(fetch().isEmpty());
+    }
+
+    @Test
+    void cursorsAreSwappedForOkx() throws Exception {
+        responseBody = "{\"code\":\"0\",\"msg\":\"\",\"data\":[]}";
+
+        fetch();
+
+        // Верхняя граница запроса уходит в after OKX, нижняя — в before
+        assertEquals("instId=BTC-USDT-SWAP&bar=1m&limit=100&before=1000&after=2000", lastQuery);
+    }
+
+    private Optional<CandlePage> fetch() throws Exception {
+        CandleRequest request = CandleRequest.builder()
+                .instId("BTC-USDT-SWAP")
+                .timeframe("1m")
+                .limit(100)
+                .before(2000L)
+                .after(1000L)
+                .build();
+        return client.fetchCandles(request).get(10, TimeUnit.SECONDS);
+    }
+}
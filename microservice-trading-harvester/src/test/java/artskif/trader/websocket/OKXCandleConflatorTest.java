@@ -0,0 +1,128 @@
+package artskif.trader.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Конфляция без потока сброса: время кадров и сброса задаётся тестом
+ */
+class OKXCandleConflatorTest {
+
+    private static final long INTERVAL_MS = 1000;
+    private static final String BTC = "BTC-USDT-SWAP";
+    private static final String ETH = "ETH-USDT-SWAP";
+
+    private final List<String> sent = new ArrayList<>();
+    private final OKXCandleConflator.Sink sink = (instId, frame, confirmed) -> sent.add(instId + " " + frame);
+    private OKXCandleConflator conflator;
+    private long t0;
+
+    @BeforeEach
+    void setUp() {
+        conflator = new OKXCandleConflator();
+        conflator.defaultIntervalMs = INTERVAL_MS;
+        t0 = System.nanoTime();
+    }
+
+    @Test
+    void noneForwardsEveryFrame() {
+        conflator.defaultMode = OKXCandleConflator.Mode.NONE;
+
+        for (int i = 0; i < 5; i++) {
+            conflator.offer("candle1m", BTC, frame(i, false), sink, at(0));
+        }
+
+        assertEquals(5, sent.size());
+        assertEquals(0, conflator.getSuppressed());
+        assertEquals(0, conflator.slotCount());
+    }
+
+    @Test
+    void dropForwardsOnlyConfirmedFrames() {
+        conflator.defaultMode = OKXCandleConflator.Mode.DROP;
+
+        conflator.offer("candle1m", BTC, frame(1, false), sink, at(0));
+        conflator.offer("candle1m", BTC, frame(2, false), sink, at(10));
+        conflator.offer("candle1m", BTC, frame(3, true), sink, at(20));
+        conflator.flush(at(5000));
+
+        assertEquals(List.of(BTC + " " + frame(3, true)), sent);
+        assertEquals(2, conflator.getSuppressed());
+    }
+
+    @Test
+    void intervalForwardsFirstFrameAndLatestAtEndOfInterval() {
+        conflator.defaultMode = OKXCandleConflator.Mode.INTERVAL;
+
+        conflator.offer("candle1m", BTC, frame(1, false), sink, at(0));
+        conflator.offer("candle1m", BTC, frame(2, false), sink, at(100));
+        conflator.offer("candle1m", BTC, frame(3, false), sink, at(200));
+        // Пары конфлируются раздельно
+        conflator.offer("candle1m", ETH, frame(4, false), sink, at(300));
+
+        conflator.flush(at(900));
+        assertEquals(List.of(BTC + " " + frame(1, false), ETH + " " + frame(4, false)), sent);
+
+        conflator.flush(at(1000));
+        assertEquals(BTC + " " + frame(3, false), sent.get(2));
+        assertEquals(3, sent.size());
+        assertEquals(1, conflator.getSuppressed());
+
+        conflator.flush(at(3000));
+        assertEquals(3, sent.size());
+    }
+
+    @Test
+    void confirmedFrameSupersedesPendingOne() {
+        conflator.defaultMode = OKXCandleConflator.Mode.INTERVAL;
+
+        conflator.offer("candle1m", BTC, frame(1, false), sink, at(0));
+        conflator.offer("candle1m", BTC, frame(2, false), sink, at(100));
+        conflator.offer("candle1m", BTC, frame(3, true), sink, at(200));
+        conflator.flush(at(2000));
+
+        assertEquals(List.of(BTC + " " + frame(1, false), BTC + " " + frame(3, true)), sent);
+        assertEquals(1, conflator.getSuppressed());
+    }
+
+    @Test
+    void removeDiscardsSlotAndPendingFrame() {
+        conflator.defaultMode = OKXCandleConflator.Mode.INTERVAL;
+
+        conflator.offer("candle1m", BTC, frame(1, false), sink, at(0));
+        conflator.offer("candle1m", BTC, frame(2, false), sink, at(100));
+        conflator.offer("candle5m", BTC, frame(3, false), sink, at(100));
+        assertEquals(2, conflator.slotCount());
+
+        conflator.remove("candle1m", BTC);
+        conflator.flush(at(5000));
+
+        assertEquals(1, conflator.slotCount());
+        assertFalse(sent.contains(BTC + " " + frame(2, false)));
+        assertEquals(2, sent.size());
+        assertEquals(1, conflator.getSuppressed());
+    }
+
+    @Test
+    void confirmMarkerIsTheLastFieldOfTheRow() {
+        assertTrue(OKXCandleConflator.isConfirmed(frame(1, true)));
+        assertFalse(OKXCandleConflator.isConfirmed(frame(1, false)));
+    }
+
+    private long at(long ms) {
+        return t0 + TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+
+    private static String frame(int i, boolean confirmed) {
+        return "{\"arg\":{\"channel\":\"candle1m\",\"instId\":\"" + BTC + "\"},\"data\":[[\"" + (1_700_000_000_000L + i)
+                + "\",\"1\",\"2\",\"0.5\",\"1.5\",\"10\",\"15\",\"15\",\"" + (confirmed ? 1 : 0) + "\"]]}";
+    }
+}
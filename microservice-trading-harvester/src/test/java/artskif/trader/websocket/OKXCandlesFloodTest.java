@@ -0,0 +1,162 @@
+package artskif.trader.websocket;
+
+import artskif.trader.kafka.InMemoryEmitter;
+import artskif.trader.kafka.KafkaBatchPublisher;
+import artskif.trader.kafka.KafkaFixtures;
+import artskif.trader.kafka.KafkaProducer;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Поток кадров OKX через маршрутизацию и {@link KafkaBatchPublisher} до эмиттера в памяти.
+ * Пороги скорости не проверяются — цифры печатаются для сравнения между запусками; проверяется, что каждый
+ * кадр либо отправлен, либо учтён в потерях.
+ */
+class OKXCandlesFloodTest {
+
+    private static final String[] CHANNELS = {"candle1m", "candle5m", "candle1H", "candle4H", "candle1W"};
+    private static final String[] INSTRUMENTS = {"BTC-USDT-SWAP", "ETH-USDT-SWAP", "SOL-USDT-SWAP", "XRP-USDT-SWAP"};
+
+    private final Map<String, InMemoryEmitter<String>> emitters = new ConcurrentHashMap<>();
+    private final ExecutorService broker = Executors.newSingleThreadExecutor();
+    private final List<Runnable> cleanup = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        cleanup.forEach(Runnable::run);
+        broker.shutdownNow();
+    }
+
+    @Test
+    void routingThroughput() {
+        OKXCandlesWebSocketClient client = client(KafkaFixtures.batchPublisher(16, 16, 0), null);
+        String[] frames = frames(1000);
+        assertNull(client.determineRoute("{\"event\":\"subscribe\",\"arg\":{\"channel\":\"candle1m\"}}"));
+        assertEquals("candle1H", client.determineRoute(frame("candle1H", "BTC-USDT-SWAP", 0, false)).channel());
+
+        int iterations = 5_000_000;
+        long routed = 0;
+        for (int i = 0; i < iterations; i++) {
+            routed += client.determineRoute(frames[i % frames.length]) != null ? 1 : 0;
+        }
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            routed += client.determineRoute(frames[i % frames.length]) != null ? 1 : 0;
+        }
+        long elapsedNs = System.nanoTime() - started;
+        assertEquals(2L * iterations, routed);
+        System.out.printf("Маршрутизация кадра OKX: %.1f нс/кадр (%s %s)%n",
+                (double) elapsedNs / iterations, System.getProperty("java.vm.name"), System.getProperty("java.version"));
+    }
+
+    @Test
+    void floodWithFastBroker() throws Exception {
+        KafkaBatchPublisher publisher = KafkaFixtures.batchPublisher(10_000, 128, 5_000);
+        Result result = flood(client(publisher, null), publisher, 1_000_000);
+
+        assertEquals(0, result.dropped());
+        assertEquals(result.frames(), result.published());
+        System.out.printf("Поток кадров, брокер без задержки: %.0f кадров/с, отправлено %d, отброшено %d%n",
+                result.framesPerSecond(), result.published(), result.dropped());
+    }
+
+    @Test
+    void floodWithSlowBrokerDropsAfterBlockTimeout() throws Exception {
+        // Брокер подтверждает не быстрее ~20 мкс на запись, а поток сокета ждёт места в очереди не дольше 1 мс
+        KafkaBatchPublisher publisher = KafkaFixtures.batchPublisher(1_000, 64, 1);
+        Result result = flood(client(publisher, broker), publisher, 200_000);
+
+        assertTrue(result.dropped() > 0, "медленный брокер должен вызвать отбрасывание кадров");
+        assertEquals(result.frames(), result.published() + result.dropped());
+        System.out.printf("Поток кадров, медленный брокер: %.0f кадров/с, отправлено %d, отброшено %d (%.1f%%)%n",
+                result.framesPerSecond(), result.published(), result.dropped(), 100.0 * result.dropped() / result.frames());
+    }
+
+    private record Result(long frames, long published, long dropped, double framesPerSecond) {
+    }
+
+    private Result flood(OKXCandlesWebSocketClient client, KafkaBatchPublisher publisher, int total) throws InterruptedException {
+        String[] frames = frames(1000);
+        long started = System.nanoTime();
+        for (int i = 0; i < total; i++) {
+            client.onFrame(frames[i % frames.length]);
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (publisher.getPublished() + publisher.getFailed() < publisher.getAccepted() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, publisher.getFailed());
+        assertEquals(total, publisher.getAccepted() + publisher.getDropped());
+        long emitted = emitters.values().stream().mapToLong(InMemoryEmitter::getCount).sum();
+        assertEquals(publisher.getPublished(), emitted);
+        return new Result(total, publisher.getPublished(), publisher.getDropped(), total / seconds);
+    }
+
+    /**
+     * Клиент без сокета: конфляция выключена, запись кадров и снимок отключены
+     */
+    private OKXCandlesWebSocketClient client(KafkaBatchPublisher publisher, ExecutorService ackExecutor) {
+        cleanup.add(() -> KafkaFixtures.shutdown(publisher));
+        OKXCandleConflator conflator = new OKXCandleConflator();
+        conflator.defaultMode = OKXCandleConflator.Mode.NONE;
+        conflator.defaultIntervalMs = 0;
+
+        OKXCandlesWebSocketClient client = new OKXCandlesWebSocketClient();
+        client.websocketEnabled = false;
+        client.publisher = publisher;
+        client.conflator = conflator;
+        client.recorder = new OKXFrameRecorder();
+        client.snapshotPublisher = KafkaFixtures.disabledSnapshotPublisher();
+        client.producer = new KafkaProducer() {
+            @Override
+            public Emitter<String> emitterFor(String topic) {
+                return emitters.computeIfAbsent(topic, t -> new InMemoryEmitter<>(ackExecutor == null ? null : slow(ackExecutor), false));
+            }
+        };
+        client.init();
+        return client;
+    }
+
+    private static Executor slow(ExecutorService executor) {
+        return task -> executor.execute(() -> {
+            LockSupport.parkNanos(20_000);
+            task.run();
+        });
+    }
+
+    /**
+     * Кадры всех каналов и инструментов; подтверждена примерно каждая десятая свеча
+     */
+    private static String[] frames(int count) {
+        String[] frames = new String[count];
+        for (int i = 0; i < count; i++) {
+            frames[i] = frame(CHANNELS[i % CHANNELS.length], INSTRUMENTS[(i / CHANNELS.length) % INSTRUMENTS.length],
+                    i, i % 10 == 0);
+        }
+        return frames;
+    }
+
+    private static String frame(String channel, String instId, int i, boolean confirmed) {
+        long ts = 1_700_000_000_000L + 60_000L * i;
+        return "{\"arg\":{\"channel\":\"" + channel + "\",\"instId\":\"" + instId + "\"},\"data\":[[\"" + ts
+                + "\",\"" + (42000 + i % 100) + ".1\",\"42100.5\",\"41900.2\",\"42050.7\",\"12.5\",\"525000\",\"525000\",\""
+                + (confirmed ? 1 : 0) + "\"]]}";
+    }
+}
@@ -0,0 +1,193 @@
+package artskif.trader.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Раскладка подписок по шардам без сокета: шарды записывают отправленные subscribe/unsubscribe
+ */
+class OKXCandlesWebSocketClientTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private final List<RecordingShard> created = new ArrayList<>();
+    private OKXCandlesWebSocketClient client;
+
+    @BeforeEach
+    void setUp() {
+        client = new OKXCandlesWebSocketClient() {
+            @Override
+            OKXCandlesWebSocketShard newShard(int id) {
+                RecordingShard shard = new RecordingShard(id, this);
+                created.add(shard);
+                return shard;
+            }
+        };
+        client.websocketEnabled = true;
+        client.channelsPerConnection = 4;
+        client.conflator = new OKXCandleConflator();
+    }
+
+    @Test
+    void placeFillsLeastLoadedShardAndOpensNewWhenFull() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(client.subscribe("INST-" + i, "candle1m"));
+        }
+        assertEquals(1, created.size());
+
+        assertTrue(client.subscribe("INST-4", "candle1m"));
+        assertEquals(2, created.size());
+        assertEquals(1, created.get(1).size());
+
+        // Место освободилось в первом шарде — следующая подписка уходит в наименее загруженный, второй
+        assertTrue(client.unsubscribe("INST-0", "candle1m"));
+        assertTrue(client.subscribe("INST-5", "candle1m"));
+        assertEquals(List.of(3, 2), sizes());
+        assertTrue(client.subscribe("INST-6", "candle1m"));
+        assertEquals(List.of(3, 3), sizes());
+        assertEquals(2, created.size());
+    }
+
+    @Test
+    void duplicateAndUnsupportedSubscriptionsAreRejected() {
+        assertTrue(client.subscribe("BTC-USDT-SWAP", "candle1m"));
+        assertFalse(client.subscribe("BTC-USDT-SWAP", "candle1m"));
+        assertFalse(client.subscribe("BTC-USDT-SWAP", "candle3m"));
+        assertFalse(client.unsubscribe("ETH-USDT-SWAP", "candle1m"));
+        assertEquals(Set.of(new OKXSubscription("candle1m", "BTC-USDT-SWAP")), client.getSubscriptions());
+    }
+
+    @Test
+    void unsubscribeClosesEmptyShardButKeepsLast() {
+        for (int i = 0; i < 5; i++) {
+            client.subscribe("INST-" + i, "candle1m");
+        }
+        RecordingShard second = created.get(1);
+        assertTrue(client.unsubscribe("INST-4", "candle1m"));
+        assertTrue(second.stopped);
+
+        for (int i = 0; i < 4; i++) {
+            client.unsubscribe("INST-" + i, "candle1m");
+        }
+        assertFalse(created.get(0).stopped);
+        assertTrue(client.getSubscriptions().isEmpty());
+
+        // Закрытый шард больше не получает подписок
+        client.subscribe("INST-0", "candle1m");
+        assertEquals(1, created.get(0).size());
+        assertEquals(0, second.size());
+    }
+
+    @Test
+    void openedShardTakesSubscriptionsBeforeDonorsUnsubscribe() {
+        for (int i = 0; i < 9; i++) {
+            client.subscribe("INST-" + i, "candle1m");
+        }
+        RecordingShard third = created.get(2);
+        created.forEach(shard -> shard.open = true);
+        sent.clear();
+
+        client.onShardOpened(third);
+
+        // Средняя загрузка 3: по одной подписке от каждого донора, subscribe нового шарда раньше unsubscribe доноров
+        assertEquals(List.of(3, 3, 3), sizes());
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(0).startsWith("subscribe shard-2 "));
+        assertTrue(sent.get(1).startsWith("unsubscribe shard-0 "));
+        assertTrue(sent.get(2).startsWith("unsubscribe shard-1 "));
+        assertEquals(9, client.getSubscriptions().size());
+    }
+
+    @Test
+    void failedSubscribeReturnsSubscriptionsToDonors() {
+        for (int i = 0; i < 9; i++) {
+            client.subscribe("INST-" + i, "candle1m");
+        }
+        RecordingShard third = created.get(2);
+        created.get(0).open = true;
+        created.get(1).open = true;
+        sent.clear();
+
+        client.onShardOpened(third);
+
+        assertEquals(List.of(4, 4, 1), sizes());
+        assertTrue(sent.stream().noneMatch(op -> op.startsWith("unsubscribe")));
+        assertEquals(9, client.getSubscriptions().size());
+    }
+
+    @Test
+    void reconnectedShardWithinAverageKeepsItsSubscriptions() {
+        for (int i = 0; i < 6; i++) {
+            client.subscribe("INST-" + i, "candle1m");
+        }
+        RecordingShard first = created.get(0);
+        first.open = true;
+        sent.clear();
+
+        client.onShardOpened(first);
+
+        assertEquals(List.of(4, 2), sizes());
+        assertEquals(1, sent.size());
+        assertTrue(sent.get(0).startsWith("subscribe shard-0 "));
+    }
+
+    private List<Integer> sizes() {
+        return created.stream().map(OKXCandlesWebSocketShard::size).toList();
+    }
+
+    private class RecordingShard extends OKXCandlesWebSocketShard {
+        private final int id;
+        boolean open;
+        boolean stopped;
+
+        RecordingShard(int id, Listener listener) {
+            super(id, URI.create("ws://localhost"), listener);
+            this.id = id;
+        }
+
+        @Override
+        void start() {
+        }
+
+        @Override
+        void stop() {
+            stopped = true;
+            super.stop();
+        }
+
+        @Override
+        boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        boolean subscribeAll() {
+            if (!open) {
+                return false;
+            }
+            sent.add("subscribe shard-" + id + " " + getSubscriptions());
+            return true;
+        }
+
+        @Override
+        void unsubscribe(List<OKXSubscription> released) {
+            if (open && !released.isEmpty()) {
+                sent.add("unsubscribe shard-" + id + " " + released);
+            }
+        }
+
+        @Override
+        void add(Collection<OKXSubscription> added) {
+            assign(added);
+        }
+    }
+}
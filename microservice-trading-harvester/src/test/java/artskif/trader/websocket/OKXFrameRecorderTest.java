@@ -0,0 +1,95 @@
+package artskif.trader.websocket;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OKXFrameRecorderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void framesOfOneSessionGoToOneFileInOrder() throws IOException {
+        OKXFrameRecorder recorder = recorder(256, 10);
+        recorder.init();
+        recorder.record("{\"a\":1}");
+        recorder.record("{\"a\":2}");
+        recorder.record("{\"a\":3}");
+        recorder.shutdown();
+
+        List<Path> files = OKXFrameRecorder.listRecordings(dir);
+        assertEquals(1, files.size());
+        assertEquals(List.of("{\"a\":1}", "{\"a\":2}", "{\"a\":3}"), frames(files.get(0)));
+    }
+
+    @Test
+    void rotationStartsNewFilesAndDeletesOldest() throws IOException {
+        // rotateMb=0: каждый следующий кадр открывает новый файл
+        OKXFrameRecorder recorder = recorder(0, 2);
+        recorder.init();
+        recorder.record("{\"a\":1}");
+        recorder.record("{\"a\":2}");
+        recorder.record("{\"a\":3}");
+        recorder.shutdown();
+
+        List<Path> files = OKXFrameRecorder.listRecordings(dir);
+        assertEquals(2, files.size());
+        assertEquals(List.of("{\"a\":2}"), frames(files.get(0)));
+        assertEquals(List.of("{\"a\":3}"), frames(files.get(1)));
+        try (var paths = Files.list(dir)) {
+            assertTrue(paths.noneMatch(p -> p.getFileName().toString().endsWith(".part")));
+        }
+    }
+
+    @Test
+    void unfinishedPartFileIsRecoveredOnStart() throws IOException {
+        Path part = dir.resolve(OKXFrameRecorder.FILE_PREFIX + "20240101-000000-000" + OKXFrameRecorder.FILE_SUFFIX + ".part");
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(part), 1024, true);
+        out.write("1\t{\"a\":1}\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        OKXFrameRecorder recorder = recorder(256, 10);
+        recorder.init();
+        recorder.shutdown();
+
+        List<Path> files = OKXFrameRecorder.listRecordings(dir);
+        assertEquals(1, files.size());
+        assertFalse(Files.exists(part));
+    }
+
+    private OKXFrameRecorder recorder(long rotateMb, int maxFiles) {
+        OKXFrameRecorder recorder = new OKXFrameRecorder();
+        recorder.enabled = true;
+        recorder.dir = dir.toString();
+        recorder.rotateMinutes = 60;
+        recorder.rotateMb = rotateMb;
+        recorder.maxFiles = maxFiles;
+        recorder.queueCapacity = 100;
+        return recorder;
+    }
+
+    private static List<String> frames(Path file) throws IOException {
+        List<String> frames = new ArrayList<>();
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+            for (String line : new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                frames.add(line.substring(line.indexOf('\t') + 1));
+            }
+        }
+        return frames;
+    }
+}
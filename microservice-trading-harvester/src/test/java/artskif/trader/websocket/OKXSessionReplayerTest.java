@@ -0,0 +1,222 @@
+package artskif.trader.websocket;
+
+import artskif.trader.common.CandleTimeframe;
+import artskif.trader.entity.Candle;
+import artskif.trader.entity.CandleId;
+import artskif.trader.kafka.CandleSnapshotPublisher;
+import artskif.trader.kafka.KafkaProducer;
+import artskif.trader.repository.CandleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OKXSessionReplayerTest {
+
+    @TempDir
+    Path dir;
+
+    private final ScheduledExecutorService broker = Executors.newSingleThreadScheduledExecutor();
+
+    @AfterEach
+    void stopBroker() {
+        broker.shutdownNow();
+    }
+
+    @Test
+    void framesAreReplayedInFileAndLineOrder() throws IOException {
+        write("okx-ws-20240101-000000-000.rec.gz", true, frame(1), frame(2), "{\"event\":\"subscribe\"}");
+        // Второй файл оборван: нет завершающего блока gzip, последняя строка дописана наполовину
+        write("okx-ws-20240101-010000-000.rec.gz", false, frame(3), frame(4), "{\"arg\":{\"channel\":\"candle1m\"");
+
+        StubClient client = new StubClient(0);
+        OKXSessionReplayer replayer = replayer(client, 64);
+        replayer.run();
+
+        assertEquals(List.of(frame(1), frame(2), frame(3), frame(4)), client.frames);
+        assertEquals(4, replayer.getPublished());
+        assertEquals(2, replayer.getSkipped());
+    }
+
+    @Test
+    void inFlightFramesAreBoundedAndCountedOnlyWhenAcked() throws IOException {
+        String[] frames = new String[50];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = frame(i);
+        }
+        write("okx-ws-20240101-000000-000.rec.gz", true, frames);
+
+        StubClient client = new StubClient(1);
+        OKXSessionReplayer replayer = replayer(client, 4);
+        replayer.run();
+
+        assertEquals(50, client.frames.size());
+        assertEquals(50, replayer.getPublished());
+        assertTrue(client.maxOutstanding <= 4, "в полёте было " + client.maxOutstanding);
+    }
+
+    @Test
+    void rejectedFrameStopsReplay() throws IOException {
+        write("okx-ws-20240101-000000-000.rec.gz", true, frame(1), frame(2), frame(3), frame(4));
+
+        StubClient client = new StubClient(0);
+        client.failAt = 2;
+        OKXSessionReplayer replayer = replayer(client, 1);
+        replayer.run();
+
+        assertEquals(List.of(frame(1), frame(2)), client.frames);
+        assertEquals(1, replayer.getPublished());
+    }
+
+    @Test
+    void sessionStartsOnlyAfterWarmUpIsAcked() throws IOException {
+        write("okx-ws-20240101-000000-000.rec.gz", true, frame(1));
+
+        StubClient client = new StubClient(0);
+        StubProducer producer = new StubProducer();
+        OKXSessionReplayer replayer = replayer(client, 64);
+        replayer.warmup = true;
+        replayer.instruments = List.of("BTC-USDT-SWAP", "ETH-USDT-SWAP");
+        replayer.channels = List.of("candle1m");
+        replayer.pageSize = 2;
+        replayer.producer = producer;
+        replayer.snapshotPublisher = new CandleSnapshotPublisher() {
+            @Override
+            public int depth(CandleTimeframe timeframe) {
+                return 10;
+            }
+        };
+        replayer.candleRepository = new CandleRepository() {
+            @Override
+            public List<Candle> findLatestConfirmedUntil(String symbol, String timeframe, Instant until, int limit) {
+                if (!symbol.startsWith("BTC")) {
+                    return List.of();
+                }
+                List<Candle> candles = new ArrayList<>();
+                for (int i = 3; i > 0; i--) {
+                    candles.add(new Candle(new CandleId(symbol, timeframe, Instant.ofEpochSecond(60L * i)),
+                            BigDecimal.ONE, BigDecimal.ONE, BigDecimal.ONE,
+                            BigDecimal.ONE, BigDecimal.ONE, true));
+                }
+                return candles;
+            }
+        };
+        client.onFrame = () -> assertEquals(producer.pages.size(), producer.acked.get(), "кадр сессии ушёл до подтверждения прогрева");
+        replayer.run();
+
+        // BTC: 3 свечи страницами по 2, ETH: одна пустая страница с isLast
+        assertEquals(3, producer.pages.size());
+        assertTrue(producer.pages.get(0).contains("\"isLast\":false"));
+        assertTrue(producer.pages.get(1).contains("\"isLast\":true"));
+        assertEquals("{\"instId\":\"ETH-USDT-SWAP\",\"isLast\":true,\"data\":[]}", producer.pages.get(2));
+        assertEquals(List.of("BTC-USDT-SWAP", "BTC-USDT-SWAP", "ETH-USDT-SWAP"), producer.keys);
+        assertEquals(List.of(frame(1)), client.frames);
+    }
+
+    private OKXSessionReplayer replayer(StubClient client, int maxInFlight) {
+        OKXSessionReplayer replayer = new OKXSessionReplayer();
+        replayer.client = client;
+        replayer.path = dir.toString();
+        replayer.speed = 0;
+        replayer.warmup = false;
+        replayer.maxInFlight = maxInFlight;
+        return replayer;
+    }
+
+    private static String frame(int i) {
+        return "{\"arg\":{\"channel\":\"candle1m\",\"instId\":\"BTC-USDT-SWAP\"},\"data\":[[\"" + i + "\"]]}";
+    }
+
+    private void write(String name, boolean finish, String... frames) throws IOException {
+        OutputStream out = new GZIPOutputStream(Files.newOutputStream(dir.resolve(name)), 1024, true);
+        long ts = 1_700_000_000_000L;
+        for (String frame : frames) {
+            out.write((ts++ + "\t" + frame + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+        if (finish) {
+            out.close();
+        }
+    }
+
+    /**
+     * Клиент без сокета: запоминает кадры, подтверждение приходит сразу или с задержкой из потока «брокера»
+     */
+    private final class StubClient extends OKXCandlesWebSocketClient {
+        final List<String> frames = Collections.synchronizedList(new ArrayList<>());
+        final long ackDelayMs;
+        final AtomicInteger outstanding = new AtomicInteger();
+        volatile int maxOutstanding;
+        int failAt = -1;
+        Runnable onFrame = () -> {
+        };
+
+        StubClient(long ackDelayMs) {
+            this.ackDelayMs = ackDelayMs;
+        }
+
+        @Override
+        public CompletableFuture<Void> replayFrame(String frame) {
+            if (!frame.startsWith("{\"arg\"")) {
+                return null;
+            }
+            onFrame.run();
+            frames.add(frame);
+            maxOutstanding = Math.max(maxOutstanding, outstanding.incrementAndGet());
+            CompletableFuture<Void> acked = new CompletableFuture<>();
+            if (frames.size() == failAt) {
+                acked.completeExceptionally(new IllegalStateException("nack"));
+            } else if (ackDelayMs == 0) {
+                outstanding.decrementAndGet();
+                acked.complete(null);
+            } else {
+                broker.schedule(() -> {
+                    outstanding.decrementAndGet();
+                    acked.complete(null);
+                }, ackDelayMs, TimeUnit.MILLISECONDS);
+            }
+            return acked;
+        }
+    }
+
+    /**
+     * Продюсер прогрева: страницы подтверждаются с задержкой
+     */
+    private final class StubProducer extends KafkaProducer {
+        final List<String> pages = new ArrayList<>();
+        final List<String> keys = new ArrayList<>();
+        final AtomicInteger acked = new AtomicInteger();
+
+        @Override
+        public CompletableFuture<Void> sendAcked(String topic, String key, String message) {
+            assertEquals("okx-candle-1m-history", topic);
+            pages.add(message);
+            keys.add(key);
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            broker.schedule(() -> {
+                acked.incrementAndGet();
+                future.complete(null);
+            }, 20, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package artskif.trader.simulator;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счётчики нагрузки и внесённых сбоев: раз в минуту в лог уходит прирост за минуту
+ */
+@ApplicationScoped
+public class SimulatorStats {
+
+    private static final Logger LOG = Logger.getLogger(SimulatorStats.class);
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    public void increment(String counter) {
+        counters.computeIfAbsent(counter, c -> new LongAdder()).increment();
+    }
+
+    @Scheduled(every = "60s", delayed = "60s")
+    void report() {
+        Map<String, Long> delta = new TreeMap<>();
+        counters.forEach((counter, value) -> {
+            long count = value.sumThenReset();
+            if (count > 0) {
+                delta.put(counter, count);
+            }
+        });
+        if (!delta.isEmpty()) {
+            LOG.infof("📊 Симулятор за минуту: %s", delta);
+        }
+    }
+}
@@ -0,0 +1,543 @@
+package artskif.trader.simulator.exchange;
+
+import artskif.trader.simulator.SimulatorStats;
+import artskif.trader.simulator.market.CandleRow;
+import artskif.trader.simulator.market.MarketDataSource;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счёт и ордера симулятора: один USDT-счёт, позиции SWAP в режиме net.
+ *
+ * Рыночные и chase-ордера исполняются сразу по последней цене, лимитные — когда цена до них дойдёт.
+ * Алгоритмические ордера (SL/TP, в том числе прикреплённые к лимитному через attachAlgoOrds)
+ * проверяются раз в секунду и закрывают позицию по последней цене. Комиссии и проскальзывание не моделируются.
+ * Все методы синхронизированы: торговая нагрузка несравнимо меньше рыночной.
+ */
+@ApplicationScoped
+public class SimulatedExchange {
+
+    private static final Logger LOG = Logger.getLogger(SimulatedExchange.class);
+    private static final int POSITIONS_HISTORY_SIZE = 100;
+
+    @Inject
+    MarketDataSource market;
+
+    @Inject
+    SimulatorStats stats;
+
+    @ConfigProperty(name = "simulator.account.balance", defaultValue = "10000")
+    double initialBalance;
+
+    private static final class Order {
+        String ordId;
+        String clOrdId;
+        String instId;
+        String side;
+        String ordType;
+        String tdMode;
+        double px;
+        double sz;
+        boolean reduceOnly;
+        String state = "live";
+        double avgPx;
+        double accFillSz;
+        long cTime;
+        long uTime;
+        List<Map<String, Object>> attachAlgoOrds = List.of();
+    }
+
+    private static final class AlgoOrder {
+        String algoId;
+        String instId;
+        String side;
+        String ordType;
+        double sz;
+        double slTriggerPx;
+        double tpTriggerPx;
+        boolean reduceOnly;
+        String state = "live";
+        long cTime;
+        long uTime;
+    }
+
+    private static final class Position {
+        String instId;
+        String mgnMode;
+        double pos;
+        double avgPx;
+        long cTime;
+        long uTime;
+    }
+
+    private final AtomicLong ids = new AtomicLong(System.currentTimeMillis() * 1000);
+    private final Map<String, Order> orders = new LinkedHashMap<>();
+    private final Map<String, AlgoOrder> algos = new LinkedHashMap<>();
+    private final Map<String, Position> positions = new HashMap<>();
+    private final Deque<Map<String, Object>> positionsHistory = new ArrayDeque<>();
+    private double cash;
+
+    @PostConstruct
+    void init() {
+        cash = initialBalance;
+        LOG.infof("💼 Счёт симулятора: %s USDT", plain(cash));
+    }
+
+    // === Ордера ===
+
+    public synchronized Map<String, Object> placeOrder(Map<String, Object> body) {
+        String instId = str(body.get("instId"));
+        String side = str(body.get("side"));
+        String ordType = str(body.get("ordType"));
+        double sz = num(body.get("sz"));
+        String clOrdId = str(body.get("clOrdId"));
+        if (instId == null || side == null || ordType == null || !(sz > 0)) {
+            return result("ordId", "", clOrdId, "51000", "Parameter error");
+        }
+
+        long now = System.currentTimeMillis();
+        double last = market.lastPrice(instId, now);
+        Order order = new Order();
+        order.ordId = nextId();
+        order.clOrdId = clOrdId == null ? "" : clOrdId;
+        order.instId = instId;
+        order.side = side;
+        order.ordType = ordType;
+        order.tdMode = str(body.getOrDefault("tdMode", "cross"));
+        order.px = num(body.get("px"));
+        order.sz = contracts(sz, str(body.get("tgtCcy")), last);
+        order.reduceOnly = Boolean.parseBoolean(String.valueOf(body.get("reduceOnly")));
+        order.cTime = now;
+        order.uTime = now;
+        if (body.get("attachAlgoOrds") instanceof List<?> attach) {
+            List<Map<String, Object>> attached = new ArrayList<>();
+            attach.forEach(item -> attached.add(stringMap(item)));
+            order.attachAlgoOrds = attached;
+        }
+        orders.put(order.ordId, order);
+        stats.increment("trade.order." + ordType);
+
+        if (!"limit".equals(ordType) || marketable(order, last)) {
+            fill(order, "limit".equals(ordType) ? order.px : last, now);
+        }
+        return result("ordId", order.ordId, order.clOrdId, "0", "Order placed");
+    }
+
+    public synchronized Map<String, Object> order(String ordId, String clOrdId) {
+        for (Order order : orders.values()) {
+            if (order.ordId.equals(ordId) || (clOrdId != null && clOrdId.equals(order.clOrdId))) {
+                return toMap(order);
+            }
+        }
+        return null;
+    }
+
+    public synchronized List<Map<String, Object>> pendingOrders(String instId) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        orders.values().stream()
+                .filter(order -> "live".equals(order.state) && (instId == null || instId.equals(order.instId)))
+                .forEach(order -> result.add(toMap(order)));
+        return result;
+    }
+
+    public synchronized Map<String, Object> cancelOrder(Map<String, Object> body) {
+        String ordId = str(body.get("ordId"));
+        String clOrdId = str(body.get("clOrdId"));
+        for (Order order : orders.values()) {
+            if (order.ordId.equals(ordId) || (clOrdId != null && clOrdId.equals(order.clOrdId))) {
+                if (!"live".equals(order.state)) {
+                    return result("ordId", order.ordId, order.clOrdId, "51400", "Order cancellation failed as the order has been filled, canceled or does not exist");
+                }
+                order.state = "canceled";
+                order.uTime = System.currentTimeMillis();
+                return result("ordId", order.ordId, order.clOrdId, "0", "");
+            }
+        }
+        return result("ordId", ordId == null ? "" : ordId, clOrdId, "51603", "Order does not exist");
+    }
+
+    // === Алгоритмические ордера ===
+
+    public synchronized Map<String, Object> placeAlgo(Map<String, Object> body) {
+        String instId = str(body.get("instId"));
+        String side = str(body.get("side"));
+        String ordType = str(body.get("ordType"));
+        double sz = num(body.get("sz"));
+        if (instId == null || side == null || ordType == null || !(sz > 0)) {
+            return result("algoId", "", null, "51000", "Parameter error");
+        }
+
+        long now = System.currentTimeMillis();
+        stats.increment("trade.algo." + ordType);
+        AlgoOrder algo = algo(instId, side, ordType, sz, Boolean.parseBoolean(String.valueOf(body.get("reduceOnly"))), now);
+        if ("chase".equals(ordType)) {
+            // Chase догоняет лучшую цену — в симуляторе это исполнение по последней цене
+            algo.state = "effective";
+            execute(instId, side, sz, algo.reduceOnly, market.lastPrice(instId, now), now);
+            return result("algoId", algo.algoId, null, "0", "");
+        }
+        algo.slTriggerPx = num(body.get("slTriggerPx"));
+        algo.tpTriggerPx = triggerPx(stringMap(body));
+        return result("algoId", algo.algoId, null, "0", "");
+    }
+
+    public synchronized Map<String, Object> algoOrder(String algoId) {
+        AlgoOrder algo = algos.get(algoId);
+        return algo == null ? null : toMap(algo);
+    }
+
+    public synchronized List<Map<String, Object>> pendingAlgos(String instId, String ordType) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        algos.values().stream()
+                .filter(algo -> "live".equals(algo.state)
+                        && (instId == null || instId.equals(algo.instId))
+                        && (ordType == null || ordType.contains(algo.ordType)))
+                .forEach(algo -> result.add(toMap(algo)));
+        return result;
+    }
+
+    public synchronized List<Map<String, Object>> cancelAlgos(List<Map<String, Object>> items) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map<String, Object> item : items) {
+            String algoId = str(item.get("algoId"));
+            AlgoOrder algo = algos.get(algoId);
+            if (algo == null || !"live".equals(algo.state)) {
+                result.add(result("algoId", algoId == null ? "" : algoId, null, "51603", "Order does not exist"));
+                continue;
+            }
+            algo.state = "canceled";
+            algo.uTime = System.currentTimeMillis();
+            result.add(result("algoId", algoId, null, "0", ""));
+        }
+        return result;
+    }
+
+    // === Позиции и счёт ===
+
+    /**
+     * @return null, если позиции нет
+     */
+    public synchronized Map<String, Object> closePosition(Map<String, Object> body) {
+        String instId = str(body.get("instId"));
+        Position position = positions.get(instId);
+        if (position == null || position.pos == 0) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        execute(instId, position.pos > 0 ? "sell" : "buy", Math.abs(position.pos), true, market.lastPrice(instId, now), now);
+        if (Boolean.parseBoolean(String.valueOf(body.get("autoCxl")))) {
+            algos.values().stream()
+                    .filter(algo -> "live".equals(algo.state) && algo.instId.equals(instId))
+                    .forEach(algo -> {
+                        algo.state = "canceled";
+                        algo.uTime = now;
+                    });
+        }
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("instId", instId);
+        item.put("posSide", "net");
+        item.put("clOrdId", "");
+        return item;
+    }
+
+    public synchronized List<Map<String, Object>> positions(String instId) {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Position position : positions.values()) {
+            if (position.pos == 0 || (instId != null && !instId.equals(position.instId))) {
+                continue;
+            }
+            double last = market.lastPrice(position.instId, now);
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("instType", "SWAP");
+            map.put("instId", position.instId);
+            map.put("posSide", "net");
+            map.put("mgnMode", position.mgnMode);
+            map.put("pos", plain(position.pos));
+            map.put("avgPx", CandleRow.price(position.avgPx));
+            map.put("last", CandleRow.price(last));
+            map.put("markPx", CandleRow.price(last));
+            map.put("upl", plain(upl(position, last)));
+            map.put("lever", "1");
+            map.put("ccy", "USDT");
+            map.put("cTime", String.valueOf(position.cTime));
+            map.put("uTime", String.valueOf(position.uTime));
+            result.add(map);
+        }
+        return result;
+    }
+
+    public synchronized List<Map<String, Object>> positionsHistory(String instId) {
+        return positionsHistory.stream()
+                .filter(entry -> instId == null || instId.equals(entry.get("instId")))
+                .toList();
+    }
+
+    public synchronized Map<String, Object> balance() {
+        long now = System.currentTimeMillis();
+        double upl = 0;
+        for (Position position : positions.values()) {
+            if (position.pos != 0) {
+                upl += upl(position, market.lastPrice(position.instId, now));
+            }
+        }
+        String eq = plain(cash + upl);
+        Map<String, Object> usdt = new LinkedHashMap<>();
+        usdt.put("ccy", "USDT");
+        usdt.put("cashBal", plain(cash));
+        usdt.put("availBal", plain(cash));
+        usdt.put("eq", eq);
+        usdt.put("eqUsd", eq);
+        usdt.put("upl", plain(upl));
+
+        Map<String, Object> account = new LinkedHashMap<>();
+        account.put("totalEq", eq);
+        account.put("uTime", String.valueOf(now));
+        account.put("details", List.of(usdt));
+        return account;
+    }
+
+    // === Исполнение ===
+
+    @Scheduled(every = "1s")
+    synchronized void match() {
+        long now = System.currentTimeMillis();
+        Map<String, Double> prices = new HashMap<>();
+
+        for (Order order : orders.values()) {
+            if ("live".equals(order.state) && "limit".equals(order.ordType)) {
+                double last = prices.computeIfAbsent(order.instId, instId -> market.lastPrice(instId, now));
+                if (marketable(order, last)) {
+                    fill(order, order.px, now);
+                }
+            }
+        }
+        for (AlgoOrder algo : new ArrayList<>(algos.values())) {
+            if (!"live".equals(algo.state)) {
+                continue;
+            }
+            double last = prices.computeIfAbsent(algo.instId, instId -> market.lastPrice(instId, now));
+            boolean closesLong = "sell".equals(algo.side);
+            boolean stop = algo.slTriggerPx > 0 && (closesLong ? last <= algo.slTriggerPx : last >= algo.slTriggerPx);
+            boolean take = algo.tpTriggerPx > 0 && (closesLong ? last >= algo.tpTriggerPx : last <= algo.tpTriggerPx);
+            if (stop || take) {
+                algo.state = "effective";
+                algo.uTime = now;
+                stats.increment(stop ? "trade.algo.stopLoss" : "trade.algo.takeProfit");
+                execute(algo.instId, algo.side, algo.sz, algo.reduceOnly, last, now);
+            }
+        }
+    }
+
+    private static boolean marketable(Order order, double last) {
+        return "buy".equals(order.side) ? last <= order.px : last >= order.px;
+    }
+
+    private void fill(Order order, double price, long now) {
+        double filled = execute(order.instId, order.side, order.sz, order.reduceOnly, price, now);
+        order.state = filled > 0 ? "filled" : "canceled";
+        order.avgPx = price;
+        order.accFillSz = filled;
+        order.uTime = now;
+
+        // Прикреплённые SL/TP становятся самостоятельными алгоритмическими ордерами закрытия
+        String closeSide = "buy".equals(order.side) ? "sell" : "buy";
+        for (Map<String, Object> attach : order.attachAlgoOrds) {
+            double sz = attach.containsKey("sz") ? num(attach.get("sz")) : filled;
+            AlgoOrder algo = algo(order.instId, closeSide, "conditional", sz, true, now);
+            algo.slTriggerPx = num(attach.get("slTriggerPx"));
+            algo.tpTriggerPx = triggerPx(attach);
+        }
+    }
+
+    /**
+     * Изменить позицию на sz контрактов
+     *
+     * @return исполненный объём (reduceOnly не даёт перевернуть позицию)
+     */
+    private double execute(String instId, String side, double sz, boolean reduceOnly, double price, long now) {
+        Position position = positions.computeIfAbsent(instId, id -> {
+            Position p = new Position();
+            p.instId = id;
+            p.mgnMode = "isolated";
+            return p;
+        });
+        double delta = "buy".equals(side) ? sz : -sz;
+        if (reduceOnly) {
+            if (position.pos == 0 || Math.signum(delta) == Math.signum(position.pos)) {
+                return 0;
+            }
+            delta = Math.signum(delta) * Math.min(Math.abs(delta), Math.abs(position.pos));
+        }
+
+        double before = position.pos;
+        if (before == 0 || Math.signum(before) == Math.signum(delta)) {
+            position.avgPx = (position.avgPx * Math.abs(before) + price * Math.abs(delta)) / (Math.abs(before) + Math.abs(delta));
+            if (before == 0) {
+                position.cTime = now;
+            }
+        } else {
+            double closed = Math.min(Math.abs(delta), Math.abs(before));
+            double pnl = Math.signum(before) * (price - position.avgPx) * closed * CandleRow.CONTRACT_VALUE;
+            cash += pnl;
+            recordClose(position, price, closed, pnl, now);
+            if (Math.abs(delta) > Math.abs(before)) {
+                // Переворот: остаток открывается по цене исполнения
+                position.avgPx = price;
+                position.cTime = now;
+            }
+        }
+        position.pos = round(before + delta);
+        position.uTime = now;
+        LOG.debugf("💱 %s %s %s по %s: позиция %s -> %s", instId, side, plain(Math.abs(delta)), CandleRow.price(price),
+                plain(before), plain(position.pos));
+        return Math.abs(delta);
+    }
+
+    private void recordClose(Position position, double price, double closed, double pnl, long now) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("instType", "SWAP");
+        entry.put("instId", position.instId);
+        entry.put("mgnMode", position.mgnMode);
+        entry.put("posSide", "net");
+        entry.put("direction", position.pos > 0 ? "long" : "short");
+        entry.put("openAvgPx", CandleRow.price(position.avgPx));
+        entry.put("closeAvgPx", CandleRow.price(price));
+        entry.put("closeTotalPos", plain(closed));
+        entry.put("pnl", plain(pnl));
+        entry.put("realizedPnl", plain(pnl));
+        entry.put("fee", "0");
+        entry.put("type", closed < Math.abs(position.pos) ? "1" : "2");
+        entry.put("cTime", String.valueOf(position.cTime));
+        entry.put("uTime", String.valueOf(now));
+        positionsHistory.addFirst(entry);
+        if (positionsHistory.size() > POSITIONS_HISTORY_SIZE) {
+            positionsHistory.removeLast();
+        }
+    }
+
+    // === Вспомогательное ===
+
+    private AlgoOrder algo(String instId, String side, String ordType, double sz, boolean reduceOnly, long now) {
+        AlgoOrder algo = new AlgoOrder();
+        algo.algoId = nextId();
+        algo.instId = instId;
+        algo.side = side;
+        algo.ordType = ordType;
+        algo.sz = sz;
+        algo.reduceOnly = reduceOnly;
+        algo.cTime = now;
+        algo.uTime = now;
+        algos.put(algo.algoId, algo);
+        return algo;
+    }
+
+    // TP без цены срабатывания (tpOrdKind=limit) срабатывает на цене лимитного ордера
+    private static double triggerPx(Map<String, Object> body) {
+        double trigger = num(body.get("tpTriggerPx"));
+        return trigger > 0 ? trigger : num(body.get("tpOrdPx"));
+    }
+
+    private static double contracts(double sz, String tgtCcy, double last) {
+        if ("quote_ccy".equals(tgtCcy)) {
+            return round(sz / last / CandleRow.CONTRACT_VALUE);
+        }
+        if ("base_ccy".equals(tgtCcy)) {
+            return round(sz / CandleRow.CONTRACT_VALUE);
+        }
+        return sz;
+    }
+
+    private double upl(Position position, double last) {
+        return (last - position.avgPx) * position.pos * CandleRow.CONTRACT_VALUE;
+    }
+
+    private String nextId() {
+        return Long.toString(ids.incrementAndGet());
+    }
+
+    private static Map<String, Object> toMap(Order order) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("instType", "SWAP");
+        map.put("instId", order.instId);
+        map.put("ordId", order.ordId);
+        map.put("clOrdId", order.clOrdId);
+        map.put("side", order.side);
+        map.put("ordType", order.ordType);
+        map.put("tdMode", order.tdMode);
+        map.put("px", order.px > 0 ? CandleRow.price(order.px) : "");
+        map.put("sz", plain(order.sz));
+        map.put("state", order.state);
+        map.put("avgPx", order.accFillSz > 0 ? CandleRow.price(order.avgPx) : "");
+        map.put("accFillSz", plain(order.accFillSz));
+        map.put("reduceOnly", String.valueOf(order.reduceOnly));
+        map.put("cTime", String.valueOf(order.cTime));
+        map.put("uTime", String.valueOf(order.uTime));
+        return map;
+    }
+
+    private static Map<String, Object> toMap(AlgoOrder algo) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("instType", "SWAP");
+        map.put("instId", algo.instId);
+        map.put("algoId", algo.algoId);
+        map.put("side", algo.side);
+        map.put("ordType", algo.ordType);
+        map.put("sz", plain(algo.sz));
+        map.put("slTriggerPx", algo.slTriggerPx > 0 ? CandleRow.price(algo.slTriggerPx) : "");
+        map.put("tpTriggerPx", algo.tpTriggerPx > 0 ? CandleRow.price(algo.tpTriggerPx) : "");
+        map.put("reduceOnly", String.valueOf(algo.reduceOnly));
+        map.put("state", algo.state);
+        map.put("cTime", String.valueOf(algo.cTime));
+        map.put("uTime", String.valueOf(algo.uTime));
+        return map;
+    }
+
+    private static Map<String, Object> result(String idName, String id, String clOrdId, String sCode, String sMsg) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put(idName, id);
+        map.put("clOrdId", clOrdId == null ? "" : clOrdId);
+        map.put("sCode", sCode);
+        map.put("sMsg", sMsg);
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> stringMap(Object value) {
+        return value instanceof Map<?, ?> map ? (Map<String, Object>) map : Map.of();
+    }
+
+    private static String str(Object value) {
+        return value == null || String.valueOf(value).isBlank() ? null : String.valueOf(value);
+    }
+
+    private static double num(Object value) {
+        try {
+            return value == null ? 0 : Double.parseDouble(String.valueOf(value));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1e8) / 1e8;
+    }
+
+    private static String plain(double value) {
+        return BigDecimal.valueOf(round(value)).stripTrailingZeros().toPlainString();
+    }
+}
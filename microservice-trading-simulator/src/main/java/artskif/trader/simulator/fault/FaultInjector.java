@@ -0,0 +1,151 @@
+package artskif.trader.simulator.fault;
+
+import artskif.trader.simulator.SimulatorStats;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.Config;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.jboss.logging.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Задержки, ошибки и ограничение частоты REST-запросов.
+ *
+ * Политика задаётся ключами {@code simulator.fault.*} и переопределяется для эндпоинта:
+ * {@code simulator.fault.history-candles.latencyMs=200}. Ограничение частоты — скользящее окно,
+ * как у OKX: не больше rateLimit запросов за rateWindowMs, сверх этого — HTTP 429 с кодом 50011.
+ * Случайные ошибки отдаются как HTTP 503 с кодом 50001, случайные 429 — независимо от окна.
+ * Задержка не занимает рабочий поток: ответ досылается из планировщика.
+ */
+@ApplicationScoped
+public class FaultInjector {
+
+    private static final Logger LOG = Logger.getLogger(FaultInjector.class);
+    private static final String CONFIG_PREFIX = "simulator.fault.";
+
+    private record Policy(long latencyMs, long jitterMs, double errorRate, double throttleRate,
+                          int rateLimit, long rateWindowMs) {
+    }
+
+    @Inject
+    SimulatorStats stats;
+
+    private final Map<String, Policy> policies = new ConcurrentHashMap<>();
+    private final Map<String, Deque<Long>> windows = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("sim-fault-delay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Выполнить запрос к эндпоинту с учётом политики сбоев
+     *
+     * @param handler формирует тело ответа OKX; вызывается, только если запрос не отклонён
+     */
+    public CompletionStage<Response> handle(String endpoint, Supplier<Object> handler) {
+        Policy policy = policy(endpoint);
+        stats.increment("rest." + endpoint);
+
+        Response response;
+        if (!acquire(endpoint, policy) || ThreadLocalRandom.current().nextDouble() < policy.throttleRate()) {
+            stats.increment("rest." + endpoint + ".429");
+            response = error(Response.Status.TOO_MANY_REQUESTS, "50011", "Too Many Requests");
+        } else if (ThreadLocalRandom.current().nextDouble() < policy.errorRate()) {
+            stats.increment("rest." + endpoint + ".503");
+            response = error(Response.Status.SERVICE_UNAVAILABLE, "50001", "Service temporarily unavailable, please try again later");
+        } else {
+            response = Response.ok(handler.get(), MediaType.APPLICATION_JSON).build();
+        }
+
+        long delayMs = policy.latencyMs()
+                + (policy.jitterMs() > 0 ? ThreadLocalRandom.current().nextLong(policy.jitterMs() + 1) : 0);
+        if (delayMs <= 0) {
+            return CompletableFuture.completedFuture(response);
+        }
+        CompletableFuture<Response> delayed = new CompletableFuture<>();
+        delayer.schedule(() -> delayed.complete(response), delayMs, TimeUnit.MILLISECONDS);
+        return delayed;
+    }
+
+    /**
+     * Тело успешного ответа OKX
+     */
+    public static Map<String, Object> ok(List<?> data) {
+        return Map.of("code", "0", "msg", "", "data", data);
+    }
+
+    /**
+     * Тело ответа OKX с бизнес-ошибкой: такие ответы приходят с HTTP 200
+     */
+    public static Map<String, Object> fail(String code, String msg) {
+        return Map.of("code", code, "msg", msg, "data", List.of());
+    }
+
+    private boolean acquire(String endpoint, Policy policy) {
+        if (policy.rateLimit() <= 0) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        Deque<Long> window = windows.computeIfAbsent(endpoint, e -> new ArrayDeque<>());
+        synchronized (window) {
+            while (!window.isEmpty() && window.peekFirst() <= now - policy.rateWindowMs()) {
+                window.pollFirst();
+            }
+            if (window.size() >= policy.rateLimit()) {
+                return false;
+            }
+            window.addLast(now);
+            return true;
+        }
+    }
+
+    private Policy policy(String endpoint) {
+        return policies.computeIfAbsent(endpoint, e -> {
+            Config config = ConfigProvider.getConfig();
+            Policy policy = new Policy(
+                    value(config, e, "latencyMs", Long.class, 0L),
+                    value(config, e, "jitterMs", Long.class, 0L),
+                    value(config, e, "errorRate", Double.class, 0.0),
+                    value(config, e, "throttleRate", Double.class, 0.0),
+                    value(config, e, "rateLimit", Integer.class, 0),
+                    value(config, e, "rateWindowMs", Long.class, 2_000L));
+            LOG.infof("🧪 Политика сбоев %s: %s", e, policy);
+            return policy;
+        });
+    }
+
+    private static <T> T value(Config config, String endpoint, String name, Class<T> type, T defaultValue) {
+        return config.getOptionalValue(CONFIG_PREFIX + endpoint + "." + name, type)
+                .or(() -> config.getOptionalValue(CONFIG_PREFIX + name, type))
+                .orElse(defaultValue);
+    }
+
+    private static Response error(Response.Status status, String code, String msg) {
+        return Response.status(status)
+                .entity(Map.of("code", code, "msg", msg, "data", List.of()))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        delayer.shutdownNow();
+    }
+}
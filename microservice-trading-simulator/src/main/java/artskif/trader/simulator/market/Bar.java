@@ -0,0 +1,73 @@
+package artskif.trader.simulator.market;
+
+import java.time.Duration;
+
+/**
+ * Таймфреймы OKX, которые отдаёт симулятор: значение параметра bar и суффикс WebSocket-канала candle<bar>
+ */
+public enum Bar {
+    M1("1m", Duration.ofMinutes(1)),
+    M3("3m", Duration.ofMinutes(3)),
+    M5("5m", Duration.ofMinutes(5)),
+    M15("15m", Duration.ofMinutes(15)),
+    M30("30m", Duration.ofMinutes(30)),
+    H1("1H", Duration.ofHours(1)),
+    H2("2H", Duration.ofHours(2)),
+    H4("4H", Duration.ofHours(4)),
+    D1("1D", Duration.ofDays(1)),
+    W1("1W", Duration.ofDays(7));
+
+    private static final String CHANNEL_PREFIX = "candle";
+
+    private final String value;
+    private final long millis;
+
+    Bar(String value, Duration duration) {
+        this.value = value;
+        this.millis = duration.toMillis();
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Начало бара, в который попадает момент времени. Дневные и недельные бары OKX считаются
+     * по гонконгскому времени (UTC+8): день начинается в 16:00 UTC, неделя — в воскресенье 16:00 UTC
+     * (эпоха приходится на четверг, отсюда сдвиг на 3 дня 16 часов).
+     */
+    public long bucket(long epochMs) {
+        long offset = switch (this) {
+            case D1 -> Duration.ofHours(16).toMillis();
+            case W1 -> Duration.ofDays(3).plusHours(16).toMillis();
+            default -> 0;
+        };
+        return Math.floorDiv(epochMs - offset, millis) * millis + offset;
+    }
+
+    /**
+     * @return таймфрейм или null, если OKX такого не знает
+     */
+    public static Bar fromValue(String value) {
+        for (Bar bar : values()) {
+            if (bar.value.equals(value)) {
+                return bar;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return таймфрейм канала candle1m, candle1H, ... или null для прочих каналов
+     */
+    public static Bar fromChannel(String channel) {
+        if (channel == null || !channel.startsWith(CHANNEL_PREFIX)) {
+            return null;
+        }
+        return fromValue(channel.substring(CHANNEL_PREFIX.length()));
+    }
+}
@@ -0,0 +1,45 @@
+package artskif.trader.simulator.market;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+
+/**
+ * Свеча симулятора. В ответах OKX свеча — массив строк
+ * [ts, o, h, l, c, vol, volCcy, volCcyQuote, confirm], объём в контрактах.
+ */
+public record CandleRow(long ts, double open, double high, double low, double close, double volume) {
+
+    // Размер контракта BTC-USDT-SWAP в базовой валюте
+    public static final double CONTRACT_VALUE = 0.01;
+    private static final int PRICE_SCALE = 1;
+    private static final int VOLUME_SCALE = 2;
+
+    public CandleRow withTs(long newTs) {
+        return new CandleRow(newTs, open, high, low, close, volume);
+    }
+
+    public List<String> fields(boolean confirmed) {
+        double volCcy = volume * CONTRACT_VALUE;
+        return List.of(
+                Long.toString(ts),
+                price(open), price(high), price(low), price(close),
+                amount(volume), amount(volCcy), amount(volCcy * close),
+                confirmed ? "1" : "0");
+    }
+
+    /**
+     * Строка свечи в JSON без пробелов — в том же виде, в каком её присылает OKX
+     */
+    public String toJson(boolean confirmed) {
+        return "[\"" + String.join("\",\"", fields(confirmed)) + "\"]";
+    }
+
+    public static String price(double value) {
+        return BigDecimal.valueOf(value).setScale(PRICE_SCALE, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static String amount(double value) {
+        return BigDecimal.valueOf(value).setScale(VOLUME_SCALE, RoundingMode.HALF_UP).toPlainString();
+    }
+}
@@ -0,0 +1,271 @@
+package artskif.trader.simulator.market;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Источник свечей симулятора.
+ *
+ * SYNTHETIC — детерминированная траектория цены: сумма синусоид с периодами от 10 минут до 30 дней
+ * и шум на сетке 10 с, всё — функции от (seed, instId, времени). Любая свеча считается без состояния,
+ * поэтому история одинакова при повторных запросах и перезапусках, а живая свеча закрывается
+ * той же свечой, которую потом отдаёт history-candles.
+ * REPLAY — свечи из CSV-файла {@code instId,bar,ts,open,high,low,close,vol}, прокручиваемые по кругу.
+ * Запись сдвигается на целое число недель, поэтому бары всех таймфреймов остаются выровненными.
+ */
+@ApplicationScoped
+public class MarketDataSource {
+
+    public enum Mode {SYNTHETIC, REPLAY}
+
+    private static final Logger LOG = Logger.getLogger(MarketDataSource.class);
+    private static final long DAY_MS = 86_400_000L;
+    private static final long WEEK_MS = 7 * DAY_MS;
+    private static final long NOISE_STEP_MS = 10_000L;
+    private static final long[] PERIODS_MS = {600_000L, 3_600_000L, 21_600_000L, DAY_MS, WEEK_MS, 30 * DAY_MS};
+    // Точек траектории на одну свечу: у 1m — каждый узел шума, у старших таймфреймов — не больше 60
+    private static final int MAX_SAMPLES = 60;
+    // Сколько пустых баров записи можно пропустить на одну отдаваемую свечу
+    private static final int MAX_SCAN_FACTOR = 10;
+
+    @ConfigProperty(name = "simulator.market.mode", defaultValue = "SYNTHETIC")
+    Mode mode;
+
+    @ConfigProperty(name = "simulator.market.seed", defaultValue = "42")
+    long seed;
+
+    @ConfigProperty(name = "simulator.market.startPrice", defaultValue = "60000")
+    double defaultStartPrice;
+
+    @ConfigProperty(name = "simulator.market.dailyVolatility", defaultValue = "0.03")
+    double dailyVolatility;
+
+    @ConfigProperty(name = "simulator.market.volumePerMinute", defaultValue = "5000")
+    double volumePerMinute;
+
+    @ConfigProperty(name = "simulator.market.historyStartEpochMs", defaultValue = "1577836800000")
+    long historyStartEpochMs;
+
+    @ConfigProperty(name = "simulator.market.replayFile")
+    Optional<String> replayFile;
+
+    private record Recording(NavigableMap<Long, CandleRow> candles, long anchor, long span) {
+    }
+
+    private final Map<String, Recording> recordings = new HashMap<>();
+    private final Map<String, Double> startPrices = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        if (mode == Mode.REPLAY) {
+            loadRecordings(replayFile.orElseThrow(() ->
+                    new IllegalStateException("simulator.market.replayFile обязателен в режиме REPLAY")));
+        }
+        LOG.infof("📈 Источник свечей: %s (seed=%d, записей: %d)", mode, seed, recordings.size());
+    }
+
+    /**
+     * Закрытая свеча
+     *
+     * @return свеча или null, если в записи на этот бар ничего нет
+     */
+    public CandleRow closed(String instId, Bar bar, long bucket) {
+        if (mode == Mode.REPLAY) {
+            return recorded(instId, bar, bucket);
+        }
+        return synthetic(instId, bar, bucket, bucket + bar.getMillis());
+    }
+
+    /**
+     * Формирующаяся свеча: состояние бара на момент nowMs
+     */
+    public CandleRow forming(String instId, Bar bar, long bucket, long nowMs) {
+        if (mode == Mode.REPLAY) {
+            CandleRow full = recorded(instId, bar, bucket);
+            if (full == null) {
+                return null;
+            }
+            double progress = Math.min(1.0, (double) (nowMs - bucket) / bar.getMillis());
+            double current = full.open() + (full.close() - full.open()) * progress;
+            return new CandleRow(bucket, full.open(), Math.max(full.open(), current), Math.min(full.open(), current),
+                    current, full.volume() * progress);
+        }
+        return synthetic(instId, bar, bucket, Math.min(nowMs, bucket + bar.getMillis()));
+    }
+
+    /**
+     * Последняя цена инструмента
+     */
+    public double lastPrice(String instId, long nowMs) {
+        for (Bar bar : Bar.values()) {
+            CandleRow row = forming(instId, bar, bar.bucket(nowMs), nowMs);
+            if (row != null) {
+                return row.close();
+            }
+        }
+        return startPrice(instId);
+    }
+
+    /**
+     * Закрытые свечи от новых к старым, как в /api/v5/market/history-candles
+     *
+     * @param after  вернуть свечи старше этого времени (не включая), может быть null
+     * @param before вернуть свечи новее этого времени (не включая), может быть null
+     */
+    public List<CandleRow> history(String instId, Bar bar, Long after, Long before, int limit, long nowMs) {
+        List<CandleRow> rows = new ArrayList<>(limit);
+        if (mode == Mode.REPLAY && !recordings.containsKey(key(instId, bar))) {
+            return rows;
+        }
+
+        long top = bar.bucket(nowMs) - bar.getMillis();
+        if (after != null) {
+            top = Math.min(top, bar.bucket(after - 1));
+        }
+        long bottom = Math.max(historyStartEpochMs, before != null ? before + 1 : Long.MIN_VALUE);
+
+        long scanLimit = (long) limit * MAX_SCAN_FACTOR;
+        for (long ts = top; ts >= bottom && rows.size() < limit && scanLimit-- > 0; ts -= bar.getMillis()) {
+            CandleRow row = closed(instId, bar, ts);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    // === Синтетические свечи ===
+
+    private CandleRow synthetic(String instId, Bar bar, long bucket, long untilMs) {
+        long instSeed = instSeed(instId);
+        long step = Math.max(NOISE_STEP_MS, bar.getMillis() / MAX_SAMPLES);
+
+        double open = price(instId, instSeed, bucket);
+        double high = open;
+        double low = open;
+        for (long t = bucket + step; t < untilMs; t += step) {
+            double p = price(instId, instSeed, t);
+            high = Math.max(high, p);
+            low = Math.min(low, p);
+        }
+        double close = price(instId, instSeed, untilMs);
+        high = Math.max(high, close);
+        low = Math.min(low, close);
+
+        // Тени за пределами точек траектории
+        double wick = dailyVolatility * Math.sqrt((double) bar.getMillis() / DAY_MS) * 0.3;
+        high *= 1 + wick * unit(instSeed, bar.ordinal() + 100, bucket);
+        low *= 1 - wick * unit(instSeed, bar.ordinal() + 200, bucket);
+
+        double elapsed = (double) (untilMs - bucket) / bar.getMillis();
+        double volume = volumePerMinute * (bar.getMillis() / 60_000.0) * elapsed
+                * (0.5 + unit(instSeed, bar.ordinal() + 300, bucket));
+        return new CandleRow(bucket, open, high, low, close, volume);
+    }
+
+    private double price(String instId, long instSeed, long t) {
+        double x = 0;
+        // Амплитуда растёт как корень из периода, как у случайного блуждания; половина — чтобы размах дня был около dailyVolatility
+        for (int k = 0; k < PERIODS_MS.length; k++) {
+            double amplitude = 0.5 * dailyVolatility * Math.sqrt((double) PERIODS_MS[k] / DAY_MS);
+            double phase = 2 * Math.PI * unit(instSeed, k, 0);
+            x += amplitude * Math.sin(2 * Math.PI * (double) t / PERIODS_MS[k] + phase);
+        }
+        // Шум линейно интерполируется между узлами сетки — цена непрерывна внутри свечи
+        long node = Math.floorDiv(t, NOISE_STEP_MS);
+        double fraction = (double) (t - node * NOISE_STEP_MS) / NOISE_STEP_MS;
+        double n0 = gaussian(instSeed, node);
+        double n1 = gaussian(instSeed, node + 1);
+        x += dailyVolatility * Math.sqrt((double) NOISE_STEP_MS / DAY_MS) * (n0 + (n1 - n0) * fraction);
+        return startPrice(instId) * Math.exp(x);
+    }
+
+    private double startPrice(String instId) {
+        return startPrices.computeIfAbsent(instId, id -> ConfigProvider.getConfig()
+                .getOptionalValue("simulator.market." + id + ".startPrice", Double.class)
+                .orElse(defaultStartPrice));
+    }
+
+    private long instSeed(String instId) {
+        return mix(seed, instId.hashCode(), 0);
+    }
+
+    // Приблизительно нормальная величина: сумма трёх равномерных, дисперсия 1
+    private static double gaussian(long instSeed, long node) {
+        return 2 * (unit(instSeed, -1, node) + unit(instSeed, -2, node) + unit(instSeed, -3, node) - 1.5);
+    }
+
+    private static double unit(long a, long b, long c) {
+        return (mix(a, b, c) >>> 11) * 0x1.0p-53;
+    }
+
+    private static long mix(long a, long b, long c) {
+        long z = a * 0x9E3779B97F4A7C15L + b;
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL + c;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+
+    // === Записанные свечи ===
+
+    private CandleRow recorded(String instId, Bar bar, long bucket) {
+        Recording recording = recordings.get(key(instId, bar));
+        if (recording == null) {
+            return null;
+        }
+        long source = recording.anchor() + Math.floorMod(bucket - recording.anchor(), recording.span());
+        CandleRow row = recording.candles().get(source);
+        return row == null ? null : row.withTs(bucket);
+    }
+
+    private void loadRecordings(String file) {
+        Map<String, NavigableMap<Long, CandleRow>> candles = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(Path.of(file))) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] f = line.split(",");
+                Bar bar = f.length < 8 ? null : Bar.fromValue(f[1].trim());
+                if (bar == null) {
+                    LOG.warnf("⚠️ Строка записи пропущена: %s", line);
+                    continue;
+                }
+                long ts = Long.parseLong(f[2].trim());
+                candles.computeIfAbsent(key(f[0].trim(), bar), k -> new TreeMap<>())
+                        .put(ts, new CandleRow(ts, Double.parseDouble(f[3]), Double.parseDouble(f[4]),
+                                Double.parseDouble(f[5]), Double.parseDouble(f[6]), Double.parseDouble(f[7])));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Не удалось прочитать запись свечей " + file, e);
+        }
+
+        candles.forEach((key, rows) -> {
+            Bar bar = Bar.fromValue(key.substring(key.indexOf('|') + 1));
+            long anchor = Bar.W1.bucket(rows.firstKey());
+            long length = rows.lastKey() + bar.getMillis() - anchor;
+            long span = (length + WEEK_MS - 1) / WEEK_MS * WEEK_MS;
+            recordings.put(key, new Recording(rows, anchor, span));
+            LOG.infof("📼 Запись %s: %d свечей, цикл %d нед.", key, rows.size(), span / WEEK_MS);
+        });
+    }
+
+    private static String key(String instId, Bar bar) {
+        return instId + "|" + bar.getValue();
+    }
+}
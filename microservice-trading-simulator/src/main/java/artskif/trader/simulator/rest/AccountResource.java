@@ -0,0 +1,58 @@
+package artskif.trader.simulator.rest;
+
+import artskif.trader.simulator.exchange.SimulatedExchange;
+import artskif.trader.simulator.fault.FaultInjector;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Эндпоинты счёта OKX /api/v5/account/*
+ */
+@Path("/api/v5/account")
+@Produces(MediaType.APPLICATION_JSON)
+public class AccountResource {
+
+    @Inject
+    SimulatedExchange exchange;
+
+    @Inject
+    FaultInjector faults;
+
+    @GET
+    @Path("/balance")
+    public CompletionStage<Response> balance(@HeaderParam("OK-ACCESS-KEY") String apiKey) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return OkxResponses.unauthorized();
+        }
+        return faults.handle("balance", () -> FaultInjector.ok(List.of(exchange.balance())));
+    }
+
+    @GET
+    @Path("/positions")
+    public CompletionStage<Response> positions(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                               @QueryParam("instId") String instId) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return OkxResponses.unauthorized();
+        }
+        return faults.handle("positions", () -> FaultInjector.ok(exchange.positions(instId)));
+    }
+
+    @GET
+    @Path("/positions-history")
+    public CompletionStage<Response> positionsHistory(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                                      @QueryParam("instId") String instId) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return OkxResponses.unauthorized();
+        }
+        return faults.handle("positions-history", () -> FaultInjector.ok(exchange.positionsHistory(instId)));
+    }
+}
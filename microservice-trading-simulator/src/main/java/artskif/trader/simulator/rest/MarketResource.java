@@ -0,0 +1,110 @@
+package artskif.trader.simulator.rest;
+
+import artskif.trader.simulator.fault.FaultInjector;
+import artskif.trader.simulator.market.Bar;
+import artskif.trader.simulator.market.CandleRow;
+import artskif.trader.simulator.market.MarketDataSource;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Рыночные данные OKX: /api/v5/market/history-candles, /candles, /ticker
+ */
+@Path("/api/v5/market")
+@Produces(MediaType.APPLICATION_JSON)
+public class MarketResource {
+
+    @Inject
+    MarketDataSource market;
+
+    @Inject
+    FaultInjector faults;
+
+    // OKX отдаёт не больше 100 свечей истории и 300 последних свечей за запрос
+    @ConfigProperty(name = "simulator.market.historyMaxLimit", defaultValue = "100")
+    int historyMaxLimit;
+
+    @ConfigProperty(name = "simulator.market.candlesMaxLimit", defaultValue = "300")
+    int candlesMaxLimit;
+
+    @GET
+    @Path("/history-candles")
+    public CompletionStage<Response> historyCandles(@QueryParam("instId") String instId, @QueryParam("bar") String bar,
+                                                    @QueryParam("after") Long after, @QueryParam("before") Long before,
+                                                    @QueryParam("limit") Integer limit) {
+        Bar timeframe = bar == null ? Bar.M1 : Bar.fromValue(bar);
+        if (instId == null || timeframe == null) {
+            return OkxResponses.invalidParameter(instId == null ? "instId" : "bar");
+        }
+        return faults.handle("history-candles", () -> rows(
+                market.history(instId, timeframe, after, before, limit(limit, historyMaxLimit), System.currentTimeMillis()),
+                null));
+    }
+
+    @GET
+    @Path("/candles")
+    public CompletionStage<Response> candles(@QueryParam("instId") String instId, @QueryParam("bar") String bar,
+                                             @QueryParam("after") Long after, @QueryParam("before") Long before,
+                                             @QueryParam("limit") Integer limit) {
+        Bar timeframe = bar == null ? Bar.M1 : Bar.fromValue(bar);
+        if (instId == null || timeframe == null) {
+            return OkxResponses.invalidParameter(instId == null ? "instId" : "bar");
+        }
+        return faults.handle("candles", () -> {
+            long now = System.currentTimeMillis();
+            int max = limit(limit, candlesMaxLimit);
+            // Без after первой идёт формирующаяся свеча
+            CandleRow forming = after == null ? market.forming(instId, timeframe, timeframe.bucket(now), now) : null;
+            return rows(market.history(instId, timeframe, after, before, forming == null ? max : max - 1, now), forming);
+        });
+    }
+
+    @GET
+    @Path("/ticker")
+    public CompletionStage<Response> ticker(@QueryParam("instId") String instId) {
+        if (instId == null) {
+            return OkxResponses.invalidParameter("instId");
+        }
+        return faults.handle("ticker", () -> {
+            long now = System.currentTimeMillis();
+            String last = CandleRow.price(market.lastPrice(instId, now));
+            CandleRow day = market.forming(instId, Bar.D1, Bar.D1.bucket(now), now);
+            List<String> dayFields = day == null ? List.of("", last, last, last, last, "0") : day.fields(false);
+            return FaultInjector.ok(List.of(Map.of(
+                    "instType", "SWAP",
+                    "instId", instId,
+                    "last", last,
+                    "askPx", last,
+                    "bidPx", last,
+                    "open24h", dayFields.get(1),
+                    "high24h", dayFields.get(2),
+                    "low24h", dayFields.get(3),
+                    "vol24h", dayFields.get(5),
+                    "ts", String.valueOf(now))));
+        });
+    }
+
+    private static Map<String, Object> rows(List<CandleRow> closed, CandleRow forming) {
+        List<List<String>> data = new ArrayList<>(closed.size() + 1);
+        if (forming != null) {
+            data.add(forming.fields(false));
+        }
+        closed.forEach(row -> data.add(row.fields(true)));
+        return FaultInjector.ok(data);
+    }
+
+    private static int limit(Integer requested, int max) {
+        return requested == null || requested <= 0 ? Math.min(100, max) : Math.min(requested, max);
+    }
+}
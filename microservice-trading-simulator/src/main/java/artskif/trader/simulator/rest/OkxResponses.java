@@ -0,0 +1,36 @@
+package artskif.trader.simulator.rest;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Ответы OKX с ошибкой, которые отдаются до политики сбоев
+ */
+final class OkxResponses {
+
+    private OkxResponses() {
+    }
+
+    static CompletionStage<Response> invalidParameter(String name) {
+        return error(Response.Status.BAD_REQUEST, "51000", "Parameter " + name + " error");
+    }
+
+    /**
+     * Подпись не проверяется — достаточно, чтобы клиент прислал заголовки аутентификации
+     */
+    static CompletionStage<Response> unauthorized() {
+        return error(Response.Status.UNAUTHORIZED, "50103", "Request header OK-ACCESS-KEY can not be empty.");
+    }
+
+    private static CompletionStage<Response> error(Response.Status status, String code, String msg) {
+        return CompletableFuture.completedFuture(Response.status(status)
+                .entity(Map.of("code", code, "msg", msg, "data", List.of()))
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+}
@@ -0,0 +1,62 @@
+package artskif.trader.simulator.rest;
+
+import artskif.trader.simulator.fault.FaultInjector;
+import artskif.trader.simulator.market.CandleRow;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Справочник инструментов OKX /api/v5/public/instruments: все SWAP-инструменты с параметрами BTC-USDT-SWAP
+ */
+@Path("/api/v5/public")
+@Produces(MediaType.APPLICATION_JSON)
+public class PublicResource {
+
+    @Inject
+    FaultInjector faults;
+
+    @ConfigProperty(name = "simulator.instruments", defaultValue = "BTC-USDT-SWAP")
+    List<String> instruments;
+
+    @GET
+    @Path("/instruments")
+    public CompletionStage<Response> instruments(@QueryParam("instType") String instType,
+                                                 @QueryParam("instId") String instId) {
+        if (instType == null) {
+            return OkxResponses.invalidParameter("instType");
+        }
+        return faults.handle("instruments", () -> FaultInjector.ok((instId == null ? instruments : List.of(instId)).stream()
+                .map(PublicResource::instrument)
+                .toList()));
+    }
+
+    private static Map<String, Object> instrument(String instId) {
+        String[] parts = instId.split("-");
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("instType", "SWAP");
+        map.put("instId", instId);
+        map.put("uly", parts[0] + "-" + (parts.length > 1 ? parts[1] : "USDT"));
+        map.put("ctType", "linear");
+        map.put("ctVal", BigDecimal.valueOf(CandleRow.CONTRACT_VALUE).toPlainString());
+        map.put("ctValCcy", parts[0]);
+        map.put("settleCcy", parts.length > 1 ? parts[1] : "USDT");
+        map.put("lotSz", "0.01");
+        map.put("minSz", "0.01");
+        map.put("tickSz", "0.1");
+        map.put("lever", "100");
+        map.put("state", "live");
+        return map;
+    }
+}
@@ -0,0 +1,117 @@
+package artskif.trader.simulator.rest;
+
+import artskif.trader.simulator.exchange.SimulatedExchange;
+import artskif.trader.simulator.fault.FaultInjector;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Торговые эндпоинты OKX /api/v5/trade/*, которыми пользуется исполнитель
+ */
+@Path("/api/v5/trade")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class TradeResource {
+
+    @Inject
+    SimulatedExchange exchange;
+
+    @Inject
+    FaultInjector faults;
+
+    @POST
+    @Path("/order")
+    public CompletionStage<Response> placeOrder(@HeaderParam("OK-ACCESS-KEY") String apiKey, Map<String, Object> body) {
+        return signed(apiKey, "order", () -> item(exchange.placeOrder(body)));
+    }
+
+    @GET
+    @Path("/order")
+    public CompletionStage<Response> order(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                           @QueryParam("ordId") String ordId, @QueryParam("clOrdId") String clOrdId) {
+        return signed(apiKey, "order", () -> found(exchange.order(ordId, clOrdId)));
+    }
+
+    @GET
+    @Path("/orders-pending")
+    public CompletionStage<Response> ordersPending(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                                   @QueryParam("instId") String instId) {
+        return signed(apiKey, "orders-pending", () -> FaultInjector.ok(exchange.pendingOrders(instId)));
+    }
+
+    @POST
+    @Path("/cancel-order")
+    public CompletionStage<Response> cancelOrder(@HeaderParam("OK-ACCESS-KEY") String apiKey, Map<String, Object> body) {
+        return signed(apiKey, "cancel-order", () -> item(exchange.cancelOrder(body)));
+    }
+
+    @POST
+    @Path("/order-algo")
+    public CompletionStage<Response> placeAlgo(@HeaderParam("OK-ACCESS-KEY") String apiKey, Map<String, Object> body) {
+        return signed(apiKey, "order-algo", () -> item(exchange.placeAlgo(body)));
+    }
+
+    @GET
+    @Path("/order-algo")
+    public CompletionStage<Response> algoOrder(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                               @QueryParam("algoId") String algoId) {
+        return signed(apiKey, "order-algo", () -> found(exchange.algoOrder(algoId)));
+    }
+
+    @GET
+    @Path("/orders-algo-pending")
+    public CompletionStage<Response> algoOrdersPending(@HeaderParam("OK-ACCESS-KEY") String apiKey,
+                                                       @QueryParam("instId") String instId,
+                                                       @QueryParam("ordType") String ordType) {
+        return signed(apiKey, "orders-algo-pending", () -> FaultInjector.ok(exchange.pendingAlgos(instId, ordType)));
+    }
+
+    @POST
+    @Path("/cancel-algos")
+    public CompletionStage<Response> cancelAlgos(@HeaderParam("OK-ACCESS-KEY") String apiKey, List<Map<String, Object>> body) {
+        return signed(apiKey, "cancel-algos", () -> FaultInjector.ok(exchange.cancelAlgos(body)));
+    }
+
+    @POST
+    @Path("/close-position")
+    public CompletionStage<Response> closePosition(@HeaderParam("OK-ACCESS-KEY") String apiKey, Map<String, Object> body) {
+        return signed(apiKey, "close-position", () -> {
+            Map<String, Object> closed = exchange.closePosition(body);
+            return closed == null ? FaultInjector.fail("51023", "Position does not exist") : FaultInjector.ok(List.of(closed));
+        });
+    }
+
+    private CompletionStage<Response> signed(String apiKey, String endpoint, Supplier<Object> handler) {
+        if (apiKey == null || apiKey.isBlank()) {
+            return OkxResponses.unauthorized();
+        }
+        return faults.handle(endpoint, handler);
+    }
+
+    /**
+     * Результат операции над одним ордером: при sCode != 0 OKX отвечает кодом 1 и пишет причину в sMsg
+     */
+    private static Map<String, Object> item(Map<String, Object> result) {
+        if ("0".equals(result.get("sCode"))) {
+            return FaultInjector.ok(List.of(result));
+        }
+        return Map.of("code", "1", "msg", "Operation failed.", "data", List.of(result));
+    }
+
+    private static Map<String, Object> found(Map<String, Object> order) {
+        return order == null ? FaultInjector.fail("51603", "Order does not exist") : FaultInjector.ok(List.of(order));
+    }
+}
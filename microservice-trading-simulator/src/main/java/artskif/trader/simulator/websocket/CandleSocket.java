@@ -0,0 +1,85 @@
+package artskif.trader.simulator.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.quarkus.websockets.next.OnClose;
+import io.quarkus.websockets.next.OnOpen;
+import io.quarkus.websockets.next.OnTextMessage;
+import io.quarkus.websockets.next.WebSocket;
+import io.quarkus.websockets.next.WebSocketConnection;
+import jakarta.inject.Inject;
+import org.jboss.logging.Logger;
+
+/**
+ * Бизнес-канал OKX WebSocket (/ws/v5/business): подписка на свечные каналы candle1m, candle1H, ...
+ *
+ * Отвечает на текстовый "ping" строкой "pong" и на каждый элемент args — событием subscribe/unsubscribe
+ * или error, как OKX. Кадры ping/pong протокола WebSocket обрабатывает сам сервер.
+ */
+@WebSocket(path = "/ws/v5/business")
+public class CandleSocket {
+
+    private static final Logger LOG = Logger.getLogger(CandleSocket.class);
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Inject
+    CandleStreamer streamer;
+
+    @OnOpen
+    public void onOpen(WebSocketConnection connection) {
+        streamer.open(connection);
+        LOG.debugf("🔗 Соединение %s открыто", connection.id());
+    }
+
+    @OnTextMessage
+    public void onMessage(String message, WebSocketConnection connection) {
+        if ("ping".equals(message)) {
+            reply(connection, "pong");
+            return;
+        }
+
+        JsonNode request;
+        try {
+            request = mapper.readTree(message);
+        } catch (Exception e) {
+            reply(connection, error(connection, "60012", "Invalid request: " + message));
+            return;
+        }
+        String op = request.path("op").asText();
+        if (!"subscribe".equals(op) && !"unsubscribe".equals(op)) {
+            reply(connection, error(connection, "60012", "Invalid request: " + message));
+            return;
+        }
+
+        for (JsonNode arg : request.path("args")) {
+            String channel = arg.path("channel").asText(null);
+            String instId = arg.path("instId").asText(null);
+            if ("unsubscribe".equals(op)) {
+                streamer.unsubscribe(connection.id(), channel, instId);
+            } else if (!streamer.subscribe(connection.id(), channel, instId)) {
+                reply(connection, error(connection, "60018",
+                        "Wrong URL or channel:" + channel + ",instId:" + instId + " doesn't exist."));
+                continue;
+            }
+            reply(connection, "{\"event\":\"" + op + "\",\"arg\":" + arg + ",\"connId\":\"" + connection.id() + "\"}");
+        }
+    }
+
+    @OnClose
+    public void onClose(WebSocketConnection connection) {
+        streamer.close(connection.id());
+        LOG.debugf("🔌 Соединение %s закрыто", connection.id());
+    }
+
+    private static void reply(WebSocketConnection connection, String text) {
+        connection.sendText(text).subscribe().with(
+                ok -> {
+                },
+                error -> LOG.debugf("Не удалось ответить в соединение %s: %s", connection.id(), error.getMessage()));
+    }
+
+    private static String error(WebSocketConnection connection, String code, String msg) {
+        return "{\"event\":\"error\",\"code\":\"" + code + "\",\"msg\":\"" + msg.replace("\"", "'")
+                + "\",\"connId\":\"" + connection.id() + "\"}";
+    }
+}
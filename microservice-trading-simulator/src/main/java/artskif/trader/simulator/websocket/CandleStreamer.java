@@ -0,0 +1,190 @@
+package artskif.trader.simulator.websocket;
+
+import artskif.trader.simulator.SimulatorStats;
+import artskif.trader.simulator.market.Bar;
+import artskif.trader.simulator.market.CandleRow;
+import artskif.trader.simulator.market.MarketDataSource;
+import io.quarkus.websockets.next.WebSocketConnection;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылка свечей подписчикам WebSocket.
+ *
+ * Каждый тик ({@code simulator.ws.updatesPerSecond} раз в секунду) по каждой подписке уходит кадр формирующейся
+ * свечи (confirm=0), а при смене бара перед ним — кадр закрытой свечи (confirm=1), как у OKX.
+ * Сбои: {@code dropRate} — доля пропущенных кадров формирующейся свечи (закрытые не теряются),
+ * {@code disconnectAfterSeconds} — среднее время жизни соединения, после которого сервер его закрывает
+ * (экспоненциальное распределение, 0 — не разрывать).
+ */
+@ApplicationScoped
+public class CandleStreamer {
+
+    private static final Logger LOG = Logger.getLogger(CandleStreamer.class);
+
+    @Inject
+    MarketDataSource market;
+
+    @Inject
+    SimulatorStats stats;
+
+    @ConfigProperty(name = "simulator.ws.updatesPerSecond", defaultValue = "1")
+    int updatesPerSecond;
+
+    @ConfigProperty(name = "simulator.ws.dropRate", defaultValue = "0")
+    double dropRate;
+
+    @ConfigProperty(name = "simulator.ws.disconnectAfterSeconds", defaultValue = "0")
+    long disconnectAfterSeconds;
+
+    private static final class Subscription {
+        final Bar bar;
+        final String instId;
+        final String argJson;
+        long lastBucket = -1;
+
+        Subscription(Bar bar, String channel, String instId) {
+            this.bar = bar;
+            this.instId = instId;
+            this.argJson = "{\"channel\":\"" + channel + "\",\"instId\":\"" + instId + "\"}";
+        }
+    }
+
+    private static final class Subscriber {
+        final WebSocketConnection connection;
+        final long disconnectAtMs;
+        final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+        Subscriber(WebSocketConnection connection, long disconnectAtMs) {
+            this.connection = connection;
+            this.disconnectAtMs = disconnectAtMs;
+        }
+    }
+
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker;
+
+    @PostConstruct
+    void init() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r);
+            t.setName("sim-ws-stream");
+            t.setDaemon(true);
+            return t;
+        });
+        long periodMs = Math.max(1, 1000 / Math.max(1, updatesPerSecond));
+        ticker.scheduleAtFixedRate(this::tick, periodMs, periodMs, TimeUnit.MILLISECONDS);
+        LOG.infof("📡 Рассылка свечей: %d кадр/с на подписку, потери %.2f, разрыв в среднем через %d с",
+                updatesPerSecond, dropRate, disconnectAfterSeconds);
+    }
+
+    void open(WebSocketConnection connection) {
+        long disconnectAt = 0;
+        if (disconnectAfterSeconds > 0) {
+            double lifetimeMs = -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * disconnectAfterSeconds * 1000;
+            disconnectAt = System.currentTimeMillis() + (long) lifetimeMs;
+        }
+        subscribers.put(connection.id(), new Subscriber(connection, disconnectAt));
+        stats.increment("ws.connections");
+    }
+
+    void close(String connectionId) {
+        subscribers.remove(connectionId);
+    }
+
+    /**
+     * @return false, если канал не свечной
+     */
+    boolean subscribe(String connectionId, String channel, String instId) {
+        Bar bar = Bar.fromChannel(channel);
+        Subscriber subscriber = subscribers.get(connectionId);
+        if (bar == null || instId == null || subscriber == null) {
+            return false;
+        }
+        subscriber.subscriptions.putIfAbsent(channel + "|" + instId, new Subscription(bar, channel, instId));
+        return true;
+    }
+
+    void unsubscribe(String connectionId, String channel, String instId) {
+        Subscriber subscriber = subscribers.get(connectionId);
+        if (subscriber != null) {
+            subscriber.subscriptions.remove(channel + "|" + instId);
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Subscriber subscriber : subscribers.values()) {
+                if (subscriber.disconnectAtMs > 0 && now >= subscriber.disconnectAtMs) {
+                    disconnect(subscriber);
+                    continue;
+                }
+                for (Subscription subscription : subscriber.subscriptions.values()) {
+                    push(subscriber.connection, subscription, now);
+                }
+            }
+        } catch (Throwable t) {
+            LOG.error("⚠️ Ошибка рассылки свечей: " + t.getMessage(), t);
+        }
+    }
+
+    private void push(WebSocketConnection connection, Subscription subscription, long now) {
+        Bar bar = subscription.bar;
+        long bucket = bar.bucket(now);
+        if (subscription.lastBucket >= 0 && bucket > subscription.lastBucket) {
+            CandleRow closed = market.closed(subscription.instId, bar, subscription.lastBucket);
+            if (closed != null) {
+                send(connection, frame(subscription, closed, true));
+            }
+        }
+        subscription.lastBucket = bucket;
+
+        if (dropRate > 0 && ThreadLocalRandom.current().nextDouble() < dropRate) {
+            stats.increment("ws.dropped");
+            return;
+        }
+        CandleRow forming = market.forming(subscription.instId, bar, bucket, now);
+        if (forming != null) {
+            send(connection, frame(subscription, forming, false));
+        }
+    }
+
+    private void send(WebSocketConnection connection, String frame) {
+        stats.increment("ws.frames");
+        connection.sendText(frame).subscribe().with(
+                ok -> {
+                },
+                error -> stats.increment("ws.sendErrors"));
+    }
+
+    private void disconnect(Subscriber subscriber) {
+        subscribers.remove(subscriber.connection.id());
+        stats.increment("ws.disconnects");
+        LOG.infof("✂️ Разрываем соединение %s (подписок: %d)", subscriber.connection.id(), subscriber.subscriptions.size());
+        subscriber.connection.close().subscribe().with(
+                ok -> {
+                },
+                error -> LOG.debugf("Соединение %s уже закрыто: %s", subscriber.connection.id(), error.getMessage()));
+    }
+
+    private static String frame(Subscription subscription, CandleRow row, boolean confirmed) {
+        return "{\"arg\":" + subscription.argJson + ",\"data\":[" + row.toJson(confirmed) + "]}";
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,145 @@
+package artskif.trader.simulator.exchange;
+
+import artskif.trader.simulator.SimulatorStats;
+import artskif.trader.simulator.market.MarketDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Исполнение ордеров по цене, которую задаёт тест
+ */
+class SimulatedExchangeTest {
+
+    private static final String INST = "BTC-USDT-SWAP";
+
+    private double price = 100;
+    private SimulatedExchange exchange;
+
+    @BeforeEach
+    void setUp() {
+        exchange = new SimulatedExchange();
+        exchange.market = new MarketDataSource() {
+            @Override
+            public double lastPrice(String instId, long nowMs) {
+                return price;
+            }
+        };
+        exchange.stats = new SimulatorStats();
+        exchange.initialBalance = 10_000;
+        exchange.init();
+    }
+
+    @Test
+    void limitOrderWaitsForPriceAndFillsAtLimit() {
+        String ordId = ordId(exchange.placeOrder(Map.of("instId", INST, "side", "buy", "ordType", "limit", "px", "95", "sz", "10")));
+        exchange.match();
+        assertEquals("live", exchange.order(ordId, null).get("state"));
+        assertEquals(1, exchange.pendingOrders(INST).size());
+
+        price = 94;
+        exchange.match();
+
+        Map<String, Object> order = exchange.order(ordId, null);
+        assertEquals("filled", order.get("state"));
+        assertEquals("95.0", order.get("avgPx"));
+        assertEquals("10", order.get("accFillSz"));
+        assertEquals("10", position().get("pos"));
+        assertTrue(exchange.pendingOrders(INST).isEmpty());
+    }
+
+    @Test
+    void marketableLimitOrderFillsImmediately() {
+        String ordId = ordId(exchange.placeOrder(Map.of("instId", INST, "side", "sell", "ordType", "limit", "px", "99", "sz", "4")));
+
+        assertEquals("filled", exchange.order(ordId, null).get("state"));
+        assertEquals("-4", position().get("pos"));
+    }
+
+    @Test
+    void attachedTakeProfitClosesLongAndRealizesPnl() {
+        exchange.placeOrder(Map.of("instId", INST, "side", "buy", "ordType", "limit", "px", "100", "sz", "10",
+                "attachAlgoOrds", List.of(Map.of("slTriggerPx", "90", "tpTriggerPx", "110"))));
+        List<Map<String, Object>> algos = exchange.pendingAlgos(INST, null);
+        assertEquals(1, algos.size());
+        assertEquals("sell", algos.get(0).get("side"));
+
+        price = 105;
+        exchange.match();
+        assertEquals(1, exchange.pendingAlgos(INST, null).size());
+
+        price = 110;
+        exchange.match();
+
+        assertTrue(exchange.pendingAlgos(INST, null).isEmpty());
+        assertTrue(exchange.positions(INST).isEmpty());
+        // (110 - 100) * 10 контрактов * 0.01 BTC
+        assertEquals("10001", cashBalance());
+        assertEquals("1", exchange.positionsHistory(INST).get(0).get("pnl"));
+    }
+
+    @Test
+    void stopLossClosesShortAtLastPrice() {
+        exchange.placeOrder(Map.of("instId", INST, "side", "sell", "ordType", "market", "sz", "20"));
+        String algoId = (String) exchange.placeAlgo(Map.of("instId", INST, "side", "buy", "ordType", "conditional",
+                "sz", "20", "slTriggerPx", "104", "reduceOnly", "true")).get("algoId");
+
+        price = 103;
+        exchange.match();
+        assertEquals("live", exchange.algoOrder(algoId).get("state"));
+
+        price = 105;
+        exchange.match();
+
+        assertEquals("effective", exchange.algoOrder(algoId).get("state"));
+        assertTrue(exchange.positions(INST).isEmpty());
+        // (100 - 105) * 20 * 0.01
+        assertEquals("9999", cashBalance());
+    }
+
+    @Test
+    void reduceOnlyAlgoDoesNotOpenPositionWhenNothingToClose() {
+        exchange.placeAlgo(Map.of("instId", INST, "side", "sell", "ordType", "conditional",
+                "sz", "5", "tpTriggerPx", "100", "reduceOnly", "true"));
+
+        exchange.match();
+
+        assertTrue(exchange.positions(INST).isEmpty());
+        assertEquals("10000", cashBalance());
+    }
+
+    @Test
+    void canceledLimitOrderIsNotFilled() {
+        String ordId = ordId(exchange.placeOrder(Map.of("instId", INST, "side", "buy", "ordType", "limit", "px", "95", "sz", "1")));
+        assertEquals("0", exchange.cancelOrder(Map.of("ordId", ordId)).get("sCode"));
+
+        price = 90;
+        exchange.match();
+
+        assertEquals("canceled", exchange.order(ordId, null).get("state"));
+        assertTrue(exchange.positions(INST).isEmpty());
+        assertEquals("51400", exchange.cancelOrder(Map.of("ordId", ordId)).get("sCode"));
+    }
+
+    private Map<String, Object> position() {
+        List<Map<String, Object>> positions = exchange.positions(INST);
+        assertEquals(1, positions.size());
+        return positions.get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private String cashBalance() {
+        List<Map<String, Object>> details = (List<Map<String, Object>>) exchange.balance().get("details");
+        return (String) details.get(0).get("cashBal");
+    }
+
+    private static String ordId(Map<String, Object> result) {
+        assertEquals("0", result.get("sCode"));
+        return (String) result.get("ordId");
+    }
+}
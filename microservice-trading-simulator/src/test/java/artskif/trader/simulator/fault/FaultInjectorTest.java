@@ -0,0 +1,75 @@
+package artskif.trader.simulator.fault;
+
+import artskif.trader.simulator.SimulatorStats;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FaultInjectorTest {
+
+    private static final long WINDOW_MS = 300;
+
+    @BeforeAll
+    static void configure() {
+        System.setProperty("simulator.fault.limited.rateLimit", "3");
+        System.setProperty("simulator.fault.limited.rateWindowMs", String.valueOf(WINDOW_MS));
+    }
+
+    @Test
+    void slidingWindowRejectsRequestsOverLimitWith429() throws Exception {
+        FaultInjector injector = injector();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status(injector, "limited"));
+        }
+        assertEquals(429, status(injector, "limited"));
+        Response rejected = injector.handle("limited", () -> FaultInjector.ok(List.of())).toCompletableFuture().get();
+        assertEquals("50011", ((Map<?, ?>) rejected.getEntity()).get("code"));
+
+        // Окно скользящее: после его истечения запросы снова проходят, и лимит снова действует
+        Thread.sleep(WINDOW_MS + 50);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, status(injector, "limited"));
+        }
+        assertEquals(429, status(injector, "limited"));
+    }
+
+    @Test
+    void endpointsWithoutLimitAreNotThrottled() throws Exception {
+        FaultInjector injector = injector();
+
+        for (int i = 0; i < 50; i++) {
+            assertEquals(200, status(injector, "unlimited"));
+        }
+    }
+
+    @Test
+    void rejectedRequestDoesNotCallHandler() throws Exception {
+        FaultInjector injector = injector();
+        int[] calls = {0};
+
+        for (int i = 0; i < 5; i++) {
+            injector.handle("limited", () -> {
+                calls[0]++;
+                return FaultInjector.ok(List.of());
+            }).toCompletableFuture().get();
+        }
+
+        assertEquals(3, calls[0]);
+    }
+
+    private static int status(FaultInjector injector, String endpoint) throws Exception {
+        return injector.handle(endpoint, () -> FaultInjector.ok(List.of())).toCompletableFuture().get().getStatus();
+    }
+
+    private static FaultInjector injector() {
+        FaultInjector injector = new FaultInjector();
+        injector.stats = new SimulatorStats();
+        return injector;
+    }
+}
@@ -0,0 +1,143 @@
+package artskif.trader.simulator.market;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarketDataSourceTest {
+
+    private static final String INST = "BTC-USDT-SWAP";
+    private static final long NOW = 1_717_000_000_000L;
+    private static final long HISTORY_START = 1_577_836_800_000L;
+
+    @Test
+    void historyIsNewestFirstAndEndsBeforeFormingBar() {
+        MarketDataSource source = synthetic(42);
+
+        List<CandleRow> rows = source.history(INST, Bar.M1, null, null, 100, NOW);
+
+        assertEquals(100, rows.size());
+        assertEquals(Bar.M1.bucket(NOW) - Bar.M1.getMillis(), rows.get(0).ts());
+        for (int i = 1; i < rows.size(); i++) {
+            assertEquals(rows.get(i - 1).ts() - Bar.M1.getMillis(), rows.get(i).ts());
+        }
+    }
+
+    @Test
+    void afterPagesToOlderCandlesWithoutGapsOrDuplicates() {
+        MarketDataSource source = synthetic(42);
+
+        List<CandleRow> first = source.history(INST, Bar.H1, null, null, 50, NOW);
+        List<CandleRow> second = source.history(INST, Bar.H1, first.get(first.size() - 1).ts(), null, 50, NOW);
+
+        // after — свечи строго старше ts, как в history-candles OKX
+        assertEquals(first.get(first.size() - 1).ts() - Bar.H1.getMillis(), second.get(0).ts());
+        assertEquals(50, second.size());
+        assertEquals(first.get(10), source.history(INST, Bar.H1, first.get(9).ts(), null, 1, NOW).get(0));
+    }
+
+    @Test
+    void beforeReturnsOnlyNewerCandles() {
+        MarketDataSource source = synthetic(42);
+        long before = Bar.M5.bucket(NOW) - 10 * Bar.M5.getMillis();
+
+        List<CandleRow> rows = source.history(INST, Bar.M5, null, before, 100, NOW);
+
+        // Между before (не включая) и формирующимся баром девять закрытых свечей
+        assertEquals(9, rows.size());
+        assertTrue(rows.stream().allMatch(row -> row.ts() > before));
+        assertEquals(before + Bar.M5.getMillis(), rows.get(rows.size() - 1).ts());
+
+        long after = before + 5 * Bar.M5.getMillis();
+        List<CandleRow> window = source.history(INST, Bar.M5, after, before, 100, NOW);
+        assertEquals(4, window.size());
+        assertTrue(window.stream().allMatch(row -> row.ts() > before && row.ts() < after));
+    }
+
+    @Test
+    void historyStopsAtHistoryStart() {
+        MarketDataSource source = synthetic(42);
+        long after = HISTORY_START + 3 * Bar.D1.getMillis();
+
+        List<CandleRow> rows = source.history(INST, Bar.D1, after, null, 100, NOW);
+
+        assertTrue(rows.size() <= 3);
+        assertTrue(rows.stream().allMatch(row -> row.ts() >= HISTORY_START));
+    }
+
+    @Test
+    void syntheticCandlesAreDeterministicForSeed() {
+        List<CandleRow> a = synthetic(42).history(INST, Bar.M15, null, null, 200, NOW);
+        List<CandleRow> b = synthetic(42).history(INST, Bar.M15, null, null, 200, NOW);
+        List<CandleRow> other = synthetic(7).history(INST, Bar.M15, null, null, 200, NOW);
+
+        assertEquals(a, b);
+        assertNotEquals(a, other);
+        assertNotEquals(a, synthetic(42).history("ETH-USDT-SWAP", Bar.M15, null, null, 200, NOW));
+        for (CandleRow row : a) {
+            assertTrue(row.high() >= Math.max(row.open(), row.close()));
+            assertTrue(row.low() <= Math.min(row.open(), row.close()));
+            assertTrue(row.volume() > 0);
+        }
+    }
+
+    @Test
+    void formingCandleClosesAsTheHistoricalOne() {
+        MarketDataSource source = synthetic(42);
+        long bucket = Bar.H4.bucket(NOW) - Bar.H4.getMillis();
+
+        CandleRow closed = source.closed(INST, Bar.H4, bucket);
+
+        assertEquals(closed, source.forming(INST, Bar.H4, bucket, bucket + Bar.H4.getMillis()));
+        assertEquals(closed, source.history(INST, Bar.H4, bucket + 1, null, 1, NOW).get(0));
+        CandleRow early = source.forming(INST, Bar.H4, bucket, bucket + Bar.H4.getMillis() / 2);
+        assertEquals(closed.open(), early.open());
+        assertTrue(early.volume() < closed.volume());
+    }
+
+    @Test
+    void replayLoopsRecordingByWholeWeeks(@TempDir Path dir) throws IOException {
+        long week = Bar.W1.bucket(NOW);
+        Path file = dir.resolve("candles.csv");
+        Files.writeString(file, String.join("\n",
+                "# instId,bar,ts,open,high,low,close,vol",
+                INST + ",1H," + week + ",100,110,90,105,12",
+                INST + ",1H," + (week + Bar.H1.getMillis()) + ",105,115,95,100,7"));
+
+        MarketDataSource source = synthetic(42);
+        source.mode = MarketDataSource.Mode.REPLAY;
+        source.replayFile = Optional.of(file.toString());
+        source.init();
+
+        long nextWeek = week + 7 * 86_400_000L;
+        assertEquals(new CandleRow(nextWeek, 100, 110, 90, 105, 12), source.closed(INST, Bar.H1, nextWeek));
+        assertNull(source.closed(INST, Bar.H1, week + 2 * Bar.H1.getMillis()));
+        assertTrue(source.history(INST, Bar.M1, null, null, 10, NOW).isEmpty());
+        // Неделей раньше — те же свечи; пустые бары записи history пропускает
+        long previousWeek = week - 7 * 86_400_000L;
+        List<CandleRow> rows = source.history(INST, Bar.H1, previousWeek + 3 * Bar.H1.getMillis(), null, 2, NOW);
+        assertEquals(List.of(previousWeek + Bar.H1.getMillis(), previousWeek), rows.stream().map(CandleRow::ts).toList());
+    }
+
+    private static MarketDataSource synthetic(long seed) {
+        MarketDataSource source = new MarketDataSource();
+        source.mode = MarketDataSource.Mode.SYNTHETIC;
+        source.seed = seed;
+        source.defaultStartPrice = 60_000;
+        source.dailyVolatility = 0.03;
+        source.volumePerMinute = 5_000;
+        source.historyStartEpochMs = HISTORY_START;
+        source.replayFile = Optional.empty();
+        return source;
+    }
+}